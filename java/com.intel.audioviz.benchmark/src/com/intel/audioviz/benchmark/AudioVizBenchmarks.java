@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2017 Intel Corporation
+ *
+ * This Program is subject to the terms of the Eclipse Public License, v. 1.0.
+ * If a copy of the license was not distributed with this file,
+ * you can obtain one at <http://www.eclipse.org/legal/epl-v10.html>
+ *
+ * SPDX-License-Identifier: EPL-1.0
+ */
+package com.intel.audioviz.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Run the AudioViz benchmarks and write their results as JSON, the JMH format regression tracking tools read.
+ *
+ * Usage: AudioVizBenchmarks [result file [benchmark regexp]]
+ * By default, all benchmarks of this package are run and results are written to DEFAULT_RESULT_FILE.
+ * @note Benchmarks are forked: run this class as a plain Java application, with the classpath holding the
+ * AudioViz bundles, JMH and the classes generated by the JMH annotation processor. The pom.xml of this bundle
+ * builds them all into a single jar: mvn -B package, then java -jar target/benchmarks.jar.
+ */
+public final class AudioVizBenchmarks {
+
+    private AudioVizBenchmarks() {
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        final String resultFile = args.length > 0 ? args[0] : DEFAULT_RESULT_FILE;
+        final String include = args.length > 1 ? args[1]
+                : AudioVizBenchmarks.class.getPackage().getName() + "\\..*Benchmark";
+
+        final Options options = new OptionsBuilder()
+                .include(include)
+                .resultFormat(ResultFormatType.JSON)
+                .result(resultFile)
+                .build();
+        new Runner(options).run();
+    }
+
+    private static final String DEFAULT_RESULT_FILE = "audioviz-benchmark.json";
+}
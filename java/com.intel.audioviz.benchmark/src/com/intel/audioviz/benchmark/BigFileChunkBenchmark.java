@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2017 Intel Corporation
+ *
+ * This Program is subject to the terms of the Eclipse Public License, v. 1.0.
+ * If a copy of the license was not distributed with this file,
+ * you can obtain one at <http://www.eclipse.org/legal/epl-v10.html>
+ *
+ * SPDX-License-Identifier: EPL-1.0
+ */
+package com.intel.audioviz.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.intel.audioviz.AudioFormat;
+import com.intel.audioviz.benchmark.SyntheticAudio.SampleFormat;
+import com.intel.audioviz.file.BigFileSampleProvider;
+
+/**
+ * Overhead of the mapped windows of BigFileSampleProvider, in Audio Samples per microsecond: the same reads are done
+ * within a window, then straddling the boundary between the first two windows. Frames of three 16 bits channels do
+ * not divide the window size, so that a frame straddles the boundary.
+ *
+ * The file is sparse: only the region around the window boundary holds synthetic Audio data, and is read once
+ * before measurements so that page faults are not measured. Both windows stay mapped.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BigFileChunkBenchmark {
+
+    @Param({"INSIDE", "STRADDLING"})
+    public String position;
+
+    @Setup
+    public void setUp() throws IOException {
+        final AudioFormat audioFormat = SampleFormat.PCM16.getAudioFormat(CHANNEL_COUNT, ByteOrder.LITTLE_ENDIAN);
+        final int frameSize = audioFormat.getFrameSize();
+        /* The first frame starting in the second window of BigFileSampleProvider */
+        final long windowFrameCount = (BigFileSampleProvider.DEFAULT_WINDOW_SIZE + frameSize - 1) / frameSize;
+        final long firstFrame = windowFrameCount - DATA_FRAME_COUNT / 2;
+
+        mFile = File.createTempFile("audioviz-benchmark", ".raw");
+        mFile.deleteOnExit();
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(mFile, "rw")) {
+            randomAccessFile.setLength((windowFrameCount + DATA_FRAME_COUNT) * frameSize);
+            final FileChannel fileChannel = randomAccessFile.getChannel();
+            final ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_FRAME_COUNT * frameSize);
+            buffer.order(audioFormat.getByteOrder());
+            for (long frame = firstFrame; frame < firstFrame + DATA_FRAME_COUNT; frame += WRITE_FRAME_COUNT) {
+                buffer.clear();
+                SyntheticAudio.generate(audioFormat, frame, buffer);
+                buffer.flip();
+                fileChannel.write(buffer, frame * frameSize);
+            }
+        }
+
+        mSampleProvider = new BigFileSampleProvider(mFile, 0, mFile.length(), audioFormat);
+        mSamples = new float[BLOCK_SIZE * CHANNEL_COUNT];
+        /* Blocks either stay within the first window, or are centered on its end */
+        mFirstIndex = "STRADDLING".equals(position) ? windowFrameCount - BLOCK_SIZE / 2 : firstFrame;
+        mIndex = mFirstIndex;
+        for (long frame = firstFrame; frame < firstFrame + DATA_FRAME_COUNT; frame += BLOCK_SIZE) {
+            mSampleProvider.getFramesAsFloat(frame, CHANNEL_COUNT, mSamples, 0, BLOCK_SIZE);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        /* The mapping is only released once the provider is garbage collected */
+        mSampleProvider = null;
+        System.gc();
+        mFile.delete();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BLOCK_SIZE)
+    public float scalar() {
+        final long index = nextIndex();
+        float sum = 0;
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            sum += mSampleProvider.getSampleAsFloat(0, index + i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BLOCK_SIZE)
+    public float[] channelBlock() {
+        mSampleProvider.getSamplesAsFloat(0, nextIndex(), mSamples, 0, BLOCK_SIZE);
+        return mSamples;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BLOCK_SIZE * CHANNEL_COUNT)
+    public float[] frameBlock() {
+        mSampleProvider.getFramesAsFloat(nextIndex(), CHANNEL_COUNT, mSamples, 0, BLOCK_SIZE);
+        return mSamples;
+    }
+
+    /**
+     * @return the index of the next block: blocks are shifted by one frame, so that reads are not always aligned
+     * the same way
+     */
+    private long nextIndex() {
+        final long index = mIndex;
+        mIndex = index + 1 < mFirstIndex + BLOCK_SHIFT_COUNT ? index + 1 : mFirstIndex;
+        return index;
+    }
+
+    private File mFile;
+    private BigFileSampleProvider mSampleProvider;
+    private float[] mSamples;
+    private long mFirstIndex;
+    private long mIndex;
+
+    private static final int CHANNEL_COUNT = 3;
+    /**
+     * Frames holding Audio data around the window boundary
+     */
+    private static final int DATA_FRAME_COUNT = 4 * 1024 * 1024;
+    private static final int WRITE_FRAME_COUNT = 64 * 1024;
+    private static final int BLOCK_SIZE = 4096;
+    private static final int BLOCK_SHIFT_COUNT = 64;
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2017 Intel Corporation
+ *
+ * This Program is subject to the terms of the Eclipse Public License, v. 1.0.
+ * If a copy of the license was not distributed with this file,
+ * you can obtain one at <http://www.eclipse.org/legal/epl-v10.html>
+ *
+ * SPDX-License-Identifier: EPL-1.0
+ */
+package com.intel.audioviz.benchmark;
+
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.intel.audioviz.AudioFormat;
+import com.intel.audioviz.benchmark.SyntheticAudio.SampleFormat;
+import com.intel.audioviz.benchmark.SyntheticAudio.SyntheticAudioTrack;
+import com.intel.audioviz.trace.AudioTrackWaveformTraceCacheProvider;
+import com.intel.audioviz.trace.AudioTrackWaveformTraceCacheProvider.InitMode;
+
+/**
+ * Time to build all cache levels of a synthetic track held in memory, from init() until the cache is initialized,
+ * for each InitMode. Builds run on the shared AudioTrackWaveformTraceCacheScheduler, as they do for opened files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class CacheBuildBenchmark {
+
+    @Param({"SINGLE_PASS", "CHANNEL_THREADS", "PARALLEL_SEGMENTS"})
+    public InitMode initMode;
+
+    @Param({"60", "600"})
+    public int durationSeconds;
+
+    @Param({"2"})
+    public int channelCount;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final AudioFormat audioFormat = SampleFormat.PCM16.getAudioFormat(channelCount, ByteOrder.LITTLE_ENDIAN);
+        mAudioTrack = new SyntheticAudioTrack(audioFormat, durationSeconds * SyntheticAudio.SAMPLE_FREQUENCY);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mAudioTrack.dispose();
+    }
+
+    @TearDown(Level.Invocation)
+    public void disposeCache() {
+        mAudioTrackTraceCache.dispose();
+    }
+
+    @Benchmark
+    public AudioTrackWaveformTraceCacheProvider build() {
+        mAudioTrackTraceCache = new AudioTrackWaveformTraceCacheProvider(mAudioTrack, initMode,
+                RENDEZ_VOUS_DISTANCE);
+        mAudioTrackTraceCache.init();
+        SyntheticAudio.awaitInitialized(mAudioTrackTraceCache);
+        return mAudioTrackTraceCache;
+    }
+
+    private SyntheticAudioTrack mAudioTrack;
+    private AudioTrackWaveformTraceCacheProvider mAudioTrackTraceCache;
+
+    /**
+     * The default rendez-vous distance of AudioTrackWaveformTraceCacheProvider: 8MB
+     */
+    private static final long RENDEZ_VOUS_DISTANCE = 8L * 1024L * 1024L;
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2017 Intel Corporation
+ *
+ * This Program is subject to the terms of the Eclipse Public License, v. 1.0.
+ * If a copy of the license was not distributed with this file,
+ * you can obtain one at <http://www.eclipse.org/legal/epl-v10.html>
+ *
+ * SPDX-License-Identifier: EPL-1.0
+ */
+package com.intel.audioviz.benchmark;
+
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.intel.audioviz.AudioFormat;
+import com.intel.audioviz.benchmark.SyntheticAudio.SampleFormat;
+import com.intel.audioviz.benchmark.SyntheticAudio.SyntheticAudioTrack;
+import com.intel.audioviz.trace.AudioTrackWaveformTraceCacheProvider;
+import com.intel.audioviz.trace.WaveformWindow;
+import com.intel.audioviz.trace.waveform.WaveformWindowCache;
+
+/**
+ * Latency of WaveformWindowCache.getFromCache() for a trace wide of TRACE_SAMPLE_COUNT windows, each one merged
+ * from windowsPerTraceSample windows of the cache level whose window size is cacheWindowSize.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheQueryBenchmark {
+
+    @Param({"8", "64", "512"})
+    public long cacheWindowSize;
+
+    @Param({"1", "5", "16"})
+    public int windowsPerTraceSample;
+
+    @Setup
+    public void setUp() {
+        final AudioFormat audioFormat = SampleFormat.PCM16.getAudioFormat(1, ByteOrder.LITTLE_ENDIAN);
+        mAudioTrack = new SyntheticAudioTrack(audioFormat, FRAME_COUNT);
+        final AudioTrackWaveformTraceCacheProvider audioTrackTraceCache = mAudioTrack.getAudioTrackTraceCache();
+        SyntheticAudio.awaitInitialized(audioTrackTraceCache);
+        mCache = audioTrackTraceCache.getWaveformCache(0, cacheWindowSize);
+        if (mCache == null || mCache.getWindowSize() != cacheWindowSize) {
+            throw new IllegalStateException("No cache level of window size " + cacheWindowSize);
+        }
+        mTraceSampleSize = cacheWindowSize * windowsPerTraceSample;
+        mMins = new float[TRACE_SAMPLE_COUNT];
+        mMaxs = new float[TRACE_SAMPLE_COUNT];
+        mIndex = 0;
+    }
+
+    @TearDown
+    public void tearDown() {
+        mAudioTrack.dispose();
+    }
+
+    @Benchmark
+    public float[] toArrays() {
+        mCache.getFromCache(nextIndex(), mTraceSampleSize, mMins, mMaxs, 0, TRACE_SAMPLE_COUNT);
+        return mMins;
+    }
+
+    @Benchmark
+    public WaveformWindow[] toWaveformWindows() {
+        return mCache.getFromCache(nextIndex(), mTraceSampleSize, TRACE_SAMPLE_COUNT);
+    }
+
+    /**
+     * @return the audio sample index of the next trace: traces are spread over the whole track, as when scrolling
+     */
+    private long nextIndex() {
+        final long traceSize = mTraceSampleSize * TRACE_SAMPLE_COUNT;
+        final long index = mIndex;
+        mIndex = index + traceSize + traceSize <= FRAME_COUNT ? index + traceSize : 0;
+        return index;
+    }
+
+    private SyntheticAudioTrack mAudioTrack;
+    private WaveformWindowCache mCache;
+    private long mTraceSampleSize;
+    private float[] mMins;
+    private float[] mMaxs;
+    private long mIndex;
+
+    /**
+     * Five minutes at 48kHz: both default fine levels fit their default memory budget
+     */
+    private static final int FRAME_COUNT = 300 * SyntheticAudio.SAMPLE_FREQUENCY;
+    /**
+     * The width of a trace in pixels. The widest trace still fits the track
+     */
+    private static final int TRACE_SAMPLE_COUNT = 1024;
+}
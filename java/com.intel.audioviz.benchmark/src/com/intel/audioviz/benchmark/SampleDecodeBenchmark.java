@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2017 Intel Corporation
+ *
+ * This Program is subject to the terms of the Eclipse Public License, v. 1.0.
+ * If a copy of the license was not distributed with this file,
+ * you can obtain one at <http://www.eclipse.org/legal/epl-v10.html>
+ *
+ * SPDX-License-Identifier: EPL-1.0
+ */
+package com.intel.audioviz.benchmark;
+
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.intel.audioviz.AudioFormat;
+import com.intel.audioviz.benchmark.SyntheticAudio.SampleFormat;
+import com.intel.audioviz.file.ByteBufferSampleProvider;
+
+/**
+ * Decode throughput of ByteBufferSampleProvider for each sample format and byte order, in Audio Samples per
+ * microsecond: one sample at a time, by runs of a channel, and by runs of interleaved frames.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SampleDecodeBenchmark {
+
+    @Param({"PCM8", "PCM16", "PCM24", "PCM32", "FLOAT32", "FLOAT64"})
+    public SampleFormat format;
+
+    @Param({"LITTLE_ENDIAN", "BIG_ENDIAN"})
+    public String byteOrder;
+
+    @Setup
+    public void setUp() {
+        final AudioFormat audioFormat = format.getAudioFormat(CHANNEL_COUNT,
+                ByteOrder.LITTLE_ENDIAN.toString().equals(byteOrder) ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+        mSampleProvider = new ByteBufferSampleProvider(SyntheticAudio.generate(audioFormat, FRAME_COUNT), audioFormat);
+        mSamples = new float[BLOCK_SIZE * CHANNEL_COUNT];
+        mIndex = 0;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BLOCK_SIZE)
+    public float scalar() {
+        final long index = nextIndex();
+        float sum = 0;
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            sum += mSampleProvider.getSampleAsFloat(0, index + i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BLOCK_SIZE)
+    public float[] channelBlock() {
+        mSampleProvider.getSamplesAsFloat(0, nextIndex(), mSamples, 0, BLOCK_SIZE);
+        return mSamples;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BLOCK_SIZE * CHANNEL_COUNT)
+    public float[] frameBlock() {
+        mSampleProvider.getFramesAsFloat(nextIndex(), CHANNEL_COUNT, mSamples, 0, BLOCK_SIZE);
+        return mSamples;
+    }
+
+    /**
+     * @return the index of the next block, so that consecutive invocations scan the whole track as a trace would
+     */
+    private long nextIndex() {
+        final long index = mIndex;
+        mIndex = (index + BLOCK_SIZE) % (FRAME_COUNT - BLOCK_SIZE + 1);
+        return index;
+    }
+
+    private ByteBufferSampleProvider mSampleProvider;
+    private float[] mSamples;
+    private long mIndex;
+
+    private static final int CHANNEL_COUNT = 2;
+    /**
+     * 1M frames: 16MB of raw data in the largest format, more than the last level cache
+     */
+    private static final int FRAME_COUNT = 1024 * 1024;
+    private static final int BLOCK_SIZE = 4096;
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2017 Intel Corporation
+ *
+ * This Program is subject to the terms of the Eclipse Public License, v. 1.0.
+ * If a copy of the license was not distributed with this file,
+ * you can obtain one at <http://www.eclipse.org/legal/epl-v10.html>
+ *
+ * SPDX-License-Identifier: EPL-1.0
+ */
+package com.intel.audioviz.benchmark;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import com.intel.audioviz.AudioFormat;
+import com.intel.audioviz.AudioFormat.Coding;
+import com.intel.audioviz.AudioTrack;
+import com.intel.audioviz.ISampleProvider;
+import com.intel.audioviz.file.ByteBufferSampleProvider;
+import com.intel.audioviz.trace.AudioTrackWaveformTraceCacheProvider;
+
+/**
+ * SyntheticAudio generates deterministic raw Audio data in any supported AudioFormat, so that benchmarks neither
+ * depend on audio files nor on the disk. The signal of each channel is a sine wave plus noise, which keeps the
+ * waveform statistics from being constant.
+ */
+public final class SyntheticAudio {
+
+    /**
+     * The sample formats decoded by ByteBufferSampleProvider, public as benchmark parameters. 8 bits PCM is
+     * unsigned, as in WAV files.
+     */
+    public enum SampleFormat {
+        PCM8(Byte.BYTES, false, Coding.FORMAT_PCM),
+        PCM16(Short.BYTES, true, Coding.FORMAT_PCM),
+        PCM24(3, true, Coding.FORMAT_PCM),
+        PCM32(Integer.BYTES, true, Coding.FORMAT_PCM),
+        FLOAT32(Float.BYTES, true, Coding.FORMAT_IEEE_FLOAT),
+        FLOAT64(Double.BYTES, true, Coding.FORMAT_IEEE_FLOAT);
+
+        SampleFormat(final int bytesPerSample, final boolean signed, final Coding coding) {
+            mBytesPerSample = bytesPerSample;
+            mSigned = signed;
+            mCoding = coding;
+        }
+
+        /**
+         * @param channelCount the number of channels
+         * @param byteOrder the byte order of the Audio Samples
+         * @return the AudioFormat of the sample format, at SAMPLE_FREQUENCY
+         */
+        AudioFormat getAudioFormat(final int channelCount, final ByteOrder byteOrder) {
+            return new AudioFormat(channelCount, SAMPLE_FREQUENCY, mBytesPerSample, mSigned, mCoding, byteOrder);
+        }
+
+        private final int mBytesPerSample;
+        private final boolean mSigned;
+        private final Coding mCoding;
+    }
+
+    private SyntheticAudio() {
+    }
+
+    /**
+     * @param channel the channel number
+     * @param frame the index of the Audio Frame
+     * @return the normalized Audio Sample of the synthetic signal, within [-0.75, 0.75]
+     */
+    static double getSample(final int channel, final long frame) {
+        final double sine = Math.sin(2 * Math.PI * SINE_FREQUENCY * (channel + 1) * frame / SAMPLE_FREQUENCY);
+        /* A cheap hash of the frame and channel, as reproducible noise */
+        long hash = (frame * 0x9E3779B97F4A7C15L) ^ channel;
+        hash ^= hash >>> 31;
+        hash *= 0xBF58476D1CE4E5B9L;
+        hash ^= hash >>> 29;
+        final double noise = (hash >>> 40) / (double) (1L << 24) * 2 - 1;
+        return 0.5 * sine + 0.25 * noise;
+    }
+
+    /**
+     * @param audioFormat the AudioFormat of the raw Audio data
+     * @param frameCount the number of Audio Frames
+     * @return a direct ByteBuffer holding the raw Audio data of the first Audio Frames of the synthetic signal
+     */
+    static ByteBuffer generate(final AudioFormat audioFormat, final int frameCount) {
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(frameCount * audioFormat.getFrameSize());
+        buffer.order(audioFormat.getByteOrder());
+        generate(audioFormat, 0, buffer);
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Encode Audio Frames of the synthetic signal from the position of a buffer up to its limit. The buffer
+     * position is advanced past the encoded Audio Frames.
+     * @param audioFormat the AudioFormat of the raw Audio data
+     * @param firstFrame the index of the first Audio Frame to encode
+     * @param destination the buffer receiving the raw Audio data, whose byte order is the AudioFormat one
+     */
+    static void generate(final AudioFormat audioFormat, final long firstFrame, final ByteBuffer destination) {
+        final int frameCount = destination.remaining() / audioFormat.getFrameSize();
+        for (long frame = firstFrame; frame < firstFrame + frameCount; frame++) {
+            for (int channel = 0; channel < audioFormat.getChannelCount(); channel++) {
+                encode(audioFormat, getSample(channel, frame), destination);
+            }
+        }
+    }
+
+    private static void encode(final AudioFormat audioFormat, final double sample, final ByteBuffer destination) {
+        if (audioFormat.getCodingFormat() == Coding.FORMAT_IEEE_FLOAT) {
+            if (audioFormat.getBytesPerSample() == Float.BYTES) {
+                destination.putFloat((float) sample);
+            } else {
+                destination.putDouble(sample);
+            }
+            return;
+        }
+
+        final long signedMax = (1L << (audioFormat.getBitsPerSample() - 1)) - 1;
+        final long value = Math.round(sample * signedMax) + (audioFormat.isSigned() ? 0 : signedMax + 1);
+        switch (audioFormat.getBytesPerSample()) {
+            case Byte.BYTES:
+                destination.put((byte) value);
+                break;
+            case Short.BYTES:
+                destination.putShort((short) value);
+                break;
+            case Integer.BYTES:
+                destination.putInt((int) value);
+                break;
+            default:
+                /* 24 bits, byte per byte */
+                if (destination.order() == ByteOrder.BIG_ENDIAN) {
+                    destination.put((byte) (value >> 16));
+                    destination.put((byte) (value >> 8));
+                    destination.put((byte) value);
+                } else {
+                    destination.put((byte) value);
+                    destination.put((byte) (value >> 8));
+                    destination.put((byte) (value >> 16));
+                }
+                break;
+        }
+    }
+
+    /**
+     * Wait for the initialization of a cache, started by init().
+     * @param audioTrackTraceCache the cache being initialized
+     */
+    static void awaitInitialized(final AudioTrackWaveformTraceCacheProvider audioTrackTraceCache) {
+        while (!audioTrackTraceCache.isInitialized()) {
+            LockSupport.parkNanos(INIT_POLL_PERIOD_NS);
+        }
+    }
+
+    /**
+     * An AudioTrack of synthetic raw Audio data held in memory.
+     */
+    static final class SyntheticAudioTrack extends AudioTrack {
+
+        /**
+         * @param audioFormat the AudioFormat of the raw Audio data
+         * @param frameCount the number of Audio Frames
+         */
+        SyntheticAudioTrack(final AudioFormat audioFormat, final int frameCount) {
+            super(audioFormat);
+            mSampleProvider = new ByteBufferSampleProvider(generate(audioFormat, frameCount), audioFormat);
+        }
+
+        @Override
+        public ISampleProvider getSampleProvider() {
+            return mSampleProvider;
+        }
+
+        private final ByteBufferSampleProvider mSampleProvider;
+    }
+
+    static final int SAMPLE_FREQUENCY = 48000;
+    private static final double SINE_FREQUENCY = 440;
+    private static final long INIT_POLL_PERIOD_NS = TimeUnit.MICROSECONDS.toNanos(100);
+}
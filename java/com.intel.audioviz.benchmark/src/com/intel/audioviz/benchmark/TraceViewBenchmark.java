@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2017 Intel Corporation
+ *
+ * This Program is subject to the terms of the Eclipse Public License, v. 1.0.
+ * If a copy of the license was not distributed with this file,
+ * you can obtain one at <http://www.eclipse.org/legal/epl-v10.html>
+ *
+ * SPDX-License-Identifier: EPL-1.0
+ */
+package com.intel.audioviz.benchmark;
+
+import java.nio.ByteOrder;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.intel.audioviz.AudioFormat;
+import com.intel.audioviz.AudioTrack;
+import com.intel.audioviz.benchmark.SyntheticAudio.SampleFormat;
+import com.intel.audioviz.benchmark.SyntheticAudio.SyntheticAudioTrack;
+import com.intel.audioviz.trace.AudioTraceView;
+import com.intel.audioviz.trace.AudioWaveformTrace;
+import com.intel.audioviz.trace.IAudioTraceListener;
+
+/**
+ * Latency of AudioWaveformTrace.doSetTraceView() for a trace wide of TRACE_SAMPLE_COUNT trace samples, at each zoom
+ * regime:
+ * - SAMPLES: one audio sample per trace sample, read from the ISampleProvider
+ * - UNCACHED: trace samples finer than the finest cache level, computed from audio samples
+ * - ALIGNED: trace samples merged from a cache level, starting on its windows
+ * - UNALIGNED: trace samples of any size and start, merged from several cache levels and audio samples
+ * Consecutive views do not overlap, so that no trace sample is reused from the previous view.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TraceViewBenchmark {
+
+    /**
+     * Zoom regimes, with the audio sample count per trace sample and the audio sample offset of views
+     */
+    public enum ZoomRegime {
+        SAMPLES(1, 0),
+        UNCACHED(4, 0),
+        ALIGNED(4096, 0),
+        UNALIGNED(1000, 333);
+
+        ZoomRegime(final long audioSamplePerTraceSample, final long audioSampleOffset) {
+            mAudioSamplePerTraceSample = audioSamplePerTraceSample;
+            mAudioSampleOffset = audioSampleOffset;
+        }
+
+        private final long mAudioSamplePerTraceSample;
+        private final long mAudioSampleOffset;
+    }
+
+    @Param({"SAMPLES", "UNCACHED", "ALIGNED", "UNALIGNED"})
+    public ZoomRegime zoomRegime;
+
+    @Param({"false", "true"})
+    public boolean withSignalStatistics;
+
+    @Setup
+    public void setUp() throws InterruptedException {
+        final AudioFormat audioFormat = SampleFormat.PCM16.getAudioFormat(1, ByteOrder.LITTLE_ENDIAN);
+        mAudioTrack = new SyntheticAudioTrack(audioFormat, FRAME_COUNT);
+        SyntheticAudio.awaitInitialized(mAudioTrack.getAudioTrackTraceCache());
+        mAudioTrace = new BenchmarkWaveformTrace(mAudioTrack, withSignalStatistics);
+        mViewIndex = 0;
+        mAudioTrace.awaitTraceView(nextView());
+    }
+
+    @TearDown
+    public void tearDown() {
+        mAudioTrace.dispose();
+        mAudioTrack.dispose();
+    }
+
+    @Benchmark
+    public boolean setTraceView() {
+        return mAudioTrace.computeTraceView(nextView());
+    }
+
+    /**
+     * @return the next view: views are spread over the whole track, as when scrolling by pages
+     */
+    private AudioTraceView nextView() {
+        final long audioSamplePerTraceSample = zoomRegime.mAudioSamplePerTraceSample;
+        final long viewSize = audioSamplePerTraceSample * TRACE_SAMPLE_COUNT;
+        final long viewCount = (FRAME_COUNT - zoomRegime.mAudioSampleOffset) / viewSize;
+        final long audioSampleIndex = zoomRegime.mAudioSampleOffset + mViewIndex * viewSize;
+        mViewIndex = (mViewIndex + 1) % viewCount;
+        return new AudioTraceView(audioSampleIndex, audioSamplePerTraceSample, TRACE_SAMPLE_COUNT);
+    }
+
+    /**
+     * Computes views in the calling thread rather than on the shared trace view pool, so that only the
+     * computation is measured.
+     */
+    private static final class BenchmarkWaveformTrace extends AudioWaveformTrace {
+
+        private BenchmarkWaveformTrace(final AudioTrack audioTrack, final boolean withSignalStatistics) {
+            super(audioTrack, 0, withSignalStatistics);
+        }
+
+        /**
+         * Compute a first view on the shared trace view pool: afterwards, views computed in the calling thread are
+         * no longer considered superseded by the requests made before.
+         * @param audioTraceView the view to compute
+         */
+        private void awaitTraceView(final AudioTraceView audioTraceView) throws InterruptedException {
+            final CountDownLatch computed = new CountDownLatch(1);
+            final IAudioTraceListener audioTraceListener = audioTrace -> computed.countDown();
+            addAudioTraceListener(audioTraceListener);
+            setTraceView(audioTraceView, true);
+            computed.await();
+            removeAudioTraceListener(audioTraceListener);
+        }
+
+        /**
+         * @param audioTraceView the view to compute
+         * @return true if the view is completed
+         */
+        private synchronized boolean computeTraceView(final AudioTraceView audioTraceView) {
+            doSetTraceView(audioTraceView);
+            return isAudioTraceViewRequestCompleted();
+        }
+    }
+
+    private SyntheticAudioTrack mAudioTrack;
+    private BenchmarkWaveformTrace mAudioTrace;
+    private long mViewIndex;
+
+    /**
+     * Five minutes at 48kHz: both default fine levels fit their default memory budget
+     */
+    private static final int FRAME_COUNT = 300 * SyntheticAudio.SAMPLE_FREQUENCY;
+    /**
+     * The width of a trace in pixels
+     */
+    private static final int TRACE_SAMPLE_COUNT = 1920;
+}
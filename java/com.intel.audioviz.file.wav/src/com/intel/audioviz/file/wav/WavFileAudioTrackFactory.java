@@ -18,6 +18,7 @@ import java.util.List;
 import com.intel.audioviz.file.FileAudioTrackFactoryException;
 import com.intel.audioviz.file.IFileAudioTrackFactory;
 import com.intel.audioviz.file.RawFileAudioTrack;
+import com.intel.audioviz.file.RawFileAudioTrack.AccessMode;
 
 public class WavFileAudioTrackFactory implements IFileAudioTrackFactory {
 
@@ -33,6 +34,12 @@ public class WavFileAudioTrackFactory implements IFileAudioTrackFactory {
 
     @Override
     public RawFileAudioTrack getAudioTrack(final File audioFile) throws FileAudioTrackFactoryException {
+        return getAudioTrack(audioFile, AccessMode.MEMORY_MAPPED);
+    }
+
+    @Override
+    public RawFileAudioTrack getAudioTrack(final File audioFile, final AccessMode accessMode)
+            throws FileAudioTrackFactoryException {
         try {
             final WavHeaderParser wav = new WavHeaderParser(audioFile);
 
@@ -40,7 +47,9 @@ public class WavFileAudioTrackFactory implements IFileAudioTrackFactory {
                     wav.getAudioDataFormat(),
                     audioFile,
                     wav.getAudioDataOffset(),
-                    wav.getAudioDataSize());
+                    wav.getAudioDataSize(),
+                    false,
+                    accessMode);
         } catch (final Exception e) {
             throw new FileAudioTrackFactoryException("Cannot instantiate RawFileAudioTrack", e);
         }
@@ -16,58 +16,89 @@ import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.security.InvalidParameterException;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import com.intel.audioviz.AudioFormat;
+import com.intel.audioviz.AudioVizException;
 import com.intel.audioviz.ISampleProvider;
 
 /**
- * BigFileSampleProvider implements the SampleProvider Interface over
- * a collection of memory mapped part of a file.
- * This class allows memory mapping of a file with a size >2GB using a collection
- * of MappedByteBuffer which can individually memory map only 2GB.
+ * BigFileSampleProvider implements the SampleProvider Interface over a file of any size, through a bounded set of
+ * memory mapped windows of the file.
+ *
+ * The file is split in windows of a power of two size: the window of an Audio Frame is found from its byte offset
+ * by a shift, and its position within the window by a mask. Each window is mapped with the bytes of the last Audio
+ * Frame starting in it, so that Audio Frames straddling the end of a window are read entirely from the window they
+ * start in.
+ *
+ * Windows are mapped on first access, and at most a given number of windows are mapped at once: once the limit is
+ * reached, the least recently used window is dropped before mapping a new one. Recency is approximated by the clock
+ * algorithm, so that reads only set a flag. The address space of a dropped window is released once its
+ * MappedByteBuffer is garbage collected, since readers may still be using it.
  */
 public class BigFileSampleProvider implements ISampleProvider {
 
+    /**
+     * Map the raw Audio data of a file through DEFAULT_WINDOW_COUNT windows of DEFAULT_WINDOW_SIZE bytes at most.
+     * @param file the file which contains the audio raw data
+     * @param offset the offset of Audio raw data within the file
+     * @param size the size of Audio raw data within the file
+     * @param audioFormat the audio raw format
+     * @throws FileNotFoundException
+     * @throws IOException
+     */
     public BigFileSampleProvider(
             final File file, final long offset, final long size, final AudioFormat audioFormat)
                     throws FileNotFoundException, IOException {
-        mSize = size;
-        mAudioFormat = audioFormat;
-        /* Align chunk size to a multiple of frame size */
-        mChunkSizeInBytes = Integer.MAX_VALUE - Integer.MAX_VALUE % audioFormat.getFrameSize();
-        mChunkSizeInFrames = mChunkSizeInBytes / audioFormat.getFrameSize();
+        this(file, offset, size, audioFormat, DEFAULT_WINDOW_SIZE, DEFAULT_WINDOW_COUNT);
+    }
 
-        long bufferCount = mSize / mChunkSizeInBytes;
-        if (mSize % mChunkSizeInBytes != 0) {
-            bufferCount++;
+    /**
+     * @param file the file which contains the audio raw data
+     * @param offset the offset of Audio raw data within the file
+     * @param size the size of Audio raw data within the file
+     * @param audioFormat the audio raw format
+     * @param windowSize the size in bytes of the mapped windows, a power of two not smaller than an Audio Frame
+     * @param maximumWindowCount the maximum number of windows mapped at once
+     * @throws FileNotFoundException
+     * @throws IOException
+     */
+    public BigFileSampleProvider(final File file, final long offset, final long size, final AudioFormat audioFormat,
+            final int windowSize, final int maximumWindowCount) throws FileNotFoundException, IOException {
+        if (windowSize <= 0 || Integer.bitCount(windowSize) != 1 || windowSize < audioFormat.getFrameSize()) {
+            throw new InvalidParameterException("Invalid window size");
         }
-        if (bufferCount > Integer.MAX_VALUE) {
-            throw new InvalidParameterException("File too large");
+        if (maximumWindowCount <= 0) {
+            throw new InvalidParameterException("Invalid window count");
+        }
+        if (offset < 0) {
+            throw new InvalidParameterException("Invalid file offset");
         }
-        if (bufferCount == 0) {
+        if (size <= 0) {
             throw new InvalidParameterException("Empty file");
         }
+        if (!file.canRead()) {
+            throw new FileNotFoundException(file.getPath());
+        }
 
-        mByteBufferSampleProviders = new ByteBufferSampleProvider[(int) bufferCount];
-
-        /* Get file channel in read only mode */
-        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
-            try (FileChannel fileChannel = randomAccessFile.getChannel()) {
-                long byteBufferOffset = offset;
-
-                for (int index = 0; index < bufferCount; index++, byteBufferOffset += mChunkSizeInBytes) {
-                    final ByteBuffer buffer = fileChannel.map(
-                            FileChannel.MapMode.READ_ONLY,
-                            byteBufferOffset,
-                            Math.min(mChunkSizeInBytes, mSize - mChunkSizeInBytes * index));
-                    buffer.order(audioFormat.getByteOrder());
-
-                    mByteBufferSampleProviders[index] = new ByteBufferSampleProvider(
-                            buffer,
-                            mAudioFormat);
-                }
-            }
+        final long windowCount = (size + windowSize - 1) / windowSize;
+        if (windowCount > Integer.MAX_VALUE) {
+            throw new InvalidParameterException("File too large");
         }
+
+        mFile = file;
+        mOffset = offset;
+        mSize = size;
+        mAudioFormat = audioFormat;
+        mDecoder = SampleDecoder.newDecoder(audioFormat, audioFormat.getByteOrder());
+        mWindowShift = Integer.numberOfTrailingZeros(windowSize);
+        mWindowMask = windowSize - 1;
+        mWindows = new AtomicReferenceArray<ByteBuffer>((int) windowCount);
+        mReferencedWindows = new AtomicIntegerArray((int) windowCount);
+        mMappedWindows = new int[(int) Math.min(maximumWindowCount, windowCount)];
+        mMappedWindowCount = 0;
+        mClockHand = 0;
     }
 
     @Override
@@ -75,35 +106,241 @@ public class BigFileSampleProvider implements ISampleProvider {
         return mSize / mAudioFormat.getFrameSize();
     }
 
+    /**
+     * Load the Audio Frames following a sequential reader ahead, through the read-ahead prefetcher if any.
+     */
+    @Override
+    public void readAhead(final long index) {
+        final ReadAheadPrefetcher readAheadPrefetcher = mReadAheadPrefetcher;
+        if (readAheadPrefetcher != null) {
+            readAheadPrefetcher.readAhead(index * mAudioFormat.getFrameSize());
+        }
+    }
+
+    /**
+     * @param readAheadPrefetcher the prefetcher of the file this provider reads, null to stop reading ahead
+     */
+    void setReadAheadPrefetcher(final ReadAheadPrefetcher readAheadPrefetcher) {
+        mReadAheadPrefetcher = readAheadPrefetcher;
+    }
+
     @Override
     public double getSampleAsDouble(final int channel, final long index) {
-        final int sampleProviderindex = getByteBufferSampleProviderIndex(index);
+        final long frameOffset = getFrameOffset(channel, index);
 
-        return mByteBufferSampleProviders[sampleProviderindex].getSampleAsDouble(
-                channel,
-                index - sampleProviderindex * mChunkSizeInFrames);
+        return mDecoder.decodeDouble(getWindow(frameOffset), getSamplePosition(channel, frameOffset));
     }
 
     @Override
     public float getSampleAsFloat(final int channel, final long index) {
-        final int sampleProviderindex = getByteBufferSampleProviderIndex(index);
+        final long frameOffset = getFrameOffset(channel, index);
 
-        return mByteBufferSampleProviders[sampleProviderindex].getSampleAsFloat(
-                channel,
-                index - sampleProviderindex * mChunkSizeInFrames);
+        return mDecoder.decodeFloat(getWindow(frameOffset), getSamplePosition(channel, frameOffset));
     }
 
-    private int getByteBufferSampleProviderIndex(final long sampleIndex) {
-        if (sampleIndex < 0 || sampleIndex >= getSamplesPerChannel()) {
+    @Override
+    public void getSamplesAsFloat(
+            final int channel, final long index, final float[] destination, final int offset, final int count) {
+        checkRange(index, count);
+        if (count > destination.length - offset) {
+            throw new IndexOutOfBoundsException("Destination too small");
+        }
+
+        /* Split the request on window boundaries, each part is read in bulk from its window */
+        final int frameSize = mAudioFormat.getFrameSize();
+        long sampleIndex = index;
+        int destinationOffset = offset;
+        int remaining = count;
+        while (remaining > 0) {
+            final long frameOffset = getFrameOffset(channel, sampleIndex);
+            final int partCount = Math.min(remaining, getWindowFrameCount(frameOffset));
+
+            mDecoder.decodeFloats(getWindow(frameOffset), getSamplePosition(channel, frameOffset), frameSize,
+                    destination, destinationOffset, partCount);
+
+            sampleIndex += partCount;
+            destinationOffset += partCount;
+            remaining -= partCount;
+        }
+    }
+
+    @Override
+    public void getFramesAsFloat(
+            final long index, final int channelCount, final float[] destination, final int offset,
+            final int frameCount) {
+        if (channelCount != mAudioFormat.getChannelCount()) {
+            throw new InvalidParameterException("Invalid channel count");
+        }
+        checkRange(index, frameCount);
+        if (frameCount > (destination.length - offset) / channelCount) {
+            throw new IndexOutOfBoundsException("Destination too small");
+        }
+
+        long frameIndex = index;
+        int destinationOffset = offset;
+        int remaining = frameCount;
+        while (remaining > 0) {
+            final long frameOffset = getFrameOffset(0, frameIndex);
+            final int partCount = Math.min(remaining, getWindowFrameCount(frameOffset));
+
+            /* Frames are contiguous: interleaved samples are read as a single sample run */
+            mDecoder.decodeFloats(getWindow(frameOffset), getSamplePosition(0, frameOffset),
+                    mAudioFormat.getBytesPerSample(), destination, destinationOffset, partCount * channelCount);
+
+            frameIndex += partCount;
+            destinationOffset += partCount * channelCount;
+            remaining -= partCount;
+        }
+    }
+
+    /**
+     * @return the size in bytes of the mapped windows
+     */
+    public int getWindowSize() {
+        return mWindowMask + 1;
+    }
+
+    /**
+     * @return the number of windows currently mapped
+     */
+    public synchronized int getMappedWindowCount() {
+        return mMappedWindowCount;
+    }
+
+    private void checkRange(final long index, final int count) {
+        if (count < 0 || index < 0 || index + count > getSamplesPerChannel()) {
+            throw new InvalidParameterException("Invalid sample range");
+        }
+    }
+
+    /**
+     * @param channel Channel number of the Sample
+     * @param index Index of the Sample within the Channel
+     * @return the offset of the Audio Frame of the Sample within the raw Audio data
+     */
+    private long getFrameOffset(final int channel, final long index) {
+        if (channel < 0 || channel >= mAudioFormat.getChannelCount()) {
+            throw new InvalidParameterException("Invalid channel");
+        }
+        if (index < 0 || index >= getSamplesPerChannel()) {
             throw new InvalidParameterException("Invalid sample index");
         }
+        return index * mAudioFormat.getFrameSize();
+    }
 
-        return (int) (sampleIndex / mChunkSizeInFrames);
+    /**
+     * @param channel Channel number of the Sample
+     * @param frameOffset The offset of the Audio Frame of the Sample within the raw Audio data
+     * @return the position of the Sample within the window the Audio Frame starts in
+     */
+    private int getSamplePosition(final int channel, final long frameOffset) {
+        return (int) (frameOffset & mWindowMask) + channel * mAudioFormat.getBytesPerSample();
     }
 
-    private final int mChunkSizeInBytes;
-    private final int mChunkSizeInFrames;
-    private final ByteBufferSampleProvider[] mByteBufferSampleProviders;
-    private final AudioFormat mAudioFormat;
+    /**
+     * @param frameOffset The offset of an Audio Frame within the raw Audio data
+     * @return the number of Audio Frames starting in the window of the Audio Frame, from the Audio Frame
+     */
+    private int getWindowFrameCount(final long frameOffset) {
+        final int frameSize = mAudioFormat.getFrameSize();
+        final int windowRemaining = getWindowSize() - (int) (frameOffset & mWindowMask);
+        return (windowRemaining + frameSize - 1) / frameSize;
+    }
+
+    /**
+     * @param frameOffset The offset of an Audio Frame within the raw Audio data
+     * @return the mapped window the Audio Frame starts in
+     */
+    private ByteBuffer getWindow(final long frameOffset) {
+        final int window = (int) (frameOffset >>> mWindowShift);
+        final ByteBuffer buffer = mWindows.get(window);
+        if (buffer == null) {
+            return mapWindow(window);
+        }
+        if (mReferencedWindows.get(window) == 0) {
+            mReferencedWindows.lazySet(window, 1);
+        }
+        return buffer;
+    }
+
+    /**
+     * Map a window, dropping the least recently used one if the maximum number of windows are mapped.
+     * @param window the index of the window
+     * @return the mapped window
+     */
+    private synchronized ByteBuffer mapWindow(final int window) {
+        /* Mapped by another reader meanwhile */
+        final ByteBuffer mappedBuffer = mWindows.get(window);
+        if (mappedBuffer != null) {
+            return mappedBuffer;
+        }
+
+        /* Mapped before dropping any window, so that a failure leaves the mapped windows unchanged */
+        final long windowOffset = (long) window << mWindowShift;
+        /* The window also holds the end of the last Audio Frame starting in it */
+        final long windowSize = Math.min(getWindowSize() + mAudioFormat.getFrameSize() - 1, mSize - windowOffset);
+        final ByteBuffer buffer;
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(mFile, "r")) {
+            try (FileChannel fileChannel = randomAccessFile.getChannel()) {
+                buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, mOffset + windowOffset, windowSize);
+            }
+        } catch (final IOException e) {
+            throw new AudioVizException("Cannot map " + mFile.getPath(), e);
+        }
+        buffer.order(mAudioFormat.getByteOrder());
+
+        final int slot;
+        if (mMappedWindowCount < mMappedWindows.length) {
+            slot = mMappedWindowCount++;
+        } else {
+            /* Clock sweep: windows read since the last sweep get a second chance */
+            while (mReferencedWindows.get(mMappedWindows[mClockHand]) != 0) {
+                mReferencedWindows.set(mMappedWindows[mClockHand], 0);
+                mClockHand = (mClockHand + 1) % mMappedWindows.length;
+            }
+            slot = mClockHand;
+            mClockHand = (mClockHand + 1) % mMappedWindows.length;
+            mWindows.set(mMappedWindows[slot], null);
+        }
+
+        mMappedWindows[slot] = window;
+        mReferencedWindows.set(window, 1);
+        mWindows.set(window, buffer);
+        return buffer;
+    }
+
+    private final File mFile;
+    private final long mOffset;
     private final long mSize;
+    private final AudioFormat mAudioFormat;
+    private final SampleDecoder mDecoder;
+    private final int mWindowShift;
+    private final int mWindowMask;
+    /**
+     * Mapped windows per window index, null if not mapped. Read without lock, written with this held.
+     */
+    private final AtomicReferenceArray<ByteBuffer> mWindows;
+    /**
+     * Per window index, 1 if the window has been read since the last clock sweep
+     */
+    private final AtomicIntegerArray mReferencedWindows;
+    /**
+     * Indices of the mapped windows, the clock the sweep goes round
+     */
+    private final int[] mMappedWindows;
+    private int mMappedWindowCount;
+    private int mClockHand;
+    /**
+     * Loads the file ahead of sequential readers, null if the file is not read ahead
+     */
+    private volatile ReadAheadPrefetcher mReadAheadPrefetcher;
+
+    /**
+     * 64MB windows
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 1 << 26;
+    /**
+     * Up to 1GB of the file mapped at once
+     */
+    public static final int DEFAULT_WINDOW_COUNT = 16;
 }
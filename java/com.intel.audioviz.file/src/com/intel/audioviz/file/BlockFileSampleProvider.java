@@ -0,0 +1,360 @@
+/*
+ * Copyright (C) 2017 Intel Corporation
+ *
+ * This Program is subject to the terms of the Eclipse Public License, v. 1.0.
+ * If a copy of the license was not distributed with this file,
+ * you can obtain one at <http://www.eclipse.org/legal/epl-v10.html>
+ *
+ * SPDX-License-Identifier: EPL-1.0
+ */
+package com.intel.audioviz.file;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.security.InvalidParameterException;
+
+import com.intel.audioviz.AudioFormat;
+import com.intel.audioviz.AudioVizException;
+import com.intel.audioviz.ISampleProvider;
+import com.intel.audioviz.file.FileBlockCache.Block;
+
+/**
+ * BlockFileSampleProvider implements the SampleProvider Interface over a file of any size, read by blocks with
+ * positional reads rather than memory mapped. The file neither takes address space, nor can a failing read, such as
+ * of a network file system going away or of a truncated file, crash the JVM as an access to a memory mapping does:
+ * it is reported as AudioVizException.
+ *
+ * Blocks are held by a FileBlockCache, which may be shared by several files. As with the windows of a
+ * BigFileSampleProvider, the block of an Audio Frame is found from its byte offset by a shift, its position within
+ * the block by a mask, and each block is read with the bytes of the last Audio Frame starting in it.
+ *
+ * The file stays open until close() is called.
+ */
+public class BlockFileSampleProvider implements ISampleProvider, Closeable {
+
+    /**
+     * Read the raw Audio data of a file through the default FileBlockCache.
+     * @param file the file which contains the audio raw data
+     * @param offset the offset of Audio raw data within the file
+     * @param size the size of Audio raw data within the file
+     * @param audioFormat the audio raw format
+     * @throws FileNotFoundException
+     */
+    public BlockFileSampleProvider(final File file, final long offset, final long size, final AudioFormat audioFormat)
+            throws FileNotFoundException {
+        this(file, offset, size, audioFormat, FileBlockCache.getDefault());
+    }
+
+    /**
+     * @param file the file which contains the audio raw data
+     * @param offset the offset of Audio raw data within the file
+     * @param size the size of Audio raw data within the file
+     * @param audioFormat the audio raw format
+     * @param blockCache the cache of the blocks read from the file
+     * @throws FileNotFoundException
+     */
+    public BlockFileSampleProvider(final File file, final long offset, final long size, final AudioFormat audioFormat,
+            final FileBlockCache blockCache) throws FileNotFoundException {
+        if (audioFormat.getFrameSize() > FileBlockCache.MAXIMUM_FRAME_SIZE) {
+            throw new InvalidParameterException("Audio Frame too large");
+        }
+        if (offset < 0) {
+            throw new InvalidParameterException("Invalid file offset");
+        }
+        if (size <= 0) {
+            throw new InvalidParameterException("Empty file");
+        }
+
+        mFile = file;
+        mOffset = offset;
+        mSize = size;
+        mAudioFormat = audioFormat;
+        mDecoder = SampleDecoder.newDecoder(audioFormat, audioFormat.getByteOrder());
+        mBlockCache = blockCache;
+        mBlockShift = Integer.numberOfTrailingZeros(blockCache.getBlockSize());
+        mBlockMask = blockCache.getBlockSize() - 1;
+        mFileChannel = new RandomAccessFile(file, "r").getChannel();
+        mIsClosed = false;
+    }
+
+    @Override
+    public long getSamplesPerChannel() {
+        return mSize / mAudioFormat.getFrameSize();
+    }
+
+    /**
+     * Load the Audio Frames following a sequential reader ahead, through the read-ahead prefetcher if any.
+     */
+    @Override
+    public void readAhead(final long index) {
+        final ReadAheadPrefetcher readAheadPrefetcher = mReadAheadPrefetcher;
+        if (readAheadPrefetcher != null) {
+            readAheadPrefetcher.readAhead(index * mAudioFormat.getFrameSize());
+        }
+    }
+
+    /**
+     * @param readAheadPrefetcher the prefetcher of the file this provider reads, null to stop reading ahead
+     */
+    void setReadAheadPrefetcher(final ReadAheadPrefetcher readAheadPrefetcher) {
+        mReadAheadPrefetcher = readAheadPrefetcher;
+    }
+
+    @Override
+    public double getSampleAsDouble(final int channel, final long index) {
+        final long frameOffset = getFrameOffset(channel, index);
+
+        final Block block = acquireBlock(frameOffset);
+        try {
+            return mDecoder.decodeDouble(block.getBuffer(), getSamplePosition(channel, frameOffset));
+        } finally {
+            mBlockCache.release(block);
+        }
+    }
+
+    @Override
+    public float getSampleAsFloat(final int channel, final long index) {
+        final long frameOffset = getFrameOffset(channel, index);
+
+        final Block block = acquireBlock(frameOffset);
+        try {
+            return mDecoder.decodeFloat(block.getBuffer(), getSamplePosition(channel, frameOffset));
+        } finally {
+            mBlockCache.release(block);
+        }
+    }
+
+    @Override
+    public void getSamplesAsFloat(
+            final int channel, final long index, final float[] destination, final int offset, final int count) {
+        checkRange(index, count);
+        if (count > destination.length - offset) {
+            throw new IndexOutOfBoundsException("Destination too small");
+        }
+
+        /* Split the request on block boundaries, each part is read in bulk from its block */
+        final int frameSize = mAudioFormat.getFrameSize();
+        long sampleIndex = index;
+        int destinationOffset = offset;
+        int remaining = count;
+        while (remaining > 0) {
+            final long frameOffset = getFrameOffset(channel, sampleIndex);
+            final int partCount = Math.min(remaining, getBlockFrameCount(frameOffset));
+
+            final Block block = acquireBlock(frameOffset);
+            try {
+                mDecoder.decodeFloats(block.getBuffer(), getSamplePosition(channel, frameOffset), frameSize,
+                        destination, destinationOffset, partCount);
+            } finally {
+                mBlockCache.release(block);
+            }
+
+            sampleIndex += partCount;
+            destinationOffset += partCount;
+            remaining -= partCount;
+        }
+    }
+
+    @Override
+    public void getFramesAsFloat(
+            final long index, final int channelCount, final float[] destination, final int offset,
+            final int frameCount) {
+        if (channelCount != mAudioFormat.getChannelCount()) {
+            throw new InvalidParameterException("Invalid channel count");
+        }
+        checkRange(index, frameCount);
+        if (frameCount > (destination.length - offset) / channelCount) {
+            throw new IndexOutOfBoundsException("Destination too small");
+        }
+
+        long frameIndex = index;
+        int destinationOffset = offset;
+        int remaining = frameCount;
+        while (remaining > 0) {
+            final long frameOffset = getFrameOffset(0, frameIndex);
+            final int partCount = Math.min(remaining, getBlockFrameCount(frameOffset));
+
+            /* Frames are contiguous: interleaved samples are read as a single sample run */
+            final Block block = acquireBlock(frameOffset);
+            try {
+                mDecoder.decodeFloats(block.getBuffer(), getSamplePosition(0, frameOffset),
+                        mAudioFormat.getBytesPerSample(), destination, destinationOffset, partCount * channelCount);
+            } finally {
+                mBlockCache.release(block);
+            }
+
+            frameIndex += partCount;
+            destinationOffset += partCount * channelCount;
+            remaining -= partCount;
+        }
+    }
+
+    /**
+     * @return the cache of the blocks read from the file
+     */
+    public FileBlockCache getBlockCache() {
+        return mBlockCache;
+    }
+
+    /**
+     * Close the file and drop its blocks from the cache. Samples can no longer be read.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            mIsClosed = true;
+            try {
+                mFileChannel.close();
+            } catch (final IOException e) {
+                /* Nothing more can be done */
+            }
+        }
+        mLastBlock = null;
+        mBlockCache.remove(this);
+    }
+
+    private void checkRange(final long index, final int count) {
+        if (count < 0 || index < 0 || index + count > getSamplesPerChannel()) {
+            throw new InvalidParameterException("Invalid sample range");
+        }
+    }
+
+    /**
+     * @param channel Channel number of the Sample
+     * @param index Index of the Sample within the Channel
+     * @return the offset of the Audio Frame of the Sample within the raw Audio data
+     */
+    private long getFrameOffset(final int channel, final long index) {
+        if (channel < 0 || channel >= mAudioFormat.getChannelCount()) {
+            throw new InvalidParameterException("Invalid channel");
+        }
+        if (index < 0 || index >= getSamplesPerChannel()) {
+            throw new InvalidParameterException("Invalid sample index");
+        }
+        return index * mAudioFormat.getFrameSize();
+    }
+
+    /**
+     * @param channel Channel number of the Sample
+     * @param frameOffset The offset of the Audio Frame of the Sample within the raw Audio data
+     * @return the position of the Sample within the block the Audio Frame starts in
+     */
+    private int getSamplePosition(final int channel, final long frameOffset) {
+        return (int) (frameOffset & mBlockMask) + channel * mAudioFormat.getBytesPerSample();
+    }
+
+    /**
+     * @param frameOffset The offset of an Audio Frame within the raw Audio data
+     * @return the number of Audio Frames starting in the block of the Audio Frame, from the Audio Frame
+     */
+    private int getBlockFrameCount(final long frameOffset) {
+        final int frameSize = mAudioFormat.getFrameSize();
+        final int blockRemaining = mBlockMask + 1 - (int) (frameOffset & mBlockMask);
+        return (blockRemaining + frameSize - 1) / frameSize;
+    }
+
+    /**
+     * @param frameOffset The offset of an Audio Frame within the raw Audio data
+     * @return the acquired block the Audio Frame starts in, to be released once decoded
+     */
+    private Block acquireBlock(final long frameOffset) {
+        final long index = frameOffset >>> mBlockShift;
+
+        /* Sequential readers mostly read the last block again: spare its lookup */
+        final Block lastBlock = mLastBlock;
+        if (lastBlock != null && lastBlock.getIndex() == index && mBlockCache.reacquire(lastBlock)) {
+            return lastBlock;
+        }
+
+        final Block block;
+        try {
+            block = mBlockCache.acquire(this, index, this::loadBlock);
+        } catch (final IOException e) {
+            throw new AudioVizException("Cannot read " + mFile.getPath(), e);
+        }
+        mLastBlock = block;
+        return block;
+    }
+
+    /**
+     * Read a block from the file, on a miss of the block cache.
+     * @param index the index of the block within the file
+     * @param buffer the buffer to read the block into
+     * @throws IOException
+     */
+    private void loadBlock(final long index, final ByteBuffer buffer) throws IOException {
+        final long blockOffset = index << mBlockShift;
+        /* The block also holds the end of the last Audio Frame starting in it */
+        final int blockSize = (int) Math.min(mBlockMask + mAudioFormat.getFrameSize(), mSize - blockOffset);
+        buffer.clear();
+        buffer.limit(blockSize);
+        buffer.order(mAudioFormat.getByteOrder());
+        try {
+            readFully(getFileChannel(), buffer, mOffset + blockOffset);
+        } catch (final ClosedByInterruptException e) {
+            throw e;
+        } catch (final AsynchronousCloseException e) {
+            /* Another reader has been interrupted, closing the channel: read again through a new one */
+            readFully(getFileChannel(), buffer, mOffset + blockOffset);
+        }
+    }
+
+    /**
+     * @param fileChannel the channel of the file
+     * @param buffer the buffer to fill, from the position of its start within the file
+     * @param position the position within the file of the start of the buffer
+     * @throws IOException
+     */
+    private static void readFully(final FileChannel fileChannel, final ByteBuffer buffer, final long position)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            if (fileChannel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("File truncated");
+            }
+        }
+    }
+
+    /**
+     * @return the channel of the file, open again if a reader interrupted during a read has closed it
+     * @throws IOException if the provider is closed or the file cannot be open
+     */
+    private synchronized FileChannel getFileChannel() throws IOException {
+        if (mIsClosed) {
+            throw new IOException("Sample provider closed");
+        }
+        if (!mFileChannel.isOpen()) {
+            mFileChannel = new RandomAccessFile(mFile, "r").getChannel();
+        }
+        return mFileChannel;
+    }
+
+    private final File mFile;
+    private final long mOffset;
+    private final long mSize;
+    private final AudioFormat mAudioFormat;
+    private final SampleDecoder mDecoder;
+    private final FileBlockCache mBlockCache;
+    private final int mBlockShift;
+    private final int mBlockMask;
+    /**
+     * Shared by all readers: positional reads do not depend on the position of the channel. Guarded by this.
+     */
+    private FileChannel mFileChannel;
+    private boolean mIsClosed;
+    /**
+     * The block last read from the cache, possibly dropped since
+     */
+    private volatile Block mLastBlock;
+    /**
+     * Loads the file ahead of sequential readers, null if the file is not read ahead
+     */
+    private volatile ReadAheadPrefetcher mReadAheadPrefetcher;
+}
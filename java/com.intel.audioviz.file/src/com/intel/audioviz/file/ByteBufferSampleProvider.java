@@ -10,11 +10,9 @@
 package com.intel.audioviz.file;
 
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.security.InvalidParameterException;
 
 import com.intel.audioviz.AudioFormat;
-import com.intel.audioviz.AudioFormat.Coding;
 import com.intel.audioviz.ISampleProvider;
 
 /**
@@ -29,24 +27,8 @@ public class ByteBufferSampleProvider implements ISampleProvider {
     public ByteBufferSampleProvider(final ByteBuffer byteBuffer, final AudioFormat audioFormat) {
         mByteBuffer = byteBuffer;
         mAudioFormat = audioFormat;
-
-        /* PCM support up to 32bits */
-        if (mAudioFormat.getCodingFormat() == Coding.FORMAT_PCM
-                && mAudioFormat.getBytesPerSample() > Integer.BYTES) {
-            throw new InvalidParameterException("Unsupported PCM format");
-        } else if (mAudioFormat.getCodingFormat() == Coding.FORMAT_IEEE_FLOAT
-                && !(mAudioFormat.getBytesPerSample() == Float.BYTES)
-                && !(mAudioFormat.getBytesPerSample() == Double.BYTES)) {
-            throw new InvalidParameterException("Unsupported IEEE FLOAT format");
-        }
-
-        /* Compute constants which will be used for PCM normalization.
-         * For instance for 16 bits per samples:
-         * PCM_UNSIGNED_HALF_RANGE = 32768
-         * PCM_SIGNED_MAX = 32767
-         */
-        mPcmUnsignedHalfRange = 1 << (mAudioFormat.getBitsPerSample() - 1);
-        mPcmSignedMax = mPcmUnsignedHalfRange - 1;
+        /* Samples are decoded in the order of the buffer */
+        mDecoder = SampleDecoder.newDecoder(audioFormat, byteBuffer.order());
     }
 
     public ByteBuffer getByteBuffer() {
@@ -61,31 +43,76 @@ public class ByteBufferSampleProvider implements ISampleProvider {
         return samplePerChannel;
     }
 
+    /**
+     * Load the Audio Frames following a sequential reader ahead, through the read-ahead prefetcher if any.
+     */
     @Override
-    public double getSampleAsDouble(final int channel, final long index) {
-        final int offset = getSampleOffset(channel, index);
+    public void readAhead(final long index) {
+        final ReadAheadPrefetcher readAheadPrefetcher = mReadAheadPrefetcher;
+        if (readAheadPrefetcher != null) {
+            readAheadPrefetcher.readAhead(index * mAudioFormat.getFrameSize());
+        }
+    }
 
-        if (mAudioFormat.getCodingFormat() == Coding.FORMAT_PCM) {
-            final long sampleValue = getPcmSample(offset);
+    /**
+     * @param readAheadPrefetcher the prefetcher of the file this provider reads, null to stop reading ahead
+     */
+    void setReadAheadPrefetcher(final ReadAheadPrefetcher readAheadPrefetcher) {
+        mReadAheadPrefetcher = readAheadPrefetcher;
+    }
 
-            return mAudioFormat.isSigned() ? normalizeSignedPcmToDouble(sampleValue)
-                    : normalizeUnsignedPcmToDouble(sampleValue);
-        } else {
-            return getIeeeDoubleSample(offset);
-        }
+    @Override
+    public double getSampleAsDouble(final int channel, final long index) {
+        return mDecoder.decodeDouble(mByteBuffer, getSampleOffset(channel, index));
     }
 
     @Override
     public float getSampleAsFloat(final int channel, final long index) {
-        final int offset = getSampleOffset(channel, index);
+        return mDecoder.decodeFloat(mByteBuffer, getSampleOffset(channel, index));
+    }
 
-        if (mAudioFormat.getCodingFormat() == Coding.FORMAT_PCM) {
-            final long sampleValue = getPcmSample(offset);
+    @Override
+    public void getSamplesAsFloat(
+            final int channel, final long index, final float[] destination, final int offset, final int count) {
+        checkBlock(channel, index, count, destination.length - offset);
+        if (count > 0) {
+            mDecoder.decodeFloats(mByteBuffer,
+                    getSampleOffset(channel, index), mAudioFormat.getFrameSize(), destination, offset, count);
+        }
+    }
 
-            return mAudioFormat.isSigned() ? normalizeSignedPcmToFloat(sampleValue)
-                    : normalizeUnsignedPcmToFloat(sampleValue);
-        } else {
-            return getIeeeFloatSample(offset);
+    @Override
+    public void getFramesAsFloat(
+            final long index, final int channelCount, final float[] destination, final int offset,
+            final int frameCount) {
+        if (channelCount != mAudioFormat.getChannelCount()) {
+            throw new InvalidParameterException("Invalid channel count");
+        }
+        checkBlock(0, index, frameCount, (destination.length - offset) / channelCount);
+        if (frameCount > 0) {
+            /* Frames are contiguous: interleaved samples are read as a single sample run */
+            mDecoder.decodeFloats(mByteBuffer,
+                    getSampleOffset(0, index), mAudioFormat.getBytesPerSample(), destination, offset,
+                    frameCount * channelCount);
+        }
+    }
+
+    /**
+     * Check a block of Audio Samples is within the raw Audio data and fits the destination.
+     * @param channel Channel number of the Samples
+     * @param index Index of the first Sample within the Channel
+     * @param count Number of Samples of the block
+     * @param destinationSize Number of Samples the destination can receive
+     */
+    private void checkBlock(final int channel, final long index, final int count, final int destinationSize) {
+        if (channel < 0 || channel >= mAudioFormat.getChannelCount()) {
+            throw new InvalidParameterException("Invalid channel");
+        }
+        if (count < 0 || index < 0 || index + count > getSamplesPerChannel()) {
+            throw new InvalidParameterException("Invalid sample range");
+        }
+        if (count > destinationSize) {
+            throw new IndexOutOfBoundsException("Destination too small");
         }
     }
 
@@ -113,85 +140,15 @@ public class ByteBufferSampleProvider implements ISampleProvider {
         return (int) offset;
     }
 
+    private final ByteBuffer mByteBuffer;
+    private final AudioFormat mAudioFormat;
     /**
-     * Read a PCM Sample in the raw Audio data
-     * @param offset the offset of the Sample within the raw Audio data
-     * @return the PCM Sample long value
-     */
-    private long getPcmSample(final int offset) {
-        long sampleValue;
-
-        if (mAudioFormat.getBytesPerSample() == Short.BYTES) {
-            sampleValue = mAudioFormat.isSigned() ? mByteBuffer.getShort(offset)
-                    : Short.toUnsignedLong(mByteBuffer.getShort(offset));
-        } else if (mAudioFormat.getBytesPerSample() == Integer.BYTES) {
-            sampleValue = mAudioFormat.isSigned() ? mByteBuffer.getInt(offset)
-                    : Integer.toUnsignedLong(mByteBuffer.getInt(offset));
-        } else if (mAudioFormat.getBytesPerSample() == Byte.BYTES) {
-            sampleValue = mAudioFormat.isSigned() ? mByteBuffer.get(offset)
-                    : Byte.toUnsignedLong(mByteBuffer.get(offset));
-        } else {
-            /* For 24bits samples, byte per byte access is required */
-            if (mByteBuffer.order() == ByteOrder.BIG_ENDIAN) {
-                sampleValue = 0
-                        | mByteBuffer.get(offset + 2)
-                        | (mByteBuffer.get(offset + 1) << 8)
-                        | (mByteBuffer.get(offset) << 16);
-            } else {
-                sampleValue = 0
-                        | mByteBuffer.get(offset)
-                        | (mByteBuffer.get(offset + 1) << 8)
-                        | (mByteBuffer.get(offset + 2) << 16);
-            }
-        }
-        return sampleValue;
-    }
-
-    /**
-     * Read a IEEE 64 bits float Sample in the raw Audio data
-     * @param offset the offset of the Sample within the raw Audio data
-     * @return the Sample value as double
+     * Decoder of the AudioFormat Samples, chosen once
      */
-    private double getIeeeDoubleSample(final int offset) {
-        if (mAudioFormat.getBytesPerSample() == Float.BYTES) {
-            return mByteBuffer.getFloat(offset);
-        } else {
-            return mByteBuffer.getDouble(offset);
-        }
-    }
-
+    private final SampleDecoder mDecoder;
     /**
-     * Read a IEEE 32 bits float Sample in the raw Audio data
-     * @param offset the offset of the Sample within the raw Audio data
-     * @return the Sample value as float
+     * Loads the mapped file ahead of sequential readers, null if the buffer is not read ahead
      */
-    private float getIeeeFloatSample(final int offset) {
-        if (mAudioFormat.getBytesPerSample() == Float.BYTES) {
-            return mByteBuffer.getFloat(offset);
-        } else {
-            return (float) mByteBuffer.getDouble(offset);
-        }
-    }
-
-    private double normalizeSignedPcmToDouble(final long sampleValue) {
-        return Math.max(-1.0d, (double) sampleValue / mPcmSignedMax);
-    }
-
-    private double normalizeUnsignedPcmToDouble(final long sampleValue) {
-        return normalizeSignedPcmToDouble(sampleValue - mPcmUnsignedHalfRange);
-    }
-
-    private float normalizeSignedPcmToFloat(final long sampleValue) {
-        return Math.max(-1.0f, (float) sampleValue / mPcmSignedMax);
-    }
-
-    private float normalizeUnsignedPcmToFloat(final long sampleValue) {
-        return normalizeSignedPcmToFloat(sampleValue - mPcmUnsignedHalfRange);
-    }
-
-    private final long mPcmSignedMax;
-    private final long mPcmUnsignedHalfRange;
-    private final ByteBuffer mByteBuffer;
-    private final AudioFormat mAudioFormat;
+    private volatile ReadAheadPrefetcher mReadAheadPrefetcher;
 }
 
@@ -0,0 +1,384 @@
+/*
+ * Copyright (C) 2017 Intel Corporation
+ *
+ * This Program is subject to the terms of the Eclipse Public License, v. 1.0.
+ * If a copy of the license was not distributed with this file,
+ * you can obtain one at <http://www.eclipse.org/legal/epl-v10.html>
+ *
+ * SPDX-License-Identifier: EPL-1.0
+ */
+package com.intel.audioviz.file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.InvalidParameterException;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A FileBlockCache holds fixed-size blocks of raw Audio data read from files by BlockFileSampleProviders, within a
+ * byte budget shared by all the files read through it.
+ *
+ * Blocks are looked up without lock. Once the budget is exceeded, the least recently used blocks are dropped.
+ * Recency is the value of a clock ticking on each miss, so that hits only store it in the block; blocks read between
+ * two misses are equally recent.
+ *
+ * Blocks are read into direct buffers, reused once dropped: a block is reference counted, the cache holding one
+ * reference and each reader another one while it decodes the block, so that a buffer is only reused once no reader
+ * uses it anymore.
+ */
+public final class FileBlockCache {
+
+    /**
+     * @param budget the maximum number of bytes of the cached blocks
+     * @param blockSize the size in bytes of the blocks, a power of two not smaller than MAXIMUM_FRAME_SIZE
+     */
+    public FileBlockCache(final long budget, final int blockSize) {
+        if (budget < 0) {
+            throw new InvalidParameterException("Invalid budget");
+        }
+        if (Integer.bitCount(blockSize) != 1 || blockSize < MAXIMUM_FRAME_SIZE) {
+            throw new InvalidParameterException("Invalid block size");
+        }
+        mBudget = budget;
+        mBlockSize = blockSize;
+        mBlocks = new ConcurrentHashMap<BlockKey, Block>();
+        mFreeBuffers = new ConcurrentLinkedQueue<ByteBuffer>();
+        mFreeBufferCount = new AtomicInteger();
+        mSize = new AtomicLong();
+        mClock = new AtomicLong();
+        mHitCount = new LongAdder();
+        mMissCount = new LongAdder();
+        mEvictionCount = new LongAdder();
+    }
+
+    /**
+     * @return the cache shared by the files read by blocks by default
+     */
+    public static FileBlockCache getDefault() {
+        return DEFAULT_CACHE;
+    }
+
+    /**
+     * @return the size in bytes of the blocks
+     */
+    public int getBlockSize() {
+        return mBlockSize;
+    }
+
+    /**
+     * @return the maximum number of bytes of the cached blocks
+     */
+    public long getBudget() {
+        return mBudget;
+    }
+
+    /**
+     * @param budget the maximum number of bytes of the cached blocks, blocks are dropped if exceeded
+     */
+    public void setBudget(final long budget) {
+        if (budget < 0) {
+            throw new InvalidParameterException("Invalid budget");
+        }
+        mBudget = budget;
+        evict();
+    }
+
+    /**
+     * @return the number of bytes of the cached blocks
+     */
+    public long getSize() {
+        return mSize.get();
+    }
+
+    /**
+     * @return the number of block lookups served from the cache. Blocks acquired again by a reader without lookup are
+     * not counted.
+     */
+    public long getHitCount() {
+        return mHitCount.sum();
+    }
+
+    /**
+     * @return the number of block lookups served from the file
+     */
+    public long getMissCount() {
+        return mMissCount.sum();
+    }
+
+    /**
+     * @return the number of blocks dropped to stay within the budget
+     */
+    public long getEvictionCount() {
+        return mEvictionCount.sum();
+    }
+
+    /**
+     * @return the ratio of block lookups served from the cache, 0 if no block has been looked up
+     */
+    public double getHitRate() {
+        final long hitCount = getHitCount();
+        final long readCount = hitCount + getMissCount();
+        return readCount == 0 ? 0 : (double) hitCount / readCount;
+    }
+
+    /**
+     * Acquire a block, read from the file if not cached.
+     * @param owner the reader of the file the block belongs to
+     * @param index the index of the block within the file
+     * @param loader reads the block from the file on a miss
+     * @return the acquired block, to be released once decoded
+     * @throws IOException if the block cannot be read
+     */
+    Block acquire(final Object owner, final long index, final BlockLoader loader) throws IOException {
+        final BlockKey key = new BlockKey(owner, index);
+        final Block cachedBlock = mBlocks.get(key);
+        if (cachedBlock != null && reacquire(cachedBlock)) {
+            mHitCount.increment();
+            return cachedBlock;
+        }
+
+        mMissCount.increment();
+        final ByteBuffer buffer = allocateBuffer();
+        try {
+            loader.load(index, buffer);
+        } catch (final IOException | RuntimeException e) {
+            recycleBuffer(buffer);
+            throw e;
+        }
+
+        /* Held by the cache and the caller */
+        final Block block = new Block(key, buffer, mClock.incrementAndGet(), 2);
+        while (true) {
+            final Block concurrentBlock = mBlocks.putIfAbsent(key, block);
+            if (concurrentBlock == null) {
+                mSize.addAndGet(buffer.capacity());
+                evict();
+                return block;
+            }
+            /* Read by another reader meanwhile, unless dropped since: then try to cache this one again */
+            if (concurrentBlock.tryAcquire()) {
+                recycleBuffer(buffer);
+                concurrentBlock.mLastUse = mClock.get();
+                return concurrentBlock;
+            }
+        }
+    }
+
+    /**
+     * Acquire a block again, without looking it up, such as the last block read by a reader. Unlike acquire(), it is
+     * not counted as a hit: reads within a block would otherwise be counted each.
+     * @param block a block previously acquired
+     * @return true if acquired, false if the block has been dropped and its buffer reused
+     */
+    boolean reacquire(final Block block) {
+        if (!block.tryAcquire()) {
+            return false;
+        }
+        final long clock = mClock.get();
+        if (block.mLastUse != clock) {
+            block.mLastUse = clock;
+        }
+        return true;
+    }
+
+    /**
+     * Release a block acquired by acquire() or reacquire().
+     * @param block the block
+     */
+    void release(final Block block) {
+        if (block.mReferenceCount.decrementAndGet() == 0) {
+            recycleBuffer(block.mBuffer);
+        }
+    }
+
+    /**
+     * Drop all the blocks of a reader.
+     * @param owner the reader of the file the blocks belong to
+     */
+    void remove(final Object owner) {
+        for (final Map.Entry<BlockKey, Block> entry : mBlocks.entrySet()) {
+            if (entry.getKey().mOwner == owner) {
+                drop(entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Drop the least recently used blocks while the budget is exceeded.
+     */
+    private synchronized void evict() {
+        while (mSize.get() > mBudget) {
+            Block leastRecentlyUsedBlock = null;
+            for (final Block block : mBlocks.values()) {
+                if (leastRecentlyUsedBlock == null || block.mLastUse < leastRecentlyUsedBlock.mLastUse) {
+                    leastRecentlyUsedBlock = block;
+                }
+            }
+            if (leastRecentlyUsedBlock == null) {
+                return;
+            }
+            if (drop(leastRecentlyUsedBlock)) {
+                mEvictionCount.increment();
+            }
+        }
+    }
+
+    /**
+     * @param block a cached block
+     * @return true if dropped, false if already dropped
+     */
+    private boolean drop(final Block block) {
+        if (!mBlocks.remove(block.mKey, block)) {
+            return false;
+        }
+        mSize.addAndGet(-block.mBuffer.capacity());
+        release(block);
+        return true;
+    }
+
+    private ByteBuffer allocateBuffer() {
+        final ByteBuffer buffer = mFreeBuffers.poll();
+        if (buffer == null) {
+            /* Each block also holds the end of the last Audio Frame starting in it */
+            return ByteBuffer.allocateDirect(mBlockSize + MAXIMUM_FRAME_SIZE - 1);
+        }
+        mFreeBufferCount.decrementAndGet();
+        return buffer;
+    }
+
+    private void recycleBuffer(final ByteBuffer buffer) {
+        /* Beyond the pool size, buffers are left to the garbage collector */
+        if (mFreeBufferCount.incrementAndGet() <= MAXIMUM_FREE_BUFFER_COUNT) {
+            mFreeBuffers.offer(buffer);
+        } else {
+            mFreeBufferCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * Reads a block from its file.
+     */
+    @FunctionalInterface
+    interface BlockLoader {
+
+        /**
+         * @param index the index of the block within the file
+         * @param buffer the cleared buffer to read the block into, of a capacity of the block size plus
+         * MAXIMUM_FRAME_SIZE - 1 bytes
+         * @throws IOException
+         */
+        void load(long index, ByteBuffer buffer) throws IOException;
+    }
+
+    /**
+     * A block of a file held by the cache.
+     */
+    static final class Block {
+
+        private Block(final BlockKey key, final ByteBuffer buffer, final long lastUse, final int referenceCount) {
+            mKey = key;
+            mBuffer = buffer;
+            mLastUse = lastUse;
+            mReferenceCount = new AtomicInteger(referenceCount);
+        }
+
+        /**
+         * @return the index of the block within the file
+         */
+        long getIndex() {
+            return mKey.mIndex;
+        }
+
+        /**
+         * @return the buffer holding the block, only valid while acquired
+         */
+        ByteBuffer getBuffer() {
+            return mBuffer;
+        }
+
+        /**
+         * @return false if no longer referenced: the buffer may already be reused
+         */
+        private boolean tryAcquire() {
+            int referenceCount = mReferenceCount.get();
+            while (referenceCount > 0) {
+                if (mReferenceCount.compareAndSet(referenceCount, referenceCount + 1)) {
+                    return true;
+                }
+                referenceCount = mReferenceCount.get();
+            }
+            return false;
+        }
+
+        private final BlockKey mKey;
+        private final ByteBuffer mBuffer;
+        private volatile long mLastUse;
+        private final AtomicInteger mReferenceCount;
+    }
+
+    private static final class BlockKey {
+
+        private BlockKey(final Object owner, final long index) {
+            mOwner = owner;
+            mIndex = index;
+        }
+
+        @Override
+        public boolean equals(final Object object) {
+            if (!(object instanceof BlockKey)) {
+                return false;
+            }
+            final BlockKey key = (BlockKey) object;
+            return mOwner == key.mOwner && mIndex == key.mIndex;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(mOwner) + Long.hashCode(mIndex);
+        }
+
+        private final Object mOwner;
+        private final long mIndex;
+    }
+
+    private volatile long mBudget;
+    private final int mBlockSize;
+    private final ConcurrentHashMap<BlockKey, Block> mBlocks;
+    /**
+     * Buffers of dropped blocks, reused by the next misses
+     */
+    private final Queue<ByteBuffer> mFreeBuffers;
+    private final AtomicInteger mFreeBufferCount;
+    /**
+     * The number of bytes of the cached blocks
+     */
+    private final AtomicLong mSize;
+    /**
+     * Ticks on each miss
+     */
+    private final AtomicLong mClock;
+    private final LongAdder mHitCount;
+    private final LongAdder mMissCount;
+    private final LongAdder mEvictionCount;
+
+    /**
+     * The largest Audio Frame that blocks can be read for, in bytes
+     */
+    public static final int MAXIMUM_FRAME_SIZE = 4096;
+    /**
+     * 256KB blocks: large enough for network file systems to serve them in a single request
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 256 * 1024;
+    /**
+     * 64MB of blocks
+     */
+    public static final long DEFAULT_BUDGET = 64L * 1024 * 1024;
+    private static final int MAXIMUM_FREE_BUFFER_COUNT = 16;
+    private static final FileBlockCache DEFAULT_CACHE = new FileBlockCache(DEFAULT_BUDGET, DEFAULT_BLOCK_SIZE);
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright (C) 2017 Intel Corporation
+ *
+ * This Program is subject to the terms of the Eclipse Public License, v. 1.0.
+ * If a copy of the license was not distributed with this file,
+ * you can obtain one at <http://www.eclipse.org/legal/epl-v10.html>
+ *
+ * SPDX-License-Identifier: EPL-1.0
+ */
+package com.intel.audioviz.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.InvalidParameterException;
+import java.util.Arrays;
+
+import com.intel.audioviz.AudioFormat;
+import com.intel.audioviz.ISampleProvider;
+
+/**
+ * GrowingFileSampleProvider implements the SampleProvider Interface over a file which is still being written, such as
+ * a live capture. The audio samples appended to the file are exposed once refresh() is called.
+ *
+ * The file is split in chunks of a fixed size: complete chunks are memory mapped once, the bytes of the last
+ * incomplete chunk are read into a heap buffer as they are appended. The file is therefore never mapped beyond its
+ * end, and mappings are not recreated as the file grows. Readers use an immutable snapshot of the chunks, published
+ * by refresh(), so that they are not blocked while the file is read.
+ *
+ * @warning Only appending to the file is supported: the bytes already exposed shall not be modified, and the file
+ * shall not be truncated.
+ */
+public class GrowingFileSampleProvider implements ISampleProvider {
+
+    /**
+     * @param file the file which contains the audio raw data
+     * @param offset the offset of Audio raw data within the file
+     * @param audioFormat the audio raw format
+     * @throws IOException
+     */
+    public GrowingFileSampleProvider(final File file, final long offset, final AudioFormat audioFormat)
+            throws IOException {
+        if (offset < 0) {
+            throw new InvalidParameterException("Invalid file offset");
+        }
+        mFile = file;
+        mOffset = offset;
+        mAudioFormat = audioFormat;
+        /* Align chunk size to a multiple of frame size */
+        mChunkSizeInBytes = CHUNK_SIZE - CHUNK_SIZE % audioFormat.getFrameSize();
+        mChunkSizeInFrames = mChunkSizeInBytes / audioFormat.getFrameSize();
+        mTail = null;
+        mChunks = new Chunks(new ByteBufferSampleProvider[0], 0);
+
+        refresh();
+    }
+
+    /**
+     * Expose the complete frames appended to the file since the last call.
+     * @return true if frames have been appended
+     * @throws IOException
+     */
+    public synchronized boolean refresh() throws IOException {
+        final Chunks chunks = mChunks;
+        final long fileSize = Math.max(0, mFile.length() - mOffset);
+        /* Ignore incomplete frame */
+        final long size = fileSize - fileSize % mAudioFormat.getFrameSize();
+        if (size <= chunks.mSize) {
+            return false;
+        }
+
+        final long chunkCount = (size + mChunkSizeInBytes - 1) / mChunkSizeInBytes;
+        if (chunkCount > Integer.MAX_VALUE) {
+            throw new InvalidParameterException("File too large");
+        }
+        final ByteBufferSampleProvider[] providers = Arrays.copyOf(chunks.mProviders, (int) chunkCount);
+
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(mFile, "r")) {
+            try (FileChannel fileChannel = randomAccessFile.getChannel()) {
+                /* The first chunk not complete in the previous snapshot */
+                for (int index = (int) (chunks.mSize / mChunkSizeInBytes); index < chunkCount; index++) {
+                    final long chunkOffset = (long) index * mChunkSizeInBytes;
+                    final int chunkSize = (int) Math.min(mChunkSizeInBytes, size - chunkOffset);
+
+                    final ByteBuffer buffer;
+                    if (chunkSize == mChunkSizeInBytes) {
+                        buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, mOffset + chunkOffset, chunkSize);
+                        mTail = null;
+                    } else {
+                        buffer = readTail(fileChannel, chunkOffset, chunkSize,
+                                (int) Math.max(0, chunks.mSize - chunkOffset));
+                    }
+                    buffer.order(mAudioFormat.getByteOrder());
+                    providers[index] = new ByteBufferSampleProvider(buffer, mAudioFormat);
+                }
+            }
+        }
+
+        mChunks = new Chunks(providers, size);
+        return true;
+    }
+
+    @Override
+    public long getSamplesPerChannel() {
+        return mChunks.mSize / mAudioFormat.getFrameSize();
+    }
+
+    @Override
+    public double getSampleAsDouble(final int channel, final long index) {
+        final Chunks chunks = mChunks;
+        final int sampleProviderIndex = getByteBufferSampleProviderIndex(chunks, index);
+
+        return chunks.mProviders[sampleProviderIndex].getSampleAsDouble(
+                channel,
+                index - (long) sampleProviderIndex * mChunkSizeInFrames);
+    }
+
+    @Override
+    public float getSampleAsFloat(final int channel, final long index) {
+        final Chunks chunks = mChunks;
+        final int sampleProviderIndex = getByteBufferSampleProviderIndex(chunks, index);
+
+        return chunks.mProviders[sampleProviderIndex].getSampleAsFloat(
+                channel,
+                index - (long) sampleProviderIndex * mChunkSizeInFrames);
+    }
+
+    @Override
+    public void getSamplesAsFloat(
+            final int channel, final long index, final float[] destination, final int offset, final int count) {
+        final Chunks chunks = mChunks;
+        checkRange(chunks, index, count);
+
+        /* Split the request on chunk boundaries, each part is read in bulk by its chunk */
+        long sampleIndex = index;
+        int destinationOffset = offset;
+        int remaining = count;
+        while (remaining > 0) {
+            final int sampleProviderIndex = getByteBufferSampleProviderIndex(chunks, sampleIndex);
+            final long chunkSampleIndex = sampleIndex - (long) sampleProviderIndex * mChunkSizeInFrames;
+            final int partCount = (int) Math.min(remaining, mChunkSizeInFrames - chunkSampleIndex);
+
+            chunks.mProviders[sampleProviderIndex].getSamplesAsFloat(
+                    channel, chunkSampleIndex, destination, destinationOffset, partCount);
+
+            sampleIndex += partCount;
+            destinationOffset += partCount;
+            remaining -= partCount;
+        }
+    }
+
+    @Override
+    public void getFramesAsFloat(
+            final long index, final int channelCount, final float[] destination, final int offset,
+            final int frameCount) {
+        final Chunks chunks = mChunks;
+        checkRange(chunks, index, frameCount);
+
+        long frameIndex = index;
+        int destinationOffset = offset;
+        int remaining = frameCount;
+        while (remaining > 0) {
+            final int sampleProviderIndex = getByteBufferSampleProviderIndex(chunks, frameIndex);
+            final long chunkFrameIndex = frameIndex - (long) sampleProviderIndex * mChunkSizeInFrames;
+            final int partCount = (int) Math.min(remaining, mChunkSizeInFrames - chunkFrameIndex);
+
+            chunks.mProviders[sampleProviderIndex].getFramesAsFloat(
+                    chunkFrameIndex, channelCount, destination, destinationOffset, partCount);
+
+            frameIndex += partCount;
+            destinationOffset += partCount * channelCount;
+            remaining -= partCount;
+        }
+    }
+
+    /**
+     * Read the bytes appended to the last incomplete chunk into the tail buffer. Bytes exposed by the previous
+     * snapshot are not overwritten, so that its readers are not disturbed.
+     * @param fileChannel the channel of the file
+     * @param chunkOffset the offset of the chunk within the Audio raw data
+     * @param chunkSize the new size of the chunk
+     * @param readSize the size of the chunk already read
+     * @return a buffer holding the chunkSize bytes of the chunk
+     * @throws IOException
+     */
+    private ByteBuffer readTail(final FileChannel fileChannel, final long chunkOffset, final int chunkSize,
+            final int readSize) throws IOException {
+        if (mTail == null || readSize == 0) {
+            mTail = ByteBuffer.allocate(mChunkSizeInBytes);
+        }
+
+        final ByteBuffer destination = mTail.duplicate();
+        destination.limit(chunkSize);
+        destination.position(readSize);
+        while (destination.hasRemaining()) {
+            final int read = fileChannel.read(destination, mOffset + chunkOffset + destination.position());
+            if (read < 0) {
+                throw new IOException("File truncated");
+            }
+        }
+
+        final ByteBuffer buffer = mTail.duplicate();
+        buffer.limit(chunkSize);
+        return buffer.slice();
+    }
+
+    private void checkRange(final Chunks chunks, final long index, final int count) {
+        if (count < 0 || index < 0 || index + count > chunks.mSize / mAudioFormat.getFrameSize()) {
+            throw new InvalidParameterException("Invalid sample range");
+        }
+    }
+
+    private int getByteBufferSampleProviderIndex(final Chunks chunks, final long sampleIndex) {
+        if (sampleIndex < 0 || sampleIndex >= chunks.mSize / mAudioFormat.getFrameSize()) {
+            throw new InvalidParameterException("Invalid sample index");
+        }
+
+        return (int) (sampleIndex / mChunkSizeInFrames);
+    }
+
+    /**
+     * An immutable snapshot of the chunks exposed to readers
+     */
+    private static final class Chunks {
+
+        Chunks(final ByteBufferSampleProvider[] providers, final long size) {
+            mProviders = providers;
+            mSize = size;
+        }
+
+        private final ByteBufferSampleProvider[] mProviders;
+        /**
+         * The number of bytes of complete frames
+         */
+        private final long mSize;
+    }
+
+    private final File mFile;
+    private final long mOffset;
+    private final AudioFormat mAudioFormat;
+    private final int mChunkSizeInBytes;
+    private final int mChunkSizeInFrames;
+    /**
+     * The buffer the last incomplete chunk is read into, only accessed by refresh()
+     */
+    private ByteBuffer mTail;
+    private volatile Chunks mChunks;
+
+    /**
+     * Chunk size in bytes: 32MB, the largest heap buffer allocated for the last incomplete chunk
+     */
+    private static final int CHUNK_SIZE = 32 * 1024 * 1024;
+}
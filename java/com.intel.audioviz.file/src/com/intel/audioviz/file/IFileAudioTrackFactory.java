@@ -12,6 +12,7 @@ package com.intel.audioviz.file;
 import java.io.File;
 import java.util.List;
 
+import com.intel.audioviz.file.RawFileAudioTrack.AccessMode;
 import com.intel.audioviz.file.raw.RawFileAudioTrackFactory;
 
 /**
@@ -58,4 +59,20 @@ public interface IFileAudioTrackFactory {
      * @throws FileAudioTrackFactoryException
      */
     RawFileAudioTrack getAudioTrack(File audioFile) throws FileAudioTrackFactoryException;
+
+    /**
+     * Instantiate a RawFileAudioTrack from the file given as argument, accessing its raw Audio data as requested.
+     * Factories which do not override it only support AccessMode.MEMORY_MAPPED.
+     * @param audioFile the file to open as RawFileAudioTrack
+     * @param accessMode how the raw Audio data of the file is accessed
+     * @return The RawFileAudioTrack
+     * @throws FileAudioTrackFactoryException
+     */
+    default RawFileAudioTrack getAudioTrack(final File audioFile, final AccessMode accessMode)
+            throws FileAudioTrackFactoryException {
+        if (accessMode != AccessMode.MEMORY_MAPPED) {
+            throw new FileAudioTrackFactoryException("Unsupported access mode " + accessMode);
+        }
+        return getAudioTrack(audioFile);
+    }
 }
@@ -16,16 +16,43 @@ import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.security.InvalidParameterException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import com.intel.audioviz.AudioFormat;
 import com.intel.audioviz.AudioTrack;
 import com.intel.audioviz.ISampleProvider;
+import com.intel.audioviz.trace.AudioTrackWaveformTraceCacheProvider;
 
 /**
  * Expose a raw Audio file as AudioTrack.
+ *
+ * A raw Audio file still being written, such as a live capture, may be followed: its size is then polled, and the
+ * audio samples appended to it are exposed as they are written. The waveform cache of a followed file is not
+ * persisted, as it would be outdated as soon as the file grows.
+ *
+ * The raw Audio data is memory mapped by default. It may rather be read by blocks, see AccessMode.
  */
 public class RawFileAudioTrack extends AudioTrack {
 
+    /**
+     * How the raw Audio data of a file is accessed, once the file is no longer followed.
+     */
+    public enum AccessMode {
+        /**
+         * Memory map the file: the fastest access to local files, read by the page cache.
+         */
+        MEMORY_MAPPED,
+        /**
+         * Read the file by blocks into the default FileBlockCache: preferred for network file systems, whose failures
+         * crash the JVM through a memory mapping, and for files too large for the address space.
+         * @see BlockFileSampleProvider
+         */
+        BLOCK_READ
+    }
+
     /**
      * Open a raw Audio file.
      * @param audioFormat the audio raw format
@@ -51,6 +78,21 @@ public class RawFileAudioTrack extends AudioTrack {
         this(audioFormat, file, offset, file.length() - offset);
     }
 
+    /**
+     * Open a raw Audio file, optionally following its growth.
+     * @param audioFormat the audio raw format
+     * @param file the file which contains the audio raw data
+     * @param offset the offset of Audio raw data within the file
+     * @param followGrowth true to expose the audio samples appended to the file while it is being written
+     * @throws FileNotFoundException
+     * @throws IOException
+     * @warning A followed file shall only be appended to, see GrowingFileSampleProvider.
+     */
+    public RawFileAudioTrack(final AudioFormat audioFormat, final File file, final long offset,
+            final boolean followGrowth) throws FileNotFoundException, IOException {
+        this(audioFormat, file, offset, file.length() - offset, followGrowth, AccessMode.MEMORY_MAPPED);
+    }
+
     /**
      * Open a raw Audio file specifying the offset and the size of the raw data within the file.
      * @param audioFormat the audio raw format
@@ -63,9 +105,30 @@ public class RawFileAudioTrack extends AudioTrack {
     public RawFileAudioTrack(
             final AudioFormat audioFormat, final File file, final long offset, final long size)
                     throws FileNotFoundException, IOException {
+        this(audioFormat, file, offset, size, false, AccessMode.MEMORY_MAPPED);
+    }
+
+    /**
+     * Open a raw Audio file specifying the offset and the size of the raw data within the file, how it is accessed,
+     * and optionally following its growth.
+     * @param audioFormat the audio raw format
+     * @param file the file which contains the audio raw data
+     * @param offset the offset of Audio raw data within the file
+     * @param size the size of Audio raw data within the file
+     * @param followGrowth true to expose the audio samples appended to the file while it is being written
+     * @param accessMode how the raw Audio data is accessed, ignored if the file is followed
+     * @throws FileNotFoundException
+     * @throws IOException
+     * @warning A followed file shall only be appended to, see GrowingFileSampleProvider.
+     */
+    public RawFileAudioTrack(final AudioFormat audioFormat, final File file, final long offset, final long size,
+            final boolean followGrowth, final AccessMode accessMode) throws FileNotFoundException, IOException {
         super(audioFormat);
         mAudioFormat = audioFormat;
         mFile = file;
+        mOffset = offset;
+        mAccessMode = accessMode;
+        mReadAheadPrefetcher = null;
 
         // Check file
         if (!file.exists() || file.isDirectory()) {
@@ -81,10 +144,22 @@ public class RawFileAudioTrack extends AudioTrack {
         if (safeSize <= 0 || safeSize > fileSize - offset) {
             throw new InvalidParameterException("Invalid file size");
         }
+        mSize = safeSize;
 
-        if (safeSize > Integer.MAX_VALUE) {
+        if (followGrowth) {
+            final GrowingFileSampleProvider growingFileSampleProvider =
+                    new GrowingFileSampleProvider(file, offset, mAudioFormat);
+            mSampleProvider = growingFileSampleProvider;
+            mGrowthPoll = GROWTH_POLL_EXECUTOR.scheduleWithFixedDelay(() -> pollGrowth(growingFileSampleProvider),
+                    GROWTH_POLL_PERIOD_MS, GROWTH_POLL_PERIOD_MS, TimeUnit.MILLISECONDS);
+        } else if (accessMode == AccessMode.BLOCK_READ) {
+            mSampleProvider = new BlockFileSampleProvider(file, offset, safeSize, mAudioFormat);
+            mGrowthPoll = null;
+        } else if (safeSize > Integer.MAX_VALUE) {
             mSampleProvider = new BigFileSampleProvider(file, offset, safeSize, mAudioFormat);
+            mGrowthPoll = null;
         } else {
+            mGrowthPoll = null;
             try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
                 try (FileChannel fileChannel = raf.getChannel()) {
 
@@ -100,6 +175,56 @@ public class RawFileAudioTrack extends AudioTrack {
         }
     }
 
+    /**
+     * @return true if the audio samples appended to the file are exposed
+     */
+    public boolean isFollowingGrowth() {
+        return mGrowthPoll != null;
+    }
+
+    /**
+     * @return how the raw Audio data is accessed once the file is no longer followed
+     */
+    public AccessMode getAccessMode() {
+        return mAccessMode;
+    }
+
+    /**
+     * Load the raw Audio data ahead of the computation of the waveform cache, on a helper thread, rather than on
+     * each page miss of the memory mapping or block cache miss. Worth it on devices slow to seek, such as spinning
+     * disks and network mounts. Followed files are not read ahead.
+     * @param distance the number of bytes read ahead of the less advanced reader, 0 not to read ahead
+     * @note Shall be called before the waveform cache is initialized to speed it up
+     */
+    public synchronized void setReadAheadDistance(final long distance) {
+        if (distance < 0) {
+            throw new InvalidParameterException("Invalid read-ahead distance");
+        }
+        if (mReadAheadPrefetcher != null) {
+            mReadAheadPrefetcher.close();
+            mReadAheadPrefetcher = null;
+        }
+        final ReadAheadPrefetcher readAheadPrefetcher =
+                distance > 0 ? new ReadAheadPrefetcher(mFile, mOffset, mSize, distance) : null;
+        if (mSampleProvider instanceof ByteBufferSampleProvider) {
+            ((ByteBufferSampleProvider) mSampleProvider).setReadAheadPrefetcher(readAheadPrefetcher);
+            mReadAheadPrefetcher = readAheadPrefetcher;
+        } else if (mSampleProvider instanceof BigFileSampleProvider) {
+            ((BigFileSampleProvider) mSampleProvider).setReadAheadPrefetcher(readAheadPrefetcher);
+            mReadAheadPrefetcher = readAheadPrefetcher;
+        } else if (mSampleProvider instanceof BlockFileSampleProvider) {
+            ((BlockFileSampleProvider) mSampleProvider).setReadAheadPrefetcher(readAheadPrefetcher);
+            mReadAheadPrefetcher = readAheadPrefetcher;
+        }
+    }
+
+    /**
+     * @return the number of bytes read ahead of the computation of the waveform cache, 0 if not read ahead
+     */
+    public synchronized long getReadAheadDistance() {
+        return mReadAheadPrefetcher == null ? 0 : mReadAheadPrefetcher.getDistance();
+    }
+
     /**
      * @return The file name
      */
@@ -114,9 +239,36 @@ public class RawFileAudioTrack extends AudioTrack {
         return mFile.getAbsolutePath();
     }
 
+    /**
+     * @return The sidecar file where the waveform cache of the audio file is persisted
+     */
+    public File getWaveformCacheFile() {
+        return new File(mFile.getPath() + WAVEFORM_CACHE_FILE_EXTENSION);
+    }
+
+    /**
+     * Persist the waveform cache in a sidecar file so that it is not computed again the next time the file is opened,
+     * unless the file is followed.
+     */
+    @Override
+    protected AudioTrackWaveformTraceCacheProvider newAudioTrackTraceCache() {
+        final AudioTrackWaveformTraceCacheProvider audioTrackTraceCache = super.newAudioTrackTraceCache();
+        if (!isFollowingGrowth()) {
+            audioTrackTraceCache.setCacheFile(getWaveformCacheFile(), mFile, mOffset);
+        }
+        return audioTrackTraceCache;
+    }
+
     @Override
     public void dispose() {
+        if (mGrowthPoll != null) {
+            mGrowthPoll.cancel(false);
+        }
+        setReadAheadDistance(0);
         super.dispose();
+        if (mSampleProvider instanceof BlockFileSampleProvider) {
+            ((BlockFileSampleProvider) mSampleProvider).close();
+        }
         /**
          * The memory mapping of the file and its associated file system lock remains until the MappedByteBuffer is
          * garbage collected.
@@ -125,6 +277,20 @@ public class RawFileAudioTrack extends AudioTrack {
         System.gc();
     }
 
+    /**
+     * Expose the audio samples appended to a followed file, from the growth poll thread.
+     * @param growingFileSampleProvider the sample provider of the file
+     */
+    private void pollGrowth(final GrowingFileSampleProvider growingFileSampleProvider) {
+        try {
+            if (growingFileSampleProvider.refresh()) {
+                notifyAudioTrackGrown();
+            }
+        } catch (final IOException e) {
+            /* The file may be temporarily unavailable: try again at the next poll */
+        }
+    }
+
     @Override
     public AudioFormat getAudioFormat() {
         return mAudioFormat;
@@ -138,4 +304,33 @@ public class RawFileAudioTrack extends AudioTrack {
     private final AudioFormat mAudioFormat;
     private ISampleProvider mSampleProvider;
     private final File mFile;
+    private final long mOffset;
+    private final AccessMode mAccessMode;
+    /**
+     * The size of Audio raw data within the file, when opened
+     */
+    private final long mSize;
+    /**
+     * Loads the file ahead of the computation of the waveform cache, null if not read ahead
+     */
+    private ReadAheadPrefetcher mReadAheadPrefetcher;
+    /**
+     * The periodic poll of the file size, null if the file is not followed
+     */
+    private final ScheduledFuture<?> mGrowthPoll;
+
+    private static final String WAVEFORM_CACHE_FILE_EXTENSION = ".waveform";
+    /**
+     * Period of the poll of the size of followed files
+     */
+    private static final long GROWTH_POLL_PERIOD_MS = 500;
+    /**
+     * The thread polling the size of all followed files
+     */
+    private static final ScheduledExecutorService GROWTH_POLL_EXECUTOR =
+            Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "RawFileAudioTrackGrowth");
+                thread.setDaemon(true);
+                return thread;
+            });
 }
@@ -18,6 +18,7 @@ import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.FileDialog;
 import org.eclipse.swt.widgets.Shell;
 
+import com.intel.audioviz.file.RawFileAudioTrack.AccessMode;
 import com.intel.audioviz.file.addon.FileAudioTrackFactoryManager;
 
 /**
@@ -42,6 +43,19 @@ public class RawFileAudioTrackProvider {
      * @throws FileAudioTrackFactoryException
      */
     public RawFileAudioTrack getAudioTrack(final File file) throws FileAudioTrackFactoryException {
+        return getAudioTrack(file, AccessMode.MEMORY_MAPPED);
+    }
+
+    /**
+     * Get the RawFileAudioTrack corresponding to the File provided as argument, accessing its raw Audio data as
+     * requested. The registered AudioTrackFactory for the file format is used to instantiate the AudioTrack.
+     * @param file The file to be opened as RawFileAudioTrack instance.
+     * @param accessMode How the raw Audio data of the file is accessed
+     * @return The RawFileAudioTrack for the file format
+     * @throws FileAudioTrackFactoryException
+     */
+    public RawFileAudioTrack getAudioTrack(final File file, final AccessMode accessMode)
+            throws FileAudioTrackFactoryException {
         if (file == null) {
             throw new IllegalArgumentException("Invalid file");
         }
@@ -49,7 +63,7 @@ public class RawFileAudioTrackProvider {
         final IFileAudioTrackFactory factory =
                 mFileAudioTrackFactoryManager.getAudioTrackFactoryForFile(file);
 
-        return factory.getAudioTrack(file);
+        return factory.getAudioTrack(file, accessMode);
     }
 
     /**
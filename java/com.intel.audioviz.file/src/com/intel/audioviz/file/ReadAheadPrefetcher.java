@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2017 Intel Corporation
+ *
+ * This Program is subject to the terms of the Eclipse Public License, v. 1.0.
+ * If a copy of the license was not distributed with this file,
+ * you can obtain one at <http://www.eclipse.org/legal/epl-v10.html>
+ *
+ * SPDX-License-Identifier: EPL-1.0
+ */
+package com.intel.audioviz.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.InvalidParameterException;
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A ReadAheadPrefetcher loads the raw Audio data of a file into the page cache ahead of sequential readers of its
+ * memory mapping, so that their page misses are served from memory rather than by the device.
+ *
+ * Readers report their position through readAhead(): the chunks of the file within the read-ahead distance after it
+ * are queued, then read with positional FileChannel reads by a thread shared by all prefetchers. Each chunk is read
+ * once in the prefetcher lifetime, so that several readers, such as cache segments computed in parallel, may report
+ * positions in any order. Prefetchers take turns on the thread after a few chunks, so that a file does not delay
+ * the others.
+ *
+ * Reading ahead is only an optimization: a chunk which cannot be read is skipped.
+ */
+final class ReadAheadPrefetcher {
+
+    /**
+     * @param file the file which contains the audio raw data
+     * @param offset the offset of Audio raw data within the file
+     * @param size the size of Audio raw data within the file
+     * @param distance the number of bytes read ahead of the position of readers
+     */
+    ReadAheadPrefetcher(final File file, final long offset, final long size, final long distance) {
+        if (distance <= 0) {
+            throw new InvalidParameterException("Invalid read-ahead distance");
+        }
+        final long chunkCount = (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        if (chunkCount > Integer.MAX_VALUE) {
+            throw new InvalidParameterException("File too large");
+        }
+        mFile = file;
+        mOffset = offset;
+        mSize = size;
+        mDistance = distance;
+        mQueuedChunks = new BitSet((int) chunkCount);
+        mPendingChunks = new ArrayDeque<Integer>();
+        mIsScheduled = false;
+        mIsClosed = false;
+    }
+
+    /**
+     * Queue the chunks within the read-ahead distance after the position of a reader, unless already queued.
+     * @param position the offset within the raw Audio data of the next byte the reader reads
+     */
+    void readAhead(final long position) {
+        if (position < 0 || position >= mSize) {
+            return;
+        }
+        final int firstChunk = (int) (position / CHUNK_SIZE);
+        final int endChunk = (int) ((Math.min(mSize, position + mDistance) + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        synchronized (this) {
+            if (mIsClosed) {
+                return;
+            }
+            int chunk = mQueuedChunks.nextClearBit(firstChunk);
+            while (chunk < endChunk) {
+                mQueuedChunks.set(chunk);
+                mPendingChunks.add(chunk);
+                chunk = mQueuedChunks.nextClearBit(chunk + 1);
+            }
+            if (!mIsScheduled && !mPendingChunks.isEmpty()) {
+                mIsScheduled = true;
+                READ_AHEAD_EXECUTOR.execute(this::readChunks);
+            }
+        }
+    }
+
+    /**
+     * @return the read-ahead distance in bytes
+     */
+    long getDistance() {
+        return mDistance;
+    }
+
+    /**
+     * Stop reading ahead: queued chunks are dropped.
+     */
+    synchronized void close() {
+        mIsClosed = true;
+        mPendingChunks.clear();
+    }
+
+    /**
+     * Read up to CHUNKS_PER_TURN queued chunks, from the shared thread, then queue again if more chunks are
+     * pending.
+     */
+    private void readChunks() {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(mFile, "r")) {
+            try (FileChannel fileChannel = randomAccessFile.getChannel()) {
+                if (mBuffer == null) {
+                    mBuffer = ByteBuffer.allocateDirect(CHUNK_SIZE);
+                }
+                for (int i = 0; i < CHUNKS_PER_TURN; i++) {
+                    final Integer chunk;
+                    synchronized (this) {
+                        chunk = mPendingChunks.poll();
+                    }
+                    if (chunk == null) {
+                        break;
+                    }
+                    readChunk(fileChannel, chunk);
+                }
+            }
+        } catch (final IOException e) {
+            /* The file may be temporarily unavailable: readers then load their pages themselves */
+        } finally {
+            synchronized (this) {
+                if (!mPendingChunks.isEmpty()) {
+                    READ_AHEAD_EXECUTOR.execute(this::readChunks);
+                } else {
+                    mIsScheduled = false;
+                }
+            }
+        }
+    }
+
+    private void readChunk(final FileChannel fileChannel, final int chunk) throws IOException {
+        final long chunkOffset = (long) chunk * CHUNK_SIZE;
+        final int chunkSize = (int) Math.min(CHUNK_SIZE, mSize - chunkOffset);
+        mBuffer.clear();
+        mBuffer.limit(chunkSize);
+        while (mBuffer.hasRemaining()) {
+            if (fileChannel.read(mBuffer, mOffset + chunkOffset + mBuffer.position()) < 0) {
+                /* The file has been truncated */
+                break;
+            }
+        }
+    }
+
+    private final File mFile;
+    private final long mOffset;
+    private final long mSize;
+    private final long mDistance;
+    /**
+     * Chunks already queued once, guarded by this
+     */
+    private final BitSet mQueuedChunks;
+    /**
+     * Chunks to be read, in the order readers reported them, guarded by this
+     */
+    private final ArrayDeque<Integer> mPendingChunks;
+    /**
+     * True while readChunks() is queued or running on the shared thread, guarded by this
+     */
+    private boolean mIsScheduled;
+    private boolean mIsClosed;
+    /**
+     * The buffer the chunks are read into, only used by the shared thread
+     */
+    private ByteBuffer mBuffer;
+
+    /**
+     * 1MB chunks: large enough for the device to read sequentially, small enough to follow readers closely
+     */
+    private static final int CHUNK_SIZE = 1024 * 1024;
+    private static final int CHUNKS_PER_TURN = 8;
+    /**
+     * The thread reading ahead for all prefetchers: reads are sequential, as a device serves them best
+     */
+    private static final ExecutorService READ_AHEAD_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "FileReadAhead");
+        thread.setDaemon(true);
+        return thread;
+    });
+}
@@ -0,0 +1,330 @@
+/*
+ * Copyright (C) 2017 Intel Corporation
+ *
+ * This Program is subject to the terms of the Eclipse Public License, v. 1.0.
+ * If a copy of the license was not distributed with this file,
+ * you can obtain one at <http://www.eclipse.org/legal/epl-v10.html>
+ *
+ * SPDX-License-Identifier: EPL-1.0
+ */
+package com.intel.audioviz.file;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.InvalidParameterException;
+
+import com.intel.audioviz.AudioFormat;
+import com.intel.audioviz.AudioFormat.Coding;
+
+/**
+ * A SampleDecoder decodes the raw Audio Samples of one sample format into normalized Samples within [-1, 1]. The
+ * decoder is chosen once per AudioFormat by newDecoder(): each format has its own final class, whose loops neither
+ * test the coding format, the width nor the signedness of Samples, so that the JIT can unroll them.
+ *
+ * PCM Samples are divided by the highest signed value, -1 being the lowest normalized value. Unsigned PCM Samples
+ * are biased by half their range, which is the same as flipping their most significant bit and reading them as
+ * signed: each PCM decoder handles both through a sign flip mask, 0 for signed Samples.
+ *
+ * Multi-byte Samples other than 24 bits are read through the ByteBuffer accessors, in the order of the buffer: they
+ * are intrinsics, swapping bytes if the order is not the native one.
+ */
+abstract class SampleDecoder {
+
+    /**
+     * @param audioFormat The AudioFormat of the raw Audio data
+     * @param byteOrder The byte order of the buffers holding the raw Audio data
+     * @return the decoder of the AudioFormat Samples
+     * @throws InvalidParameterException if the AudioFormat is not supported
+     */
+    static SampleDecoder newDecoder(final AudioFormat audioFormat, final ByteOrder byteOrder) {
+        final int bytesPerSample = audioFormat.getBytesPerSample();
+        if (audioFormat.getCodingFormat() == Coding.FORMAT_IEEE_FLOAT) {
+            if (bytesPerSample == Float.BYTES) {
+                return new Float32Decoder();
+            } else if (bytesPerSample == Double.BYTES) {
+                return new Float64Decoder();
+            }
+            throw new InvalidParameterException("Unsupported IEEE FLOAT format");
+        }
+
+        /* PCM support up to 32bits */
+        final boolean signed = audioFormat.isSigned();
+        switch (bytesPerSample) {
+            case Byte.BYTES:
+                return new Pcm8Decoder(signed);
+            case Short.BYTES:
+                return new Pcm16Decoder(signed);
+            case PCM24_BYTES:
+                return byteOrder == ByteOrder.BIG_ENDIAN ? new Pcm24BeDecoder(signed) : new Pcm24LeDecoder(signed);
+            case Integer.BYTES:
+                return new Pcm32Decoder(signed);
+            default:
+                throw new InvalidParameterException("Unsupported PCM format");
+        }
+    }
+
+    /**
+     * @param buffer The buffer holding the raw Audio data
+     * @param position The offset of the Sample within the buffer
+     * @return the normalized Sample
+     */
+    abstract float decodeFloat(ByteBuffer buffer, int position);
+
+    /**
+     * @param buffer The buffer holding the raw Audio data
+     * @param position The offset of the Sample within the buffer
+     * @return the normalized Sample, in double precision
+     */
+    abstract double decodeDouble(ByteBuffer buffer, int position);
+
+    /**
+     * Decode a run of Samples separated by a constant stride.
+     * @param buffer The buffer holding the raw Audio data
+     * @param position The offset of the first Sample within the buffer
+     * @param stride The distance in bytes between two consecutive Samples of the run
+     * @param destination The array receiving normalized Samples
+     * @param offset The index in destination of the first Sample
+     * @param count The number of Samples of the run
+     */
+    abstract void decodeFloats(ByteBuffer buffer, int position, int stride, float[] destination, int offset, int count);
+
+    /**
+     * Signed or unsigned 8 bits PCM.
+     */
+    static final class Pcm8Decoder extends SampleDecoder {
+
+        Pcm8Decoder(final boolean signed) {
+            mSignFlip = signed ? 0 : Byte.MIN_VALUE;
+        }
+
+        @Override
+        float decodeFloat(final ByteBuffer buffer, final int position) {
+            return Math.max(-1.0f, (byte) (buffer.get(position) ^ mSignFlip) / MAX);
+        }
+
+        @Override
+        double decodeDouble(final ByteBuffer buffer, final int position) {
+            return Math.max(-1.0d, (byte) (buffer.get(position) ^ mSignFlip) / (double) Byte.MAX_VALUE);
+        }
+
+        @Override
+        void decodeFloats(final ByteBuffer buffer, final int position, final int stride, final float[] destination,
+                final int offset, final int count) {
+            final int signFlip = mSignFlip;
+            final int end = offset + count;
+            int sourcePosition = position;
+            for (int i = offset; i < end; i++, sourcePosition += stride) {
+                destination[i] = Math.max(-1.0f, (byte) (buffer.get(sourcePosition) ^ signFlip) / MAX);
+            }
+        }
+
+        private final int mSignFlip;
+        private static final float MAX = Byte.MAX_VALUE;
+    }
+
+    /**
+     * Signed or unsigned 16 bits PCM.
+     */
+    static final class Pcm16Decoder extends SampleDecoder {
+
+        Pcm16Decoder(final boolean signed) {
+            mSignFlip = signed ? 0 : Short.MIN_VALUE;
+        }
+
+        @Override
+        float decodeFloat(final ByteBuffer buffer, final int position) {
+            return Math.max(-1.0f, (short) (buffer.getShort(position) ^ mSignFlip) / MAX);
+        }
+
+        @Override
+        double decodeDouble(final ByteBuffer buffer, final int position) {
+            return Math.max(-1.0d, (short) (buffer.getShort(position) ^ mSignFlip) / (double) Short.MAX_VALUE);
+        }
+
+        @Override
+        void decodeFloats(final ByteBuffer buffer, final int position, final int stride, final float[] destination,
+                final int offset, final int count) {
+            final int signFlip = mSignFlip;
+            final int end = offset + count;
+            int sourcePosition = position;
+            for (int i = offset; i < end; i++, sourcePosition += stride) {
+                destination[i] = Math.max(-1.0f, (short) (buffer.getShort(sourcePosition) ^ signFlip) / MAX);
+            }
+        }
+
+        private final int mSignFlip;
+        private static final float MAX = Short.MAX_VALUE;
+    }
+
+    /**
+     * Signed or unsigned 24 bits PCM, little endian. Samples are read byte per byte, and assembled in the most
+     * significant bytes of an int so that the arithmetic shift extends their sign.
+     */
+    static final class Pcm24LeDecoder extends SampleDecoder {
+
+        Pcm24LeDecoder(final boolean signed) {
+            mSignFlip = signed ? 0 : Integer.MIN_VALUE;
+        }
+
+        @Override
+        float decodeFloat(final ByteBuffer buffer, final int position) {
+            return Math.max(-1.0f, getSample(buffer, position, mSignFlip) / PCM24_MAX_FLOAT);
+        }
+
+        @Override
+        double decodeDouble(final ByteBuffer buffer, final int position) {
+            return Math.max(-1.0d, getSample(buffer, position, mSignFlip) / (double) PCM24_MAX);
+        }
+
+        @Override
+        void decodeFloats(final ByteBuffer buffer, final int position, final int stride, final float[] destination,
+                final int offset, final int count) {
+            final int signFlip = mSignFlip;
+            final int end = offset + count;
+            int sourcePosition = position;
+            for (int i = offset; i < end; i++, sourcePosition += stride) {
+                destination[i] = Math.max(-1.0f, getSample(buffer, sourcePosition, signFlip) / PCM24_MAX_FLOAT);
+            }
+        }
+
+        private static int getSample(final ByteBuffer buffer, final int position, final int signFlip) {
+            final int value = (buffer.get(position + 2) << 24)
+                    | ((buffer.get(position + 1) & 0xFF) << 16)
+                    | ((buffer.get(position) & 0xFF) << 8);
+            return (value ^ signFlip) >> 8;
+        }
+
+        private final int mSignFlip;
+    }
+
+    /**
+     * Signed or unsigned 24 bits PCM, big endian.
+     * @see Pcm24LeDecoder
+     */
+    static final class Pcm24BeDecoder extends SampleDecoder {
+
+        Pcm24BeDecoder(final boolean signed) {
+            mSignFlip = signed ? 0 : Integer.MIN_VALUE;
+        }
+
+        @Override
+        float decodeFloat(final ByteBuffer buffer, final int position) {
+            return Math.max(-1.0f, getSample(buffer, position, mSignFlip) / PCM24_MAX_FLOAT);
+        }
+
+        @Override
+        double decodeDouble(final ByteBuffer buffer, final int position) {
+            return Math.max(-1.0d, getSample(buffer, position, mSignFlip) / (double) PCM24_MAX);
+        }
+
+        @Override
+        void decodeFloats(final ByteBuffer buffer, final int position, final int stride, final float[] destination,
+                final int offset, final int count) {
+            final int signFlip = mSignFlip;
+            final int end = offset + count;
+            int sourcePosition = position;
+            for (int i = offset; i < end; i++, sourcePosition += stride) {
+                destination[i] = Math.max(-1.0f, getSample(buffer, sourcePosition, signFlip) / PCM24_MAX_FLOAT);
+            }
+        }
+
+        private static int getSample(final ByteBuffer buffer, final int position, final int signFlip) {
+            final int value = (buffer.get(position) << 24)
+                    | ((buffer.get(position + 1) & 0xFF) << 16)
+                    | ((buffer.get(position + 2) & 0xFF) << 8);
+            return (value ^ signFlip) >> 8;
+        }
+
+        private final int mSignFlip;
+    }
+
+    /**
+     * Signed or unsigned 32 bits PCM.
+     */
+    static final class Pcm32Decoder extends SampleDecoder {
+
+        Pcm32Decoder(final boolean signed) {
+            mSignFlip = signed ? 0 : Integer.MIN_VALUE;
+        }
+
+        @Override
+        float decodeFloat(final ByteBuffer buffer, final int position) {
+            return Math.max(-1.0f, (buffer.getInt(position) ^ mSignFlip) / MAX);
+        }
+
+        @Override
+        double decodeDouble(final ByteBuffer buffer, final int position) {
+            return Math.max(-1.0d, (buffer.getInt(position) ^ mSignFlip) / (double) Integer.MAX_VALUE);
+        }
+
+        @Override
+        void decodeFloats(final ByteBuffer buffer, final int position, final int stride, final float[] destination,
+                final int offset, final int count) {
+            final int signFlip = mSignFlip;
+            final int end = offset + count;
+            int sourcePosition = position;
+            for (int i = offset; i < end; i++, sourcePosition += stride) {
+                destination[i] = Math.max(-1.0f, (buffer.getInt(sourcePosition) ^ signFlip) / MAX);
+            }
+        }
+
+        private final int mSignFlip;
+        private static final float MAX = Integer.MAX_VALUE;
+    }
+
+    /**
+     * IEEE 754 32 bits float, already normalized.
+     */
+    static final class Float32Decoder extends SampleDecoder {
+
+        @Override
+        float decodeFloat(final ByteBuffer buffer, final int position) {
+            return buffer.getFloat(position);
+        }
+
+        @Override
+        double decodeDouble(final ByteBuffer buffer, final int position) {
+            return buffer.getFloat(position);
+        }
+
+        @Override
+        void decodeFloats(final ByteBuffer buffer, final int position, final int stride, final float[] destination,
+                final int offset, final int count) {
+            final int end = offset + count;
+            int sourcePosition = position;
+            for (int i = offset; i < end; i++, sourcePosition += stride) {
+                destination[i] = buffer.getFloat(sourcePosition);
+            }
+        }
+    }
+
+    /**
+     * IEEE 754 64 bits float, already normalized.
+     */
+    static final class Float64Decoder extends SampleDecoder {
+
+        @Override
+        float decodeFloat(final ByteBuffer buffer, final int position) {
+            return (float) buffer.getDouble(position);
+        }
+
+        @Override
+        double decodeDouble(final ByteBuffer buffer, final int position) {
+            return buffer.getDouble(position);
+        }
+
+        @Override
+        void decodeFloats(final ByteBuffer buffer, final int position, final int stride, final float[] destination,
+                final int offset, final int count) {
+            final int end = offset + count;
+            int sourcePosition = position;
+            for (int i = offset; i < end; i++, sourcePosition += stride) {
+                destination[i] = (float) buffer.getDouble(sourcePosition);
+            }
+        }
+    }
+
+    private static final int PCM24_BYTES = 3;
+    private static final int PCM24_MAX = (1 << 23) - 1;
+    private static final float PCM24_MAX_FLOAT = PCM24_MAX;
+}
@@ -22,6 +22,7 @@ import com.intel.audioviz.AudioFormat;
 import com.intel.audioviz.file.FileAudioTrackFactoryException;
 import com.intel.audioviz.file.IFileAudioTrackFactory;
 import com.intel.audioviz.file.RawFileAudioTrack;
+import com.intel.audioviz.file.RawFileAudioTrack.AccessMode;
 import com.intel.audioviz.file.ui.dialogs.AudioFormatDialog;
 
 /**
@@ -43,6 +44,12 @@ public class RawFileAudioTrackFactory implements IFileAudioTrackFactory {
 
     @Override
     public RawFileAudioTrack getAudioTrack(final File audioFile) throws FileAudioTrackFactoryException {
+        return getAudioTrack(audioFile, AccessMode.MEMORY_MAPPED);
+    }
+
+    @Override
+    public RawFileAudioTrack getAudioTrack(final File audioFile, final AccessMode accessMode)
+            throws FileAudioTrackFactoryException {
         /* Ask format details to the user */
         final AudioFormatDialog audioFormatDialog =
                 new AudioFormatDialog(
@@ -55,7 +62,8 @@ public class RawFileAudioTrackFactory implements IFileAudioTrackFactory {
             final long offset = audioFormatDialog.getOffset();
 
             try {
-                return new RawFileAudioTrack(audioFormat, audioFile, offset);
+                return new RawFileAudioTrack(audioFormat, audioFile, offset, audioFile.length() - offset,
+                        audioFormatDialog.isFollowGrowth(), accessMode);
             } catch (final Exception e) {
                 throw new FileAudioTrackFactoryException("Cannot instantiate RawFileAudioTrack", e);
             }
@@ -17,6 +17,7 @@ import org.eclipse.jface.window.IShellProvider;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.layout.GridData;
 import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Button;
 import org.eclipse.swt.widgets.Combo;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Control;
@@ -70,6 +71,14 @@ public class AudioFormatDialog extends Dialog {
         return mOffset;
     }
 
+    /**
+     * @return true if the user selected to follow the growth of the file. Always false when Dialog has been canceled
+     * or if Dialog has been created without offset support.
+     */
+    public boolean isFollowGrowth() {
+        return mFollowGrowth;
+    }
+
     @Override
     protected Control createDialogArea(final Composite parent) {
         final Composite container = (Composite) super.createDialogArea(parent);
@@ -112,6 +121,14 @@ public class AudioFormatDialog extends Dialog {
             mOffsetSpinner.setSelection(0);
             mOffsetSpinner.setMinimum(0);
             mOffsetSpinner.setMaximum(Integer.MAX_VALUE);
+
+            final Label followGrowthLabel = new Label(container, SWT.NONE);
+            followGrowthLabel.setLayoutData(new GridData(SWT.LEFT, SWT.CENTER, true, false));
+            followGrowthLabel.setText("Follow file growth:");
+
+            mFollowGrowthButton = new Button(container, SWT.CHECK);
+            mFollowGrowthButton.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false));
+            mFollowGrowthButton.setSelection(false);
         }
 
         final Label sampleFrequencyLabel = new Label(container, SWT.NONE);
@@ -153,6 +170,9 @@ public class AudioFormatDialog extends Dialog {
         if (mOffsetSpinner != null) {
             mOffset = mOffsetSpinner.getSelection();
         }
+        if (mFollowGrowthButton != null) {
+            mFollowGrowth = mFollowGrowthButton.getSelection();
+        }
 
         super.okPressed();
     }
@@ -170,6 +190,7 @@ public class AudioFormatDialog extends Dialog {
 
     private AudioFormat mAudioFormat = null;
     private int mOffset = 0;
+    private boolean mFollowGrowth = false;
     private final boolean mOffsetSupport;
     private final String mTitle;
 
@@ -177,6 +198,7 @@ public class AudioFormatDialog extends Dialog {
     private Combo mByteOrderCombo = null;
     private Combo mChannelCombo = null;
     private Spinner mOffsetSpinner = null;
+    private Button mFollowGrowthButton = null;
     private Combo mSampleFrequencyCombo = null;
 
 
@@ -24,12 +24,14 @@ import org.eclipse.swt.widgets.ToolBar;
 import org.eclipse.swt.widgets.ToolItem;
 
 import com.intel.audioviz.trace.AudioTraceController;
+import com.intel.audioviz.trace.IAudioTraceControllerListener;
 
 /**
  * AudioTraceControllerToolBar provides user control of an AudioTraceController which applies on a collection of
  * IAudioTraceControllerHolder.
  */
-public class AudioTraceControllerToolBar extends Composite implements IAudioTraceControllerHolder {
+public class AudioTraceControllerToolBar extends Composite
+implements IAudioTraceControllerHolder, IAudioTraceControllerListener {
 
     public AudioTraceControllerToolBar(final Composite parent, final int style) {
         super(parent, SWT.NONE);
@@ -39,6 +41,7 @@ public class AudioTraceControllerToolBar extends Composite implements IAudioTrac
         mAudioTraceControllerHolders = new HashSet<IAudioTraceControllerHolder>();
         mMasterAudioTraceController = new AudioTraceController();
         mCurrentAudioTraceController = mMasterAudioTraceController;
+        mCurrentAudioTraceController.add(this);
 
         final ToolBar toolBar = new ToolBar(this, style);
 
@@ -59,10 +62,10 @@ public class AudioTraceControllerToolBar extends Composite implements IAudioTrac
             public void widgetSelected(final SelectionEvent e) {
                 mLockButton.setImage(mLockButton.getSelection() ? mUnlockedImage : mLockedImage);
                 if (mLockButton.getSelection()) {
-                    mCurrentAudioTraceController = new AudioTraceController(mMasterAudioTraceController);
+                    setCurrentAudioTraceController(new AudioTraceController(mMasterAudioTraceController));
                     isUnlocked = true;
                 } else {
-                    mCurrentAudioTraceController = mMasterAudioTraceController;
+                    setCurrentAudioTraceController(mMasterAudioTraceController);
                     isUnlocked = false;
                 }
                 broadcastCurrentAudioTraceController();
@@ -113,6 +116,17 @@ public class AudioTraceControllerToolBar extends Composite implements IAudioTrac
                                                 * mCurrentAudioTraceController.getUnit()));
             }
         });
+
+        mFollowEndButton = new ToolItem(toolBar, SWT.CHECK);
+        mFollowEndButton
+        .setImage(AudioVizWidgetResources.getImageRegistry().get(AudioVizWidgetResources.IMG_XFOLLOWEND));
+        mFollowEndButton.setToolTipText("Follow the end of growing audio tracks");
+        mFollowEndButton.addListener(SWT.Selection, new Listener() {
+            @Override
+            public void handleEvent(final Event e) {
+                mCurrentAudioTraceController.setFollowEnd(mFollowEndButton.getSelection());
+            }
+        });
     }
 
     /**
@@ -158,7 +172,7 @@ public class AudioTraceControllerToolBar extends Composite implements IAudioTrac
         mMasterAudioTraceController = audioTraceController;
         mLockButton.setEnabled(true);
         if (!isUnlocked) {
-            mCurrentAudioTraceController = mMasterAudioTraceController;
+            setCurrentAudioTraceController(mMasterAudioTraceController);
             broadcastCurrentAudioTraceController();
         }
     }
@@ -173,6 +187,24 @@ public class AudioTraceControllerToolBar extends Composite implements IAudioTrac
         // Internally control the layout of widget required to render the channel.
     }
 
+    /**
+     * Keep the follow end button in line with the current AudioTraceController, which leaves the follow end mode when
+     * the trace is scrolled.
+     */
+    @Override
+    public void traceViewChanged() {
+        if (!isDisposed()) {
+            mFollowEndButton.setSelection(mCurrentAudioTraceController.isFollowEnd());
+        }
+    }
+
+    private void setCurrentAudioTraceController(final AudioTraceController audioTraceController) {
+        mCurrentAudioTraceController.remove(this);
+        mCurrentAudioTraceController = audioTraceController;
+        mCurrentAudioTraceController.add(this);
+        mFollowEndButton.setSelection(mCurrentAudioTraceController.isFollowEnd());
+    }
+
     private void broadcastCurrentAudioTraceController() {
         for (final IAudioTraceControllerHolder audioTraceControllerHolder : mAudioTraceControllerHolders) {
             audioTraceControllerHolder.setAudioTraceController(mCurrentAudioTraceController);
@@ -180,6 +212,7 @@ public class AudioTraceControllerToolBar extends Composite implements IAudioTrac
     }
 
     private final ToolItem mLockButton;
+    private final ToolItem mFollowEndButton;
     private AudioTraceController mMasterAudioTraceController;
     private AudioTraceController mCurrentAudioTraceController;
     private final HashSet<IAudioTraceControllerHolder> mAudioTraceControllerHolders;
@@ -17,20 +17,23 @@ import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Display;
 
 import com.intel.audioviz.AudioTrack;
+import com.intel.audioviz.IAudioTrackListener;
 import com.intel.audioviz.trace.AudioTrace;
 import com.intel.audioviz.trace.AudioTraceController;
 import com.intel.audioviz.trace.IAudioTraceListener;
 
 /**
- * An AudioTraceWidget is the base class for any AudioTrace widget.
+ * An AudioTraceWidget is the base class for any AudioTrace widget. The trace views of its AudioTraceController are
+ * applied again each time its AudioTrack grows.
  */
 public abstract class AudioTraceWidget extends Composite
-implements IAudioTraceControllerHolder, IAudioTraceListener, DisposeListener {
+implements IAudioTraceControllerHolder, IAudioTraceListener, IAudioTrackListener, DisposeListener {
 
     public AudioTraceWidget(final Composite parent, final int style) {
         super(parent, style);
         mAudioTraceController = new AudioTraceController();
         mAudioTrace = null;
+        mAudioTrack = null;
         addDisposeListener(this);
     }
 
@@ -55,6 +58,11 @@ implements IAudioTraceControllerHolder, IAudioTraceListener, DisposeListener {
             mAudioTraceController.remove(mAudioTrace);
             mAudioTrace.removeAudioTraceListener(this);
         }
+        if (mAudioTrack != null) {
+            mAudioTrack.removeAudioTrackListener(this);
+        }
+        mAudioTrack = audioTrack;
+        mAudioTrack.addAudioTrackListener(this);
         mAudioTrace = doSetAudioTrace(audioTrack, channel);
         if (mAudioTrace != null) {
             mAudioTraceController.add(mAudioTrace, getVisibleTraceSampleCount());
@@ -100,6 +108,21 @@ implements IAudioTraceControllerHolder, IAudioTraceListener, DisposeListener {
             mAudioTraceController.remove(mAudioTrace);
             mAudioTrace.removeAudioTraceListener(this);
         }
+        if (mAudioTrack != null) {
+            mAudioTrack.removeAudioTrackListener(this);
+        }
+    }
+
+    @Override
+    public final void audioTrackGrown(final AudioTrack audioTrack) {
+        Display.getDefault().asyncExec(new Runnable() {
+            @Override
+            public void run() {
+                if (!isDisposed()) {
+                    mAudioTraceController.refreshTraceViews();
+                }
+            }
+        });
     }
 
     @Override
@@ -137,4 +160,5 @@ implements IAudioTraceControllerHolder, IAudioTraceListener, DisposeListener {
 
     private AudioTraceController mAudioTraceController;
     private AudioTrace mAudioTrace;
+    private AudioTrack mAudioTrack;
 }
@@ -15,11 +15,14 @@ import javax.inject.Named;
 import org.eclipse.e4.core.contexts.ContextInjectionFactory;
 import org.eclipse.e4.core.contexts.IEclipseContext;
 import org.eclipse.e4.core.di.annotations.Optional;
+import org.eclipse.e4.ui.di.Focus;
+import org.eclipse.swt.SWT;
 import org.eclipse.swt.events.DisposeEvent;
 import org.eclipse.swt.events.DisposeListener;
 import org.eclipse.swt.widgets.Composite;
 
 import com.intel.audioviz.AudioTrack;
+import com.intel.audioviz.trace.AudioTrackWaveformTraceCacheScheduler;
 
 /**
  * AudioTrackPart provides the ability to display an AudioTrack using an AudioTrackWidget subclass. The AudioTrackWidget
@@ -27,6 +30,9 @@ import com.intel.audioviz.AudioTrack;
  * the Part's context, a DefaultAudioTrackWidget will be instantiated by the AudioTrackPart. The AudioTrackWidget
  * subclass is instantiated using the ContextInjectionFactory, which allows the AudioTrackWidget to interact with the
  * AudioTrackPart's IEclipseContext.
+ *
+ * The cache levels of the AudioTrack of the focused AudioTrackPart are computed first, and their computation is
+ * paused while the AudioTrackPart is hidden.
  */
 public class AudioTrackPart implements DisposeListener {
 
@@ -35,6 +41,7 @@ public class AudioTrackPart implements DisposeListener {
             @Optional @Named(AUDIO_TRACK_WIDGET_CLASS) final Class<? extends AudioTrackWidget> audioTrackWidgetClass) {
 
         mContext = context;
+        mAudioTrack = audioTrack;
 
         Class<? extends AudioTrackWidget> safeAudioTrackWidgetClass = audioTrackWidgetClass;
         if (safeAudioTrackWidgetClass == null) {
@@ -45,6 +52,16 @@ public class AudioTrackPart implements DisposeListener {
         mContext.set(AudioTrackWidget.class, mAudioTrackWidget);
 
         parent.addDisposeListener(this);
+
+        /* Hidden parts, such as parts of a stack behind the selected one, do not compete for the CPU and the disk */
+        final AudioTrackWaveformTraceCacheScheduler scheduler = AudioTrackWaveformTraceCacheScheduler.getDefault();
+        parent.addListener(SWT.Show, e -> scheduler.setPaused(audioTrack, false));
+        parent.addListener(SWT.Hide, e -> scheduler.setPaused(audioTrack, true));
+    }
+
+    @Focus
+    public void focus() {
+        AudioTrackWaveformTraceCacheScheduler.getDefault().setFocusedAudioTrack(mAudioTrack);
     }
 
     @Override
@@ -53,6 +70,7 @@ public class AudioTrackPart implements DisposeListener {
     }
 
     private IEclipseContext mContext;
+    private AudioTrack mAudioTrack;
     private DefaultAudioTrackWidget mAudioTrackWidget;
 
     public static final String AUDIO_TRACK_WIDGET_CLASS = "AudioTrackWidgetClass";
@@ -49,6 +49,9 @@ public final class AudioVizWidgetResources {
         reg.put(
                 IMG_XZOOMOUT,
                 ImageDescriptor.createFromURL(b.getEntry(IMG_XZOOMOUT)));
+        reg.put(
+                IMG_XFOLLOWEND,
+                ImageDescriptor.createFromURL(b.getEntry(IMG_XFOLLOWEND)));
 
         return reg;
     }
@@ -61,4 +64,5 @@ public final class AudioVizWidgetResources {
     public static final String IMG_XFULLRANGE = "icons/xfullrange.png";
     public static final String IMG_XZOOMIN = "icons/xzoomin.png";
     public static final String IMG_XZOOMOUT = "icons/xzoomout.png";
+    public static final String IMG_XFOLLOWEND = "icons/xfollowend.png";
 }
@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2017 Intel Corporation
+ *
+ * This Program is subject to the terms of the Eclipse Public License, v. 1.0.
+ * If a copy of the license was not distributed with this file,
+ * you can obtain one at <http://www.eclipse.org/legal/epl-v10.html>
+ *
+ * SPDX-License-Identifier: EPL-1.0
+ */
+
+package com.intel.audioviz.widgets.audiotrace.spectrogram;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.events.DisposeEvent;
+import org.eclipse.swt.events.MouseEvent;
+import org.eclipse.swt.events.MouseMoveListener;
+import org.eclipse.swt.events.MouseWheelListener;
+import org.eclipse.swt.events.PaintEvent;
+import org.eclipse.swt.events.PaintListener;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.ImageData;
+import org.eclipse.swt.graphics.PaletteData;
+import org.eclipse.swt.layout.FillLayout;
+import org.eclipse.swt.widgets.Canvas;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Layout;
+import org.eclipse.swt.widgets.Listener;
+
+import com.intel.audioviz.AudioTrack;
+import com.intel.audioviz.trace.AudioSpectrogramTrace;
+import com.intel.audioviz.trace.AudioTrace;
+import com.intel.audioviz.trace.SpectrogramTraceBuffer;
+import com.intel.audioviz.widgets.AudioTraceWidget;
+
+/**
+ * AudioSpectrogramTraceWidget renders an AudioSpectrogramTrace as an image: one pixel column per trace sample, the
+ * lowest frequencies at the bottom, levels mapped to a color map from DISPLAYED_MIN_LEVEL to DISPLAYED_MAX_LEVEL.
+ * Columns not computed yet are left black. The tiles cache of the trace is released once the widget is disposed.
+ *
+ * The trace is copied to a buffer and the image data reused from one refresh to the next, as long as the widget is
+ * not resized.
+ */
+public class AudioSpectrogramTraceWidget extends AudioTraceWidget
+implements Listener, MouseWheelListener, MouseMoveListener, PaintListener {
+
+    public AudioSpectrogramTraceWidget(final Composite parent, final int style) {
+        super(parent, style);
+        mAudioSpectrogramTrace = null;
+        mDisplayedTrace = new SpectrogramTraceBuffer();
+        mImageData = null;
+        mPixels = new int[0];
+        mCursorX = 0;
+
+        super.setLayout(new FillLayout());
+
+        mCanvas = new Canvas(this, SWT.DOUBLE_BUFFERED | SWT.NO_BACKGROUND);
+        mCanvas.addListener(SWT.Resize, this);
+        mCanvas.addPaintListener(this);
+        mCanvas.addMouseWheelListener(this);
+        mCanvas.addMouseMoveListener(this);
+    }
+
+    @Override
+    public void setLayout(final Layout layout) {
+        // Internally control the layout of widget required to render the AudioSpectrogramTrace.
+    }
+
+    @Override
+    public void update() {
+        super.update();
+
+        if (mAudioSpectrogramTrace != null) {
+            mAudioSpectrogramTrace.copyTraceTo(mDisplayedTrace);
+        } else {
+            mDisplayedTrace.clear();
+        }
+        mCanvas.redraw();
+    }
+
+    @Override
+    public void handleEvent(final Event event) {
+        if (mAudioSpectrogramTrace != null) {
+            getAudioTraceController().setVisibleTraceSampleCount(mAudioSpectrogramTrace,
+                    getVisibleTraceSampleCount());
+        }
+    }
+
+    @Override
+    public void paintControl(final PaintEvent e) {
+        final int width = mCanvas.getClientArea().width;
+        final int height = mCanvas.getClientArea().height;
+
+        e.gc.setBackground(mCanvas.getDisplay().getSystemColor(SWT.COLOR_BLACK));
+        e.gc.fillRectangle(0, 0, width, height);
+        if (width <= 0 || height <= 0 || mDisplayedTrace.getSize() == 0) {
+            return;
+        }
+
+        final int columnCount = Math.min(width, mDisplayedTrace.getSize());
+        if (mImageData == null || mImageData.width != columnCount || mImageData.height != height) {
+            mImageData = new ImageData(columnCount, height, IMAGE_DEPTH, IMAGE_PALETTE);
+            mPixels = new int[columnCount];
+        }
+
+        final int binCount = mDisplayedTrace.getBinCount();
+        for (int y = 0; y < height; y++) {
+            /* Lowest frequencies at the bottom */
+            final int bin = (int) ((long) (height - 1 - y) * binCount / height);
+            for (int x = 0; x < columnCount; x++) {
+                mPixels[x] = getColor(mDisplayedTrace.getLevel(x, bin));
+            }
+            mImageData.setPixels(0, y, columnCount, mPixels, 0);
+        }
+
+        final Image image = new Image(mCanvas.getDisplay(), mImageData);
+        try {
+            e.gc.drawImage(image, 0, 0);
+        } finally {
+            image.dispose();
+        }
+    }
+
+    @Override
+    public void mouseScrolled(final MouseEvent mouseEvent) {
+        if ((mouseEvent.stateMask & SWT.CONTROL) == SWT.CONTROL) {
+            final long sampleIndex = getAudioTraceController().getAudioSampleIndex()
+                    + (long) Math.floor(mCursorX * getAudioTraceController().getUnit());
+
+            if (mouseEvent.count > 0) {
+                getAudioTraceController().zoomIn(sampleIndex);
+            } else if (mouseEvent.count < 0) {
+                getAudioTraceController().zoomOut(sampleIndex);
+            }
+        }
+    }
+
+    @Override
+    public void mouseMove(final MouseEvent mouseEvent) {
+        mCursorX = mouseEvent.x;
+    }
+
+    @Override
+    public void widgetDisposed(final DisposeEvent e) {
+        super.widgetDisposed(e);
+        if (mAudioSpectrogramTrace != null) {
+            /* Release the cached tiles */
+            mAudioSpectrogramTrace.dispose();
+        }
+    }
+
+    @Override
+    protected int getVisibleTraceSampleCount() {
+        if (mAudioSpectrogramTrace != null) {
+            return Math.max(0, mCanvas.getClientArea().width);
+        } else {
+            return 0;
+        }
+    }
+
+    @Override
+    protected String getAudioTraceWidgetFriendlyName() {
+        return AUDIO_TRACE_WIDGET_FRIENDLY_NAME;
+    }
+
+    @Override
+    protected AudioTrace doSetAudioTrace(final AudioTrack audioTrack, final int channel) {
+        if (mAudioSpectrogramTrace != null) {
+            /* Release the cached tiles */
+            mAudioSpectrogramTrace.dispose();
+        }
+        mAudioSpectrogramTrace = audioTrack.getAudioSpectrogramTrace(channel);
+        mDisplayedTrace.clear();
+        return mAudioSpectrogramTrace;
+    }
+
+    /**
+     * @param level a level in dBFS, NaN if not computed yet
+     * @return the pixel value of the level: from black for the lowest levels, through blue and red, to yellow for the
+     * highest ones
+     */
+    private static int getColor(final float level) {
+        if (Float.isNaN(level)) {
+            return 0;
+        }
+        final float position = Math.max(0, Math.min(1,
+                (level - DISPLAYED_MIN_LEVEL) / (DISPLAYED_MAX_LEVEL - DISPLAYED_MIN_LEVEL)));
+        final int red = toComponent(position * 3 - 1);
+        final int green = toComponent(position * 3 - 2);
+        final int blue = toComponent(position < 1f / 3 ? position * 3 : 2 - position * 3);
+        return red << RED_SHIFT | green << GREEN_SHIFT | blue;
+    }
+
+    private static int toComponent(final float value) {
+        return (int) (Math.max(0, Math.min(1, value)) * COMPONENT_MAX);
+    }
+
+    private AudioSpectrogramTrace mAudioSpectrogramTrace;
+    /**
+     * The trace being displayed, only accessed by the UI thread
+     */
+    private final SpectrogramTraceBuffer mDisplayedTrace;
+    private final Canvas mCanvas;
+    /**
+     * Reused while the size of the displayed image does not change
+     */
+    private ImageData mImageData;
+    private int[] mPixels;
+    private int mCursorX;
+
+    /**
+     * Displayed levels range in dBFS
+     */
+    private static final float DISPLAYED_MIN_LEVEL = -100.0f;
+    private static final float DISPLAYED_MAX_LEVEL = 0.0f;
+
+    private static final int IMAGE_DEPTH = 24;
+    private static final int RED_SHIFT = 16;
+    private static final int GREEN_SHIFT = 8;
+    private static final int COMPONENT_MAX = 0xFF;
+    private static final PaletteData IMAGE_PALETTE = new PaletteData(COMPONENT_MAX << RED_SHIFT,
+            COMPONENT_MAX << GREEN_SHIFT, COMPONENT_MAX);
+
+    private static final String AUDIO_TRACE_WIDGET_FRIENDLY_NAME = "Spectrogram";
+}
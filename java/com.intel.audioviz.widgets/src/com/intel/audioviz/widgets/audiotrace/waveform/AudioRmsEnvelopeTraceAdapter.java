@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2017 Intel Corporation
+ *
+ * This Program is subject to the terms of the Eclipse Public License, v. 1.0.
+ * If a copy of the license was not distributed with this file,
+ * you can obtain one at <http://www.eclipse.org/legal/epl-v10.html>
+ *
+ * SPDX-License-Identifier: EPL-1.0
+ */
+package com.intel.audioviz.widgets.audiotrace.waveform;
+
+import org.eclipse.nebula.visualization.xygraph.dataprovider.ISample;
+
+import com.intel.audioviz.trace.AudioRmsEnvelopeTrace;
+import com.intel.audioviz.trace.WaveformTraceBuffer;
+
+/**
+ * AudioRmsEnvelopeTraceAdapter exposes the RMS envelope of an AudioRmsEnvelopeTrace as IDataProvider: the Trace is a
+ * succession of one point for the opposite of the root mean square and one point for the root mean square per
+ * WaveformWindow, drawn over the waveform. There is no envelope for one audio sample per trace sample.
+ */
+public class AudioRmsEnvelopeTraceAdapter extends AudioWaveformTraceAdapter {
+
+    public AudioRmsEnvelopeTraceAdapter(final AudioRmsEnvelopeTrace audioRmsEnvelopeTrace) {
+        super(audioRmsEnvelopeTrace);
+    }
+
+    @Override
+    public int getSize() {
+        final WaveformTraceBuffer displayedTrace = getDisplayedTrace();
+        if (displayedTrace.getAudioSamplePerTraceSample() <= 1 || !displayedTrace.hasSignalStatistics()) {
+            return 0;
+        }
+        return displayedTrace.getSize() * 2;
+    }
+
+    /**
+     * @note The returned ISample is only valid until the trace is refreshed.
+     */
+    @Override
+    public ISample getSample(final int index) {
+        final AudioTraceSample sample = getPooledSample(index);
+        final WaveformTraceBuffer displayedTrace = getDisplayedTrace();
+
+        final int traceSample = index / 2;
+        final float rms = displayedTrace.getRms(traceSample);
+        return sample.set(
+                displayedTrace.getAudioSampleIndex() + traceSample * displayedTrace.getAudioSamplePerTraceSample(),
+                index % 2 == 0 ? -rms : rms);
+    }
+}
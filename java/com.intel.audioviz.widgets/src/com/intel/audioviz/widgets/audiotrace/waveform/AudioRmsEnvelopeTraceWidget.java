@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2017 Intel Corporation
+ *
+ * This Program is subject to the terms of the Eclipse Public License, v. 1.0.
+ * If a copy of the license was not distributed with this file,
+ * you can obtain one at <http://www.eclipse.org/legal/epl-v10.html>
+ *
+ * SPDX-License-Identifier: EPL-1.0
+ */
+
+package com.intel.audioviz.widgets.audiotrace.waveform;
+
+import org.eclipse.nebula.visualization.xygraph.figures.Trace;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Event;
+
+import com.intel.audioviz.AudioTrack;
+import com.intel.audioviz.trace.AudioRmsEnvelopeTrace;
+import com.intel.audioviz.trace.AudioTrace;
+import com.intel.audioviz.trace.AudioWaveformTrace;
+
+/**
+ * AudioRmsEnvelopeTraceWidget renders the waveform of an AudioRmsEnvelopeTrace like AudioWaveformTraceWidget, with
+ * its RMS envelope drawn over it in another color.
+ */
+public class AudioRmsEnvelopeTraceWidget extends AudioWaveformTraceWidget {
+
+    public AudioRmsEnvelopeTraceWidget(final Composite parent, final int style) {
+        super(parent, style);
+        mGraphRmsEnvelopeTrace = null;
+    }
+
+    @Override
+    public void update() {
+        super.update();
+        if (mGraphRmsEnvelopeTrace != null) {
+            mGraphRmsEnvelopeTrace.setVisible(true);
+        }
+    }
+
+    @Override
+    public void handleEvent(final Event event) {
+        if (mGraphRmsEnvelopeTrace != null) {
+            mGraphRmsEnvelopeTrace.setVisible(false);
+        }
+        super.handleEvent(event);
+    }
+
+    @Override
+    protected String getAudioTraceWidgetFriendlyName() {
+        return AUDIO_TRACE_WIDGET_FRIENDLY_NAME;
+    }
+
+    @Override
+    protected AudioWaveformTrace newAudioWaveformTrace(final AudioTrack audioTrack, final int channel) {
+        return audioTrack.getAudioRmsEnvelopeTrace(channel);
+    }
+
+    @Override
+    protected AudioTrace doSetAudioTrace(final AudioTrack audioTrack, final int channel) {
+        if (mGraphRmsEnvelopeTrace != null) {
+            getGraph().removeTrace(mGraphRmsEnvelopeTrace);
+            mGraphRmsEnvelopeTrace = null;
+        }
+
+        final AudioTrace audioTrace = super.doSetAudioTrace(audioTrack, channel);
+        if (audioTrace instanceof AudioRmsEnvelopeTrace) {
+            mGraphRmsEnvelopeTrace = new Trace(
+                    "",
+                    getGraph().getPrimaryXAxis(),
+                    getGraph().getPrimaryYAxis(),
+                    new AudioRmsEnvelopeTraceAdapter((AudioRmsEnvelopeTrace) audioTrace));
+            mGraphRmsEnvelopeTrace.setAntiAliasing(false);
+            mGraphRmsEnvelopeTrace.setLineWidth(1);
+            /** @todo Consider add a preference for trace color */
+            mGraphRmsEnvelopeTrace.setTraceColor(Display.getCurrent().getSystemColor(SWT.COLOR_DARK_CYAN));
+            getGraph().addTrace(mGraphRmsEnvelopeTrace);
+        }
+        return audioTrace;
+    }
+
+    private Trace mGraphRmsEnvelopeTrace;
+
+    private static final String AUDIO_TRACE_WIDGET_FRIENDLY_NAME = "RMS Envelope";
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2017 Intel Corporation
+ *
+ * This Program is subject to the terms of the Eclipse Public License, v. 1.0.
+ * If a copy of the license was not distributed with this file,
+ * you can obtain one at <http://www.eclipse.org/legal/epl-v10.html>
+ *
+ * SPDX-License-Identifier: EPL-1.0
+ */
+package com.intel.audioviz.widgets.audiotrace.waveform;
+
+import org.eclipse.nebula.visualization.xygraph.dataprovider.ISample;
+
+/**
+ * A mutable ISample without error, reused from one trace refresh to the next instead of allocating a Sample per point.
+ */
+final class AudioTraceSample implements ISample {
+
+    /**
+     * @param xValue the audio sample index
+     * @param yValue the audio sample value
+     * @return this sample
+     */
+    AudioTraceSample set(final double xValue, final double yValue) {
+        mXValue = xValue;
+        mYValue = yValue;
+        return this;
+    }
+
+    @Override
+    public double getXValue() {
+        return mXValue;
+    }
+
+    @Override
+    public double getYValue() {
+        return mYValue;
+    }
+
+    @Override
+    public double getXMinusError() {
+        return 0;
+    }
+
+    @Override
+    public double getXPlusError() {
+        return 0;
+    }
+
+    @Override
+    public double getYMinusError() {
+        return 0;
+    }
+
+    @Override
+    public double getYPlusError() {
+        return 0;
+    }
+
+    @Override
+    public String getInfo() {
+        return "";
+    }
+
+    private double mXValue;
+    private double mYValue;
+}
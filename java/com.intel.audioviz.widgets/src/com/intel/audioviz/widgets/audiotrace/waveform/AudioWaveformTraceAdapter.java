@@ -14,19 +14,22 @@ import java.util.HashSet;
 import org.eclipse.nebula.visualization.xygraph.dataprovider.IDataProvider;
 import org.eclipse.nebula.visualization.xygraph.dataprovider.IDataProviderListener;
 import org.eclipse.nebula.visualization.xygraph.dataprovider.ISample;
-import org.eclipse.nebula.visualization.xygraph.dataprovider.Sample;
 import org.eclipse.nebula.visualization.xygraph.linearscale.Range;
 import org.eclipse.swt.widgets.Display;
 
 import com.intel.audioviz.trace.AudioTrace;
-import com.intel.audioviz.trace.AudioTraceView;
 import com.intel.audioviz.trace.AudioWaveformTrace;
 import com.intel.audioviz.trace.IAudioTraceListener;
-import com.intel.audioviz.trace.WaveformWindow;
+import com.intel.audioviz.trace.WaveformTraceBuffer;
 
 /**
  * AudioWaveformTraceAdapter exposes an AudioWaveformTrace as nebula visualization.xygraph.dataprovider.IDataProvider to
  * render the AudioWaveformTrace as a XYGraph Trace.
+ *
+ * The trace is double buffered: each time the AudioWaveformTrace changes, it is copied to the pending buffer, which is
+ * swapped with the displayed buffer in the UI thread. The displayed buffer is only accessed by the UI thread, through
+ * a pool of AudioTraceSample: the pool and both buffers are reused, so that refreshing the trace allocates nothing
+ * once they are large enough.
  */
 public class AudioWaveformTraceAdapter implements IDataProvider, IAudioTraceListener {
 
@@ -36,29 +39,54 @@ public class AudioWaveformTraceAdapter implements IDataProvider, IAudioTraceList
         }
 
         mAudioWaveformTrace = audioWaveformTrace;
-        mAudioTraceView = null;
-        mTrace = new Sample[0];
+        mPendingTrace = new WaveformTraceBuffer();
+        mDisplayedTrace = new WaveformTraceBuffer();
+        mIsPendingTraceChanged = false;
+        mSamples = new AudioTraceSample[0];
         mListeners = new HashSet<IDataProviderListener>();
+        mNotifyListeners = () -> notifyListeners();
         audioWaveformTrace.addAudioTraceListener(this);
     }
 
+    /**
+     * For one audio sample per trace sample, points are audio samples values. For more than one audio samples per
+     * trace sample, the Trace is a succession of one point for minimum audio sample value and one point for maximum
+     * audio sample value per WaveformWindow.
+     */
     @Override
     public int getSize() {
-        return mTrace.length;
+        if (mDisplayedTrace.getAudioSamplePerTraceSample() == 1) {
+            return mDisplayedTrace.getSize();
+        } else {
+            return mDisplayedTrace.getSize() * 2;
+        }
     }
 
+    /**
+     * @note The returned ISample is only valid until the trace is refreshed.
+     */
     @Override
     public ISample getSample(final int index) {
-        return mTrace[index];
+        final AudioTraceSample sample = getPooledSample(index);
+
+        final long audioSamplePerTraceSample = mDisplayedTrace.getAudioSamplePerTraceSample();
+        if (audioSamplePerTraceSample == 1) {
+            return sample.set(mDisplayedTrace.getAudioSampleIndex() + index, mDisplayedTrace.getMin(index));
+        } else {
+            final int traceSample = index / 2;
+            return sample.set(
+                    mDisplayedTrace.getAudioSampleIndex() + traceSample * audioSamplePerTraceSample,
+                    index % 2 == 0 ? mDisplayedTrace.getMin(traceSample) : mDisplayedTrace.getMax(traceSample));
+        }
     }
 
     @Override
     public Range getXDataMinMax() {
-        if (mAudioTraceView != null && mAudioTraceView.isValid()) {
+        if (mDisplayedTrace.getAudioSamplePerTraceSample() > 0) {
             return new Range(
-                    mAudioTraceView.getAudioSampleIndex(),
-                    mAudioTraceView.getAudioSampleIndex()
-                    + Math.max(0, (mTrace.length - 1) * mAudioTraceView.getAudioSamplePerTraceSample()));
+                    mDisplayedTrace.getAudioSampleIndex(),
+                    mDisplayedTrace.getAudioSampleIndex()
+                    + Math.max(0, (getSize() - 1) * mDisplayedTrace.getAudioSamplePerTraceSample()));
 
         }
         return null;
@@ -86,56 +114,67 @@ public class AudioWaveformTraceAdapter implements IDataProvider, IAudioTraceList
 
     @Override
     public synchronized void traceChanged(final AudioTrace audioTrace) {
-        synchronized (mAudioWaveformTrace) {
-            mAudioTraceView = mAudioWaveformTrace.getAudioTraceView();
-            /*
-             * For one audio sample per trace sample, just create a Trace where points are audio samples values. For
-             * more than one audio samples per trace sample, the Trace is a succession of one point for minimum audio
-             * sample value and one point for maximum audio sample value per WaveformWindow.
-             */
-            if (mAudioTraceView.getAudioSamplePerTraceSample() == 1) {
-                final float[] audioSampleTrace = mAudioWaveformTrace.getAudioSampleTrace();
-                mTrace = new Sample[audioSampleTrace.length];
-                for (int i = 0; i < mTrace.length; i++) {
-                    mTrace[i] = new Sample(
-                            mAudioTraceView.getAudioSampleIndex() + i,
-                            audioSampleTrace[i]);
-                }
-            } else if (mAudioTraceView.getAudioSamplePerTraceSample() > 1) {
-                final WaveformWindow[] waveformWindowTrace = mAudioWaveformTrace.getWaveformWindowTrace();
-                mTrace = new Sample[waveformWindowTrace.length * 2];
-                for (int i = 0; i < mAudioWaveformTrace.getWaveformWindowTrace().length; i++) {
-                    mTrace[i * 2] = new Sample(
-                            mAudioTraceView.getAudioSampleIndex() + i * mAudioTraceView.getAudioSamplePerTraceSample(),
-                            waveformWindowTrace[i].getMin());
-
-                    mTrace[i * 2 + 1] = new Sample(
-                            mAudioTraceView.getAudioSampleIndex() + i * mAudioTraceView.getAudioSamplePerTraceSample(),
-                            waveformWindowTrace[i].getMax());
-                }
-            } else {
-                mTrace = new Sample[0];
-            }
+        mAudioWaveformTrace.copyTraceTo(mPendingTrace);
+        mIsPendingTraceChanged = true;
+
+        Display.getDefault().asyncExec(mNotifyListeners);
+    }
 
-            Display.getDefault().asyncExec(new Runnable() {
-                @Override
-                public void run() {
-                    notifyListeners();
-                }
-            });
+    /**
+     * @return the trace exposed to the XYGraph
+     * @warning only to be called from the UI thread
+     */
+    WaveformTraceBuffer getDisplayedTrace() {
+        return mDisplayedTrace;
+    }
+
+    /**
+     * @param index the index of a point of the displayed trace
+     * @return the reusable ISample of the point, the pool growing to getSize() if needed
+     * @warning only to be called from the UI thread
+     */
+    AudioTraceSample getPooledSample(final int index) {
+        if (index < 0 || index >= getSize()) {
+            throw new IndexOutOfBoundsException();
         }
+        if (mSamples.length < getSize()) {
+            mSamples = new AudioTraceSample[getSize()];
+            for (int i = 0; i < mSamples.length; i++) {
+                mSamples[i] = new AudioTraceSample();
+            }
+        }
+        return mSamples[index];
     }
 
     private synchronized void notifyListeners() {
+        /* In the UI thread: display the last pending trace, if not done yet */
+        if (mIsPendingTraceChanged) {
+            final WaveformTraceBuffer displayedTrace = mPendingTrace;
+            mPendingTrace = mDisplayedTrace;
+            mDisplayedTrace = displayedTrace;
+            mIsPendingTraceChanged = false;
+        }
         for (final IDataProviderListener listener : mListeners) {
             listener.dataChanged(AudioWaveformTraceAdapter.this);
         }
     }
 
-    private AudioTraceView mAudioTraceView;
     private final AudioWaveformTrace mAudioWaveformTrace;
-    private Sample[] mTrace;
+    /**
+     * The last trace copied from the AudioWaveformTrace, guarded by this
+     */
+    private WaveformTraceBuffer mPendingTrace;
+    private boolean mIsPendingTraceChanged;
+    /**
+     * The trace exposed to the XYGraph, only accessed by the UI thread, and swapped under this lock
+     */
+    private WaveformTraceBuffer mDisplayedTrace;
+    /**
+     * One reusable ISample per point of the displayed trace
+     */
+    private AudioTraceSample[] mSamples;
     private final HashSet<IDataProviderListener> mListeners;
+    private final Runnable mNotifyListeners;
 
     private static final Range NORMALIZED_RANGE = new Range(-1.0d, 1.0d);
 }
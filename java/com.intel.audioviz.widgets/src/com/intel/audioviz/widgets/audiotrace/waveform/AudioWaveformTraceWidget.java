@@ -227,7 +227,7 @@ implements Listener, MouseWheelListener, MouseMotionListener, FocusListener {
 
     @Override
     protected AudioTrace doSetAudioTrace(final AudioTrack audioTrack, final int channel) {
-        final AudioWaveformTrace audioWaveformTrace = audioTrack.getAudioWaveformTrace(channel);
+        final AudioWaveformTrace audioWaveformTrace = newAudioWaveformTrace(audioTrack, channel);
 
         if (mAudioWaveformTrace != null) {
             mAudioWaveformTrace = null;
@@ -255,6 +255,23 @@ implements Listener, MouseWheelListener, MouseMotionListener, FocusListener {
         return mAudioWaveformTrace;
     }
 
+    /**
+     * Instantiate the AudioWaveformTrace rendered by the widget. Subclasses may render a specialized one.
+     * @param audioTrack The audio track
+     * @param channel The audio channel
+     * @return the AudioWaveformTrace
+     */
+    protected AudioWaveformTrace newAudioWaveformTrace(final AudioTrack audioTrack, final int channel) {
+        return audioTrack.getAudioWaveformTrace(channel);
+    }
+
+    /**
+     * @return the XYGraph rendering the AudioWaveformTrace, to which subclasses may add traces
+     */
+    protected XYGraph getGraph() {
+        return mGraph;
+    }
+
     private void updateCursor() {
         deleteCursor();
         if (mGraphCanvas.isFocusControl()) {
@@ -12,8 +12,11 @@ package com.intel.audioviz;
 
 import java.lang.ref.WeakReference;
 import java.security.InvalidParameterException;
+import java.util.ArrayList;
 import java.util.HashSet;
 
+import com.intel.audioviz.trace.AudioRmsEnvelopeTrace;
+import com.intel.audioviz.trace.AudioSpectrogramTrace;
 import com.intel.audioviz.trace.AudioTrace;
 import com.intel.audioviz.trace.AudioTrackWaveformTraceCacheProvider;
 import com.intel.audioviz.trace.AudioWaveformTrace;
@@ -21,6 +24,9 @@ import com.intel.audioviz.trace.AudioWaveformTrace;
 /**
  * An AudioTrack is Audio Data having a given AudioFormat and providing access
  * to Audio data through a SampleProvider.
+ * The audio samples of an AudioTrack may grow, for instance while the file it reads is still being recorded: audio
+ * samples are then only appended, and subclasses call notifyAudioTrackGrown() once they are exposed by the
+ * SampleProvider.
  */
 public abstract class AudioTrack {
 
@@ -29,8 +35,9 @@ public abstract class AudioTrack {
      */
     public AudioTrack(final AudioFormat audioFormat) {
         mAudioFormat = audioFormat;
-        mAudioTrackTraceCacheWeakReference = null;
+        mAudioTrackTraceCache = null;
         mAudioTraces = new HashSet<WeakReference<AudioTrace>>();
+        mAudioTrackListeners = new HashSet<IAudioTrackListener>();
         mIsDisposed = false;
     }
 
@@ -58,24 +65,113 @@ public abstract class AudioTrack {
     }
 
     /**
-     * @return The AudioTrackTraceCache
+     * @param channel The channel number the Spectrogram Trace is about
+     * @return The Spectrogram Trace
      */
-    public synchronized AudioTrackWaveformTraceCacheProvider getAudioTrackTraceCache() {
+    public synchronized AudioSpectrogramTrace getAudioSpectrogramTrace(final int channel) {
+        if (channel < 0 || channel >= mAudioFormat.getChannelCount()) {
+            throw new InvalidParameterException("Invalid channel number");
+        }
+        if (mIsDisposed) {
+            throw new AudioVizException("AudioTrack is disposed");
+        }
+        final AudioSpectrogramTrace audioSpectrogramTrace = new AudioSpectrogramTrace(this, channel);
+        mAudioTraces.add(new WeakReference<AudioTrace>(audioSpectrogramTrace));
+        return audioSpectrogramTrace;
+    }
+
+    /**
+     * @param channel The channel number the RMS envelope Trace is about
+     * @return The RMS envelope Trace
+     */
+    public synchronized AudioRmsEnvelopeTrace getAudioRmsEnvelopeTrace(final int channel) {
+        if (channel < 0 || channel >= mAudioFormat.getChannelCount()) {
+            throw new InvalidParameterException("Invalid channel number");
+        }
         if (mIsDisposed) {
             throw new AudioVizException("AudioTrack is disposed");
         }
-        AudioTrackWaveformTraceCacheProvider audioTrackTraceCache =
-                mAudioTrackTraceCacheWeakReference == null ? null : mAudioTrackTraceCacheWeakReference.get();
+        final AudioRmsEnvelopeTrace audioRmsEnvelopeTrace = new AudioRmsEnvelopeTrace(this, channel);
+        mAudioTraces.add(new WeakReference<AudioTrace>(audioRmsEnvelopeTrace));
+        return audioRmsEnvelopeTrace;
+    }
 
-        if (audioTrackTraceCache == null) {
-            audioTrackTraceCache = new AudioTrackWaveformTraceCacheProvider(this);
+    /**
+     * @return The AudioTrackTraceCache. A new one is instantiated if the previous one has been released by the
+     * AudioTrackWaveformTraceCacheManager.
+     */
+    public synchronized AudioTrackWaveformTraceCacheProvider getAudioTrackTraceCache() {
+        if (mIsDisposed) {
+            throw new AudioVizException("AudioTrack is disposed");
+        }
+        if (mAudioTrackTraceCache == null || mAudioTrackTraceCache.isReleased()) {
+            if (mAudioTrackTraceCache != null) {
+                mAudioTrackTraceCache.dispose();
+            }
+            mAudioTrackTraceCache = newAudioTrackTraceCache();
             /* Start cache initialization */
-            audioTrackTraceCache.init();
+            mAudioTrackTraceCache.init();
+        }
+        return mAudioTrackTraceCache;
+    }
 
-            mAudioTrackTraceCacheWeakReference =
-                    new WeakReference<AudioTrackWaveformTraceCacheProvider>(audioTrackTraceCache);
+    /**
+     * Instantiate the AudioTrackTraceCache of the AudioTrack. Subclasses may override this method to tune how the
+     * cache is computed.
+     * @return a new, not yet initialized, AudioTrackTraceCache
+     */
+    protected AudioTrackWaveformTraceCacheProvider newAudioTrackTraceCache() {
+        return new AudioTrackWaveformTraceCacheProvider(this);
+    }
+
+    /**
+     * Add a listener to the AudioTrack. The listener will be notified each time audio samples are appended to the
+     * AudioTrack.
+     * @param audioTrackListener The listener to be registered
+     * @return true if the listener was not yet registered, false otherwise
+     */
+    public boolean addAudioTrackListener(final IAudioTrackListener audioTrackListener) {
+        synchronized (mAudioTrackListeners) {
+            return mAudioTrackListeners.add(audioTrackListener);
+        }
+    }
+
+    /**
+     * Remove a listener from the AudioTrack.
+     * @param audioTrackListener The listener to be unregistered
+     * @return true if the listener was registered before this call
+     */
+    public boolean removeAudioTrackListener(final IAudioTrackListener audioTrackListener) {
+        synchronized (mAudioTrackListeners) {
+            return mAudioTrackListeners.remove(audioTrackListener);
+        }
+    }
+
+    /**
+     * Called by subclasses once audio samples appended to the AudioTrack are exposed by the SampleProvider. The
+     * waveform cache levels are extended to the appended audio samples only, then listeners are notified.
+     * @note Called by the thread which has detected that the AudioTrack has grown. Notifications of an AudioTrack
+     * shall not be concurrent.
+     */
+    protected final void notifyAudioTrackGrown() {
+        final AudioTrackWaveformTraceCacheProvider audioTrackTraceCache;
+        synchronized (this) {
+            if (mIsDisposed) {
+                return;
+            }
+            audioTrackTraceCache = mAudioTrackTraceCache;
+        }
+        if (audioTrackTraceCache != null) {
+            audioTrackTraceCache.extend();
+        }
+
+        final ArrayList<IAudioTrackListener> audioTrackListeners;
+        synchronized (mAudioTrackListeners) {
+            audioTrackListeners = new ArrayList<IAudioTrackListener>(mAudioTrackListeners);
+        }
+        for (final IAudioTrackListener audioTrackListener : audioTrackListeners) {
+            audioTrackListener.audioTrackGrown(this);
         }
-        return audioTrackTraceCache;
     }
 
     /**
@@ -89,10 +185,9 @@ public abstract class AudioTrack {
                     audioTrace.dispose();
                 }
             }
-            final AudioTrackWaveformTraceCacheProvider audioTrackTraceCache =
-                    mAudioTrackTraceCacheWeakReference == null ? null : mAudioTrackTraceCacheWeakReference.get();
-            if (audioTrackTraceCache != null) {
-                audioTrackTraceCache.dispose();
+            if (mAudioTrackTraceCache != null) {
+                mAudioTrackTraceCache.dispose();
+                mAudioTrackTraceCache = null;
             }
             mIsDisposed = true;
         }
@@ -107,5 +202,9 @@ public abstract class AudioTrack {
     private boolean mIsDisposed;
     private final AudioFormat mAudioFormat;
     private final HashSet<WeakReference<AudioTrace>> mAudioTraces;
-    private WeakReference<AudioTrackWaveformTraceCacheProvider> mAudioTrackTraceCacheWeakReference;
+    private final HashSet<IAudioTrackListener> mAudioTrackListeners;
+    /**
+     * Held until the AudioTrack is disposed: the AudioTrackWaveformTraceCacheManager bounds the memory of cache levels
+     */
+    private AudioTrackWaveformTraceCacheProvider mAudioTrackTraceCache;
 }
@@ -0,0 +1,25 @@
+/*
+ * Copyright (C) 2017 Intel Corporation
+ *
+ * This Program is subject to the terms of the Eclipse Public License, v. 1.0.
+ * If a copy of the license was not distributed with this file,
+ * you can obtain one at <http://www.eclipse.org/legal/epl-v10.html>
+ *
+ * SPDX-License-Identifier: EPL-1.0
+ */
+
+package com.intel.audioviz;
+
+/**
+ * An IAudioTrackListener is notified each time audio samples are appended to an AudioTrack, for instance while the
+ * file it reads is still being recorded.
+ */
+public interface IAudioTrackListener {
+    /**
+     * Called each time audio samples have been appended to an AudioTrack. The waveform cache levels of the
+     * AudioTrack have already been extended to them. Called from the thread which has detected that the AudioTrack
+     * has grown: it shall return quickly.
+     * @param audioTrack The AudioTrack which has grown
+     */
+    void audioTrackGrown(AudioTrack audioTrack);
+}
@@ -10,6 +10,9 @@
 
 package com.intel.audioviz;
 
+import java.nio.BufferOverflowException;
+import java.nio.FloatBuffer;
+
 /**
  * An Interface to get normalized Audio Samples from Audio data.
  * @note AudioViz is designed with the assumption that all channel(s) of an AudioTrack have
@@ -22,6 +25,23 @@ public interface ISampleProvider {
      */
     long getSamplesPerChannel();
 
+    /**
+     * @return The maximum number of the last Audio Samples per channel kept by the provider, Long.MAX_VALUE if all
+     * of them are kept. Audio Samples older than this history are expired and read as silence.
+     */
+    default long getHistorySize() {
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Hint that a sequential reader, such as the computation of the waveform cache levels, has read all the Audio
+     * Frames before an index and reads the following ones next. Providers reading a slow device may start loading
+     * the following Audio Frames on another thread. The default implementation ignores the hint.
+     * @param index The index of the next Audio Frame the reader reads
+     */
+    default void readAhead(final long index) {
+    }
+
     /**
      * @param channel The channel number
      * @param index The Audio Sample index
@@ -35,4 +55,66 @@ public interface ISampleProvider {
      * @return the Audio Sample normalized as float
      */
     float getSampleAsFloat(int channel, long index);
+
+    /**
+     * Read consecutive Audio Samples of a channel normalized as float.
+     * Implementations are expected to override this default implementation with a loop
+     * which avoids the per sample cost of getSampleAsFloat().
+     * @param channel The channel number
+     * @param index The index of the first Audio Sample to read
+     * @param destination The array receiving the Audio Samples
+     * @param offset The index in destination of the first Audio Sample read
+     * @param count The number of Audio Samples to read
+     */
+    default void getSamplesAsFloat(
+            final int channel, final long index, final float[] destination, final int offset, final int count) {
+        for (int i = 0; i < count; i++) {
+            destination[offset + i] = getSampleAsFloat(channel, index + i);
+        }
+    }
+
+    /**
+     * Read consecutive Audio Samples of a channel normalized as float into a FloatBuffer. The
+     * Audio Samples are put at the current position of the buffer which is then advanced by count.
+     * @param channel The channel number
+     * @param index The index of the first Audio Sample to read
+     * @param destination The buffer receiving the Audio Samples
+     * @param count The number of Audio Samples to read
+     * @throws BufferOverflowException if count exceeds the remaining space of destination, which is then unchanged
+     */
+    default void getSamplesAsFloat(
+            final int channel, final long index, final FloatBuffer destination, final int count) {
+        /* Checked first: the backing array may extend beyond the limit of the buffer, such as for a slice */
+        if (count > destination.remaining()) {
+            throw new BufferOverflowException();
+        }
+        if (destination.hasArray()) {
+            final int position = destination.position();
+            getSamplesAsFloat(channel, index, destination.array(), destination.arrayOffset() + position, count);
+            destination.position(position + count);
+        } else {
+            for (int i = 0; i < count; i++) {
+                destination.put(getSampleAsFloat(channel, index + i));
+            }
+        }
+    }
+
+    /**
+     * Read consecutive Audio Frames normalized as float. Audio Samples are written interleaved,
+     * in other words destination[offset + frame * channelCount + channel].
+     * @param index The index of the first Audio Frame to read
+     * @param channelCount The number of channels of the Audio Frames
+     * @param destination The array receiving the Audio Samples
+     * @param offset The index in destination of the first Audio Sample read
+     * @param frameCount The number of Audio Frames to read
+     */
+    default void getFramesAsFloat(
+            final long index, final int channelCount, final float[] destination, final int offset,
+            final int frameCount) {
+        for (int frame = 0; frame < frameCount; frame++) {
+            for (int channel = 0; channel < channelCount; channel++) {
+                destination[offset + frame * channelCount + channel] = getSampleAsFloat(channel, index + frame);
+            }
+        }
+    }
 }
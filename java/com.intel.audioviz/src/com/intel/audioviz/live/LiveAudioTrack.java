@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2017 Intel Corporation
+ *
+ * This Program is subject to the terms of the Eclipse Public License, v. 1.0.
+ * If a copy of the license was not distributed with this file,
+ * you can obtain one at <http://www.eclipse.org/legal/epl-v10.html>
+ *
+ * SPDX-License-Identifier: EPL-1.0
+ */
+package com.intel.audioviz.live;
+
+import java.nio.ByteOrder;
+import java.security.InvalidParameterException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.intel.audioviz.AudioFormat;
+import com.intel.audioviz.AudioFormat.Coding;
+import com.intel.audioviz.AudioTrack;
+
+/**
+ * LiveAudioTrack is an AudioTrack fed by a producer, such as a capture thread, which only keeps the last audio
+ * frames of a bounded history. Frames are written to a RingBufferSampleProvider, then exposed periodically by a
+ * refresh thread which extends the waveform cache levels: the cache levels slide over the history, dropping the
+ * windows of expired frames.
+ */
+public class LiveAudioTrack extends AudioTrack {
+
+    /**
+     * @param channelCount the number of channels of the audio frames
+     * @param sampleFrequency the sample frequency in Hertz
+     * @param historySize the number of the last audio frames kept
+     */
+    public LiveAudioTrack(final int channelCount, final int sampleFrequency, final long historySize) {
+        super(new AudioFormat(channelCount, sampleFrequency, Float.BYTES, true, Coding.FORMAT_IEEE_FLOAT,
+                ByteOrder.nativeOrder()));
+        if (historySize < 1) {
+            throw new InvalidParameterException("Invalid history size");
+        }
+        /* The producer may run ahead of the last refresh, and readers be late on it */
+        final long guardSize = Math.max(historySize / GUARD_RATIO, (long) sampleFrequency * GUARD_DURATION_S);
+        mSampleProvider = new RingBufferSampleProvider(channelCount, historySize, guardSize);
+        mRefresh = REFRESH_EXECUTOR.scheduleWithFixedDelay(this::refresh, REFRESH_PERIOD_MS, REFRESH_PERIOD_MS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Append audio frames to the AudioTrack. The frames are exposed by the next periodic refresh.
+     * @param frames the array holding the audio frames, interleaved and normalized as float
+     * @param offset the index in frames of the first audio sample to write
+     * @param frameCount the number of audio frames to write
+     * @warning to be called by a single producer thread
+     * @see RingBufferSampleProvider#write()
+     */
+    public void write(final float[] frames, final int offset, final int frameCount) {
+        mSampleProvider.write(frames, offset, frameCount);
+    }
+
+    @Override
+    public void dispose() {
+        mRefresh.cancel(false);
+        super.dispose();
+    }
+
+    @Override
+    public RingBufferSampleProvider getSampleProvider() {
+        return mSampleProvider;
+    }
+
+    /**
+     * Expose the audio frames written since the last refresh, from the refresh thread.
+     */
+    private void refresh() {
+        if (mSampleProvider.refresh()) {
+            notifyAudioTrackGrown();
+        }
+    }
+
+    private final RingBufferSampleProvider mSampleProvider;
+    private final ScheduledFuture<?> mRefresh;
+
+    /**
+     * Period of the refresh of live audio tracks
+     */
+    private static final long REFRESH_PERIOD_MS = 100;
+    /**
+     * The guard of the ring buffer is at least GUARD_DURATION_S seconds, and one frame per GUARD_RATIO frames of the
+     * history.
+     */
+    private static final int GUARD_DURATION_S = 2;
+    private static final int GUARD_RATIO = 8;
+    /**
+     * The thread refreshing all live audio tracks
+     */
+    private static final ScheduledExecutorService REFRESH_EXECUTOR =
+            Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "LiveAudioTrackRefresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright (C) 2017 Intel Corporation
+ *
+ * This Program is subject to the terms of the Eclipse Public License, v. 1.0.
+ * If a copy of the license was not distributed with this file,
+ * you can obtain one at <http://www.eclipse.org/legal/epl-v10.html>
+ *
+ * SPDX-License-Identifier: EPL-1.0
+ */
+package com.intel.audioviz.live;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.security.InvalidParameterException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+
+import com.intel.audioviz.ISampleProvider;
+
+/**
+ * RingBufferSampleProvider implements the SampleProvider Interface over the last audio frames written by a single
+ * producer, such as a capture thread. Frames are held normalized as float, interleaved, in an off heap ring buffer.
+ *
+ * The producer never blocks: it overwrites the oldest frames, then publishes its write index. Readers never block
+ * the producer either: they read a snapshot of the written frames published by refresh(), covering the last
+ * history size frames. The ring buffer is larger than the history by a guard, so that the frames of a snapshot
+ * are not overwritten while the producer runs ahead of it by less than the guard. Frames older than the history,
+ * or overwritten by the producer, are read as silence.
+ *
+ * The producer claims the frames it overwrites, then writes them under the write lock of a StampedLock, which
+ * readers never hold: they read optimistically in a single pass, then validate their stamp for its fence only, so
+ * that the claimed index read after it covers any write that overlapped their read. The frames this write may have
+ * overwritten are read as silence, so that readers are wait-free and only return frames of completed writes.
+ */
+public class RingBufferSampleProvider implements ISampleProvider {
+
+    /**
+     * @param channelCount the number of channels of the audio frames
+     * @param historySize the number of the last audio frames exposed by a snapshot
+     * @param guardSize the number of audio frames the producer may run ahead of readers of a snapshot
+     */
+    public RingBufferSampleProvider(final int channelCount, final long historySize, final long guardSize) {
+        if (channelCount < 1) {
+            throw new InvalidParameterException("Invalid channel count");
+        }
+        if (historySize < 1 || guardSize < 0) {
+            throw new InvalidParameterException("Invalid history size");
+        }
+        if ((historySize + guardSize) * channelCount * Float.BYTES > Integer.MAX_VALUE) {
+            throw new InvalidParameterException("Too long history");
+        }
+        mChannelCount = channelCount;
+        mHistorySize = historySize;
+        mCapacity = (int) (historySize + guardSize);
+        mSamples = ByteBuffer.allocateDirect(mCapacity * channelCount * Float.BYTES)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+        mProducerSamples = mSamples.duplicate();
+        mLock = new StampedLock();
+        mClaimedIndex = new AtomicLong(0);
+        mWrittenIndex = new AtomicLong(0);
+        mSnapshotSize = 0;
+    }
+
+    /**
+     * Append audio frames to the ring buffer, overwriting the oldest ones. The frames are exposed to readers by the
+     * next refresh().
+     * @param frames the array holding the audio frames, interleaved and normalized as float
+     * @param offset the index in frames of the first audio sample to write
+     * @param frameCount the number of audio frames to write
+     * @warning to be called by a single producer thread. The producer is never blocked, since readers only read
+     * optimistically, and does not allocate.
+     */
+    public void write(final float[] frames, final int offset, final int frameCount) {
+        if (offset < 0 || frameCount < 0 || offset + (long) frameCount * mChannelCount > frames.length) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        final long writtenIndex = mWrittenIndex.get();
+        final long endIndex = writtenIndex + frameCount;
+        /* Claimed before overwriting, so that readers of the overwritten frames see them as claimed */
+        mClaimedIndex.set(endIndex);
+        final long stamp = mLock.writeLock();
+        try {
+            /* Frames overwritten by the same write are skipped */
+            final int skippedCount = Math.max(0, frameCount - mCapacity);
+            long frameIndex = writtenIndex + skippedCount;
+            int frameOffset = offset + skippedCount * mChannelCount;
+            while (frameIndex < endIndex) {
+                final int slot = (int) (frameIndex % mCapacity);
+                final int partCount = (int) Math.min(endIndex - frameIndex, mCapacity - slot);
+                mProducerSamples.position(slot * mChannelCount);
+                mProducerSamples.put(frames, frameOffset, partCount * mChannelCount);
+                frameIndex += partCount;
+                frameOffset += partCount * mChannelCount;
+            }
+        } finally {
+            mLock.unlockWrite(stamp);
+        }
+
+        mWrittenIndex.lazySet(endIndex);
+    }
+
+    /**
+     * Expose the audio frames written since the last call in a new snapshot.
+     * @return true if audio frames have been written
+     */
+    public synchronized boolean refresh() {
+        final long writtenIndex = mWrittenIndex.get();
+        if (writtenIndex == mSnapshotSize) {
+            return false;
+        }
+        mSnapshotSize = writtenIndex;
+        return true;
+    }
+
+    /**
+     * @return the number of audio frames written since the ring buffer was instantiated, including the ones not
+     * yet exposed by refresh()
+     */
+    public long getWrittenFrameCount() {
+        return mWrittenIndex.get();
+    }
+
+    /**
+     * @return The index of the first Audio Sample of the snapshot which is not expired
+     */
+    public long getFirstSampleIndex() {
+        return Math.max(0, mSnapshotSize - mHistorySize);
+    }
+
+    /**
+     * @return The number of channels of the audio frames
+     */
+    public int getChannelCount() {
+        return mChannelCount;
+    }
+
+    @Override
+    public long getSamplesPerChannel() {
+        return mSnapshotSize;
+    }
+
+    @Override
+    public long getHistorySize() {
+        return mHistorySize;
+    }
+
+    @Override
+    public double getSampleAsDouble(final int channel, final long index) {
+        return getSampleAsFloat(channel, index);
+    }
+
+    @Override
+    public float getSampleAsFloat(final int channel, final long index) {
+        final long snapshotSize = mSnapshotSize;
+        checkBlock(snapshotSize, channel, index, 1);
+
+        final long stamp = mLock.tryOptimisticRead();
+        final float sample = mSamples.get((int) (index % mCapacity) * mChannelCount + channel);
+        return index < getValidIndex(stamp, snapshotSize) ? 0 : sample;
+    }
+
+    @Override
+    public void getSamplesAsFloat(
+            final int channel, final long index, final float[] destination, final int offset, final int count) {
+        final long snapshotSize = mSnapshotSize;
+        checkBlock(snapshotSize, channel, index, count);
+        if (offset < 0 || offset + count > destination.length) {
+            throw new IndexOutOfBoundsException("Destination too small");
+        }
+
+        final FloatBuffer samples = mSamples;
+        final long stamp = mLock.tryOptimisticRead();
+        int position = (int) (index % mCapacity) * mChannelCount + channel;
+        for (int i = offset; i < offset + count; i++) {
+            destination[i] = samples.get(position);
+            position += mChannelCount;
+            if (position >= samples.capacity()) {
+                position = channel;
+            }
+        }
+        silenceInvalidSamples(getValidIndex(stamp, snapshotSize), index, destination, offset, count, 1);
+    }
+
+    @Override
+    public void getFramesAsFloat(
+            final long index, final int channelCount, final float[] destination, final int offset,
+            final int frameCount) {
+        if (channelCount != mChannelCount) {
+            throw new InvalidParameterException("Invalid channel count");
+        }
+        final long snapshotSize = mSnapshotSize;
+        checkBlock(snapshotSize, 0, index, frameCount);
+        if (offset < 0 || offset + (long) frameCount * channelCount > destination.length) {
+            throw new IndexOutOfBoundsException("Destination too small");
+        }
+
+        /* Frames are contiguous up to the end of the ring buffer */
+        final FloatBuffer samples = mSamples.duplicate();
+        final long stamp = mLock.tryOptimisticRead();
+        long frameIndex = index;
+        int destinationOffset = offset;
+        while (frameIndex < index + frameCount) {
+            final int slot = (int) (frameIndex % mCapacity);
+            final int partCount = (int) Math.min(index + frameCount - frameIndex, mCapacity - slot);
+            samples.position(slot * channelCount);
+            samples.get(destination, destinationOffset, partCount * channelCount);
+            frameIndex += partCount;
+            destinationOffset += partCount * channelCount;
+        }
+        silenceInvalidSamples(
+                getValidIndex(stamp, snapshotSize), index, destination, offset, frameCount, channelCount);
+    }
+
+    /**
+     * @param stamp the optimistic read stamp taken before reading the audio frames
+     * @param snapshotSize the size of the snapshot being read
+     * @return the index of the first audio frame which is neither expired from the snapshot, nor possibly
+     * overwritten by the producer while the audio frames were read. To be called once they have been read.
+     */
+    private long getValidIndex(final long stamp, final long snapshotSize) {
+        /* Only the fence matters: whether valid or not, the claimed index is then read after the audio frames */
+        mLock.validate(stamp);
+        return Math.max(Math.max(0, snapshotSize - mHistorySize), mClaimedIndex.get() - mCapacity);
+    }
+
+    /**
+     * Replace the samples of audio frames which are expired, or overwritten by the producer, by silence. To be called
+     * once the audio frames have been read and validated.
+     * @param validIndex the index of the first valid audio frame when the audio frames were read
+     * @param index the index of the first audio frame read
+     * @param destination the array receiving the audio samples
+     * @param offset the index in destination of the first audio sample read
+     * @param frameCount the number of audio frames read
+     * @param stride the number of audio samples read per audio frame
+     */
+    private static void silenceInvalidSamples(final long validIndex, final long index, final float[] destination,
+            final int offset, final int frameCount, final int stride) {
+        final long invalidCount = Math.min(frameCount, validIndex - index);
+        if (invalidCount > 0) {
+            Arrays.fill(destination, offset, offset + (int) invalidCount * stride, 0);
+        }
+    }
+
+    private void checkBlock(final long snapshotSize, final int channel, final long index, final int count) {
+        if (channel < 0 || channel >= mChannelCount) {
+            throw new InvalidParameterException("Invalid channel");
+        }
+        if (count < 0 || index < 0 || index + count > snapshotSize) {
+            throw new InvalidParameterException("Invalid sample range");
+        }
+    }
+
+    private final int mChannelCount;
+    private final long mHistorySize;
+    /**
+     * Capacity of the ring buffer in audio frames: the history size plus the guard
+     */
+    private final int mCapacity;
+    /**
+     * The ring buffer, read with absolute accesses or through duplicates
+     */
+    private final FloatBuffer mSamples;
+    /**
+     * The view of the ring buffer whose position is moved by the producer
+     */
+    private final FloatBuffer mProducerSamples;
+    /**
+     * Write locked by the producer while it overwrites audio frames, only read optimistically by readers
+     */
+    private final StampedLock mLock;
+    /**
+     * Index of the audio frame following the ones being written by the producer, set before the write lock
+     */
+    private final AtomicLong mClaimedIndex;
+    /**
+     * Index of the audio frame following the ones written by the producer
+     */
+    private final AtomicLong mWrittenIndex;
+    /**
+     * Number of audio frames exposed by the current snapshot
+     */
+    private volatile long mSnapshotSize;
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2017 Intel Corporation
+ *
+ * This Program is subject to the terms of the Eclipse Public License, v. 1.0.
+ * If a copy of the license was not distributed with this file,
+ * you can obtain one at <http://www.eclipse.org/legal/epl-v10.html>
+ *
+ * SPDX-License-Identifier: EPL-1.0
+ */
+package com.intel.audioviz.metrics;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Snapshot of the view request metrics of an AudioTrace, as exposed through JMX. Latencies are in microseconds;
+ * percentiles are the upper bound of their power of two histogram bucket.
+ */
+public final class AudioTraceMetrics {
+
+    @ConstructorProperties({"name", "requestCount", "supersededRequestCount", "completedRequestCount",
+            "pendingRequestCount", "computationCount", "computeLatencyP50Micros", "computeLatencyP99Micros",
+            "computeLatencyMaxMicros", "requestLatencyP50Micros", "requestLatencyP99Micros",
+            "computeLatencyHistogram"})
+    public AudioTraceMetrics(final String name, final long requestCount, final long supersededRequestCount,
+            final long completedRequestCount, final long pendingRequestCount, final long computationCount,
+            final long computeLatencyP50Micros, final long computeLatencyP99Micros,
+            final long computeLatencyMaxMicros, final long requestLatencyP50Micros,
+            final long requestLatencyP99Micros, final long[] computeLatencyHistogram) {
+        mName = name;
+        mRequestCount = requestCount;
+        mSupersededRequestCount = supersededRequestCount;
+        mCompletedRequestCount = completedRequestCount;
+        mPendingRequestCount = pendingRequestCount;
+        mComputationCount = computationCount;
+        mComputeLatencyP50Micros = computeLatencyP50Micros;
+        mComputeLatencyP99Micros = computeLatencyP99Micros;
+        mComputeLatencyMaxMicros = computeLatencyMaxMicros;
+        mRequestLatencyP50Micros = requestLatencyP50Micros;
+        mRequestLatencyP99Micros = requestLatencyP99Micros;
+        mComputeLatencyHistogram = computeLatencyHistogram.clone();
+    }
+
+    /**
+     * @return the name of the trace: its class, its number and its channel
+     */
+    public String getName() {
+        return mName;
+    }
+
+    /**
+     * @return the number of views requested through setTraceView()
+     */
+    public long getRequestCount() {
+        return mRequestCount;
+    }
+
+    /**
+     * @return the number of requests replaced by a new one or by clear() before being completed
+     */
+    public long getSupersededRequestCount() {
+        return mSupersededRequestCount;
+    }
+
+    /**
+     * @return the number of requests completed by a doSetTraceView() computation
+     */
+    public long getCompletedRequestCount() {
+        return mCompletedRequestCount;
+    }
+
+    /**
+     * @return 1 if a request is neither completed nor superseded yet, 0 otherwise
+     */
+    public long getPendingRequestCount() {
+        return mPendingRequestCount;
+    }
+
+    /**
+     * @return the number of doSetTraceView() computations, an uncompleted trace being computed again as data arrives
+     */
+    public long getComputationCount() {
+        return mComputationCount;
+    }
+
+    public long getComputeLatencyP50Micros() {
+        return mComputeLatencyP50Micros;
+    }
+
+    public long getComputeLatencyP99Micros() {
+        return mComputeLatencyP99Micros;
+    }
+
+    public long getComputeLatencyMaxMicros() {
+        return mComputeLatencyMaxMicros;
+    }
+
+    /**
+     * @return the median duration from a request to the computation completing it
+     */
+    public long getRequestLatencyP50Micros() {
+        return mRequestLatencyP50Micros;
+    }
+
+    public long getRequestLatencyP99Micros() {
+        return mRequestLatencyP99Micros;
+    }
+
+    /**
+     * @return the doSetTraceView() computation counts per duration bucket: bucket i counts the durations within
+     * [2^(i-1), 2^i - 1] nanoseconds
+     */
+    public long[] getComputeLatencyHistogram() {
+        return mComputeLatencyHistogram.clone();
+    }
+
+    private final String mName;
+    private final long mRequestCount;
+    private final long mSupersededRequestCount;
+    private final long mCompletedRequestCount;
+    private final long mPendingRequestCount;
+    private final long mComputationCount;
+    private final long mComputeLatencyP50Micros;
+    private final long mComputeLatencyP99Micros;
+    private final long mComputeLatencyMaxMicros;
+    private final long mRequestLatencyP50Micros;
+    private final long mRequestLatencyP99Micros;
+    private final long[] mComputeLatencyHistogram;
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2017 Intel Corporation
+ *
+ * This Program is subject to the terms of the Eclipse Public License, v. 1.0.
+ * If a copy of the license was not distributed with this file,
+ * you can obtain one at <http://www.eclipse.org/legal/epl-v10.html>
+ *
+ * SPDX-License-Identifier: EPL-1.0
+ */
+package com.intel.audioviz.metrics;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Snapshot of the build metrics of the cache levels of an AudioTrack, as exposed through JMX. Durations are in
+ * milliseconds from init(), -1 while not reached yet. Throughputs are computed from init() to the last audio samples
+ * read by each channel.
+ */
+public final class AudioTrackCacheMetrics {
+
+    @ConstructorProperties({"name", "loaded", "timeToFirstLevelMillis", "buildTimeMillis", "sampleCount",
+            "samplesPerSecond", "megabytesPerSecond", "cacheBytes"})
+    public AudioTrackCacheMetrics(final String name, final boolean loaded, final double timeToFirstLevelMillis,
+            final double buildTimeMillis, final long sampleCount, final double[] samplesPerSecond,
+            final double[] megabytesPerSecond, final long cacheBytes) {
+        mName = name;
+        mIsLoaded = loaded;
+        mTimeToFirstLevelMillis = timeToFirstLevelMillis;
+        mBuildTimeMillis = buildTimeMillis;
+        mSampleCount = sampleCount;
+        mSamplesPerSecond = samplesPerSecond.clone();
+        mMegabytesPerSecond = megabytesPerSecond.clone();
+        mCacheBytes = cacheBytes;
+    }
+
+    /**
+     * @return the name of the cache: the class of its AudioTrack and its number
+     */
+    public String getName() {
+        return mName;
+    }
+
+    /**
+     * @return true if the cache levels have been loaded from their sidecar file rather than built
+     */
+    public boolean isLoaded() {
+        return mIsLoaded;
+    }
+
+    /**
+     * @return the time until the first cache level region has been published, and traces could use the cache
+     */
+    public double getTimeToFirstLevelMillis() {
+        return mTimeToFirstLevelMillis;
+    }
+
+    /**
+     * @return the time until the cache levels have been complete
+     */
+    public double getBuildTimeMillis() {
+        return mBuildTimeMillis;
+    }
+
+    /**
+     * @return the number of audio samples read by the build, all channels together
+     */
+    public long getSampleCount() {
+        return mSampleCount;
+    }
+
+    /**
+     * @return the build throughput of each channel, in audio samples per second
+     */
+    public double[] getSamplesPerSecond() {
+        return mSamplesPerSecond.clone();
+    }
+
+    /**
+     * @return the build throughput of each channel, in megabytes of raw audio data per second
+     */
+    public double[] getMegabytesPerSecond() {
+        return mMegabytesPerSecond.clone();
+    }
+
+    /**
+     * @return the current size of the cache levels, on heap and off heap
+     */
+    public long getCacheBytes() {
+        return mCacheBytes;
+    }
+
+    private final String mName;
+    private final boolean mIsLoaded;
+    private final double mTimeToFirstLevelMillis;
+    private final double mBuildTimeMillis;
+    private final long mSampleCount;
+    private final double[] mSamplesPerSecond;
+    private final double[] mMegabytesPerSecond;
+    private final long mCacheBytes;
+}
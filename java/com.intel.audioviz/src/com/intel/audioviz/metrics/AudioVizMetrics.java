@@ -0,0 +1,349 @@
+/*
+ * Copyright (C) 2017 Intel Corporation
+ *
+ * This Program is subject to the terms of the Eclipse Public License, v. 1.0.
+ * If a copy of the license was not distributed with this file,
+ * you can obtain one at <http://www.eclipse.org/legal/epl-v10.html>
+ *
+ * SPDX-License-Identifier: EPL-1.0
+ */
+package com.intel.audioviz.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import com.intel.audioviz.trace.AudioTrace;
+import com.intel.audioviz.trace.AudioTrackWaveformTraceCacheManager;
+import com.intel.audioviz.trace.AudioTrackWaveformTraceCacheProvider;
+
+/**
+ * AudioVizMetrics gathers the runtime metrics of the process: the build of the cache levels of each
+ * AudioTrackWaveformTraceCacheProvider, the view requests of each AudioTrace and the views applied by
+ * AudioTraceControllers. Metrics are exposed through the AudioVizMetricsMXBean, registered on the platform MBean
+ * server once enabled, and optionally through a periodic log line of the "com.intel.audioviz.metrics" logger.
+ *
+ * Metrics are disabled by default, unless the ENABLED_PROPERTY system property is true. Caches and traces only get a
+ * recorder if metrics are enabled when they are instantiated: otherwise, they only pay a null check per block of
+ * audio samples or per view request. The LOG_PERIOD_PROPERTY system property gives the initial log period in
+ * milliseconds.
+ */
+public final class AudioVizMetrics implements AudioVizMetricsMXBean {
+
+    private AudioVizMetrics() {
+        mCaches = new WeakHashMap<Object, CacheBuildMetrics>();
+        mTraces = new WeakHashMap<Object, TraceViewMetrics>();
+        mNameIndex = new AtomicInteger();
+        mControllerViewCount = new LongAdder();
+        mControllerTraceViewCount = new LongAdder();
+        mIsEnabled = false;
+        mIsRegistered = false;
+        mLogPeriodMillis = 0;
+    }
+
+    /**
+     * @return the metrics of the process
+     */
+    public static AudioVizMetrics getDefault() {
+        return DEFAULT_METRICS;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return mIsEnabled;
+    }
+
+    /**
+     * Enable or disable metrics. Once enabled, the MBean is registered on the platform MBean server, and remains
+     * registered for metrics to be enabled again through JMX. Failing to register it is not an error: metrics are
+     * still available through getDefault().
+     */
+    @Override
+    public synchronized void setEnabled(final boolean enabled) {
+        if (enabled && !mIsRegistered) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+            } catch (final JMException e) {
+                LOGGER.log(Level.WARNING, "Cannot register " + OBJECT_NAME, e);
+            }
+            mIsRegistered = true;
+        }
+        mIsEnabled = enabled;
+    }
+
+    @Override
+    public synchronized long getLogPeriodMillis() {
+        return mLogPeriodMillis;
+    }
+
+    @Override
+    public synchronized void setLogPeriodMillis(final long logPeriodMillis) {
+        if (logPeriodMillis < 0) {
+            throw new InvalidParameterException("Invalid log period");
+        }
+        if (mLogTask != null) {
+            mLogTask.cancel(false);
+            mLogTask = null;
+        }
+        mLogPeriodMillis = logPeriodMillis;
+        if (logPeriodMillis > 0) {
+            if (mLogExecutor == null) {
+                mLogExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    final Thread thread = new Thread(runnable, "AudioVizMetrics");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            mLogTask = mLogExecutor.scheduleAtFixedRate(this::log, logPeriodMillis, logPeriodMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @param provider the provider whose cache levels are about to be built or loaded
+     * @return the recorder of the build of the cache levels, null if metrics are disabled
+     */
+    public CacheBuildMetrics newCacheBuildMetrics(final AudioTrackWaveformTraceCacheProvider provider) {
+        if (!mIsEnabled) {
+            return null;
+        }
+        final CacheBuildMetrics cacheBuildMetrics = new CacheBuildMetrics(
+                getName(provider.getAudioTrack(), "AudioTrack"), provider);
+        synchronized (mCaches) {
+            mCaches.put(provider, cacheBuildMetrics);
+        }
+        return cacheBuildMetrics;
+    }
+
+    /**
+     * @param audioTrace the trace about to request views
+     * @return the recorder of the view requests of the trace, null if metrics are disabled
+     */
+    public TraceViewMetrics newTraceViewMetrics(final AudioTrace audioTrace) {
+        if (!mIsEnabled) {
+            return null;
+        }
+        final TraceViewMetrics traceViewMetrics = new TraceViewMetrics(
+                getName(audioTrace, "AudioTrace") + "/" + audioTrace.getChannel());
+        synchronized (mTraces) {
+            mTraces.put(audioTrace, traceViewMetrics);
+        }
+        return traceViewMetrics;
+    }
+
+    /**
+     * Stop reporting the metrics of a disposed cache or trace. Metrics of the ones garbage collected are not
+     * reported either.
+     * @param owner the AudioTrackWaveformTraceCacheProvider or AudioTrace
+     */
+    public void remove(final Object owner) {
+        synchronized (mCaches) {
+            mCaches.remove(owner);
+        }
+        synchronized (mTraces) {
+            mTraces.remove(owner);
+        }
+    }
+
+    /**
+     * Record a view applied by an AudioTraceController.
+     * @param traceViewCount the number of trace views requested
+     */
+    public void recordControllerView(final int traceViewCount) {
+        mControllerViewCount.increment();
+        mControllerTraceViewCount.add(traceViewCount);
+    }
+
+    @Override
+    public AudioTrackCacheMetrics[] getCacheMetrics() {
+        final List<CacheBuildMetrics> caches = getCaches();
+        final AudioTrackCacheMetrics[] cacheMetrics = new AudioTrackCacheMetrics[caches.size()];
+        for (int i = 0; i < cacheMetrics.length; i++) {
+            cacheMetrics[i] = caches.get(i).getSnapshot();
+        }
+        return cacheMetrics;
+    }
+
+    @Override
+    public AudioTraceMetrics[] getTraceMetrics() {
+        final List<TraceViewMetrics> traces = getTraces();
+        final AudioTraceMetrics[] traceMetrics = new AudioTraceMetrics[traces.size()];
+        for (int i = 0; i < traceMetrics.length; i++) {
+            traceMetrics[i] = traces.get(i).getSnapshot();
+        }
+        return traceMetrics;
+    }
+
+    @Override
+    public long getCacheBytes() {
+        final AudioTrackWaveformTraceCacheManager manager = AudioTrackWaveformTraceCacheManager.getDefault();
+        return manager.getHeapSize() + manager.getOffHeapSize();
+    }
+
+    @Override
+    public long getRequestCount() {
+        long requestCount = 0;
+        for (final AudioTraceMetrics traceMetrics : getTraceMetrics()) {
+            requestCount += traceMetrics.getRequestCount();
+        }
+        return requestCount;
+    }
+
+    @Override
+    public long getSupersededRequestCount() {
+        long supersededRequestCount = 0;
+        for (final AudioTraceMetrics traceMetrics : getTraceMetrics()) {
+            supersededRequestCount += traceMetrics.getSupersededRequestCount();
+        }
+        return supersededRequestCount;
+    }
+
+    @Override
+    public long getPendingRequestCount() {
+        long pendingRequestCount = 0;
+        for (final AudioTraceMetrics traceMetrics : getTraceMetrics()) {
+            pendingRequestCount += traceMetrics.getPendingRequestCount();
+        }
+        return pendingRequestCount;
+    }
+
+    @Override
+    public long getControllerViewCount() {
+        return mControllerViewCount.sum();
+    }
+
+    @Override
+    public long getControllerTraceViewCount() {
+        return mControllerTraceViewCount.sum();
+    }
+
+    /**
+     * @return the metrics as a single line of key=value pairs
+     */
+    public String getLogLine() {
+        final List<CacheBuildMetrics> caches = getCaches();
+        int buildingCount = 0;
+        long buildByteCount = 0;
+        long buildNanos = 0;
+        for (final CacheBuildMetrics cacheBuildMetrics : caches) {
+            if (cacheBuildMetrics.isBuilding()) {
+                buildingCount++;
+                buildByteCount += cacheBuildMetrics.getByteCount();
+                buildNanos = Math.max(buildNanos, cacheBuildMetrics.getElapsedNanos());
+            }
+        }
+
+        final AudioTraceMetrics[] traceMetrics = getTraceMetrics();
+        long requestCount = 0;
+        long supersededRequestCount = 0;
+        long pendingRequestCount = 0;
+        for (final AudioTraceMetrics metrics : traceMetrics) {
+            requestCount += metrics.getRequestCount();
+            supersededRequestCount += metrics.getSupersededRequestCount();
+            pendingRequestCount += metrics.getPendingRequestCount();
+        }
+        /* Percentiles over all traces, from their summed histograms */
+        final long[] computeBuckets = new long[LatencyHistogram.BUCKET_COUNT];
+        long computeMaxNanos = 0;
+        for (final TraceViewMetrics traceViewMetrics : getTraces()) {
+            final LatencyHistogram computeLatency = traceViewMetrics.getComputeLatency();
+            final long[] buckets = computeLatency.getBuckets();
+            for (int i = 0; i < buckets.length; i++) {
+                computeBuckets[i] += buckets[i];
+            }
+            computeMaxNanos = Math.max(computeMaxNanos, computeLatency.getMaxNanos());
+        }
+
+        return String.format(Locale.ROOT, "caches=%d building=%d buildMBps=%.1f cacheMB=%.1f traces=%d requests=%d "
+                + "superseded=%d pending=%d computeP50us=%d computeP99us=%d controllerViews=%d",
+                caches.size(), buildingCount,
+                buildNanos == 0 ? 0 : buildByteCount * NANOS_PER_SECOND / buildNanos / BYTES_PER_MEGABYTE,
+                getCacheBytes() / BYTES_PER_MEGABYTE, traceMetrics.length, requestCount, supersededRequestCount,
+                pendingRequestCount,
+                LatencyHistogram.getPercentileNanos(computeBuckets, computeMaxNanos, TraceViewMetrics.MEDIAN)
+                        / NANOS_PER_MICROSECOND,
+                LatencyHistogram.getPercentileNanos(computeBuckets, computeMaxNanos, TraceViewMetrics.HIGH_PERCENTILE)
+                        / NANOS_PER_MICROSECOND,
+                getControllerViewCount());
+    }
+
+    /**
+     * @param object the object to name in metrics
+     * @param defaultClassName the class name used for anonymous classes
+     * @return the simple name of the object class and a number unique in the process
+     */
+    private String getName(final Object object, final String defaultClassName) {
+        final String className = object.getClass().getSimpleName();
+        return (className.isEmpty() ? defaultClassName : className) + "-" + mNameIndex.incrementAndGet();
+    }
+
+    private void log() {
+        if (mIsEnabled && LOGGER.isLoggable(Level.INFO)) {
+            LOGGER.info(getLogLine());
+        }
+    }
+
+    private List<CacheBuildMetrics> getCaches() {
+        synchronized (mCaches) {
+            return new ArrayList<CacheBuildMetrics>(mCaches.values());
+        }
+    }
+
+    private List<TraceViewMetrics> getTraces() {
+        synchronized (mTraces) {
+            return new ArrayList<TraceViewMetrics>(mTraces.values());
+        }
+    }
+
+    private static AudioVizMetrics newDefaultMetrics() {
+        final AudioVizMetrics metrics = new AudioVizMetrics();
+        if (Boolean.getBoolean(ENABLED_PROPERTY)) {
+            metrics.setEnabled(true);
+        }
+        final long logPeriodMillis = Long.getLong(LOG_PERIOD_PROPERTY, 0);
+        if (logPeriodMillis > 0) {
+            metrics.setLogPeriodMillis(logPeriodMillis);
+        }
+        return metrics;
+    }
+
+    /**
+     * Recorders per cache or trace, the owners being weakly referenced
+     */
+    private final WeakHashMap<Object, CacheBuildMetrics> mCaches;
+    private final WeakHashMap<Object, TraceViewMetrics> mTraces;
+    /**
+     * Numbers the caches and traces in metrics names
+     */
+    private final AtomicInteger mNameIndex;
+    private final LongAdder mControllerViewCount;
+    private final LongAdder mControllerTraceViewCount;
+    private volatile boolean mIsEnabled;
+    private boolean mIsRegistered;
+    private long mLogPeriodMillis;
+    private ScheduledExecutorService mLogExecutor;
+    private ScheduledFuture<?> mLogTask;
+
+    public static final String OBJECT_NAME = "com.intel.audioviz:type=Metrics";
+    public static final String ENABLED_PROPERTY = "com.intel.audioviz.metrics";
+    public static final String LOG_PERIOD_PROPERTY = "com.intel.audioviz.metrics.logPeriod";
+    private static final Logger LOGGER = Logger.getLogger("com.intel.audioviz.metrics");
+    private static final double NANOS_PER_SECOND = 1e9;
+    private static final long NANOS_PER_MICROSECOND = 1000;
+    private static final double BYTES_PER_MEGABYTE = 1024 * 1024;
+    private static final AudioVizMetrics DEFAULT_METRICS = newDefaultMetrics();
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2017 Intel Corporation
+ *
+ * This Program is subject to the terms of the Eclipse Public License, v. 1.0.
+ * If a copy of the license was not distributed with this file,
+ * you can obtain one at <http://www.eclipse.org/legal/epl-v10.html>
+ *
+ * SPDX-License-Identifier: EPL-1.0
+ */
+package com.intel.audioviz.metrics;
+
+/**
+ * The JMX management interface of AudioVizMetrics, registered as AudioVizMetrics.OBJECT_NAME.
+ */
+public interface AudioVizMetricsMXBean {
+
+    /**
+     * @return true if metrics are recorded
+     */
+    boolean isEnabled();
+
+    /**
+     * @param enabled true to record the metrics of the caches and traces instantiated from now on
+     */
+    void setEnabled(boolean enabled);
+
+    /**
+     * @return the period of the metrics log line, in milliseconds, 0 if not logged
+     */
+    long getLogPeriodMillis();
+
+    /**
+     * @param logPeriodMillis the period of the metrics log line, in milliseconds, 0 to stop logging it
+     */
+    void setLogPeriodMillis(long logPeriodMillis);
+
+    /**
+     * @return the build metrics of the caches of live AudioTracks
+     */
+    AudioTrackCacheMetrics[] getCacheMetrics();
+
+    /**
+     * @return the request metrics of live AudioTraces
+     */
+    AudioTraceMetrics[] getTraceMetrics();
+
+    /**
+     * @return the current size of the cache levels of all caches, on heap and off heap
+     */
+    long getCacheBytes();
+
+    /**
+     * @return the number of view requests of live AudioTraces
+     */
+    long getRequestCount();
+
+    /**
+     * @return the number of view requests superseded before being completed, for live AudioTraces
+     */
+    long getSupersededRequestCount();
+
+    /**
+     * @return the number of AudioTraces whose last view request is neither completed nor superseded
+     */
+    long getPendingRequestCount();
+
+    /**
+     * @return the number of views applied by AudioTraceControllers
+     */
+    long getControllerViewCount();
+
+    /**
+     * @return the number of trace views requested by AudioTraceControllers
+     */
+    long getControllerTraceViewCount();
+}
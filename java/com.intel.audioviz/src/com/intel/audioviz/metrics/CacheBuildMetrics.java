@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2017 Intel Corporation
+ *
+ * This Program is subject to the terms of the Eclipse Public License, v. 1.0.
+ * If a copy of the license was not distributed with this file,
+ * you can obtain one at <http://www.eclipse.org/legal/epl-v10.html>
+ *
+ * SPDX-License-Identifier: EPL-1.0
+ */
+package com.intel.audioviz.metrics;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.intel.audioviz.trace.AudioTrackWaveformTraceCacheProvider;
+
+/**
+ * CacheBuildMetrics records how the cache levels of an AudioTrackWaveformTraceCacheProvider are built: the audio
+ * samples read per channel and when, the time until the first cache level region is published, and the time until
+ * the build completes. Recording methods are called by the provider, from the threads building its cache levels.
+ * @see AudioVizMetrics#newCacheBuildMetrics(AudioTrackWaveformTraceCacheProvider)
+ */
+public final class CacheBuildMetrics {
+
+    /**
+     * @param name the name of the cache in metrics
+     * @param provider the provider whose build is recorded, only weakly referenced
+     */
+    CacheBuildMetrics(final String name, final AudioTrackWaveformTraceCacheProvider provider) {
+        final int channelCount = provider.getAudioTrack().getAudioFormat().getChannelCount();
+        mName = name;
+        mProvider = new WeakReference<AudioTrackWaveformTraceCacheProvider>(provider);
+        mBytesPerSample = provider.getAudioTrack().getAudioFormat().getBytesPerSample();
+        mSampleCounts = new AtomicLongArray(channelCount);
+        mLastSampleNanos = new AtomicLongArray(channelCount);
+        mStartNanos = System.nanoTime();
+        mFirstLevelNanos = NOT_YET;
+        mEndNanos = NOT_YET;
+        mIsLoaded = false;
+    }
+
+    /**
+     * Record audio frames read for all channels at once. Audio frames read once the build is complete, to extend
+     * the cache levels, are ignored.
+     * @param frameCount the number of audio frames
+     */
+    public void recordFrames(final long frameCount) {
+        if (!isBuilding()) {
+            return;
+        }
+        final long now = System.nanoTime();
+        for (int channel = 0; channel < mSampleCounts.length(); channel++) {
+            mSampleCounts.addAndGet(channel, frameCount);
+            mLastSampleNanos.set(channel, now);
+        }
+    }
+
+    /**
+     * Record audio samples read for a single channel.
+     * @param channel the channel number
+     * @param sampleCount the number of audio samples
+     */
+    public void recordSamples(final int channel, final long sampleCount) {
+        if (!isBuilding()) {
+            return;
+        }
+        mSampleCounts.addAndGet(channel, sampleCount);
+        mLastSampleNanos.set(channel, System.nanoTime());
+    }
+
+    /**
+     * Record the publication of a cache level region: the first one makes the cache usable.
+     */
+    public void recordLevelFilled() {
+        if (mFirstLevelNanos == NOT_YET) {
+            mFirstLevelNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Record the end of the build, cache levels being complete or canceled.
+     */
+    public void recordBuildCompleted() {
+        final long now = System.nanoTime();
+        if (mFirstLevelNanos == NOT_YET) {
+            mFirstLevelNanos = now;
+        }
+        mEndNanos = now;
+    }
+
+    /**
+     * Record the cache levels have been loaded from their sidecar file rather than built.
+     */
+    public void recordLoaded() {
+        mIsLoaded = true;
+        recordBuildCompleted();
+    }
+
+    /**
+     * @return the name of the cache in metrics
+     */
+    public String getName() {
+        return mName;
+    }
+
+    /**
+     * @return the metrics recorded so far
+     */
+    public AudioTrackCacheMetrics getSnapshot() {
+        final int channelCount = mSampleCounts.length();
+        final double[] samplesPerSecond = new double[channelCount];
+        final double[] megabytesPerSecond = new double[channelCount];
+        for (int channel = 0; channel < channelCount; channel++) {
+            final long sampleCount = mSampleCounts.get(channel);
+            final long elapsedNanos = mLastSampleNanos.get(channel) - mStartNanos;
+            if (sampleCount > 0 && elapsedNanos > 0) {
+                samplesPerSecond[channel] = sampleCount * NANOS_PER_SECOND / elapsedNanos;
+                megabytesPerSecond[channel] = samplesPerSecond[channel] * mBytesPerSample / BYTES_PER_MEGABYTE;
+            }
+        }
+
+        final AudioTrackWaveformTraceCacheProvider provider = mProvider.get();
+        final long cacheBytes = provider == null ? 0 : provider.getMemorySize(false) + provider.getMemorySize(true);
+        final long firstLevelNanos = mFirstLevelNanos;
+        final long endNanos = mEndNanos;
+        return new AudioTrackCacheMetrics(mName, mIsLoaded, getMillis(firstLevelNanos), getMillis(endNanos),
+                getSampleCount(), samplesPerSecond, megabytesPerSecond, cacheBytes);
+    }
+
+    /**
+     * @return the number of audio samples read, all channels together
+     */
+    long getSampleCount() {
+        long sampleCount = 0;
+        for (int channel = 0; channel < mSampleCounts.length(); channel++) {
+            sampleCount += mSampleCounts.get(channel);
+        }
+        return sampleCount;
+    }
+
+    /**
+     * @return the number of bytes of audio samples read, all channels together
+     */
+    long getByteCount() {
+        return getSampleCount() * mBytesPerSample;
+    }
+
+    /**
+     * @return the time audio samples have been read for, in nanoseconds
+     */
+    long getElapsedNanos() {
+        long lastSampleNanos = mStartNanos;
+        for (int channel = 0; channel < mLastSampleNanos.length(); channel++) {
+            lastSampleNanos = Math.max(lastSampleNanos, mLastSampleNanos.get(channel));
+        }
+        return lastSampleNanos - mStartNanos;
+    }
+
+    /**
+     * @return the cache levels are still being built
+     */
+    boolean isBuilding() {
+        return mEndNanos == NOT_YET;
+    }
+
+    private double getMillis(final long nanos) {
+        return nanos == NOT_YET ? -1 : (nanos - mStartNanos) / NANOS_PER_MILLISECOND;
+    }
+
+    private final String mName;
+    private final WeakReference<AudioTrackWaveformTraceCacheProvider> mProvider;
+    private final int mBytesPerSample;
+    private final AtomicLongArray mSampleCounts;
+    /**
+     * The time the last audio samples of each channel have been read
+     */
+    private final AtomicLongArray mLastSampleNanos;
+    private final long mStartNanos;
+    private volatile long mFirstLevelNanos;
+    private volatile long mEndNanos;
+    private volatile boolean mIsLoaded;
+
+    private static final long NOT_YET = Long.MIN_VALUE;
+    private static final double NANOS_PER_SECOND = 1e9;
+    private static final double NANOS_PER_MILLISECOND = 1e6;
+    private static final double BYTES_PER_MEGABYTE = 1024 * 1024;
+}
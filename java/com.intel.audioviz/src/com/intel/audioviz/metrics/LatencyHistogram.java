@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2017 Intel Corporation
+ *
+ * This Program is subject to the terms of the Eclipse Public License, v. 1.0.
+ * If a copy of the license was not distributed with this file,
+ * you can obtain one at <http://www.eclipse.org/legal/epl-v10.html>
+ *
+ * SPDX-License-Identifier: EPL-1.0
+ */
+package com.intel.audioviz.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A LatencyHistogram counts latencies in buckets of powers of two nanoseconds: bucket i counts the latencies of i
+ * significant bits, in other words within [2^(i-1), 2^i - 1] nanoseconds. Latencies are recorded without lock, by
+ * any number of threads, and percentiles are the upper bound of their bucket.
+ */
+public final class LatencyHistogram {
+
+    public LatencyHistogram() {
+        mBuckets = new AtomicLongArray(BUCKET_COUNT);
+        mTotalNanos = new AtomicLong();
+        mMaxNanos = new AtomicLong();
+    }
+
+    /**
+     * @param nanos the latency to record, in nanoseconds
+     */
+    public void record(final long nanos) {
+        final long latency = Math.max(0, nanos);
+        mBuckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(latency));
+        mTotalNanos.addAndGet(latency);
+        long max = mMaxNanos.get();
+        while (latency > max && !mMaxNanos.compareAndSet(max, latency)) {
+            max = mMaxNanos.get();
+        }
+    }
+
+    /**
+     * @return the number of recorded latencies
+     */
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            count += mBuckets.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * @return the sum of the recorded latencies, in nanoseconds
+     */
+    public long getTotalNanos() {
+        return mTotalNanos.get();
+    }
+
+    /**
+     * @return the highest recorded latency, in nanoseconds
+     */
+    public long getMaxNanos() {
+        return mMaxNanos.get();
+    }
+
+    /**
+     * @param percentile the percentile, within [0, 100]
+     * @return the upper bound of the bucket holding the percentile, in nanoseconds, 0 if no latency is recorded
+     */
+    public long getPercentileNanos(final double percentile) {
+        return getPercentileNanos(getBuckets(), getMaxNanos(), percentile);
+    }
+
+    /**
+     * @param buckets bucket counts, possibly summed over several histograms
+     * @param maxNanos the highest latency counted by the buckets, in nanoseconds
+     * @param percentile the percentile, within [0, 100]
+     * @return the upper bound of the bucket holding the percentile, in nanoseconds, 0 if no latency is counted
+     */
+    static long getPercentileNanos(final long[] buckets, final long maxNanos, final double percentile) {
+        long count = 0;
+        for (final long bucket : buckets) {
+            count += bucket;
+        }
+        final long rank = (long) Math.ceil(count * Math.min(100, Math.max(0, percentile)) / 100);
+        long cumulated = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            cumulated += buckets[i];
+            if (cumulated >= rank && cumulated > 0) {
+                return Math.min(maxNanos, (1L << i) - 1);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return a copy of the bucket counts
+     */
+    public long[] getBuckets() {
+        final long[] buckets = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets[i] = mBuckets.get(i);
+        }
+        return buckets;
+    }
+
+    private final AtomicLongArray mBuckets;
+    private final AtomicLong mTotalNanos;
+    private final AtomicLong mMaxNanos;
+
+    /**
+     * One bucket per number of significant bits of a positive long, 0 included
+     */
+    static final int BUCKET_COUNT = Long.SIZE;
+}
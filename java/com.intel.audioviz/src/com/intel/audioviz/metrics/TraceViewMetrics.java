@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2017 Intel Corporation
+ *
+ * This Program is subject to the terms of the Eclipse Public License, v. 1.0.
+ * If a copy of the license was not distributed with this file,
+ * you can obtain one at <http://www.eclipse.org/legal/epl-v10.html>
+ *
+ * SPDX-License-Identifier: EPL-1.0
+ */
+package com.intel.audioviz.metrics;
+
+/**
+ * TraceViewMetrics records the view requests of an AudioTrace and the doSetTraceView() computations serving them.
+ * Requests are identified by the request generation of the AudioTrace: a request is pending until a computation of
+ * its generation completes the trace, and superseded if a new request or clear() replaces it before.
+ * @see AudioVizMetrics#newTraceViewMetrics(com.intel.audioviz.trace.AudioTrace)
+ */
+public final class TraceViewMetrics {
+
+    /**
+     * @param name the name of the trace in metrics
+     */
+    TraceViewMetrics(final String name) {
+        mName = name;
+        mComputeLatency = new LatencyHistogram();
+        mRequestLatency = new LatencyHistogram();
+        mPendingGeneration = NONE;
+    }
+
+    /**
+     * Record a new view request, superseding the pending one, if any.
+     * @param generation the request generation
+     */
+    public synchronized void recordRequest(final long generation) {
+        if (mPendingGeneration != NONE) {
+            mSupersededCount++;
+        }
+        mRequestCount++;
+        mPendingGeneration = generation;
+        mPendingNanos = System.nanoTime();
+    }
+
+    /**
+     * Record the trace has been cleared, superseding the pending request, if any.
+     */
+    public synchronized void recordCleared() {
+        if (mPendingGeneration != NONE) {
+            mSupersededCount++;
+            mPendingGeneration = NONE;
+        }
+    }
+
+    /**
+     * Record a doSetTraceView() computation.
+     * @param generation the request generation computed
+     * @param nanos the duration of the computation, in nanoseconds
+     * @param isCompleted true if the computation has completed the trace
+     */
+    public void recordComputation(final long generation, final long nanos, final boolean isCompleted) {
+        mComputeLatency.record(nanos);
+        if (isCompleted) {
+            synchronized (this) {
+                if (generation == mPendingGeneration) {
+                    mRequestLatency.record(System.nanoTime() - mPendingNanos);
+                    mCompletedCount++;
+                    mPendingGeneration = NONE;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the name of the trace in metrics
+     */
+    public String getName() {
+        return mName;
+    }
+
+    /**
+     * @return the metrics recorded so far
+     */
+    public synchronized AudioTraceMetrics getSnapshot() {
+        return new AudioTraceMetrics(mName, mRequestCount, mSupersededCount, mCompletedCount,
+                mPendingGeneration == NONE ? 0 : 1, mComputeLatency.getCount(),
+                toMicros(mComputeLatency.getPercentileNanos(MEDIAN)),
+                toMicros(mComputeLatency.getPercentileNanos(HIGH_PERCENTILE)),
+                toMicros(mComputeLatency.getMaxNanos()),
+                toMicros(mRequestLatency.getPercentileNanos(MEDIAN)),
+                toMicros(mRequestLatency.getPercentileNanos(HIGH_PERCENTILE)),
+                mComputeLatency.getBuckets());
+    }
+
+    /**
+     * @return the histogram of doSetTraceView() durations
+     */
+    LatencyHistogram getComputeLatency() {
+        return mComputeLatency;
+    }
+
+    private static long toMicros(final long nanos) {
+        return nanos / NANOS_PER_MICROSECOND;
+    }
+
+    private final String mName;
+    private final LatencyHistogram mComputeLatency;
+    /**
+     * Durations from view requests to the computations completing them
+     */
+    private final LatencyHistogram mRequestLatency;
+    private long mRequestCount;
+    private long mSupersededCount;
+    private long mCompletedCount;
+    /**
+     * The generation of the pending request, NONE if no request is pending
+     */
+    private long mPendingGeneration;
+    private long mPendingNanos;
+
+    private static final long NONE = -1;
+    private static final long NANOS_PER_MICROSECOND = 1000;
+    static final double MEDIAN = 50;
+    static final double HIGH_PERCENTILE = 99;
+}
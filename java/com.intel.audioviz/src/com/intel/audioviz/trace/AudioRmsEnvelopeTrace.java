@@ -0,0 +1,27 @@
+/*
+ * Copyright (C) 2017 Intel Corporation
+ *
+ * This Program is subject to the terms of the Eclipse Public License, v. 1.0.
+ * If a copy of the license was not distributed with this file,
+ * you can obtain one at <http://www.eclipse.org/legal/epl-v10.html>
+ *
+ * SPDX-License-Identifier: EPL-1.0
+ */
+
+package com.intel.audioviz.trace;
+
+import com.intel.audioviz.AudioTrack;
+
+/**
+ * An AudioRmsEnvelopeTrace is an AudioWaveformTrace whose trace samples also hold signal statistics: the root mean
+ * square of the audio sample values, and the number of audio samples at full scale. Signal statistics are served by
+ * the cache levels, computed in the same pass as minimum and maximum values.
+ * @see WaveformTraceBuffer.getRms()
+ * @see WaveformTraceBuffer.getClipCount()
+ */
+public class AudioRmsEnvelopeTrace extends AudioWaveformTrace {
+
+    public AudioRmsEnvelopeTrace(final AudioTrack audioTrack, final int channel) {
+        super(audioTrack, channel, true);
+    }
+}
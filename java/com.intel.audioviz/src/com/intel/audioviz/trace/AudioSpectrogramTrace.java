@@ -0,0 +1,387 @@
+/*
+ * Copyright (C) 2017 Intel Corporation
+ *
+ * This Program is subject to the terms of the Eclipse Public License, v. 1.0.
+ * If a copy of the license was not distributed with this file,
+ * you can obtain one at <http://www.eclipse.org/legal/epl-v10.html>
+ *
+ * SPDX-License-Identifier: EPL-1.0
+ */
+
+package com.intel.audioviz.trace;
+
+import java.security.InvalidParameterException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.intel.audioviz.AudioTrack;
+import com.intel.audioviz.trace.spectrogram.FftEngine;
+import com.intel.audioviz.trace.spectrogram.SpectrogramTileCache;
+
+/**
+ * An AudioSpectrogramTrace exposes the short time Fourier transform of an AudioTrack channel: each trace sample is a
+ * column holding the level of each frequency bin of the FFT of the audio samples centered on the column.
+ *
+ * Columns are aligned on multiples of the audio sample count per column, so that they are computed once per zoom
+ * level: the first column starts at the audio sample index of the view rounded down to such a multiple. Columns are
+ * computed by tiles of consecutive columns, cached per zoom level with LRU eviction. The missing tiles of a view are
+ * computed in parallel by a pool of threads shared by all AudioSpectrogramTrace, then the trace is updated again.
+ * Until then, the missing columns are previewed from the previous trace, whatever its zoom level, when it covers
+ * them. Tiles reaching the end of the audio channel are computed again once audio samples are appended to it.
+ */
+public class AudioSpectrogramTrace extends AudioTrace {
+
+    /**
+     * Instantiate an AudioSpectrogramTrace using the default FFT size and tile cache memory budget.
+     * @param audioTrack The audio track
+     * @param channel The audio channel
+     */
+    public AudioSpectrogramTrace(final AudioTrack audioTrack, final int channel) {
+        this(audioTrack, channel, DEFAULT_FFT_SIZE, DEFAULT_TILE_CACHE_MEMORY_BUDGET);
+    }
+
+    /**
+     * @param audioTrack The audio track
+     * @param channel The audio channel
+     * @param fftSize The number of audio samples per FFT, a power of two from MIN_FFT_SIZE to MAX_FFT_SIZE
+     * @param tileCacheMemoryBudget The maximum number of bytes of cached tiles. The tiles displayed at once are kept
+     * even if they exceed it.
+     */
+    public AudioSpectrogramTrace(final AudioTrack audioTrack, final int channel, final int fftSize,
+            final long tileCacheMemoryBudget) {
+        super(audioTrack, channel);
+        if (fftSize < MIN_FFT_SIZE || fftSize > MAX_FFT_SIZE || Integer.bitCount(fftSize) != 1) {
+            throw new InvalidParameterException("Invalid FFT size");
+        }
+
+        mFftSize = fftSize;
+        mTileCache = new SpectrogramTileCache(tileCacheMemoryBudget);
+        mWantedAudioSamplePerColumn = 0;
+        mWantedFirstTile = 0;
+        mWantedLastTile = -1;
+        mCompleted = false;
+        mEndTiles = new HashMap<Long, Long>();
+        mTileSampleCount = audioTrack.getSampleProvider().getSamplesPerChannel();
+    }
+
+    /**
+     * Pending tile computations are canceled and cached tiles are released.
+     */
+    @Override
+    public void dispose() {
+        super.dispose();
+        mWantedLastTile = -1;
+        mTileCache.clear();
+    }
+
+    /**
+     * @return the number of audio samples per FFT
+     */
+    public int getFftSize() {
+        return mFftSize;
+    }
+
+    /**
+     * @return the number of frequency bins per column, from 0Hz included to the Nyquist frequency excluded
+     */
+    public int getBinCount() {
+        return mFftSize / 2;
+    }
+
+    /**
+     * @return the tiles cache of the trace
+     */
+    public SpectrogramTileCache getTileCache() {
+        return mTileCache;
+    }
+
+    /**
+     * Copy the last computed trace, without allocation once the destination is large enough.
+     * @param destination the buffer receiving the trace
+     */
+    public synchronized void copyTraceTo(final SpectrogramTraceBuffer destination) {
+        destination.copyFrom(mFrontBuffer);
+    }
+
+    @Override
+    public boolean isAudioTraceViewRequestCompleted() {
+        return mCompleted;
+    }
+
+    @Override
+    protected void doClear() {
+        /* Also called by the AudioTrace constructor, before the fields of this class are initialized */
+        if (mFrontBuffer == null) {
+            mFrontBuffer = new SpectrogramTraceBuffer();
+            mBackBuffer = new SpectrogramTraceBuffer();
+        }
+        mFrontBuffer.clear();
+        mCompleted = false;
+    }
+
+    /**
+     * The trace is assembled from cached tiles in the back buffer, then swapped with the front buffer. Missing tiles
+     * are queued for computation: the trace is completed once all of them are cached.
+     */
+    @Override
+    protected void doSetTraceView(final AudioTraceView audioTraceView) {
+        final long channelSampleCount = getAudioTrack().getSampleProvider().getSamplesPerChannel();
+        if (channelSampleCount != mTileSampleCount) {
+            removeEndTiles(channelSampleCount);
+        }
+        final long audioSamplePerColumn = audioTraceView.getAudioSamplePerTraceSample();
+        final long firstColumn = audioTraceView.getAudioSampleIndex() / audioSamplePerColumn;
+
+        /* Limit the column count according to the real audio channel length */
+        final int columnCount = (int) Math.max(0, Math.min(audioTraceView.getTraceSampleCount(),
+                (channelSampleCount - firstColumn * audioSamplePerColumn) / audioSamplePerColumn));
+        if (columnCount == 0) {
+            mWantedLastTile = -1;
+            mTileCache.setPinnedTiles(0, 0, -1);
+            mCompleted = true;
+            return;
+        }
+
+        final int binCount = getBinCount();
+        final SpectrogramTraceBuffer buffer = mBackBuffer;
+        buffer.reset(firstColumn * audioSamplePerColumn, audioSamplePerColumn, columnCount, binCount);
+        final float[] levels = buffer.getLevels();
+
+        final long firstTile = firstColumn / TILE_COLUMN_COUNT;
+        final long lastTile = (firstColumn + columnCount - 1) / TILE_COLUMN_COUNT;
+        /* Tiles of previous views which are not computed yet are no more wanted */
+        mWantedAudioSamplePerColumn = audioSamplePerColumn;
+        mWantedFirstTile = firstTile;
+        mWantedLastTile = lastTile;
+        /* Tiles of the view are not evicted by the tiles computed for it, whatever the budget */
+        mTileCache.setPinnedTiles(audioSamplePerColumn, firstTile, lastTile);
+
+        boolean completed = true;
+        for (long tile = firstTile; tile <= lastTile; tile++) {
+            final long tileFirstColumn = tile * TILE_COLUMN_COUNT;
+            final int from = (int) Math.max(0, tileFirstColumn - firstColumn);
+            final int to = (int) Math.min(columnCount, tileFirstColumn + TILE_COLUMN_COUNT - firstColumn);
+            final float[] tileLevels = mTileCache.get(audioSamplePerColumn, tile);
+
+            if (tileLevels != null) {
+                System.arraycopy(tileLevels, (int) (firstColumn + from - tileFirstColumn) * binCount, levels,
+                        from * binCount, (to - from) * binCount);
+            } else {
+                completed = false;
+                previewColumns(buffer, from, to);
+                if (mTileCache.claim(audioSamplePerColumn, tile)) {
+                    final long claimedTile = tile;
+                    TILE_EXECUTOR.execute(() -> computeTile(audioSamplePerColumn, claimedTile));
+                }
+            }
+        }
+        buffer.setSize(columnCount);
+
+        mCompleted = completed;
+        mBackBuffer = mFrontBuffer;
+        mFrontBuffer = buffer;
+    }
+
+    /**
+     * Evict the cached tiles reaching the end of the audio channel, once audio samples have been appended to it.
+     * @param channelSampleCount The new number of audio samples of the channel
+     */
+    private void removeEndTiles(final long channelSampleCount) {
+        synchronized (mTileCache) {
+            for (final Map.Entry<Long, Long> endTile : mEndTiles.entrySet()) {
+                final long audioSamplePerColumn = endTile.getKey();
+                /* The last tile having a column centered within the previous channel */
+                final long lastTile = (mTileSampleCount - 1) / audioSamplePerColumn / TILE_COLUMN_COUNT;
+                for (long tile = endTile.getValue(); tile <= lastTile; tile++) {
+                    mTileCache.remove(audioSamplePerColumn, tile);
+                }
+            }
+            mEndTiles.clear();
+            mTileSampleCount = channelSampleCount;
+        }
+    }
+
+    /**
+     * Fill columns from the columns of the previous trace covering their center, NaN where it does not.
+     * @param buffer The buffer being assembled
+     * @param from The index of the first column to fill
+     * @param to The index of the last column to fill, excluded
+     */
+    private void previewColumns(final SpectrogramTraceBuffer buffer, final int from, final int to) {
+        final SpectrogramTraceBuffer previous = mFrontBuffer;
+        final float[] levels = buffer.getLevels();
+        final int binCount = buffer.getBinCount();
+
+        for (int column = from; column < to; column++) {
+            final long center = buffer.getAudioSampleIndex() + column * buffer.getAudioSamplePerTraceSample()
+                    + buffer.getAudioSamplePerTraceSample() / 2;
+            final long previousColumn = previous.getAudioSamplePerTraceSample() == 0 ? -1
+                    : Math.floorDiv(center - previous.getAudioSampleIndex(), previous.getAudioSamplePerTraceSample());
+
+            if (previousColumn >= 0 && previousColumn < previous.getSize() && previous.getBinCount() == binCount) {
+                System.arraycopy(previous.getLevels(), (int) previousColumn * binCount, levels, column * binCount,
+                        binCount);
+            } else {
+                Arrays.fill(levels, column * binCount, (column + 1) * binCount, Float.NaN);
+            }
+        }
+    }
+
+    /**
+     * @return true if the tile is required by the last view
+     */
+    private boolean isTileWanted(final long audioSamplePerColumn, final long tile) {
+        return audioSamplePerColumn == mWantedAudioSamplePerColumn && tile >= mWantedFirstTile
+                && tile <= mWantedLastTile;
+    }
+
+    /**
+     * Compute a claimed tile from a thread of the shared pool, then update the trace. Tiles which are no more wanted
+     * are given up.
+     * @param audioSamplePerColumn the audio sample count per column of the tile zoom level
+     * @param tile the index of the tile at that zoom level
+     */
+    private void computeTile(final long audioSamplePerColumn, final long tile) {
+        boolean isCached = false;
+        try {
+            if (!isTileWanted(audioSamplePerColumn, tile)) {
+                return;
+            }
+
+            final FftEngine fftEngine = getFftEngine(mFftSize);
+            final long channelSampleCount = getAudioTrack().getSampleProvider().getSamplesPerChannel();
+            final int binCount = getBinCount();
+            final float[] samples = new float[mFftSize];
+            final float[] levels = new float[TILE_COLUMN_COUNT * binCount];
+            Arrays.fill(levels, FftEngine.MIN_LEVEL);
+            boolean reachesEnd = false;
+
+            for (int column = 0; column < TILE_COLUMN_COUNT; column++) {
+                final long columnIndex = tile * TILE_COLUMN_COUNT + column;
+                final long center = columnIndex * audioSamplePerColumn + audioSamplePerColumn / 2;
+                if (center >= channelSampleCount) {
+                    reachesEnd = true;
+                    break;
+                }
+                if (column % WANTED_CHECK_COLUMN_COUNT == 0 && !isTileWanted(audioSamplePerColumn, tile)) {
+                    return;
+                }
+
+                /* The FFT block is centered on the column, and kept within the audio channel */
+                final long firstSample = Math.max(0, Math.min(center - mFftSize / 2, channelSampleCount - mFftSize));
+                final int sampleCount = (int) Math.min(mFftSize, channelSampleCount - firstSample);
+                reachesEnd |= center - mFftSize / 2 + mFftSize > channelSampleCount || sampleCount < mFftSize;
+                getAudioTrack().getSampleProvider().getSamplesAsFloat(getChannel(), firstSample, samples, 0,
+                        sampleCount);
+                fftEngine.computeLevels(samples, 0, sampleCount, levels, column * binCount);
+            }
+
+            synchronized (mTileCache) {
+                /* A tile reaching the end of a channel which has grown since is computed again */
+                if (!reachesEnd || channelSampleCount == mTileSampleCount) {
+                    mTileCache.put(audioSamplePerColumn, tile, levels);
+                    if (reachesEnd) {
+                        mEndTiles.merge(audioSamplePerColumn, tile, Math::min);
+                    }
+                    isCached = true;
+                }
+            }
+            if (isCached) {
+                traceDataChanged();
+            }
+        } finally {
+            if (!isCached) {
+                mTileCache.release(audioSamplePerColumn, tile);
+                /* A view may have wanted the tile again while it was claimed: let it claim the tile */
+                if (isTileWanted(audioSamplePerColumn, tile)) {
+                    traceDataChanged();
+                }
+            }
+        }
+    }
+
+    /**
+     * @param fftSize the number of audio samples per FFT
+     * @return the FftEngine of the calling thread
+     */
+    private static FftEngine getFftEngine(final int fftSize) {
+        FftEngine fftEngine = FFT_ENGINES.get();
+        if (fftEngine == null || fftEngine.getSize() != fftSize) {
+            fftEngine = new FftEngine(fftSize);
+            FFT_ENGINES.set(fftEngine);
+        }
+        return fftEngine;
+    }
+
+    private static ThreadPoolExecutor newTileExecutor() {
+        final int threadCount = Math.max(1, Runtime.getRuntime().availableProcessors());
+        final AtomicInteger threadIndex = new AtomicInteger();
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(threadCount, threadCount,
+                TILE_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                runnable -> {
+                    final Thread thread = new Thread(runnable, "AudioSpectrogramTile-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private final int mFftSize;
+    private final SpectrogramTileCache mTileCache;
+    /**
+     * The last computed trace
+     */
+    private SpectrogramTraceBuffer mFrontBuffer;
+    /**
+     * The buffer the next trace is assembled in
+     */
+    private SpectrogramTraceBuffer mBackBuffer;
+    /**
+     * The tiles required by the last view, read by the threads computing tiles
+     */
+    private volatile long mWantedAudioSamplePerColumn;
+    private volatile long mWantedFirstTile;
+    private volatile long mWantedLastTile;
+    /**
+     * Written by doSetTraceView(), read by any thread through isAudioTraceViewRequestCompleted()
+     */
+    private volatile boolean mCompleted;
+    /**
+     * The lowest index of the cached tiles reaching the end of the audio channel, per audio sample count per column,
+     * guarded by mTileCache
+     */
+    private final HashMap<Long, Long> mEndTiles;
+    /**
+     * The number of audio samples of the channel cached tiles are computed from, guarded by mTileCache
+     */
+    private long mTileSampleCount;
+
+    public static final int MIN_FFT_SIZE = 64;
+    public static final int MAX_FFT_SIZE = 16384;
+    private static final int DEFAULT_FFT_SIZE = 1024;
+    /**
+     * Default tile cache memory budget in bytes: 32MB, 128 tiles of the default FFT size
+     */
+    private static final long DEFAULT_TILE_CACHE_MEMORY_BUDGET = 32L * 1024L * 1024L;
+    /**
+     * Number of columns per tile
+     */
+    private static final int TILE_COLUMN_COUNT = 128;
+    /**
+     * Number of columns computed between two checks that the tile is still wanted
+     */
+    private static final int WANTED_CHECK_COLUMN_COUNT = 16;
+    private static final long TILE_THREAD_KEEP_ALIVE_SECONDS = 10;
+    private static final ThreadLocal<FftEngine> FFT_ENGINES = new ThreadLocal<FftEngine>();
+    /**
+     * Threads computing the tiles of all AudioSpectrogramTrace
+     */
+    private static final ThreadPoolExecutor TILE_EXECUTOR = newTileExecutor();
+}
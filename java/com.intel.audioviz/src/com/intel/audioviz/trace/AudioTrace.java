@@ -12,14 +12,29 @@ package com.intel.audioviz.trace;
 
 
 import java.security.InvalidParameterException;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.intel.audioviz.AudioTrack;
 import com.intel.audioviz.AudioVizException;
+import com.intel.audioviz.metrics.AudioVizMetrics;
+import com.intel.audioviz.metrics.TraceViewMetrics;
 
 /**
  * An AudioTrace is an abstract representation of an AudioTrack's channel part. The part exposed by the AudioTrace is
  * controlled through an AudioTraceView.
+ *
+ * Traces are computed by a bounded pool of threads shared by all AudioTrace. Each AudioTrace has at most one
+ * computation queued or running: a new view supersedes the pending one, so that requests issued faster than they are
+ * computed, for instance while zooming with the mouse wheel, are coalesced to the last one. The views an
+ * AudioTraceController applies to all its traces at once are computed by a single job, see TraceViewBatch.
+ *
+ * Neither setTraceView() nor clear() wait for a running computation: its result is discarded if superseded.
  */
 public abstract class AudioTrace {
 
@@ -38,9 +53,14 @@ public abstract class AudioTrace {
 
         mAudioTrack = audioTrack;
         mChannel = channel;
-        mSetTraceViewThread = null;
         mAudioTraceListeners = new HashSet<IAudioTraceListener>();
+        mRequestMonitor = new Object();
+        mRequestGeneration = 0;
+        mIsScheduled = false;
+        mIsRescheduled = false;
+        mIsClearPending = false;
         mIsDisposed = false;
+        mMetrics = AudioVizMetrics.getDefault().newTraceViewMetrics(this);
 
         clear();
     }
@@ -60,7 +80,7 @@ public abstract class AudioTrace {
     }
 
     /**
-     * Dispose AudioTrace. Any ongoing setTraceView is interrupted.
+     * Dispose AudioTrace. Any pending setTraceView is canceled.
      */
     public void dispose() {
         if (!mIsDisposed) {
@@ -69,13 +89,16 @@ public abstract class AudioTrace {
             }
             mIsDisposed = true;
             clear();
+            AudioVizMetrics.getDefault().remove(this);
         }
     }
 
     /**
      * Set the desired range and unit of the trace. Since the computation of the requested range may require a lot of
      * time, the trace is updated in a background Thread. In order to know when the trace is completed, the caller may
-     * register itself as IAudioTraceListener.
+     * register itself as IAudioTraceListener. While the trace is not completed, it is updated again each time the
+     * subclass signals through traceDataChanged() that more data is available.
+     * This method never blocks: a request which is not computed yet is superseded by the new one.
      *
      * @param audioTraceView
      *            The range to be applied
@@ -86,46 +109,54 @@ public abstract class AudioTrace {
      * @see addAudioTraceListener()
      */
     public final void setTraceView(final AudioTraceView audioTraceView, final boolean strict) {
+        setTraceView(audioTraceView, strict, null);
+    }
+
+    /**
+     * Set the desired range and unit of the trace, as setTraceView(audioTraceView, strict) does.
+     * @param audioTraceView The range to be applied
+     * @param strict If true, the requested view is strictly applied
+     * @param batch The batch computing the view along with the ones of other traces, null to compute it alone
+     */
+    final void setTraceView(final AudioTraceView audioTraceView, final boolean strict, final TraceViewBatch batch) {
         if (!audioTraceView.isValid()) {
             throw new InvalidParameterException("Invalid AudioTraceView");
         }
-
-        /* Stop on going thread if it is still computing the last and now obsolete setTraceView() */
-        stopDoSetTraceViewThread();
         if (mIsDisposed) {
             throw new AudioVizException("AudioTrace is disposed");
         }
-        // According to the 'strict' argument, is the requested AudioTraceView different that the last one ?
-        final boolean isAudioTraceViewDifferent = strict ? !mAudioTraceView.equals(audioTraceView)
-                : !mAudioTraceView.include(audioTraceView);
-        /*
-         * Execute the doSetTraceView() only if the last request was not completed or if the new AudioTraceView is
-         * different.
-         */
-        if (!isAudioTraceViewRequestCompleted() || isAudioTraceViewDifferent) {
-            mAudioTraceView = audioTraceView;
 
-            /* Spawn a thread to compute the last setTraceView() */
-            mSetTraceViewThread = new Thread(() -> {
-                int delay = INITIAL_DELAY;
-                try {
-                    do {
-                        synchronized (AudioTrace.this) {
-                            doSetTraceView(mAudioTraceView);
-                        }
-                        notifyListenner();
-                        Thread.sleep(delay);
-                        delay = Math.min(delay * 2, MAXIMUM_DELAY);
-                    } while (!isAudioTraceViewRequestCompleted());
-                    notifyListenner();
-                } catch (final InterruptedException ex) {
-                    Thread.currentThread().interrupt();
+        synchronized (mRequestMonitor) {
+            // According to the 'strict' argument, is the requested AudioTraceView different that the last one ?
+            final boolean isAudioTraceViewDifferent = strict ? !mAudioTraceView.equals(audioTraceView)
+                    : !mAudioTraceView.include(audioTraceView);
+            /*
+             * Execute the doSetTraceView() only if the last request was not completed or if the new AudioTraceView is
+             * different.
+             */
+            if (!isAudioTraceViewRequestCompleted() || isAudioTraceViewDifferent) {
+                mAudioTraceView = audioTraceView;
+                mRequestGeneration++;
+                if (mMetrics != null) {
+                    mMetrics.recordRequest(mRequestGeneration);
                 }
-            });
-            mSetTraceViewThread.start();
-        } else {
-            notifyListenner();
+                schedule(batch);
+                return;
+            }
         }
+        notifyListenner();
+    }
+
+    /**
+     * Give a hint about the audio samples which are displayed, so that the data they require is prepared first.
+     * The default implementation ignores the hint.
+     *
+     * @param audioSampleIndex
+     *            The audio sample index of the first audio sample displayed
+     * @param audioSampleCount
+     *            The number of audio samples displayed
+     */
+    public void setPriorityRange(final long audioSampleIndex, final long audioSampleCount) {
     }
 
     /**
@@ -137,14 +168,28 @@ public abstract class AudioTrace {
 
     /**
      * Clear the trace. The trace will remain empty until a subsequent call to setTraceView() is made.
+     * This method never waits for a running computation: its result is discarded, and the trace is cleared once it
+     * is done, by the shared pool. Otherwise the trace is cleared at once.
      *
      * @see setTraceRange()
      */
-    public final synchronized void clear() {
-        stopDoSetTraceViewThread();
-        mAudioTraceView = AudioTraceView.INVALID_AUDIO_TRACE_RANGE;
-        doClear();
-        notifyListenner();
+    public final void clear() {
+        synchronized (mRequestMonitor) {
+            mAudioTraceView = AudioTraceView.INVALID_AUDIO_TRACE_RANGE;
+            mRequestGeneration++;
+            mIsClearPending = true;
+            if (mMetrics != null) {
+                mMetrics.recordCleared();
+            }
+            if (mIsScheduled) {
+                /* Applied by the next computation, queued once the running one is done */
+                mIsRescheduled = true;
+                return;
+            }
+            /* No computation can start meanwhile: the clear is applied from this thread */
+            mIsScheduled = true;
+        }
+        runTraceViewRequest(true);
     }
 
     /**
@@ -174,6 +219,98 @@ public abstract class AudioTrace {
         }
     }
 
+    /**
+     * Signal that the data the last doSetTraceView() call depends on may have changed, so that an uncompleted
+     * trace gets updated again. May be called from any thread, including from doSetTraceView().
+     */
+    protected final void traceDataChanged() {
+        synchronized (mRequestMonitor) {
+            if (mAudioTraceView.isValid() && !mIsDisposed) {
+                schedule(null);
+            }
+        }
+    }
+
+    /**
+     * @return true if the view doSetTraceView() is computing has been superseded by a new view or by clear(), in which
+     * case doSetTraceView() may return early: its result is discarded.
+     */
+    protected final boolean isTraceViewRequestSuperseded() {
+        return mRunningGeneration != mRequestGeneration;
+    }
+
+    /**
+     * Queue the computation of the last requested view, unless it is already queued. If it is running, it is queued
+     * again once done.
+     * @param batch The batch to add the computation to, null to queue it alone
+     * @note The caller shall hold mRequestMonitor
+     */
+    private void schedule(final TraceViewBatch batch) {
+        if (mIsScheduled) {
+            mIsRescheduled = true;
+        } else {
+            mIsScheduled = true;
+            if (batch != null) {
+                batch.mAudioTraces.add(this);
+            } else {
+                TRACE_VIEW_EXECUTOR.execute(() -> runTraceViewRequest(false));
+            }
+        }
+    }
+
+    /**
+     * Apply a pending clear, then compute the last requested view once, from a thread of the shared pool.
+     * @param isClearOnly true to only apply a pending clear, from the thread calling clear(): a view requested
+     * meanwhile is queued to the shared pool
+     */
+    private void runTraceViewRequest(final boolean isClearOnly) {
+        final AudioTraceView audioTraceView;
+        final boolean isClearPending;
+        synchronized (mRequestMonitor) {
+            audioTraceView = isClearOnly ? AudioTraceView.INVALID_AUDIO_TRACE_RANGE : mAudioTraceView;
+            isClearPending = mIsClearPending;
+            mIsClearPending = false;
+            mRunningGeneration = mRequestGeneration;
+            if (!isClearOnly) {
+                mIsRescheduled = false;
+            }
+        }
+
+        try {
+            boolean isChanged = false;
+            synchronized (this) {
+                if (isClearPending) {
+                    doClear();
+                    isChanged = true;
+                }
+                /* clear() may have been called meanwhile */
+                if (audioTraceView.isValid() && !isTraceViewRequestSuperseded()) {
+                    final long startNanos = mMetrics == null ? 0 : System.nanoTime();
+                    doSetTraceView(audioTraceView);
+                    isChanged = true;
+                    if (mMetrics != null) {
+                        mMetrics.recordComputation(mRunningGeneration, System.nanoTime() - startNanos,
+                                isAudioTraceViewRequestCompleted());
+                    }
+                }
+            }
+            if (isChanged && !isTraceViewRequestSuperseded()) {
+                notifyListenner();
+            }
+        } finally {
+            /* Even if the request failed, for the next ones to be scheduled */
+            synchronized (mRequestMonitor) {
+                if (mIsRescheduled && !mIsDisposed) {
+                    /* Queued again rather than looping, so that other traces get their turn */
+                    mIsRescheduled = false;
+                    TRACE_VIEW_EXECUTOR.execute(() -> runTraceViewRequest(false));
+                } else {
+                    mIsScheduled = false;
+                }
+            }
+        }
+    }
+
     private void notifyListenner() {
         synchronized (mAudioTraceListeners) {
             for (final IAudioTraceListener audioTraceListener : mAudioTraceListeners) {
@@ -182,19 +319,19 @@ public abstract class AudioTrace {
         }
     }
 
-    private void stopDoSetTraceViewThread() {
-        if (mSetTraceViewThread != null) {
-            mSetTraceViewThread.interrupt();
-
-            boolean joined = false;
-            do {
-                try {
-                    mSetTraceViewThread.join();
-                    joined = true;
-                } catch (final InterruptedException e) {
-                }
-            } while (!joined);
-        }
+    private static ThreadPoolExecutor newTraceViewExecutor() {
+        final int threadCount = Math.max(1, Math.min(MAXIMUM_TRACE_VIEW_THREADS,
+                Runtime.getRuntime().availableProcessors()));
+        final AtomicInteger threadIndex = new AtomicInteger();
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(threadCount, threadCount,
+                TRACE_VIEW_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                runnable -> {
+                    final Thread thread = new Thread(runnable, "AudioTrace-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
     }
 
     /**
@@ -203,31 +340,101 @@ public abstract class AudioTrace {
     public abstract boolean isAudioTraceViewRequestCompleted();
 
     /**
-     * Do the computation of the AudioTraceRange requested. This subclass method is safely called from a dedicated
-     * Thread spawned by the AudioTrace abstract class.
+     * Do the computation of the AudioTraceRange requested. This subclass method is safely called, with the AudioTrace
+     * locked, from a thread of the pool shared by all AudioTrace: it shall not wait. If the trace cannot be completed
+     * yet, the subclass shall call traceDataChanged() once more data is available: doSetTraceView() is then called
+     * again.
      */
     protected abstract void doSetTraceView(AudioTraceView audioTraceView);
 
     /**
      * Do the AudioTrace data clear. This subclass method is called with the guarantee to not be called while
-     * doSetTraceView() is.
+     * doSetTraceView() is, either from the thread calling clear() or from a thread of the shared pool.
      */
     protected abstract void doClear();
 
+    /**
+     * The views requested at once for several traces, such as by an AudioTraceController, computed one trace after
+     * the other by a single job of the shared pool. Views requested again before the job runs are coalesced into it:
+     * the traces it holds compute their last requested view. The traces of the batch are thus refreshed together,
+     * and the shared pool queues one job per batch rather than one per trace.
+     */
+    static final class TraceViewBatch {
+
+        TraceViewBatch() {
+            mAudioTraces = new ArrayList<AudioTrace>();
+        }
+
+        /**
+         * Queue the computation of the traces added by setTraceView(), if any.
+         */
+        void submit() {
+            if (!mAudioTraces.isEmpty()) {
+                TRACE_VIEW_EXECUTOR.execute(this::run);
+            }
+        }
+
+        private void run() {
+            for (int i = 0; i < mAudioTraces.size(); i++) {
+                try {
+                    mAudioTraces.get(i).runTraceViewRequest(false);
+                } catch (final RuntimeException e) {
+                    /* The following traces are still scheduled: compute them alone */
+                    for (final AudioTrace audioTrace : mAudioTraces.subList(i + 1, mAudioTraces.size())) {
+                        TRACE_VIEW_EXECUTOR.execute(() -> audioTrace.runTraceViewRequest(false));
+                    }
+                    throw e;
+                }
+            }
+        }
+
+        /**
+         * Filled from the thread requesting the views, then read by the job once submitted
+         */
+        private final List<AudioTrace> mAudioTraces;
+    }
+
     private final int mChannel;
     private final AudioTrack mAudioTrack;
     private final HashSet<IAudioTraceListener> mAudioTraceListeners;
-    private Thread mSetTraceViewThread;
-    private AudioTraceView mAudioTraceView;
-    private boolean mIsDisposed;
+    /**
+     * The last requested view, written with mRequestMonitor held
+     */
+    private volatile AudioTraceView mAudioTraceView;
+    private volatile boolean mIsDisposed;
+    /**
+     * Guards the scheduling of view requests
+     */
+    private final Object mRequestMonitor;
+    /**
+     * Increased by each setTraceView() and clear(), written with mRequestMonitor held
+     */
+    private volatile long mRequestGeneration;
+    /**
+     * The request generation doSetTraceView() is computing
+     */
+    private volatile long mRunningGeneration;
+    /**
+     * True while a computation is queued or running
+     */
+    private boolean mIsScheduled;
+    /**
+     * True if the computation shall be queued again once the running one is done
+     */
+    private boolean mIsRescheduled;
+    /**
+     * True if clear() has been called since the last computation started, written with mRequestMonitor held
+     */
+    private boolean mIsClearPending;
+    /**
+     * Records the view requests, null if metrics were disabled when the AudioTrace was instantiated
+     */
+    private final TraceViewMetrics mMetrics;
 
     /**
-     * The thread which handles execution of the doSetTraceView() will wait before recall it in case the trace has not
-     * been fully computed. The first time, the thread will wait for INITIAL_DELAY milliseconds. Then for each
-     * subsequent recall of doSetTraceView(), the thread doubles the time to wait before next recall if the trace is not
-     * fully computed again. The delay is doubled each iteration up to MAXIMUM_DELAY milliseconds which is the maximum
-     * wait duration between two subsequent calls to doSetTraceView().
+     * Threads computing the traces of all AudioTrace
      */
-    private static final int INITIAL_DELAY = 25;
-    private static final int MAXIMUM_DELAY = 1000;
+    private static final int MAXIMUM_TRACE_VIEW_THREADS = 4;
+    private static final long TRACE_VIEW_THREAD_KEEP_ALIVE_SECONDS = 10;
+    private static final ThreadPoolExecutor TRACE_VIEW_EXECUTOR = newTraceViewExecutor();
 }
@@ -14,10 +14,16 @@ import java.security.InvalidParameterException;
 import java.util.HashMap;
 import java.util.HashSet;
 
+import com.intel.audioviz.metrics.AudioVizMetrics;
+
 /**
  * An AudioTraceControl has the ability to control one or more AudioTrace
  * synchronously. The control consist in selecting the trace range and trace
  * zoom.
+ * In follow end mode, the trace range is kept at the end of the AudioTracks, so that audio samples appended to them
+ * are displayed as soon as refreshTraceViews() is called.
+ * The views of all the controlled traces are computed by a single job of the pool shared by all AudioTrace, so that
+ * they are refreshed together, and views requested faster than computed are coalesced across traces.
  */
 public class AudioTraceController {
 
@@ -30,7 +36,9 @@ public class AudioTraceController {
         mAudioTraces = new HashMap<AudioTrace, Integer>();
         mListeners = new HashSet<IAudioTraceControllerListener>();
         mZoomFactor = INVALID_ZOOM_FACTOR;
+        mExactUnit = INVALID_UNIT;
         mAudioSampleIndex = 0;
+        mFollowEnd = false;
     }
 
     /**
@@ -43,7 +51,9 @@ public class AudioTraceController {
         mAudioTraces = new HashMap<AudioTrace, Integer>();
         mListeners = new HashSet<IAudioTraceControllerListener>();
         mZoomFactor = audioTraceController.mZoomFactor;
+        mExactUnit = audioTraceController.mExactUnit;
         mAudioSampleIndex = audioTraceController.mAudioSampleIndex;
+        mFollowEnd = audioTraceController.mFollowEnd;
     }
 
     /**
@@ -101,7 +111,7 @@ public class AudioTraceController {
     }
 
     /**
-     * Set a zoom factor ensuring each trace shows the entire audio data of the AudioTrack's
+     * Set the smallest zoom factor ensuring each trace shows the entire audio data of the AudioTrack's
      * channel they belong to.
      */
     public void setFullRange() {
@@ -109,6 +119,7 @@ public class AudioTraceController {
         if (zoomFactor != INVALID_ZOOM_FACTOR) {
             mAudioSampleIndex = 0;
             mZoomFactor = zoomFactor;
+            mExactUnit = getUnit();
             doControlTrace();
         }
     }
@@ -124,13 +135,48 @@ public class AudioTraceController {
      * Set the Audio Sample index the trace(s) shall start(s) from
      * @param sampleIndex Audio Sample index
      * @note the value is limited in order to have at least one trace not empty
+     * @note above one Audio Sample per Trace Sample, the value is rounded to shift the trace(s) by whole Trace
+     * Samples, so that the Trace Samples still visible are not computed again
+     * @note the follow end mode is left
      */
     public void setAudioSampleIndex(final long sampleIndex) {
         if (sampleIndex < 0) {
             throw new InvalidParameterException("Invalid audio sample index");
         }
 
-        doSetAudioSampleIndex(sampleIndex);
+        mFollowEnd = false;
+        doSetAudioSampleIndex(mZoomFactor > 1 ? getPannedAudioSampleIndex(sampleIndex) : sampleIndex);
+        doControlTrace();
+    }
+
+    /**
+     * Enter or leave the follow end mode. In follow end mode, the last audio sample of the longest AudioTrack is
+     * kept visible whatever the zoom: the trace(s) scroll(s) as audio samples are appended to the AudioTracks. The
+     * follow end mode is left as soon as the audio sample index is set.
+     * @param followEnd true to enter the follow end mode, false to leave it
+     * @see refreshTraceViews()
+     */
+    public void setFollowEnd(final boolean followEnd) {
+        mFollowEnd = followEnd;
+        if (followEnd) {
+            doControlTrace();
+        }
+    }
+
+    /**
+     * @return true in follow end mode
+     */
+    public boolean isFollowEnd() {
+        return mFollowEnd;
+    }
+
+    /**
+     * Apply the trace views again, once audio samples have been appended to the AudioTrack of a controlled trace.
+     * In follow end mode, the trace(s) scroll(s) to the new end of the AudioTracks, otherwise the trace views are
+     * unchanged but cover the appended audio samples they reach.
+     * @see com.intel.audioviz.IAudioTrackListener
+     */
+    public void refreshTraceViews() {
         doControlTrace();
     }
 
@@ -154,7 +200,7 @@ public class AudioTraceController {
 
     /**
      * @return The unit of the Trace Sample. In other words, the number of Audio Sample per trace Sample.
-     * @remark Unit is always a power of two, including negative powers (0,5 ; 0,25 ; 0,125...)
+     * @remark Unit is either an integer or the inverse of an integer (0,5 ; 0,333... ; 0,25...)
      */
     public double getUnit() {
         if (mZoomFactor != INVALID_ZOOM_FACTOR) {
@@ -175,20 +221,7 @@ public class AudioTraceController {
      *            The index of the Audio Sample the zoom is centered on
      */
     public void zoomIn(final long centerIndex) {
-        if (mZoomFactor != INVALID_ZOOM_FACTOR) {
-            if (mZoomFactor > 1) {
-                // Design makes mZoomFactor always been a power of two
-                assert Long.bitCount(mZoomFactor) == 1;
-                mZoomFactor /= 2;
-            } else if (mZoomFactor == 1) {
-                mZoomFactor = -2;
-            } else if (mZoomFactor <= -2) {
-                mZoomFactor *= 2;
-            }
-
-            doSetAudioSampleIndex(mAudioSampleIndex + (centerIndex - mAudioSampleIndex) / 2);
-            doControlTrace();
-        }
+        zoom(2, centerIndex);
     }
 
     /**
@@ -198,18 +231,57 @@ public class AudioTraceController {
      *            The index of the Audio Sample the zoom is centered on
      */
     public void zoomOut(final long centerIndex) {
+        zoom(.5, centerIndex);
+    }
+
+    /**
+     * Zoom trace(s) by any factor, for instance following a pinch gesture.
+     *
+     * @param factor
+     *            The zoom factor, greater than 1 to zoom in, lower than 1 to zoom out
+     * @param centerIndex
+     *            The index of the Audio Sample the zoom is centered on
+     */
+    public void zoom(final double factor, final long centerIndex) {
+        if (!(factor > 0) || Double.isInfinite(factor)) {
+            throw new InvalidParameterException("Invalid zoom factor");
+        }
+
         if (mZoomFactor != INVALID_ZOOM_FACTOR) {
-            if (mZoomFactor < -2) {
-                // Design makes mZoomFactor always been a negative power of two
-                assert Long.bitCount(mZoomFactor) == 2;
-                mZoomFactor /= 2;
-            } else if (mZoomFactor == -2) {
-                mZoomFactor = 1;
-            } else if (mZoomFactor >= 0) {
-                mZoomFactor *= 2;
+            /* From the exact unit, so that small repeated factors accumulate until they change the rounded unit */
+            setUnit(mExactUnit / factor, centerIndex);
+        }
+    }
+
+    /**
+     * Set the unit of the trace(s), not necessarily a power of two. A unit greater than 1 is rounded to the closest
+     * integer, a unit lower than 1 to the inverse of the closest integer. The exact unit is kept, so that zoom()
+     * scales it rather than the rounded one.
+     *
+     * @param unit
+     *            The number of Audio Sample per Trace Sample
+     * @param centerIndex
+     *            The index of the Audio Sample which stays at the same place
+     */
+    public void setUnit(final double unit, final long centerIndex) {
+        if (!(unit > 0) || Double.isInfinite(unit)) {
+            throw new InvalidParameterException("Invalid unit");
+        }
+
+        if (mZoomFactor != INVALID_ZOOM_FACTOR) {
+            final double previousUnit = getUnit();
+            mExactUnit = unit;
+            if (unit >= 1) {
+                mZoomFactor = Math.round(unit);
+            } else {
+                mZoomFactor = -Math.round(1 / unit);
+                if (mZoomFactor == -1) {
+                    mZoomFactor = 1;
+                }
             }
 
-            doSetAudioSampleIndex(mAudioSampleIndex - (centerIndex - mAudioSampleIndex));
+            final double ratio = getUnit() / previousUnit;
+            doSetAudioSampleIndex(centerIndex - Math.round((centerIndex - mAudioSampleIndex) * ratio));
             doControlTrace();
         }
     }
@@ -255,19 +327,31 @@ public class AudioTraceController {
         /* If zoom has not been yet computed, try to compute it now. */
         if (mZoomFactor == INVALID_ZOOM_FACTOR) {
             mZoomFactor = getFullRangeZoomFactor();
+            mExactUnit = getUnit();
         }
         /* If zoom is still invalid (actually we could say still unknown), cannot apply range */
         if (mZoomFactor != INVALID_ZOOM_FACTOR) {
+            if (mFollowEnd) {
+                mAudioSampleIndex = getEndAudioSampleIndex();
+            }
+            final AudioTrace.TraceViewBatch batch = new AudioTrace.TraceViewBatch();
             for (final AudioTrace audioTrace : mAudioTraces.keySet()) {
                 if (mAudioTraces.get(audioTrace) != null) {
+                    final long audioSamplePerTraceSample = Math.max(1, mZoomFactor);
+                    final int traceSampleCount = mAudioTraces.get(audioTrace).intValue();
+
+                    /* Let the trace prepare the visible audio samples first */
+                    audioTrace.setPriorityRange(mAudioSampleIndex, audioSamplePerTraceSample * traceSampleCount);
                     audioTrace.setTraceView(
-                            new AudioTraceView(
-                                    mAudioSampleIndex,
-                                    Math.max(1, mZoomFactor),
-                                    mAudioTraces.get(audioTrace).intValue()),
-                            true);
+                            new AudioTraceView(mAudioSampleIndex, audioSamplePerTraceSample, traceSampleCount),
+                            true, batch);
                 }
             }
+            batch.submit();
+            final AudioVizMetrics metrics = AudioVizMetrics.getDefault();
+            if (metrics.isEnabled()) {
+                metrics.recordControllerView(mAudioTraces.size());
+            }
             notifyListeners();
         }
     }
@@ -275,15 +359,53 @@ public class AudioTraceController {
     private void doSetAudioSampleIndex(final long sampleIndex) {
         mAudioSampleIndex = Math.max(sampleIndex, 0);
         if (mZoomFactor != INVALID_ZOOM_FACTOR) {
-            /* Limit the maximum index in order to have at list one trace with something rendered */
-            mAudioSampleIndex = Math.min(mAudioSampleIndex, getMaximumAudioSampleIndex());
-            /* Align start sample index on a multiple of current zoomFactor in order to avoid rendering
-             * artifacts.
-             */
+            /* Limit the maximum index in order to have at list one trace with something rendered.
+             * The start sample index is not aligned on the zoom factor: traces are computed for any index. */
+            mAudioSampleIndex = Math.max(0, Math.min(mAudioSampleIndex, getMaximumAudioSampleIndex()));
+        }
+    }
+
+    /**
+     * @param sampleIndex the audio sample index panned to, at the current zoom factor, greater than 1
+     * @return the closest audio sample index in the same phase as the current one, modulo the zoom factor, and
+     * within the limits of the audio sample index if any is
+     */
+    private long getPannedAudioSampleIndex(final long sampleIndex) {
+        final long maximumAudioSampleIndex = getMaximumAudioSampleIndex();
+        long pannedAudioSampleIndex = mAudioSampleIndex
+                + Math.floorDiv(sampleIndex - mAudioSampleIndex + mZoomFactor / 2, mZoomFactor) * mZoomFactor;
+        if (pannedAudioSampleIndex > maximumAudioSampleIndex) {
+            pannedAudioSampleIndex -=
+                    (pannedAudioSampleIndex - maximumAudioSampleIndex + mZoomFactor - 1) / mZoomFactor * mZoomFactor;
+        }
+        if (pannedAudioSampleIndex < 0) {
+            pannedAudioSampleIndex += (mZoomFactor - 1 - pannedAudioSampleIndex) / mZoomFactor * mZoomFactor;
+        }
+        return pannedAudioSampleIndex;
+    }
+
+    /**
+     * @return the audio sample index from which the last audio sample of the longest AudioTrack is the last visible
+     * one. Above one audio sample per trace sample, the index is a multiple of the number of audio samples per trace
+     * sample, and the last incomplete trace sample is not displayed: as the AudioTracks grow, traces are then shifted
+     * by whole trace samples, and the trace samples still visible are not computed again.
+     */
+    private long getEndAudioSampleIndex() {
+        final double unit = getUnit();
+        long endAudioSampleIndex = 0;
+        for (final AudioTrace audioTrace : mAudioTraces.keySet()) {
+            final long sampleCount = audioTrace.getAudioTrack().getSampleProvider().getSamplesPerChannel();
+            final int visibleTraceSampleCount = mAudioTraces.get(audioTrace).intValue();
+
             if (mZoomFactor > 1) {
-                mAudioSampleIndex -= mAudioSampleIndex % mZoomFactor;
+                endAudioSampleIndex = Math.max(endAudioSampleIndex,
+                        (sampleCount / mZoomFactor - visibleTraceSampleCount) * mZoomFactor);
+            } else {
+                endAudioSampleIndex = Math.max(endAudioSampleIndex,
+                        sampleCount - (long) Math.ceil(visibleTraceSampleCount * unit));
             }
         }
+        return Math.max(0, Math.min(endAudioSampleIndex, getMaximumAudioSampleIndex()));
     }
 
     private long getFullRangeZoomFactor(final AudioTrace audioTrace, final int viewPixelSize) {
@@ -293,23 +415,16 @@ public class AudioTraceController {
 
         final long sampleCount = audioTrace.getAudioTrack().getSampleProvider().getSamplesPerChannel();
 
+        /* Exact fit, not rounded to a power of two */
         if (sampleCount < viewPixelSize) {
-            long zoomFactor;
-            if (viewPixelSize % sampleCount != 0 || Long.bitCount(viewPixelSize / sampleCount) != 1) {
-                zoomFactor = -roundToNextPowerOf2(viewPixelSize / sampleCount) / 2;
-            } else {
-                zoomFactor = -(viewPixelSize / sampleCount);
-            }
+            long zoomFactor = -(viewPixelSize / Math.max(1, sampleCount));
             if (zoomFactor == -1) {
                 zoomFactor = 1;
             }
             return zoomFactor;
-        } else
-            if (sampleCount % viewPixelSize != 0 || Long.bitCount(sampleCount / viewPixelSize) != 1) {
-                return roundToNextPowerOf2(sampleCount / viewPixelSize);
-            } else {
-                return sampleCount / viewPixelSize;
-            }
+        } else {
+            return (sampleCount + viewPixelSize - 1) / viewPixelSize;
+        }
     }
 
     private long getFullRangeZoomFactor() {
@@ -326,16 +441,6 @@ public class AudioTraceController {
         return zoomFactor;
     }
 
-    private long roundToNextPowerOf2(final long number) {
-        /*
-         * Cannot round if no more than one leading 0 since it would return a negative number. Assert since the design
-         * of this class shall prevent such a situation.
-         */
-        assert Long.numberOfLeadingZeros(number) > 1;
-
-        return 1L << (Long.SIZE - Long.numberOfLeadingZeros(number));
-    }
-
     private boolean canAccept(final AudioTrace candidateAudioTrace) {
         if (!mAudioTraces.keySet().isEmpty()) {
             for (final AudioTrace audioTrace : mAudioTraces.keySet()) {
@@ -353,12 +458,17 @@ public class AudioTraceController {
     private final HashMap<AudioTrace, Integer> mAudioTraces;
     private final HashSet<IAudioTraceControllerListener> mListeners;
     private long mAudioSampleIndex;
+    private boolean mFollowEnd;
     /**
      * The zoom factor indicates the number of Audio Sample for one Trace Sample.
      * If positive, it can be interpreted directly.
      * If negative, it must be interpreted as (-1/x).
      */
     private long mZoomFactor;
+    /**
+     * The unit last set, before being rounded into mZoomFactor
+     */
+    private double mExactUnit;
     private static final long INVALID_ZOOM_FACTOR = 0;
     private static final long MINIMUM_ZOOM_FACTOR = Long.MIN_VALUE;
     public static final float INVALID_UNIT = .0f;
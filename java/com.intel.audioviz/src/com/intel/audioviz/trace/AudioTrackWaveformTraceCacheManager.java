@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) 2017 Intel Corporation
+ *
+ * This Program is subject to the terms of the Eclipse Public License, v. 1.0.
+ * If a copy of the license was not distributed with this file,
+ * you can obtain one at <http://www.eclipse.org/legal/epl-v10.html>
+ *
+ * SPDX-License-Identifier: EPL-1.0
+ */
+
+package com.intel.audioviz.trace;
+
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.intel.audioviz.AudioTrack;
+
+/**
+ * The AudioTrackWaveformTraceCacheManager accounts the memory used by the cache levels of all
+ * AudioTrackWaveformTraceCacheProvider of the process, and keeps it within a budget. Cache levels on heap and cache
+ * levels off heap, mapped from sidecar files, have separate budgets.
+ *
+ * Once a budget is exceeded, cache levels are evicted deterministically: the finest cache level of the least recently
+ * viewed provider first. Only initialized providers are subject to eviction. A provider whose last cache level has
+ * been evicted is released: the AudioTrack instantiates a new one, loaded from its sidecar file if any, the next time
+ * it is viewed.
+ *
+ * The manager also counts cache hits, misses, evictions and rebuilds.
+ */
+public final class AudioTrackWaveformTraceCacheManager {
+
+    private AudioTrackWaveformTraceCacheManager() {
+        mProviders = new ArrayList<AudioTrackWaveformTraceCacheProvider>();
+        mReleasedAudioTracks = new WeakHashMap<AudioTrack, Boolean>();
+        mHeapBudget = Runtime.getRuntime().maxMemory() / DEFAULT_HEAP_BUDGET_DIVISOR;
+        mOffHeapBudget = DEFAULT_OFF_HEAP_BUDGET;
+        mViewClock = new AtomicLong();
+        mHitCount = new AtomicLong();
+        mMissCount = new AtomicLong();
+        mEvictionCount = new AtomicLong();
+        mRebuildCount = new AtomicLong();
+    }
+
+    /**
+     * @return the manager of the process
+     */
+    public static AudioTrackWaveformTraceCacheManager getDefault() {
+        return DEFAULT_MANAGER;
+    }
+
+    /**
+     * @param heapBudget the maximum number of bytes of cache levels on heap
+     */
+    public void setHeapBudget(final long heapBudget) {
+        if (heapBudget < 0) {
+            throw new InvalidParameterException("Invalid budget");
+        }
+        synchronized (this) {
+            mHeapBudget = heapBudget;
+        }
+        trim();
+    }
+
+    /**
+     * @return the maximum number of bytes of cache levels on heap
+     */
+    public synchronized long getHeapBudget() {
+        return mHeapBudget;
+    }
+
+    /**
+     * @param offHeapBudget the maximum number of bytes of cache levels off heap
+     */
+    public void setOffHeapBudget(final long offHeapBudget) {
+        if (offHeapBudget < 0) {
+            throw new InvalidParameterException("Invalid budget");
+        }
+        synchronized (this) {
+            mOffHeapBudget = offHeapBudget;
+        }
+        trim();
+    }
+
+    /**
+     * @return the maximum number of bytes of cache levels off heap
+     */
+    public synchronized long getOffHeapBudget() {
+        return mOffHeapBudget;
+    }
+
+    /**
+     * @return the number of bytes of cache levels on heap
+     */
+    public synchronized long getHeapSize() {
+        return getMemorySize(false);
+    }
+
+    /**
+     * @return the number of bytes of cache levels off heap
+     */
+    public synchronized long getOffHeapSize() {
+        return getMemorySize(true);
+    }
+
+    /**
+     * @return the number of registered providers
+     */
+    public synchronized int getProviderCount() {
+        return mProviders.size();
+    }
+
+    /**
+     * @return the number of requests entirely served by cache levels
+     */
+    public long getHitCount() {
+        return mHitCount.get();
+    }
+
+    /**
+     * @return the number of requests not served by cache levels, since not computed yet or evicted
+     */
+    public long getMissCount() {
+        return mMissCount.get();
+    }
+
+    /**
+     * @return the number of evicted cache levels
+     */
+    public long getEvictionCount() {
+        return mEvictionCount.get();
+    }
+
+    /**
+     * @return the number of providers instantiated again for an AudioTrack whose provider was released
+     */
+    public long getRebuildCount() {
+        return mRebuildCount.get();
+    }
+
+    /**
+     * Evict cache levels until the memory used by cache levels fits in both budgets.
+     */
+    public synchronized void trim() {
+        while (getMemorySize(false) > mHeapBudget && evictLeastRecentlyViewed(false)) {
+            continue;
+        }
+        while (getMemorySize(true) > mOffHeapBudget && evictLeastRecentlyViewed(true)) {
+            continue;
+        }
+    }
+
+    /**
+     * Register a provider which is starting its initialization.
+     * @param provider the provider
+     */
+    void register(final AudioTrackWaveformTraceCacheProvider provider) {
+        synchronized (this) {
+            if (mProviders.contains(provider)) {
+                return;
+            }
+            mProviders.add(provider);
+            if (mReleasedAudioTracks.remove(provider.getAudioTrack()) != null) {
+                mRebuildCount.incrementAndGet();
+            }
+        }
+        trim();
+    }
+
+    /**
+     * @param provider a disposed provider
+     */
+    synchronized void unregister(final AudioTrackWaveformTraceCacheProvider provider) {
+        mProviders.remove(provider);
+    }
+
+    /**
+     * @return a stamp greater than all previous ones, ordering views
+     */
+    long nextViewStamp() {
+        return mViewClock.incrementAndGet();
+    }
+
+    void recordHit() {
+        mHitCount.incrementAndGet();
+    }
+
+    void recordMiss() {
+        mMissCount.incrementAndGet();
+    }
+
+    private long getMemorySize(final boolean offHeap) {
+        long size = 0;
+        for (final AudioTrackWaveformTraceCacheProvider provider : mProviders) {
+            size += provider.getMemorySize(offHeap);
+        }
+        return size;
+    }
+
+    /**
+     * Evict the finest cache level stored on heap or off heap of the least recently viewed provider having one.
+     * @return false if no cache level can be evicted
+     */
+    private boolean evictLeastRecentlyViewed(final boolean offHeap) {
+        AudioTrackWaveformTraceCacheProvider leastRecentlyViewed = null;
+        for (final AudioTrackWaveformTraceCacheProvider provider : mProviders) {
+            if (provider.isEvictable() && provider.getMemorySize(offHeap) > 0
+                    && (leastRecentlyViewed == null || provider.getLastViewStamp() < leastRecentlyViewed
+                            .getLastViewStamp())) {
+                leastRecentlyViewed = provider;
+            }
+        }
+        if (leastRecentlyViewed == null || !leastRecentlyViewed.evictFinestLevel(offHeap)) {
+            return false;
+        }
+
+        mEvictionCount.incrementAndGet();
+        if (leastRecentlyViewed.isReleased()) {
+            mProviders.remove(leastRecentlyViewed);
+            mReleasedAudioTracks.put(leastRecentlyViewed.getAudioTrack(), Boolean.TRUE);
+        }
+        return true;
+    }
+
+    private final ArrayList<AudioTrackWaveformTraceCacheProvider> mProviders;
+    /**
+     * AudioTracks whose provider has been released, to count rebuilds
+     */
+    private final WeakHashMap<AudioTrack, Boolean> mReleasedAudioTracks;
+    private long mHeapBudget;
+    private long mOffHeapBudget;
+    private final AtomicLong mViewClock;
+    private final AtomicLong mHitCount;
+    private final AtomicLong mMissCount;
+    private final AtomicLong mEvictionCount;
+    private final AtomicLong mRebuildCount;
+
+    /**
+     * Default heap budget: a quarter of the maximum heap size.
+     */
+    private static final long DEFAULT_HEAP_BUDGET_DIVISOR = 4;
+    /**
+     * Default off heap budget in bytes: 4GB.
+     */
+    private static final long DEFAULT_OFF_HEAP_BUDGET = 4L * 1024L * 1024L * 1024L;
+    private static final AudioTrackWaveformTraceCacheManager DEFAULT_MANAGER =
+            new AudioTrackWaveformTraceCacheManager();
+}
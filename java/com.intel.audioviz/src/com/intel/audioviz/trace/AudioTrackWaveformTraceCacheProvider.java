@@ -10,170 +10,1398 @@
 
 package com.intel.audioviz.trace;
 
+import java.io.File;
+import java.io.IOException;
 import java.security.InvalidParameterException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import com.intel.audioviz.AudioTrack;
+import com.intel.audioviz.AudioVizException;
 import com.intel.audioviz.ISampleProvider;
+import com.intel.audioviz.metrics.AudioVizMetrics;
+import com.intel.audioviz.metrics.CacheBuildMetrics;
 import com.intel.audioviz.trace.waveform.WaveformWindowCache;
 import com.intel.audioviz.trace.waveform.WaveformWindowCacheDSP;
+import com.intel.audioviz.trace.waveform.WaveformWindowCacheFile;
+import com.intel.audioviz.trace.waveform.WaveformWindowKernel;
 
 /**
  * An AudioTrackWaveformTraceCacheProvider setup and holds pre-computed WaveformWindow for each channel of an
- * AudioTrack.
+ * AudioTrack. By default, cache levels also hold the signal statistics of their WaveformWindow, computed in the same
+ * pass as minimum and maximum values: RMS envelopes and clip counts are then served at any zoom level.
  */
 public class AudioTrackWaveformTraceCacheProvider {
 
+    /**
+     * The way the cache levels of all channels are computed. Whatever the InitMode, the computation is split in
+     * steps run by the threads of the AudioTrackWaveformTraceCacheScheduler.
+     */
+    public enum InitMode {
+        /**
+         * A single step at a time reads each audio frame once and feeds the cache levels of every channel.
+         */
+        SINGLE_PASS,
+        /**
+         * Up to one step per channel at a time. A channel is not computed further while it is more than a
+         * rendez-vous distance ahead of the less advanced channel.
+         */
+        CHANNEL_THREADS,
+        /**
+         * The track is split in segments aligned on cache level boundaries. Segments are computed in parallel,
+         * each segment reading its audio frames once for all channels. Segments covering the priority range are
+         * computed first.
+         * @see setPriorityRange()
+         */
+        PARALLEL_SEGMENTS
+    }
+
+    /**
+     * Instantiate a cache for an AudioTrack using the default InitMode and rendez-vous distance.
+     * @param audioTrack The audio track
+     * @note The init() method must be called to initialize the cache
+     * @see AudioTrackWaveformTraceCacheProvider(AudioTrack, InitMode, long, int)
+     */
+    public AudioTrackWaveformTraceCacheProvider(final AudioTrack audioTrack) {
+        this(audioTrack, DEFAULT_INIT_MODE, DEFAULT_RENDEZ_VOUS_DISTANCE);
+    }
+
+    /**
+     * Instantiate a cache for an AudioTrack using the default parallelism level.
+     * @param audioTrack The audio track
+     * @param initMode The way cache levels are computed
+     * @param rendezVousDistance The maximum distance in bytes of audio data between the most advanced and
+     * the less advanced channels. Only relevant for InitMode.CHANNEL_THREADS.
+     * @note The init() method must be called to initialize the cache
+     * @see AudioTrackWaveformTraceCacheProvider(AudioTrack, InitMode, long, int)
+     */
+    public AudioTrackWaveformTraceCacheProvider(
+            final AudioTrack audioTrack, final InitMode initMode, final long rendezVousDistance) {
+        this(audioTrack, initMode, rendezVousDistance, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Instantiate a cache for an AudioTrack using the default fine levels and memory budget.
+     * @param audioTrack The audio track
+     * @param initMode The way cache levels are computed
+     * @param rendezVousDistance The maximum distance in bytes of audio data between the most advanced and
+     * the less advanced channels. Only relevant for InitMode.CHANNEL_THREADS.
+     * @param parallelism The maximum number of segments computed at once by scheduler threads. Only relevant for
+     * InitMode.PARALLEL_SEGMENTS.
+     * @note The init() method must be called to initialize the cache
+     * @see AudioTrackWaveformTraceCacheProvider(AudioTrack, InitMode, long, int, int[], long)
+     */
+    public AudioTrackWaveformTraceCacheProvider(
+            final AudioTrack audioTrack, final InitMode initMode, final long rendezVousDistance,
+            final int parallelism) {
+        this(audioTrack, initMode, rendezVousDistance, parallelism, DEFAULT_FINE_WINDOW_SIZES,
+                DEFAULT_FINE_LEVEL_MEMORY_BUDGET);
+    }
+
     /**
      * Instantiate a cache for an AudioTrack. One cache will be set up for each channel.
      * Each cache may have multiple level of pre computed data.
-     * Each cache will be initialized with a dedicated thread to speed up cache initialization
-     * procedure which may takes a lot of time for long AudioTrack.
+     * Caches are initialized by the AudioTrackWaveformTraceCacheScheduler threads since the procedure may takes a
+     * lot of time for long AudioTrack.
      * @param audioTrack The audio track
+     * @param initMode The way cache levels are computed
+     * @param rendezVousDistance The maximum distance in bytes of audio data between the most advanced and
+     * the less advanced channels. Only relevant for InitMode.CHANNEL_THREADS.
+     * @param parallelism The maximum number of segments computed at once by scheduler threads. Only relevant for
+     * InitMode.PARALLEL_SEGMENTS.
+     * @param fineWindowSizes The window sizes of the optional cache levels finer than the first recursive level,
+     * for instance 8 and 64. Each size shall be a power of two lower than CACHE_WAVEFORM_WINDOW_RECURSIVE_SIZE.
+     * @param fineLevelMemoryBudget The maximum number of bytes used by fine levels of all channels. Fine levels
+     * are kept from the coarsest to the finest as long as they fit in the budget.
      * @note The init() method must be called to initialize the cache
+     * @see AudioTrackWaveformTraceCacheProvider(AudioTrack, InitMode, long, int, int[], long, boolean)
+     */
+    public AudioTrackWaveformTraceCacheProvider(
+            final AudioTrack audioTrack, final InitMode initMode, final long rendezVousDistance,
+            final int parallelism, final int[] fineWindowSizes, final long fineLevelMemoryBudget) {
+        this(audioTrack, initMode, rendezVousDistance, parallelism, fineWindowSizes, fineLevelMemoryBudget,
+                DEFAULT_WITH_SIGNAL_STATISTICS);
+    }
+
+    /**
+     * Instantiate a cache for an AudioTrack. One cache will be set up for each channel.
+     * Each cache may have multiple level of pre computed data.
+     * Caches are initialized by the AudioTrackWaveformTraceCacheScheduler threads since the procedure may takes a
+     * lot of time for long AudioTrack.
+     * @param audioTrack The audio track
+     * @param initMode The way cache levels are computed
+     * @param rendezVousDistance The maximum distance in bytes of audio data between the most advanced and
+     * the less advanced channels. Only relevant for InitMode.CHANNEL_THREADS.
+     * @param parallelism The maximum number of segments computed at once by scheduler threads. Only relevant for
+     * InitMode.PARALLEL_SEGMENTS.
+     * @param fineWindowSizes The window sizes of the optional cache levels finer than the first recursive level,
+     * for instance 8 and 64. Each size shall be a power of two lower than CACHE_WAVEFORM_WINDOW_RECURSIVE_SIZE.
+     * @param fineLevelMemoryBudget The maximum number of bytes used by fine levels of all channels. Fine levels
+     * are kept from the coarsest to the finest as long as they fit in the budget.
+     * @param withSignalStatistics true to hold signal statistics in cache levels, which then take 2.5 times the memory
+     * @note The init() method must be called to initialize the cache
+     */
+    public AudioTrackWaveformTraceCacheProvider(
+            final AudioTrack audioTrack, final InitMode initMode, final long rendezVousDistance,
+            final int parallelism, final int[] fineWindowSizes, final long fineLevelMemoryBudget,
+            final boolean withSignalStatistics) {
+        /* CACHE_WAVEFORM_WINDOW_RECURSIVE_SIZE must be a power of two */
+        assert Integer.bitCount(
+                CACHE_WAVEFORM_WINDOW_RECURSIVE_SIZE) == 1 : "CACHE_WAVEFORM_WINDOW_RECURSIVE_SIZE not a power of 2";
+        if (initMode == null) {
+            throw new InvalidParameterException("null InitMode");
+        }
+        if (rendezVousDistance < 0) {
+            throw new InvalidParameterException("Invalid rendez-vous distance");
+        }
+        if (parallelism < 1) {
+            throw new InvalidParameterException("Invalid parallelism level");
+        }
+        for (final int fineWindowSize : fineWindowSizes) {
+            if (fineWindowSize < 2 || fineWindowSize >= CACHE_WAVEFORM_WINDOW_RECURSIVE_SIZE
+                    || Integer.bitCount(fineWindowSize) != 1) {
+                throw new InvalidParameterException("Invalid fine window size");
+            }
+        }
+        if (fineLevelMemoryBudget < 0) {
+            throw new InvalidParameterException("Invalid fine level memory budget");
+        }
+
+        mAudioTrack = audioTrack;
+        mHistorySize = mAudioTrack.getSampleProvider().getHistorySize();
+        if (mHistorySize < 1) {
+            throw new InvalidParameterException("Invalid history size");
+        }
+        /* Sliding cache levels are computed by the extension only, covering the history of the audio track */
+        mSampleCount = isSliding() ? 0 : mAudioTrack.getSampleProvider().getSamplesPerChannel();
+        mFirstSampleIndex = 0;
+        mInitMode = initMode;
+        mRendezVousDistance = rendezVousDistance / mAudioTrack.getAudioFormat().getFrameSize();
+        mChannelProgress = new long[mAudioTrack.getAudioFormat().getChannelCount()];
+        mParallelism = parallelism;
+        mWithSignalStatistics = withSignalStatistics;
+        mIsCanceled = false;
+        mIsBuildStarted = false;
+        mChannelRunning = new boolean[mAudioTrack.getAudioFormat().getChannelCount()];
+        mCacheLevelComputers = new WaveformWindowCacheDSP[mAudioTrack.getAudioFormat().getChannelCount()][];
+        mSinglePassProgress = 0;
+        mIsCacheInitialized = false;
+        mCacheFile = null;
+        mCacheListeners = new HashSet<IAudioTrackWaveformTraceCacheListener>();
+
+        mCache = new WaveformWindowCache[mAudioTrack.getAudioFormat().getChannelCount()][];
+        /* How much cache levels are needed per channel for the AudioTrack ? */
+        int recursiveLevelCount = 0;
+        final long levelSampleCount = isSliding() ? mHistorySize : mSampleCount;
+        long levelLenght = levelSampleCount;
+
+        while (levelLenght / CACHE_WAVEFORM_WINDOW_RECURSIVE_SIZE > 0) {
+            recursiveLevelCount++;
+            levelLenght /= CACHE_WAVEFORM_WINDOW_RECURSIVE_SIZE;
+        }
+        final long[] fineLevelWindowSizes = selectFineWindowSizes(levelSampleCount, fineWindowSizes,
+                fineLevelMemoryBudget);
+        final int cacheLevelCount = fineLevelWindowSizes.length + recursiveLevelCount;
+
+        for (int channel = 0; channel < mAudioTrack.getAudioFormat().getChannelCount(); channel++) {
+            /* Allocate caches, fine levels first */
+            mCache[channel] = new WaveformWindowCache[cacheLevelCount];
+            levelLenght = levelSampleCount;
+
+            for (int i = 0; i < fineLevelWindowSizes.length; i++) {
+                final long windowSize = fineLevelWindowSizes[i];
+                final long capacity = isSliding() ? getSlidingCapacity(windowSize)
+                        : (levelLenght + windowSize - 1) / windowSize;
+                mCache[channel][i] = new WaveformWindowCache((int) capacity, windowSize, withSignalStatistics,
+                        isSliding());
+            }
+
+            long levelWindowSize = 1;
+            for (int i = fineLevelWindowSizes.length; i < cacheLevelCount; i++) {
+                levelLenght = alignToPowerOfTwo(levelLenght, CACHE_WAVEFORM_WINDOW_RECURSIVE_SIZE);
+                levelLenght /= CACHE_WAVEFORM_WINDOW_RECURSIVE_SIZE;
+                levelWindowSize *= CACHE_WAVEFORM_WINDOW_RECURSIVE_SIZE;
+
+                /* Cannot instantiate a cache Array with more than Integer.MAX_VALUE elements.
+                 * This will occur if channel size divided by CACHE_WAVEFORM_WINDOW_RECURSIVE_SIZE
+                 * is greater than Integer.MAX_VALUE.
+                 * For instance, with CACHE_WAVEFORM_WINDOW_RECURSIVE_SIZE == 1024, maximum channel
+                 * size is 2TB.
+                 */
+                final long capacity = isSliding() ? getSlidingCapacity(levelWindowSize) : levelLenght;
+                if (capacity > Integer.MAX_VALUE) {
+                    throw new IndexOutOfBoundsException("Too long audio track");
+                }
+                final int cacheSize = (int) capacity;
+
+                mCache[channel][i] = new WaveformWindowCache(cacheSize, levelWindowSize, withSignalStatistics,
+                        isSliding());
+            }
+        }
+
+        /* Segment levels are the levels which windows never span two segments */
+        int segmentLevelCount = 0;
+        while (segmentLevelCount < cacheLevelCount
+                && mCache[0][segmentLevelCount].getWindowSize() <= SEGMENT_SIZE) {
+            segmentLevelCount++;
+        }
+        mSegmentLevelCount = segmentLevelCount;
+        mNotifiedWatermarks = new long[mCache.length][cacheLevelCount];
+        mSegmentClaimed = new boolean[(int) ((mSampleCount + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+        mPriorityFirstSegment = 0;
+        mPriorityLastSegment = 0;
+        mForwardSegment = 0;
+        mBackwardSegment = -1;
+        mClaimedSegmentCount = 0;
+    }
+
+    /**
+     * Select the fine levels which fit in the memory budget, from the coarsest to the finest.
+     * @param sampleCount The number of audio samples per channel covered by the cache levels
+     * @param fineWindowSizes The candidate window sizes
+     * @param fineLevelMemoryBudget The maximum number of bytes used by fine levels of all channels
+     * @return the selected window sizes, in ascending order
+     */
+    private long[] selectFineWindowSizes(final long sampleCount, final int[] fineWindowSizes,
+            final long fineLevelMemoryBudget) {
+        final int[] candidates = fineWindowSizes.clone();
+        Arrays.sort(candidates);
+
+        final long[] selected = new long[candidates.length];
+        int selectedCount = 0;
+        long memory = 0;
+        for (int i = candidates.length - 1; i >= 0; i--) {
+            final long windowSize = candidates[i];
+            final long capacity = isSliding() ? getSlidingCapacity(windowSize)
+                    : (sampleCount + windowSize - 1) / windowSize;
+            /* Statistics are two floats per window, plus a float and a long with signal statistics */
+            final long levelMemory = capacity
+                    * (2 * Float.BYTES + (mWithSignalStatistics ? Float.BYTES + Long.BYTES : 0)) * mCache.length;
+
+            if (sampleCount >= windowSize && capacity <= Integer.MAX_VALUE
+                    && memory + levelMemory <= fineLevelMemoryBudget
+                    && (selectedCount == 0 || selected[selectedCount - 1] != windowSize)) {
+                memory += levelMemory;
+                selected[selectedCount++] = windowSize;
+            }
+        }
+
+        final long[] ascending = new long[selectedCount];
+        for (int i = 0; i < selectedCount; i++) {
+            ascending[i] = selected[selectedCount - 1 - i];
+        }
+        return ascending;
+    }
+
+    /**
+     * @param windowSize The window size of a sliding cache level
+     * @return the capacity of the cache level: the windows covering the history, plus a margin so that the slots of
+     * dropped windows are not reused at once, while readers may still be merging them
+     */
+    private long getSlidingCapacity(final long windowSize) {
+        /* The first window may be partially expired, and the last one partially filled */
+        final long keptCount = (mHistorySize + windowSize - 1) / windowSize + 1;
+        return keptCount + Math.max(SLIDING_MIN_MARGIN, keptCount / SLIDING_MARGIN_RATIO);
+    }
+
+    /**
+     * Get the Waveform cache for a given channel having the highest audio sample count per
+     * window according to the audio sample count per window requested.
+     * @param channel the audio channel the requested cache shall belong to
+     * @param audioSamplePerWindow the maximum audio sample count per window the requested cache
+     * shall have, not necessarily a power of two.
+     * @return a WaveformWindowCache matching requested criteria, or null if no cache matches.
+     */
+    public WaveformWindowCache getWaveformCache(final int channel, final long audioSamplePerWindow) {
+        if (channel < 0 || channel > mCache.length) {
+            throw new InvalidParameterException("Invalid channel number");
+        }
+        if (audioSamplePerWindow < 1) {
+            throw new InvalidParameterException("Invalid audio sample count");
+        }
+
+        touch();
+        final WaveformWindowCache[] cacheLevels = mCache[channel];
+        final int level = getCacheLevel(cacheLevels, audioSamplePerWindow);
+        if (level >= 0) {
+            return cacheLevels[level];
+        } else {
+            AudioTrackWaveformTraceCacheManager.getDefault().recordMiss();
+            return null;
+        }
+    }
+
+    /**
+     * Compute WaveformWindow statistics for any audio sample count per window and any first audio sample index.
+     * Each window is computed from the coarsest cache level whose windows fit in it: the cache level windows
+     * entirely covered by the window are merged, and both partial edges are computed the same way from finer
+     * levels, down to audio samples for edges shorter than a window of the finest level. Windows aligned on the
+     * coarsest level are directly merged from it. Audio samples expired from the history of a sliding provider are
+     * accumulated as silence.
+     * @param channel the audio channel
+     * @param audioSampleIndex the audio sample index of the first audio sample of the first window
+     * @param audioSamplePerWindow the audio sample count per window
+     * @param mins The array receiving the minimum sample value of each window
+     * @param maxs The array receiving the maximum sample value of each window
+     * @param offset The index in mins and maxs of the first window
+     * @param windowCount The number of requested windows
+     * @return the number of windows written, which is lower than requested if a required cache level region is not
+     * filled yet, or if the cache levels are not yet extended to audio samples appended to the AudioTrack
+     */
+    public int getWaveformWindows(final int channel, final long audioSampleIndex, final long audioSamplePerWindow,
+            final float[] mins, final float[] maxs, final int offset, final int windowCount) {
+        if (channel < 0 || channel >= mCache.length) {
+            throw new InvalidParameterException("Invalid channel number");
+        }
+        if (audioSamplePerWindow < 1 || windowCount < 0) {
+            throw new InvalidParameterException("Invalid window");
+        }
+        if (audioSampleIndex < 0 || audioSampleIndex + audioSamplePerWindow * windowCount
+                > mAudioTrack.getSampleProvider().getSamplesPerChannel()) {
+            throw new IndexOutOfBoundsException("Out of audio track");
+        }
+        if (offset < 0 || offset + windowCount > mins.length || offset + windowCount > maxs.length) {
+            throw new IndexOutOfBoundsException("Destination too small");
+        }
+
+        touch();
+        /* Cache levels may be evicted meanwhile: work on the current ones */
+        final WaveformWindowCache[] cacheLevels = mCache[channel];
+        final int coveredCount = getCoveredWindowCount(audioSampleIndex, audioSamplePerWindow, windowCount);
+        final int level = getCacheLevel(cacheLevels, audioSamplePerWindow);
+        final long firstSampleIndex = mFirstSampleIndex;
+        if (level >= 0 && audioSampleIndex >= firstSampleIndex) {
+            final WaveformWindowCache cache = cacheLevels[level];
+            if (audioSampleIndex % cache.getWindowSize() == 0 && audioSamplePerWindow % cache.getWindowSize() == 0) {
+                return cache.getFromCache(audioSampleIndex, audioSamplePerWindow, mins, maxs, offset, coveredCount);
+            }
+        }
+
+        /* Window edges are shorter than a window of the finest level, or than the window itself, or expired */
+        final RangeAccumulator accumulator = getAccumulator(false, firstSampleIndex);
+        for (int i = 0; i < coveredCount; i++) {
+            final long fromSample = audioSampleIndex + i * audioSamplePerWindow;
+            accumulator.reset();
+            if (!accumulateRange(channel, cacheLevels, level, fromSample, fromSample + audioSamplePerWindow,
+                    accumulator)) {
+                return i;
+            }
+            mins[offset + i] = accumulator.mMin;
+            maxs[offset + i] = accumulator.mMax;
+        }
+        return coveredCount;
+    }
+
+    /**
+     * Compute the signal statistics of windows for any audio sample count per window and any first audio sample
+     * index, the same way as getWaveformWindows(). Cache levels not holding signal statistics are skipped: windows
+     * are then computed from audio samples.
+     * @param channel the audio channel
+     * @param audioSampleIndex the audio sample index of the first audio sample of the first window
+     * @param audioSamplePerWindow the audio sample count per window
+     * @param rmss The array receiving the root mean square of the audio sample values of each window
+     * @param clipCounts The array receiving the number of audio samples at full scale of each window
+     * @param offset The index in rmss and clipCounts of the first window
+     * @param windowCount The number of requested windows
+     * @return the number of windows written, which is lower than requested if a required cache level region is not
+     * filled yet, or if the cache levels are not yet extended to audio samples appended to the AudioTrack
+     * @see getWaveformWindows()
+     * @see hasSignalStatistics()
+     */
+    public int getSignalStatistics(final int channel, final long audioSampleIndex, final long audioSamplePerWindow,
+            final float[] rmss, final long[] clipCounts, final int offset, final int windowCount) {
+        if (channel < 0 || channel >= mCache.length) {
+            throw new InvalidParameterException("Invalid channel number");
+        }
+        if (audioSamplePerWindow < 1 || windowCount < 0) {
+            throw new InvalidParameterException("Invalid window");
+        }
+        if (audioSampleIndex < 0 || audioSampleIndex + audioSamplePerWindow * windowCount
+                > mAudioTrack.getSampleProvider().getSamplesPerChannel()) {
+            throw new IndexOutOfBoundsException("Out of audio track");
+        }
+        if (offset < 0 || offset + windowCount > rmss.length || offset + windowCount > clipCounts.length) {
+            throw new IndexOutOfBoundsException("Destination too small");
+        }
+
+        touch();
+        final WaveformWindowCache[] cacheLevels = mCache[channel];
+        final int level = getCacheLevel(cacheLevels, audioSamplePerWindow);
+        final int coveredCount = getCoveredWindowCount(audioSampleIndex, audioSamplePerWindow, windowCount);
+        final RangeAccumulator accumulator = getAccumulator(true, mFirstSampleIndex);
+        for (int i = 0; i < coveredCount; i++) {
+            final long fromSample = audioSampleIndex + i * audioSamplePerWindow;
+            accumulator.reset();
+            if (!accumulateRange(channel, cacheLevels, level, fromSample, fromSample + audioSamplePerWindow,
+                    accumulator)) {
+                return i;
+            }
+            rmss[offset + i] = (float) Math.sqrt(accumulator.mSumOfSquares / audioSamplePerWindow);
+            clipCounts[offset + i] = accumulator.mClipCount;
+        }
+        return coveredCount;
+    }
+
+    /**
+     * @return true if cache levels hold signal statistics
+     */
+    public boolean hasSignalStatistics() {
+        return mWithSignalStatistics;
+    }
+
+    /**
+     * @return the number of audio samples per channel the cache levels are computed for, lower than the one of the
+     * AudioTrack while audio samples appended to it are not yet covered
+     * @see extend()
+     */
+    public long getSampleCount() {
+        return mSampleCount;
+    }
+
+    /**
+     * @return true if the cache levels slide over the bounded history of the audio track, dropping the windows of
+     * expired audio samples
+     * @see ISampleProvider#getHistorySize()
+     */
+    public boolean isSliding() {
+        return mHistorySize != Long.MAX_VALUE;
+    }
+
+    /**
+     * @return the index of the first audio sample covered by the cache levels, always 0 unless they are sliding
+     */
+    public long getFirstSampleIndex() {
+        return mFirstSampleIndex;
+    }
+
+    /**
+     * @param audioSampleIndex the audio sample index of the first audio sample of the first window
+     * @param audioSamplePerWindow the audio sample count per window
+     * @param windowCount the number of requested windows
+     * @return the number of requested windows which end within the audio samples covered by the cache levels
+     */
+    private int getCoveredWindowCount(final long audioSampleIndex, final long audioSamplePerWindow,
+            final int windowCount) {
+        return (int) Math.max(0, Math.min(windowCount, (mSampleCount - audioSampleIndex) / audioSamplePerWindow));
+    }
+
+    /**
+     * Count a request to the cache levels as a hit if it has been entirely served, as a miss otherwise. Empty
+     * requests are not counted. A trace records a single request per view, whatever the number of calls to
+     * getWaveformWindows() and getSignalStatistics() it took.
+     * @param servedCount the number of windows written
+     * @param windowCount the number of requested windows
+     */
+    void recordRequest(final int servedCount, final int windowCount) {
+        if (windowCount == 0) {
+            return;
+        } else if (servedCount == windowCount) {
+            AudioTrackWaveformTraceCacheManager.getDefault().recordHit();
+        } else {
+            AudioTrackWaveformTraceCacheManager.getDefault().recordMiss();
+        }
+    }
+
+    /**
+     * @param withSignalStatistics true to accumulate signal statistics as well
+     * @param firstSampleIndex the index of the first audio sample not expired
+     * @return the accumulator of the calling thread, reused across requests so that refreshing a trace does not
+     * allocate
+     */
+    private static RangeAccumulator getAccumulator(final boolean withSignalStatistics, final long firstSampleIndex) {
+        RangeAccumulator accumulator = ACCUMULATORS.get();
+        if (accumulator == null) {
+            accumulator = new RangeAccumulator();
+            ACCUMULATORS.set(accumulator);
+        }
+        accumulator.mWithSignalStatistics = withSignalStatistics;
+        accumulator.mFirstSampleIndex = firstSampleIndex;
+        return accumulator;
+    }
+
+    /**
+     * @param cacheLevels the cache levels of an audio channel
+     * @param audioSamplePerWindow the maximum audio sample count per window
+     * @return the index of the coarsest cache level having windows not larger than audioSamplePerWindow, -1 if none
+     */
+    private int getCacheLevel(final WaveformWindowCache[] cacheLevels, final long audioSamplePerWindow) {
+        int level = cacheLevels.length - 1;
+        while (level >= 0 && cacheLevels[level].getWindowSize() > audioSamplePerWindow) {
+            level--;
+        }
+        return level;
+    }
+
+    /**
+     * Accumulate the statistics of an audio sample range, merging the windows of a cache level covered by the
+     * range, then the partial edges of the range from finer levels.
+     * @param channel the audio channel
+     * @param cacheLevels the cache levels of the audio channel
+     * @param level the cache level, -1 to read audio samples
+     * @param fromSample the audio sample index of the first audio sample of the range
+     * @param toSample the audio sample index of the last audio sample, excluded, of the range
+     * @param accumulator the statistics accumulated so far, updated
+     * @return false if a required cache level region is not filled yet
+     */
+    private boolean accumulateRange(final int channel, final WaveformWindowCache[] cacheLevels, final int level,
+            final long fromSample, final long toSample, final RangeAccumulator accumulator) {
+        if (fromSample >= toSample) {
+            return true;
+        }
+        if (fromSample < accumulator.mFirstSampleIndex) {
+            /* Expired audio samples are read as silence */
+            accumulator.accumulateSilence();
+            return accumulateRange(channel, cacheLevels, level, Math.min(toSample, accumulator.mFirstSampleIndex),
+                    toSample, accumulator);
+        }
+
+        if (level < 0) {
+            final float[] samples = accumulator.mSamples;
+            for (long index = fromSample; index < toSample; index += samples.length) {
+                final int count = (int) Math.min(samples.length, toSample - index);
+                mAudioTrack.getSampleProvider().getSamplesAsFloat(channel, index, samples, 0, count);
+                accumulator.accumulate(samples, count);
+            }
+            return true;
+        }
+
+        final WaveformWindowCache cache = cacheLevels[level];
+        if (accumulator.mWithSignalStatistics && !cache.hasSignalStatistics()) {
+            return accumulateRange(channel, cacheLevels, level - 1, fromSample, toSample, accumulator);
+        }
+        final long windowSize = cache.getWindowSize();
+        final long firstWindow = (fromSample + windowSize - 1) / windowSize;
+        /* The last window of a level may be shorter, ending with the audio track: it is rather computed from finer
+         * levels, since it is computed again, while being read, once the audio track grows */
+        final long endWindow = toSample / windowSize;
+
+        if (firstWindow >= endWindow) {
+            return accumulateRange(channel, cacheLevels, level - 1, fromSample, toSample, accumulator);
+        }
+
+        final int count = (int) (endWindow - firstWindow);
+        if (!cache.isFilled((int) firstWindow, count)) {
+            return false;
+        }
+        accumulator.accumulate(cache, (int) firstWindow, count);
+
+        return accumulateRange(channel, cacheLevels, level - 1, fromSample, firstWindow * windowSize, accumulator)
+                && accumulateRange(channel, cacheLevels, level - 1, Math.min(toSample, endWindow * windowSize),
+                        toSample, accumulator);
+    }
+
+    /**
+     * @param cacheLevel A cache level of the AudioTrack
+     * @return The audio sample index up to which, excluded, the cache level is filled
+     */
+    public long getWatermark(final WaveformWindowCache cacheLevel) {
+        return Math.min(mSampleCount,
+                cacheLevel.getCacheSize() * cacheLevel.getWindowSize());
+    }
+
+    /**
+     * Give a hint about the audio samples being displayed. In InitMode.PARALLEL_SEGMENTS, segments which are not
+     * computed yet are then computed in that order: first the segments covering the priority range, from its
+     * beginning, then the segments around it, moving outward. Other InitMode ignore the hint.
+     * @param audioSampleIndex The audio sample index of the first audio sample displayed
+     * @param audioSampleCount The number of audio samples displayed
+     */
+    public void setPriorityRange(final long audioSampleIndex, final long audioSampleCount) {
+        if (audioSampleIndex < 0 || audioSampleCount < 0) {
+            throw new InvalidParameterException("Invalid priority range");
+        }
+        if (mSegmentClaimed.length == 0) {
+            return;
+        }
+
+        final long lastAudioSampleIndex = audioSampleIndex + Math.max(1, audioSampleCount) - 1;
+        synchronized (mSegmentClaimed) {
+            mPriorityFirstSegment = (int) Math.min(mSegmentClaimed.length - 1, audioSampleIndex / SEGMENT_SIZE);
+            mPriorityLastSegment = (int) Math.min(mSegmentClaimed.length - 1, lastAudioSampleIndex / SEGMENT_SIZE);
+            mForwardSegment = mPriorityFirstSegment;
+            mBackwardSegment = mPriorityFirstSegment - 1;
+        }
+    }
+
+    /**
+     * Add a listener to the cache. The listener will be notified each time a cache level has been filled further.
+     * @param cacheListener The listener to be registered
+     * @return true if the listener was not yet registered, false otherwise
+     */
+    public boolean addCacheListener(final IAudioTrackWaveformTraceCacheListener cacheListener) {
+        synchronized (mCacheListeners) {
+            return mCacheListeners.add(cacheListener);
+        }
+    }
+
+    /**
+     * Remove a listener from the cache. The listener will no more be notified once the method has returned.
+     * @param cacheListener The listener to be unregistered
+     * @return true if the listener was registered before this call
+     */
+    public boolean removeCacheListener(final IAudioTrackWaveformTraceCacheListener cacheListener) {
+        synchronized (mCacheListeners) {
+            return mCacheListeners.remove(cacheListener);
+        }
+    }
+
+    /**
+     * Dispose the cache. If the cache is being initializing itself, the initialization is canceled: steps being
+     * computed are waited for.
+     */
+    public synchronized void dispose() {
+        AudioTrackWaveformTraceCacheManager.getDefault().unregister(this);
+        AudioVizMetrics.getDefault().remove(this);
+        if (mIsBuildStarted && !mIsCanceled) {
+            mIsCanceled = true;
+            AudioTrackWaveformTraceCacheScheduler.getDefault().cancel(this);
+            mIsCacheInitialized = true;
+        }
+    }
+
+    /**
+     * Persist the cache levels in a sidecar file of the audio file the AudioTrack reads. If the sidecar file
+     * matches the audio file, init() loads the cache levels from it instead of computing them. Otherwise, the
+     * sidecar file is written once the cache levels are computed.
+     * @param cacheFile the sidecar file
+     * @param sourceFile the audio file
+     * @param dataOffset the offset of audio raw data within the audio file
+     * @note Must be called before init()
+     */
+    public synchronized void setCacheFile(final File cacheFile, final File sourceFile, final long dataOffset) {
+        if (mIsCacheInitialized || mIsBuildStarted) {
+            throw new AudioVizException("Cache initialization already started");
+        }
+        if (isSliding()) {
+            throw new AudioVizException("Sliding cache levels are not persisted");
+        }
+        mCacheFile = new WaveformWindowCacheFile(cacheFile, sourceFile, dataOffset,
+                mAudioTrack.getAudioFormat(), mSampleCount);
+    }
+
+    /**
+     * Start the cache initialization. The initialization may take a lot of time and is handled by the
+     * AudioTrackWaveformTraceCacheScheduler threads, unless the cache levels can be loaded from the sidecar file.
+     */
+    public synchronized void init() {
+        if (mIsCacheInitialized || mIsBuildStarted) {
+            return;
+        }
+        AudioTrackWaveformTraceCacheManager.getDefault().register(this);
+        mMetrics = AudioVizMetrics.getDefault().newCacheBuildMetrics(this);
+        if (loadCacheFile()) {
+            if (mMetrics != null) {
+                mMetrics.recordLoaded();
+            }
+            mIsCacheInitialized = true;
+            mIsEvictable = true;
+            AudioTrackWaveformTraceCacheManager.getDefault().trim();
+        } else {
+            mIsBuildStarted = true;
+            AudioTrackWaveformTraceCacheScheduler.getDefault().submit(this);
+        }
+    }
+
+    /**
+     * @return true once all cache levels are entirely filled, or the initialization has been canceled
+     */
+    public boolean isInitialized() {
+        return mIsCacheInitialized;
+    }
+
+    /**
+     * @return the InitMode used to compute cache levels
+     */
+    public InitMode getInitMode() {
+        return mInitMode;
+    }
+
+    /**
+     * @return the maximum number of segments computed at once in InitMode.PARALLEL_SEGMENTS
+     */
+    public int getParallelism() {
+        return mParallelism;
+    }
+
+    /**
+     * @return the maximum number of steps computed at once
+     */
+    int getBuildParallelism() {
+        if (mInitMode == InitMode.PARALLEL_SEGMENTS) {
+            return mParallelism;
+        } else if (mInitMode == InitMode.CHANNEL_THREADS) {
+            return mCache.length;
+        } else {
+            return 1;
+        }
+    }
+
+    /**
+     * @return true if a step can be claimed now
+     */
+    boolean hasBuildStep() {
+        if (isBuildDone()) {
+            return false;
+        } else if (mInitMode == InitMode.PARALLEL_SEGMENTS) {
+            return true;
+        } else if (mInitMode == InitMode.CHANNEL_THREADS) {
+            synchronized (mChannelProgress) {
+                return getNextChannel() >= 0;
+            }
+        } else {
+            return true;
+        }
+    }
+
+    /**
+     * @return true once all steps have been claimed, or the initialization has been canceled
+     */
+    boolean isBuildDone() {
+        if (mIsCanceled || mCache[0].length == 0 || isSliding()) {
+            /* Canceled, or track too short to have any cache level, or sliding cache levels which are entirely
+             * computed by the extension */
+            return true;
+        } else if (mInitMode == InitMode.PARALLEL_SEGMENTS) {
+            synchronized (mSegmentClaimed) {
+                return mClaimedSegmentCount == mSegmentClaimed.length;
+            }
+        } else if (mInitMode == InitMode.CHANNEL_THREADS) {
+            synchronized (mChannelProgress) {
+                return getSlowestChannelProgress() == Long.MAX_VALUE;
+            }
+        } else {
+            return mSinglePassProgress == mSampleCount;
+        }
+    }
+
+    /**
+     * Compute a step of the initialization, if one can be claimed. Called by scheduler threads.
+     */
+    void runBuildStep() {
+        if (!hasBuildStep()) {
+            return;
+        } else if (mInitMode == InitMode.PARALLEL_SEGMENTS) {
+            final int segment = claimSegment();
+            if (segment >= 0) {
+                initializeSegment(segment);
+            }
+        } else if (mInitMode == InitMode.CHANNEL_THREADS) {
+            final int channel = claimChannel();
+            if (channel >= 0) {
+                initializeChannelStep(channel);
+            }
+        } else {
+            initializeFrameStep();
+        }
+    }
+
+    /**
+     * Complete the initialization once the last step has been computed: the cache levels are persisted, then
+     * subject to eviction. Called by a scheduler thread.
+     */
+    void completeBuild() {
+        if (mMetrics != null) {
+            mMetrics.recordBuildCompleted();
+        }
+        mIsCacheInitialized = true;
+        if (!mIsCanceled) {
+            saveCacheFile();
+            /* Cache levels are complete and persisted: they may now be evicted */
+            mIsEvictable = true;
+            /* Audio samples appended to the AudioTrack during the initialization */
+            extendCacheLevels();
+            AudioTrackWaveformTraceCacheManager.getDefault().trim();
+        }
+    }
+
+    /**
+     * Extend the cache levels to the audio samples appended to the AudioTrack since they have been computed. Only the
+     * windows covering appended audio samples are computed: the finest level from audio samples, from its last
+     * window which may have been shorter, and each coarser level merged from the level below. Coarser levels are
+     * added as soon as the audio track is long enough for them. Listeners are notified of the extended regions.
+     * Audio samples appended before the initialization is complete are covered once it completes.
+     * Sliding cache levels rather drop the windows of expired audio samples, and only compute the appended audio
+     * samples of the history.
+     * @note Called by the thread which has detected that the AudioTrack has grown
+     */
+    public void extend() {
+        if (mIsCacheInitialized && !mIsCanceled) {
+            extendCacheLevels();
+            /* Extended cache levels use more memory */
+            AudioTrackWaveformTraceCacheManager.getDefault().trim();
+        }
+    }
+
+    /**
+     * Extend the cache levels to the audio samples of the AudioTrack.
+     * @see extend()
+     */
+    private void extendCacheLevels() {
+        synchronized (mSegmentClaimed) {
+            final long fromCount = mSampleCount;
+            final long toCount = mAudioTrack.getSampleProvider().getSamplesPerChannel();
+            if (toCount <= fromCount || mIsReleased || mIsCanceled) {
+                /* A released provider is replaced: its successor computes all audio samples */
+                return;
+            }
+
+            /* Sliding cache levels are sized for the history: no coarser level is ever required */
+            final WaveformWindowCache[][] cache = isSliding() ? mCache : addCoarseLevels(mCache, toCount);
+            final int previousLevelCount = mCache[0].length;
+            final int levelCount = cache[0].length;
+            final long firstSampleIndex = Math.max(0, toCount - mHistorySize);
+            /* Readers accumulate expired audio samples as silence before their windows are dropped */
+            mFirstSampleIndex = firstSampleIndex;
+            /* Windows [firstWindows[level], endWindows[level]) of each level are computed */
+            final int[] firstWindows = new int[levelCount];
+            final int[] endWindows = new int[levelCount];
+            for (int level = 0; level < levelCount; level++) {
+                final long windowSize = cache[0][level].getWindowSize();
+                final long endWindow = (toCount + windowSize - 1) / windowSize;
+                if (endWindow > Integer.MAX_VALUE) {
+                    throw new IndexOutOfBoundsException("Too long audio track");
+                }
+                /* The first window partially expired is dropped as well */
+                final int keptFirstWindow = (int) ((firstSampleIndex + windowSize - 1) / windowSize);
+                firstWindows[level] = level < previousLevelCount
+                        ? (int) Math.max(fromCount / windowSize, keptFirstWindow) : 0;
+                endWindows[level] = (int) endWindow;
+                for (final WaveformWindowCache[] cacheLevels : cache) {
+                    if (isSliding()) {
+                        cacheLevels[level].drop(keptFirstWindow);
+                    } else {
+                        cacheLevels[level].ensureCapacity(endWindows[level]);
+                    }
+                }
+            }
+            if (levelCount == 0) {
+                mSampleCount = toCount;
+                return;
+            }
+
+            extendFinestLevel(cache, firstWindows[0] * cache[0][0].getWindowSize(), toCount);
+            if (mIsCanceled) {
+                return;
+            }
+            for (final WaveformWindowCache[] cacheLevels : cache) {
+                for (int level = 1; level < levelCount; level++) {
+                    final WaveformWindowCache lowerCache = cacheLevels[level - 1];
+                    final int windowsPerMerge = (int) (cacheLevels[level].getWindowSize() / lowerCache.getWindowSize());
+                    for (int index = firstWindows[level]; index < endWindows[level]; index++) {
+                        final int lowerIndex = index * windowsPerMerge;
+                        cacheLevels[level].set(index, lowerCache.merge(lowerIndex,
+                                Math.min(windowsPerMerge, endWindows[level - 1] - lowerIndex)));
+                    }
+                }
+            }
+
+            /* Publish the extended levels, then the audio samples they cover */
+            for (final WaveformWindowCache[] cacheLevels : cache) {
+                for (int level = 0; level < levelCount; level++) {
+                    cacheLevels[level].setCacheSize(endWindows[level]);
+                }
+            }
+            mCache = cache;
+            mSampleCount = toCount;
+            for (int channel = 0; channel < cache.length; channel++) {
+                for (int level = 0; level < levelCount; level++) {
+                    notifyCacheLevelFilled(channel, cache[channel][level],
+                            firstWindows[level] * cache[channel][level].getWindowSize(), toCount);
+                }
+            }
+        }
+    }
+
+    /**
+     * Add the recursive levels an audio track of a given length requires, and which are coarser than the existing
+     * levels.
+     * @param cache The cache levels of each channel
+     * @param sampleCount The number of audio samples per channel
+     * @return the cache levels of each channel, cache itself if no level is added
+     */
+    private WaveformWindowCache[][] addCoarseLevels(final WaveformWindowCache[][] cache, final long sampleCount) {
+        final int levelCount = cache[0].length;
+        long windowSize = CACHE_WAVEFORM_WINDOW_RECURSIVE_SIZE;
+        while (levelCount > 0 && windowSize <= cache[0][levelCount - 1].getWindowSize()) {
+            windowSize *= CACHE_WAVEFORM_WINDOW_RECURSIVE_SIZE;
+        }
+        int addedLevelCount = 0;
+        for (long size = windowSize; sampleCount >= size; size *= CACHE_WAVEFORM_WINDOW_RECURSIVE_SIZE) {
+            addedLevelCount++;
+        }
+        if (addedLevelCount == 0) {
+            return cache;
+        }
+
+        final WaveformWindowCache[][] extendedCache = new WaveformWindowCache[cache.length][];
+        for (int channel = 0; channel < cache.length; channel++) {
+            extendedCache[channel] = Arrays.copyOf(cache[channel], levelCount + addedLevelCount);
+            long levelWindowSize = windowSize;
+            for (int level = levelCount; level < extendedCache[channel].length; level++) {
+                /* Allocated by the extension */
+                extendedCache[channel][level] = new WaveformWindowCache(0, levelWindowSize, mWithSignalStatistics);
+                levelWindowSize *= CACHE_WAVEFORM_WINDOW_RECURSIVE_SIZE;
+            }
+        }
+        return extendedCache;
+    }
+
+    /**
+     * Compute the windows of the finest level of every channel from audio frames, reading each frame once for all
+     * channels. The windows are set, but not published.
+     * @param cache The cache levels of each channel
+     * @param firstFrame The index of the first audio frame, aligned on a window of the finest level
+     * @param endFrame The index of the last audio frame, excluded
+     */
+    private void extendFinestLevel(final WaveformWindowCache[][] cache, final long firstFrame, final long endFrame) {
+        final int nbChannel = cache.length;
+        final int windowSize = (int) cache[0][0].getWindowSize();
+        final int framesPerBlock = Math.max(windowSize, SAMPLE_BLOCK_SIZE / nbChannel / windowSize * windowSize);
+        final int windowsPerBlock = framesPerBlock / windowSize;
+        final float[] frames = new float[framesPerBlock * nbChannel];
+        final float[] samples = new float[framesPerBlock];
+        final float[] mins = new float[windowsPerBlock];
+        final float[] maxs = new float[windowsPerBlock];
+        final float[] sumsOfSquares = new float[windowsPerBlock];
+        final long[] clipCounts = new long[windowsPerBlock];
+
+        for (long blockIndex = firstFrame; blockIndex < endFrame && !mIsCanceled; blockIndex += framesPerBlock) {
+            final int blockSize = (int) Math.min(framesPerBlock, endFrame - blockIndex);
+            final int fullWindowCount = blockSize / windowSize;
+            final int remainder = blockSize - fullWindowCount * windowSize;
+            final int firstSlot = (int) (blockIndex / windowSize);
+            readFrames(blockIndex, frames, blockSize);
+
+            for (int channel = 0; channel < nbChannel; channel++) {
+                for (int i = 0, index = channel; i < blockSize; i++, index += nbChannel) {
+                    samples[i] = frames[index];
+                }
+                WaveformWindowKernel.computeWindows(samples, 0, windowSize, mins, maxs, 0, fullWindowCount);
+                if (mWithSignalStatistics) {
+                    WaveformWindowKernel.computeSignalStatistics(samples, 0, windowSize, sumsOfSquares, clipCounts, 0,
+                            fullWindowCount);
+                }
+                if (remainder > 0) {
+                    /* The last window ends with the audio track */
+                    final int offset = fullWindowCount * windowSize;
+                    mins[fullWindowCount] = WaveformWindowKernel.min(samples, offset, remainder);
+                    maxs[fullWindowCount] = WaveformWindowKernel.max(samples, offset, remainder);
+                    if (mWithSignalStatistics) {
+                        sumsOfSquares[fullWindowCount] = WaveformWindowKernel.sumOfSquares(samples, offset, remainder);
+                        clipCounts[fullWindowCount] = WaveformWindowKernel.clipCount(samples, offset, remainder);
+                    }
+                }
+
+                final WaveformWindowCache cacheLevel = cache[channel][0];
+                for (int i = 0; i < fullWindowCount + (remainder > 0 ? 1 : 0); i++) {
+                    cacheLevel.set(firstSlot + i, mins[i], maxs[i], sumsOfSquares[i], clipCounts[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the AudioTrack whose cache levels are provided
+     */
+    public AudioTrack getAudioTrack() {
+        return mAudioTrack;
+    }
+
+    /**
+     * @param offHeap true for cache levels mapped from the sidecar file, false for cache levels on heap
+     * @return the number of bytes used by the cache levels of all channels
+     */
+    public long getMemorySize(final boolean offHeap) {
+        long size = 0;
+        for (final WaveformWindowCache[] cacheLevels : mCache) {
+            for (final WaveformWindowCache cacheLevel : cacheLevels) {
+                if (cacheLevel.isOffHeap() == offHeap) {
+                    size += cacheLevel.getMemorySize();
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return true once all cache levels have been evicted by the AudioTrackWaveformTraceCacheManager. A released
+     * provider still computes windows from audio samples, but shall be replaced.
+     * @see AudioTrack#getAudioTrackTraceCache()
+     */
+    public boolean isReleased() {
+        return mIsReleased;
+    }
+
+    /**
+     * @return true once cache levels are complete, and not needed anymore by the initialization
      */
-    public AudioTrackWaveformTraceCacheProvider(final AudioTrack audioTrack) {
-        /* CACHE_WAVEFORM_WINDOW_RECURSIVE_SIZE must be a power of two */
-        assert Integer.bitCount(
-                CACHE_WAVEFORM_WINDOW_RECURSIVE_SIZE) == 1 : "CACHE_WAVEFORM_WINDOW_RECURSIVE_SIZE not a power of 2";
+    boolean isEvictable() {
+        return mIsEvictable && !mIsCanceled;
+    }
 
-        mAudioTrack = audioTrack;
-        mCacheInitThreads = null;
-        mCacheInitMonitorThread = null;
-        mIsCacheInitialized = false;
+    /**
+     * @return the view stamp of the last request to the cache levels
+     */
+    long getLastViewStamp() {
+        return mLastViewStamp;
+    }
 
-        mCache = new WaveformWindowCache[mAudioTrack.getAudioFormat().getChannelCount()][];
-        /* How much cache levels are needed per channel for the AudioTrack ? */
-        int cacheLevelCount = 0;
-        long levelLenght = mAudioTrack.getSampleProvider().getSamplesPerChannel();
+    /**
+     * Evict the finest cache level stored on heap or off heap. Requests already working on the cache level complete
+     * normally. Following requests are served by the coarser levels left, their edges by audio samples; requests
+     * finer than all levels left are computed by traces from audio samples, read by bounded blocks.
+     * @param offHeap true for a cache level mapped from the sidecar file, false for a cache level on heap
+     * @return true if a cache level has been evicted
+     */
+    boolean evictFinestLevel(final boolean offHeap) {
+        /* Not this, since dispose() holds it while waiting for the scheduler step which trims */
+        synchronized (mSegmentClaimed) {
+            final WaveformWindowCache[][] cache = mCache;
+            int level = 0;
+            while (level < cache[0].length && cache[0][level].isOffHeap() != offHeap) {
+                level++;
+            }
+            if (level == cache[0].length) {
+                return false;
+            }
 
-        while (levelLenght / CACHE_WAVEFORM_WINDOW_RECURSIVE_SIZE > 0) {
-            cacheLevelCount++;
-            levelLenght /= CACHE_WAVEFORM_WINDOW_RECURSIVE_SIZE;
+            final WaveformWindowCache[][] remainingCache = new WaveformWindowCache[cache.length][];
+            for (int channel = 0; channel < cache.length; channel++) {
+                remainingCache[channel] = new WaveformWindowCache[cache[channel].length - 1];
+                System.arraycopy(cache[channel], 0, remainingCache[channel], 0, level);
+                System.arraycopy(cache[channel], level + 1, remainingCache[channel], level,
+                        remainingCache[channel].length - level);
+            }
+            mCache = remainingCache;
+            mIsReleased = remainingCache[0].length == 0;
+            return true;
         }
+    }
 
-        for (int channel = 0; channel < mAudioTrack.getAudioFormat().getChannelCount(); channel++) {
-            /* Allocate caches */
-            mCache[channel] = new WaveformWindowCache[cacheLevelCount];
-            levelLenght = mAudioTrack.getSampleProvider().getSamplesPerChannel();
+    /**
+     * Record a request to the cache levels, for the least recently viewed providers to be evicted first.
+     */
+    private void touch() {
+        mLastViewStamp = AudioTrackWaveformTraceCacheManager.getDefault().nextViewStamp();
+    }
 
-            for (int i = 0, levelWindowSize = 1; i < cacheLevelCount; i++) {
-                levelLenght = alignToPowerOfTwo(levelLenght, CACHE_WAVEFORM_WINDOW_RECURSIVE_SIZE);
-                levelLenght /= CACHE_WAVEFORM_WINDOW_RECURSIVE_SIZE;
-                levelWindowSize *= CACHE_WAVEFORM_WINDOW_RECURSIVE_SIZE;
+    /**
+     * Replace the cache levels by the ones of the sidecar file, if any.
+     * @return true if the cache levels have been loaded
+     */
+    private boolean loadCacheFile() {
+        if (mCacheFile == null) {
+            return false;
+        }
+        final WaveformWindowCache[][] cache = mCacheFile.load(mCache);
+        if (cache == null) {
+            return false;
+        }
+        for (int channel = 0; channel < mCache.length; channel++) {
+            System.arraycopy(cache[channel], 0, mCache[channel], 0, mCache[channel].length);
+        }
+        return true;
+    }
 
-                /* Cannot instantiate a cache Array with more than Integer.MAX_VALUE elements.
-                 * This will occur if channel size divided by CACHE_WAVEFORM_WINDOW_RECURSIVE_SIZE
-                 * is greater than Integer.MAX_VALUE.
-                 * For instance, with CACHE_WAVEFORM_WINDOW_RECURSIVE_SIZE == 1024, maximum channel
-                 * size is 2TB.
-                 */
-                if (levelLenght > Integer.MAX_VALUE) {
-                    throw new IndexOutOfBoundsException("Too long audio track");
+    /**
+     * Write the computed cache levels to the sidecar file, if any. The sidecar file is only an optimization: it is
+     * not written if any cache level is incomplete, and failing to write it is not an error, but is logged since
+     * the cache levels are then computed again each time the file is opened.
+     */
+    private void saveCacheFile() {
+        if (mCacheFile == null) {
+            return;
+        }
+        for (final WaveformWindowCache[] cacheLevels : mCache) {
+            for (final WaveformWindowCache cacheLevel : cacheLevels) {
+                if (cacheLevel.getCacheSize() != cacheLevel.getCacheCapacity()) {
+                    return;
                 }
-                final int cacheSize = (int) levelLenght;
-
-                mCache[channel][i] = new WaveformWindowCache(cacheSize, levelWindowSize);
             }
         }
+        try {
+            mCacheFile.save(mCache);
+        } catch (final IOException e) {
+            /* For instance the audio file directory is read only: cache levels will be computed again */
+            LOGGER.log(Level.WARNING, "Cannot write waveform cache file " + mCacheFile.getFile().getPath(), e);
+        }
     }
 
     /**
-     * Get the Waveform cache for a given channel having the highest audio sample count per
-     * window according to the audio sample count per window requested.
-     * @param channel the audio channel the requested cache shall belong to
-     * @param audioSamplePerWindow the maximum audio sample count per window the requested cache
-     * shall have.
-     * @return a WaveformWindowCache matching requested criteria, or null if no cache matches.
+     * Claim the next segment to be computed: the first segment of the priority range not yet claimed, or else the
+     * segment not yet claimed which is the nearest to the priority range.
+     * @return the claimed segment index, or -1 if all segments are claimed
      */
-    public WaveformWindowCache getWaveformCache(final int channel, final long audioSamplePerWindow) {
-        if (channel < 0 || channel > mCache.length) {
-            throw new InvalidParameterException("Invalid channel number");
-        }
-        if (audioSamplePerWindow < 0 || Long.bitCount(audioSamplePerWindow) != 1) {
-            throw new InvalidParameterException("Invalid audio sample count: must be a power of two");
+    private int claimSegment() {
+        synchronized (mSegmentClaimed) {
+            while (mForwardSegment < mSegmentClaimed.length && mSegmentClaimed[mForwardSegment]) {
+                mForwardSegment++;
+            }
+            while (mBackwardSegment >= 0 && mSegmentClaimed[mBackwardSegment]) {
+                mBackwardSegment--;
+            }
+
+            final int segment;
+            if (mForwardSegment <= mPriorityLastSegment) {
+                segment = mForwardSegment;
+            } else if (mForwardSegment < mSegmentClaimed.length && (mBackwardSegment < 0
+                    || mForwardSegment - mPriorityLastSegment <= mPriorityFirstSegment - mBackwardSegment)) {
+                segment = mForwardSegment;
+            } else if (mBackwardSegment >= 0) {
+                segment = mBackwardSegment;
+            } else {
+                return -1;
+            }
+            mSegmentClaimed[segment] = true;
+            mClaimedSegmentCount++;
+            return segment;
         }
+    }
 
-        final WaveformWindowCache[] cacheLevels = mCache[channel];
+    /**
+     * Compute the segment levels of every channel for a segment, store them in the cache slots matching the
+     * segment, then publish the segment.
+     * @param segment The segment index
+     */
+    private void initializeSegment(final int segment) {
+        final int nbChannel = mCache.length;
+        final long firstFrame = (long) segment * SEGMENT_SIZE;
+        final int segmentFrameCount =
+                (int) Math.min(SEGMENT_SIZE, mSampleCount - firstFrame);
+        final int levelZeroSize = (int) mCache[0][0].getWindowSize();
+        final int levelZeroWindowCount = (segmentFrameCount + levelZeroSize - 1) / levelZeroSize;
+        final float[][] levelZeroMins = new float[nbChannel][levelZeroWindowCount];
+        final float[][] levelZeroMaxs = new float[nbChannel][levelZeroWindowCount];
+        final float[][] levelZeroSumsOfSquares = mWithSignalStatistics ? new float[nbChannel][levelZeroWindowCount]
+                : null;
+        final long[][] levelZeroClipCounts = mWithSignalStatistics ? new long[nbChannel][levelZeroWindowCount]
+                : null;
 
-        int level = cacheLevels.length - 1;
-        while (level >= 0 && cacheLevels[level].getWindowSize() > audioSamplePerWindow) {
-            level--;
+        /* Level 0 from audio frames, read once for all channels. Blocks hold whole level 0 windows, except the last
+         * block of the last segment. */
+        final int framesPerBlock =
+                Math.max(levelZeroSize, SAMPLE_BLOCK_SIZE / nbChannel / levelZeroSize * levelZeroSize);
+        final float[] frames = new float[framesPerBlock * nbChannel];
+        final float[] samples = new float[framesPerBlock];
+
+        for (int blockIndex = 0; blockIndex < segmentFrameCount; blockIndex += framesPerBlock) {
+            final int blockSize = Math.min(framesPerBlock, segmentFrameCount - blockIndex);
+            final int windowIndex = blockIndex / levelZeroSize;
+            final int fullWindowCount = blockSize / levelZeroSize;
+            final int remainder = blockSize - fullWindowCount * levelZeroSize;
+            readFrames(firstFrame + blockIndex, frames, blockSize);
+
+            for (int channel = 0; channel < nbChannel; channel++) {
+                for (int i = 0, index = channel; i < blockSize; i++, index += nbChannel) {
+                    samples[i] = frames[index];
+                }
+                WaveformWindowKernel.computeWindows(samples, 0, levelZeroSize, levelZeroMins[channel],
+                        levelZeroMaxs[channel], windowIndex, fullWindowCount);
+                if (mWithSignalStatistics) {
+                    WaveformWindowKernel.computeSignalStatistics(samples, 0, levelZeroSize,
+                            levelZeroSumsOfSquares[channel], levelZeroClipCounts[channel], windowIndex,
+                            fullWindowCount);
+                }
+                if (remainder > 0) {
+                    final int offset = fullWindowCount * levelZeroSize;
+                    levelZeroMins[channel][windowIndex + fullWindowCount] =
+                            WaveformWindowKernel.min(samples, offset, remainder);
+                    levelZeroMaxs[channel][windowIndex + fullWindowCount] =
+                            WaveformWindowKernel.max(samples, offset, remainder);
+                    if (mWithSignalStatistics) {
+                        levelZeroSumsOfSquares[channel][windowIndex + fullWindowCount] =
+                                WaveformWindowKernel.sumOfSquares(samples, offset, remainder);
+                        levelZeroClipCounts[channel][windowIndex + fullWindowCount] =
+                                WaveformWindowKernel.clipCount(samples, offset, remainder);
+                    }
+                }
+            }
+            if (mIsCanceled) {
+                return;
+            }
         }
-        if (level >= 0) {
-            return cacheLevels[level];
-        } else {
-            return null;
+
+        for (int channel = 0; channel < nbChannel; channel++) {
+            /* Next segment levels are merged in place from the level below */
+            final float[] mins = levelZeroMins[channel];
+            final float[] maxs = levelZeroMaxs[channel];
+            final float[] sumsOfSquares = mWithSignalStatistics ? levelZeroSumsOfSquares[channel] : null;
+            final long[] clipCounts = mWithSignalStatistics ? levelZeroClipCounts[channel] : null;
+            int windowCount = levelZeroWindowCount;
+            for (int level = 0; level < mSegmentLevelCount; level++) {
+                if (level > 0) {
+                    windowCount = mergeWindows(mins, maxs, sumsOfSquares, clipCounts, windowCount,
+                            (int) (mCache[channel][level].getWindowSize()
+                                    / mCache[channel][level - 1].getWindowSize()));
+                }
+                final WaveformWindowCache cache = mCache[channel][level];
+                final int firstSlot = (int) (firstFrame / cache.getWindowSize());
+                for (int i = 0; i < windowCount; i++) {
+                    if (sumsOfSquares != null) {
+                        cache.set(firstSlot + i, mins[i], maxs[i], sumsOfSquares[i], clipCounts[i]);
+                    } else {
+                        cache.set(firstSlot + i, mins[i], maxs[i]);
+                    }
+                }
+            }
         }
+        publishSegment(segment);
     }
 
     /**
-     * Dispose the cache. If the cache is being initializing itself, initialization threads are
-     * canceled.
+     * Merge each group of windowsPerMerge windows to a single window. Merged windows are written at the beginning of
+     * the arrays.
+     * @param mins The minimum sample values of the windows
+     * @param maxs The maximum sample values of the windows
+     * @param sumsOfSquares The sums of squares of the windows, null if signal statistics are not computed
+     * @param clipCounts The clip counts of the windows, null if signal statistics are not computed
+     * @param windowCount The number of windows to be merged
+     * @param windowsPerMerge The number of windows merged to a single window
+     * @return The number of merged windows
      */
-    public synchronized void dispose() {
-        if (mCacheInitThreads != null) {
-            assert (mCacheInitMonitorThread != null);
-
-            /* Stop each init thread */
-            for (final Thread thread : mCacheInitThreads) {
-                thread.interrupt();
-            }
-            /* Wait for init monitor thread to be completed */
-            try {
-                mCacheInitMonitorThread.join();
-            } catch (final InterruptedException e) {
-                Thread.currentThread().interrupt();
+    private int mergeWindows(final float[] mins, final float[] maxs, final float[] sumsOfSquares,
+            final long[] clipCounts, final int windowCount, final int windowsPerMerge) {
+        int mergedWindowCount = 0;
+        for (int index = 0; index < windowCount; index += windowsPerMerge) {
+            final int count = Math.min(windowsPerMerge, windowCount - index);
+            mins[mergedWindowCount] = WaveformWindowKernel.min(mins, index, count);
+            maxs[mergedWindowCount] = WaveformWindowKernel.max(maxs, index, count);
+            if (sumsOfSquares != null) {
+                double sumOfSquares = 0;
+                long clipCount = 0;
+                for (int i = index; i < index + count; i++) {
+                    sumOfSquares += sumsOfSquares[i];
+                    clipCount += clipCounts[i];
+                }
+                sumsOfSquares[mergedWindowCount] = (float) sumOfSquares;
+                clipCounts[mergedWindowCount] = clipCount;
             }
+            mergedWindowCount++;
         }
+        return mergedWindowCount;
     }
 
     /**
-     * Start the cache initialization. The initialization may take a lot of time and is handle in dedicated threads.
+     * Mark the windows of a computed segment as filled in segment levels. The windows of levels spanning more than a
+     * segment are merged as soon as all windows they cover are filled.
+     * @param segment The computed segment index
      */
-    public synchronized void init() {
-        if (!mIsCacheInitialized && mCacheInitThreads == null) {
-            assert (mCacheInitMonitorThread != null);
-
-            final int nbChannel = mAudioTrack.getAudioFormat().getChannelCount();
-            mCacheInitThreads = new Thread[nbChannel];
-            // One thread per channel
-            for (int i = 0; i < nbChannel; i++) {
-                final int channel = i;
-                mCacheInitThreads[i] = new Thread(() -> {
-                    initializeChannelCacheLevels(channel);
-                });
-                mCacheInitThreads[i].setPriority(Thread.MIN_PRIORITY);
-                mCacheInitThreads[i].start();
-            }
-            /* Start a monitor thread to signal end of cache initialization */
-            mCacheInitMonitorThread = new Thread(() -> {
-
-                for (int i = 0; i < nbChannel; i++) {
-                    try {
-                        mCacheInitThreads[i].join();
-                    } catch (final InterruptedException e) {
-                        Thread.currentThread().interrupt();
+    private void publishSegment(final int segment) {
+        final long sampleCount = mSampleCount;
+        final long firstFrame = (long) segment * SEGMENT_SIZE;
+        final long endFrame = Math.min(sampleCount, firstFrame + SEGMENT_SIZE);
+
+        synchronized (mSegmentClaimed) {
+            for (int channel = 0; channel < mCache.length; channel++) {
+                final WaveformWindowCache[] cacheLevels = mCache[channel];
+                for (int level = 0; level < cacheLevels.length; level++) {
+                    final WaveformWindowCache cache = cacheLevels[level];
+                    final long windowSize = cache.getWindowSize();
+                    final int index = (int) (firstFrame / windowSize);
+
+                    if (level < mSegmentLevelCount) {
+                        cache.setFilled(index, (int) ((endFrame - 1) / windowSize) + 1 - index);
+                        notifyCacheLevelFilled(channel, cache, firstFrame, endFrame);
+                    } else {
+                        final WaveformWindowCache lowerCache = cacheLevels[level - 1];
+                        final int windowsPerMerge = (int) (windowSize / lowerCache.getWindowSize());
+                        final int lowerIndex = index * windowsPerMerge;
+                        final int lowerCount = Math.min(windowsPerMerge, lowerCache.getCacheCapacity() - lowerIndex);
+                        if (!lowerCache.isFilled(lowerIndex, lowerCount)) {
+                            /* Upper levels cannot be filled either */
+                            break;
+                        }
+                        cache.set(index, lowerCache.merge(lowerIndex, lowerCount));
+                        cache.setFilled(index, 1);
+                        notifyCacheLevelFilled(channel, cache, index * windowSize,
+                                Math.min(sampleCount, (index + 1) * windowSize));
                     }
                 }
-                mIsCacheInitialized = true;
-            });
-            mCacheInitMonitorThread.start();
+            }
         }
     }
 
-    private void initializeChannelCacheLevels(final int channel) {
-        if (channel < 0 || channel > mCache.length) {
-            throw new InvalidParameterException("Invalid channel number");
+    /**
+     * Read each audio frame of the next run of audio frames once and feed the cache levels of every channel.
+     */
+    private void initializeFrameStep() {
+        final int nbChannel = mCache.length;
+        if (mSinglePassProgress == 0) {
+            for (int channel = 0; channel < nbChannel; channel++) {
+                mCacheLevelComputers[channel] = getCacheLevelComputers(channel);
+            }
         }
 
-        final WaveformWindowCache[] cacheLevels = mCache[channel];
-        final WaveformWindowCacheDSP[] cacheLevelComputers = new WaveformWindowCacheDSP[cacheLevels.length];
+        final long frameCount = mSampleCount;
+        final long stepEnd = Math.min(frameCount, mSinglePassProgress + SEGMENT_SIZE);
+        final int framesPerBlock = Math.max(1, SAMPLE_BLOCK_SIZE / nbChannel);
+        final float[] frames = new float[framesPerBlock * nbChannel];
 
-        /* Initialize each level computer */
-        for (int level = 0; level < cacheLevels.length; level++) {
-            cacheLevelComputers[level] = new WaveformWindowCacheDSP(cacheLevels[level].getWindowSize());
+        while (mSinglePassProgress < stepEnd && !mIsCanceled) {
+            final int blockSize = (int) Math.min(framesPerBlock, stepEnd - mSinglePassProgress);
+            readFrames(mSinglePassProgress, frames, blockSize);
+
+            /* Each channel consumes the whole block in turn, keeping its level computers hot */
+            for (int channel = 0; channel < nbChannel; channel++) {
+                pushSamples(mCache[channel], mCacheLevelComputers[channel], frames, channel, nbChannel, blockSize);
+                notifyCacheLevelsFilled(channel);
+            }
+            mSinglePassProgress += blockSize;
+        }
+        if (mSinglePassProgress == frameCount) {
+            for (int channel = 0; channel < nbChannel; channel++) {
+                flushCacheLevels(mCache[channel], mCacheLevelComputers[channel]);
+                notifyCacheLevelsFilled(channel);
+            }
+        }
+    }
+
+    /**
+     * Claim the next channel to be computed further: the less advanced channel not being computed, unless it is
+     * already more than the rendez-vous distance ahead of the less advanced channel.
+     * @return the claimed channel, or -1 if none
+     */
+    private int claimChannel() {
+        synchronized (mChannelProgress) {
+            final int channel = getNextChannel();
+            if (channel >= 0) {
+                mChannelRunning[channel] = true;
+            }
+            return channel;
         }
+    }
+
+    /**
+     * @return the channel claimChannel() would claim, or -1 if none
+     * @warning caller shall lock mChannelProgress
+     */
+    private int getNextChannel() {
+        int nextChannel = -1;
+        for (int channel = 0; channel < mChannelProgress.length; channel++) {
+            if (!mChannelRunning[channel] && mChannelProgress[channel] != Long.MAX_VALUE
+                    && (nextChannel < 0 || mChannelProgress[channel] < mChannelProgress[nextChannel])) {
+                nextChannel = channel;
+            }
+        }
+        if (nextChannel >= 0 && mChannelProgress[nextChannel] - getSlowestChannelProgress() > mRendezVousDistance) {
+            return -1;
+        }
+        return nextChannel;
+    }
 
+    /**
+     * Compute a claimed channel further, until the end of the step or until the channel gets more than the
+     * rendez-vous distance ahead of the less advanced channel.
+     * @param channel The claimed channel
+     */
+    private void initializeChannelStep(final int channel) {
+        if (channel < 0 || channel >= mCache.length) {
+            throw new InvalidParameterException("Invalid channel number");
+        }
+
+        final WaveformWindowCache[] cacheLevels = mCache[channel];
         final ISampleProvider sampleProvider = mAudioTrack.getSampleProvider();
         /**
          * Loop over the entire track's channel and feed each cache level sample by samples.
@@ -184,7 +1412,7 @@ public class AudioTrackWaveformTraceCacheProvider {
          * Let's consider the case of a RawFileAudioTrack for instance. The maximum theoretical speed depends on the
          * file device speed. In order to stuck as much as possible to this speed, few optimizations shall be in place.
          *
-         * While all channel thread are looping over the entire audio data, each page of the memory mapped file will be
+         * While all channel steps are looping over the entire audio data, each page of the memory mapped file will be
          * *at least* loaded one time to physical memory .
          *
          * Keep in mind that each page loaded from file to physical memory will be used by all channel threads since
@@ -214,10 +1442,126 @@ public class AudioTrackWaveformTraceCacheProvider {
          * On the other hand, the closest the distance is, the more the overhead of the synchronization mechanism will
          * decrease the speed of this loop.
          *
-         * @todo Implement the synchronization mechanism and bench mark result with different distances.
+         * The rendez-vous is checked once per block of audio samples: a step ends once its channel is too far ahead,
+         * and claimChannel() does not resume it before the less advanced channel has caught up. The distance is given
+         * at construction time. InitMode.SINGLE_PASS avoids the question entirely by reading each frame only once.
+         *
+         * Whatever the InitMode, the sample provider is told where the less advanced reader is, so that providers
+         * reading a slow device may load the following pages ahead instead of waiting for each page miss.
+         * @see ISampleProvider#readAhead()
          */
-        for (long index = 0; index < sampleProvider.getSamplesPerChannel(); index++) {
-            final float sample = sampleProvider.getSampleAsFloat(channel, index);
+        final long sampleCount = mSampleCount;
+        long blockIndex;
+        synchronized (mChannelProgress) {
+            blockIndex = mChannelProgress[channel];
+        }
+        if (blockIndex == 0) {
+            mCacheLevelComputers[channel] = getCacheLevelComputers(channel);
+        }
+        final WaveformWindowCacheDSP[] cacheLevelComputers = mCacheLevelComputers[channel];
+        final long stepEnd = Math.min(sampleCount, blockIndex + SEGMENT_SIZE);
+        final float[] samples = new float[SAMPLE_BLOCK_SIZE];
+
+        try {
+            boolean isAhead = false;
+            while (blockIndex < stepEnd && !isAhead && !mIsCanceled) {
+                final int blockSize = (int) Math.min(SAMPLE_BLOCK_SIZE, stepEnd - blockIndex);
+                final AudioTrackWaveformTraceCacheScheduler scheduler = AudioTrackWaveformTraceCacheScheduler
+                        .getDefault();
+                scheduler.acquireIo();
+                try {
+                    sampleProvider.getSamplesAsFloat(channel, blockIndex, samples, 0, blockSize);
+                } finally {
+                    scheduler.releaseIo();
+                }
+                if (mMetrics != null) {
+                    mMetrics.recordSamples(channel, blockSize);
+                }
+                pushSamples(cacheLevels, cacheLevelComputers, samples, 0, 1, blockSize);
+                notifyCacheLevelsFilled(channel);
+                blockIndex += blockSize;
+
+                final long slowestProgress;
+                synchronized (mChannelProgress) {
+                    mChannelProgress[channel] = blockIndex;
+                    slowestProgress = getSlowestChannelProgress();
+                    isAhead = blockIndex - slowestProgress > mRendezVousDistance;
+                }
+                /* Pages are loaded ahead of the less advanced channel, which the other channels are ahead of */
+                if (slowestProgress < sampleCount) {
+                    sampleProvider.readAhead(slowestProgress);
+                }
+            }
+            if (blockIndex == sampleCount) {
+                flushCacheLevels(cacheLevels, cacheLevelComputers);
+                notifyCacheLevelsFilled(channel);
+            }
+        } finally {
+            synchronized (mChannelProgress) {
+                if (blockIndex == sampleCount) {
+                    /* A completed channel shall never be waited for */
+                    mChannelProgress[channel] = Long.MAX_VALUE;
+                }
+                mChannelRunning[channel] = false;
+            }
+        }
+    }
+
+    /**
+     * Read a block of audio frames, waiting for the scheduler to allow one more reader. The sample provider is then
+     * told the reader continues from the end of the block, so that it may read ahead.
+     * @param firstFrame The index of the first audio frame
+     * @param frames The array receiving the interleaved audio samples of the frames
+     * @param frameCount The number of audio frames
+     */
+    private void readFrames(final long firstFrame, final float[] frames, final int frameCount) {
+        final AudioTrackWaveformTraceCacheScheduler scheduler = AudioTrackWaveformTraceCacheScheduler.getDefault();
+        final ISampleProvider sampleProvider = mAudioTrack.getSampleProvider();
+        scheduler.acquireIo();
+        try {
+            sampleProvider.getFramesAsFloat(firstFrame, mCache.length, frames, 0, frameCount);
+        } finally {
+            scheduler.releaseIo();
+        }
+        sampleProvider.readAhead(firstFrame + frameCount);
+        if (mMetrics != null) {
+            mMetrics.recordFrames(frameCount);
+        }
+    }
+
+    private long getSlowestChannelProgress() {
+        long slowestProgress = Long.MAX_VALUE;
+        for (final long progress : mChannelProgress) {
+            slowestProgress = Math.min(slowestProgress, progress);
+        }
+        return slowestProgress;
+    }
+
+    private WaveformWindowCacheDSP[] getCacheLevelComputers(final int channel) {
+        final WaveformWindowCache[] cacheLevels = mCache[channel];
+        final WaveformWindowCacheDSP[] cacheLevelComputers = new WaveformWindowCacheDSP[cacheLevels.length];
+
+        /* Initialize each level computer */
+        for (int level = 0; level < cacheLevels.length; level++) {
+            cacheLevelComputers[level] = new WaveformWindowCacheDSP(cacheLevels[level].getWindowSize());
+        }
+        return cacheLevelComputers;
+    }
+
+    /**
+     * Feed each cache level of a channel with a run of audio samples.
+     * @param cacheLevels The cache levels of the channel
+     * @param cacheLevelComputers The level computers of the channel
+     * @param samples The array holding the audio samples
+     * @param offset The index of the first audio sample in the array
+     * @param stride The distance between two consecutive audio samples of the channel in the array
+     * @param count The number of audio samples to push
+     */
+    private void pushSamples(final WaveformWindowCache[] cacheLevels,
+            final WaveformWindowCacheDSP[] cacheLevelComputers, final float[] samples, final int offset,
+            final int stride, final int count) {
+        for (int i = 0, index = offset; i < count; i++, index += stride) {
+            final float sample = samples[index];
 
             for (int level = 0; level < cacheLevels.length; level++) {
                 final WaveformWindow sampleGroup = cacheLevelComputers[level].push(sample);
@@ -225,14 +1569,14 @@ public class AudioTrackWaveformTraceCacheProvider {
                     cacheLevels[level].add(sampleGroup);
                 }
             }
-
-            /** @todo It's a shame to do this test at each audio sample iteration... */
-            if (Thread.currentThread().isInterrupted()) {
-                return;
-            }
         }
-        /* Flush each level for last element (happens when samples number is not
-         * a multiple of threshold) */
+    }
+
+    /**
+     * Flush each level for last element (happens when samples number is not a multiple of threshold)
+     */
+    private void flushCacheLevels(final WaveformWindowCache[] cacheLevels,
+            final WaveformWindowCacheDSP[] cacheLevelComputers) {
         for (int level = 0; level < cacheLevels.length; level++) {
             final WaveformWindow sampleGroup = cacheLevelComputers[level].flush();
             if (sampleGroup != null) {
@@ -241,6 +1585,35 @@ public class AudioTrackWaveformTraceCacheProvider {
         }
     }
 
+    /**
+     * Notify listeners of each cache level of a channel whose watermark increased since the last notification.
+     * Used by InitMode filling cache levels from their beginning, where cache levels of a channel are only filled by
+     * a single step at a time.
+     * @param channel The channel
+     */
+    private void notifyCacheLevelsFilled(final int channel) {
+        final WaveformWindowCache[] cacheLevels = mCache[channel];
+        for (int level = 0; level < cacheLevels.length; level++) {
+            final long watermark = getWatermark(cacheLevels[level]);
+            if (watermark > mNotifiedWatermarks[channel][level]) {
+                notifyCacheLevelFilled(channel, cacheLevels[level], mNotifiedWatermarks[channel][level], watermark);
+                mNotifiedWatermarks[channel][level] = watermark;
+            }
+        }
+    }
+
+    private void notifyCacheLevelFilled(final int channel, final WaveformWindowCache cacheLevel,
+            final long fromSample, final long toSample) {
+        if (mMetrics != null) {
+            mMetrics.recordLevelFilled();
+        }
+        synchronized (mCacheListeners) {
+            for (final IAudioTrackWaveformTraceCacheListener cacheListener : mCacheListeners) {
+                cacheListener.cacheLevelFilled(channel, cacheLevel, fromSample, toSample);
+            }
+        }
+    }
+
     private long alignToPowerOfTwo(final long number, final int powerOfTwoNumber) {
         // Design of the class shall avoid such a situation
         assert powerOfTwoNumber >= 1 && Integer.bitCount(powerOfTwoNumber) == 1 : "Not a power of two";
@@ -248,13 +1621,192 @@ public class AudioTrackWaveformTraceCacheProvider {
         return (number + powerOfTwoNumber - 1L) & ~(powerOfTwoNumber - 1L);
     }
 
-    private final WaveformWindowCache[][] mCache;
+    /**
+     * Cache levels per channel. Levels are replaced by init() when loaded from the sidecar file, before the
+     * provider is shared, and the whole array is replaced when a level is evicted: readers access it without lock,
+     * working on the array read at the beginning of their request, the levels publishing their own content.
+     */
+    private volatile WaveformWindowCache[][] mCache;
     private final AudioTrack mAudioTrack;
-    private boolean mIsCacheInitialized;
-    private Thread mCacheInitMonitorThread;
-    private Thread[] mCacheInitThreads;
+    /**
+     * Number of audio samples per channel covered by the cache levels, only increased by extend() once the cache
+     * levels are extended
+     */
+    private volatile long mSampleCount;
+    /**
+     * History size of the ISampleProvider, Long.MAX_VALUE unless cache levels are sliding
+     */
+    private final long mHistorySize;
+    /**
+     * Index of the first audio sample not expired, only increased by extend() before sliding cache levels drop
+     * windows
+     */
+    private volatile long mFirstSampleIndex;
+    private final InitMode mInitMode;
+    private final int mParallelism;
+    private final boolean mWithSignalStatistics;
+    private volatile boolean mIsCanceled;
+    /**
+     * Records the build of the cache levels, set by init(), null if metrics are disabled
+     */
+    private volatile CacheBuildMetrics mMetrics;
+    /**
+     * Number of cache levels computed within a segment.
+     */
+    private final int mSegmentLevelCount;
+    /**
+     * Segments claimed by segment steps. Also the monitor guarding segment scheduling and publication rather than
+     * this, since dispose() holds this while waiting for segment steps.
+     */
+    private final boolean[] mSegmentClaimed;
+    /**
+     * Segments covering the priority range
+     */
+    private int mPriorityFirstSegment;
+    private int mPriorityLastSegment;
+    /**
+     * Next segments to be claimed after and before the first segment of the priority range
+     */
+    private int mForwardSegment;
+    private int mBackwardSegment;
+    private int mClaimedSegmentCount;
+    /**
+     * Rendez-vous distance in audio frames.
+     */
+    private final long mRendezVousDistance;
+    /**
+     * Audio sample index reached by each channel, Long.MAX_VALUE once completed, also used as rendez-vous monitor.
+     */
+    private final long[] mChannelProgress;
+    /**
+     * Channels being computed by a step, guarded by mChannelProgress
+     */
+    private final boolean[] mChannelRunning;
+    /**
+     * Level computers of each channel, kept from one step to the next in InitMode.SINGLE_PASS and
+     * InitMode.CHANNEL_THREADS
+     */
+    private final WaveformWindowCacheDSP[][] mCacheLevelComputers;
+    /**
+     * Audio frame index reached in InitMode.SINGLE_PASS. Steps are run one at a time, ordered by the scheduler.
+     */
+    private volatile long mSinglePassProgress;
+    /**
+     * Written by the scheduler thread completing the initialization, read without lock
+     */
+    private volatile boolean mIsCacheInitialized;
+    /**
+     * Set once cache levels are complete, read by the AudioTrackWaveformTraceCacheManager
+     */
+    private volatile boolean mIsEvictable;
+    private volatile boolean mIsReleased;
+    private volatile long mLastViewStamp;
+    /**
+     * Set by init() once the cache levels are submitted to the scheduler
+     */
+    private boolean mIsBuildStarted;
+    private WaveformWindowCacheFile mCacheFile;
+    private final HashSet<IAudioTrackWaveformTraceCacheListener> mCacheListeners;
+    /**
+     * The last watermark notified to listeners, per channel and cache level
+     */
+    private final long[][] mNotifiedWatermarks;
     /**
      * Must be a power of two.
      */
     private static final int CACHE_WAVEFORM_WINDOW_RECURSIVE_SIZE = 512;
+    /**
+     * Number of audio samples read at once from the ISampleProvider while initializing the cache.
+     */
+    private static final int SAMPLE_BLOCK_SIZE = 16 * CACHE_WAVEFORM_WINDOW_RECURSIVE_SIZE;
+    /**
+     * Number of audio frames of a segment in InitMode.PARALLEL_SEGMENTS. Must be a multiple of
+     * CACHE_WAVEFORM_WINDOW_RECURSIVE_SIZE.
+     */
+    private static final int SEGMENT_SIZE =
+            4 * CACHE_WAVEFORM_WINDOW_RECURSIVE_SIZE * CACHE_WAVEFORM_WINDOW_RECURSIVE_SIZE;
+    private static final InitMode DEFAULT_INIT_MODE = InitMode.PARALLEL_SEGMENTS;
+    /**
+     * Default rendez-vous distance in bytes: 8MB.
+     */
+    private static final long DEFAULT_RENDEZ_VOUS_DISTANCE = 8L * 1024L * 1024L;
+    /**
+     * Default window sizes of the levels finer than the first recursive level.
+     */
+    private static final int[] DEFAULT_FINE_WINDOW_SIZES = {8, 64};
+    /**
+     * Default memory budget of fine levels in bytes: 64MB, enough for both default fine levels of a stereo track up
+     * to about 14 million audio samples per channel with signal statistics, 29 million without.
+     */
+    private static final long DEFAULT_FINE_LEVEL_MEMORY_BUDGET = 64L * 1024L * 1024L;
+    private static final boolean DEFAULT_WITH_SIGNAL_STATISTICS = true;
+    /**
+     * Margin of sliding cache levels, in windows: at least SLIDING_MIN_MARGIN, and one window per
+     * SLIDING_MARGIN_RATIO windows of the history.
+     */
+    private static final int SLIDING_MIN_MARGIN = 2;
+    private static final int SLIDING_MARGIN_RATIO = 8;
+    private static final Logger LOGGER = Logger.getLogger("com.intel.audioviz.trace");
+    /**
+     * The accumulators of the threads computing windows not aligned on cache levels
+     */
+    private static final ThreadLocal<RangeAccumulator> ACCUMULATORS = new ThreadLocal<RangeAccumulator>();
+
+    /**
+     * The statistics of an audio sample range being accumulated, from cache levels and audio samples. An accumulator
+     * is reused by its thread across requests, see getAccumulator().
+     */
+    private static final class RangeAccumulator {
+
+        private RangeAccumulator() {
+            mSamples = new float[SAMPLE_BLOCK_SIZE];
+        }
+
+        private void reset() {
+            mMin = Float.POSITIVE_INFINITY;
+            mMax = Float.NEGATIVE_INFINITY;
+            mSumOfSquares = 0;
+            mClipCount = 0;
+        }
+
+        private void accumulate(final float[] samples, final int count) {
+            mMin = Math.min(mMin, WaveformWindowKernel.min(samples, 0, count));
+            mMax = Math.max(mMax, WaveformWindowKernel.max(samples, 0, count));
+            if (mWithSignalStatistics) {
+                mSumOfSquares += WaveformWindowKernel.sumOfSquares(samples, 0, count);
+                mClipCount += WaveformWindowKernel.clipCount(samples, 0, count);
+            }
+        }
+
+        /**
+         * Accumulate silent audio samples, which add neither to the sum of squares nor to the clip count
+         */
+        private void accumulateSilence() {
+            mMin = Math.min(mMin, 0);
+            mMax = Math.max(mMax, 0);
+        }
+
+        private void accumulate(final WaveformWindowCache cache, final int index, final int count) {
+            mMin = Math.min(mMin, cache.getMergedMin(index, count));
+            mMax = Math.max(mMax, cache.getMergedMax(index, count));
+            if (mWithSignalStatistics) {
+                mSumOfSquares += cache.getMergedSumOfSquares(index, count);
+                mClipCount += cache.getMergedClipCount(index, count);
+            }
+        }
+
+        private final float[] mSamples;
+        /**
+         * Set per request: true to accumulate signal statistics as well
+         */
+        private boolean mWithSignalStatistics;
+        /**
+         * Set per request: the index of the first audio sample not expired
+         */
+        private long mFirstSampleIndex;
+        private float mMin;
+        private float mMax;
+        private double mSumOfSquares;
+        private long mClipCount;
+    }
 }
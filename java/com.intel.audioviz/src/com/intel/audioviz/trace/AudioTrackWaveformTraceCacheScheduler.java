@@ -0,0 +1,402 @@
+/*
+ * Copyright (C) 2017 Intel Corporation
+ *
+ * This Program is subject to the terms of the Eclipse Public License, v. 1.0.
+ * If a copy of the license was not distributed with this file,
+ * you can obtain one at <http://www.eclipse.org/legal/epl-v10.html>
+ *
+ * SPDX-License-Identifier: EPL-1.0
+ */
+
+package com.intel.audioviz.trace;
+
+import java.lang.ref.WeakReference;
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.WeakHashMap;
+
+import com.intel.audioviz.AudioTrack;
+
+/**
+ * The AudioTrackWaveformTraceCacheScheduler computes the cache levels of all AudioTrackWaveformTraceCacheProvider of
+ * the process with a bounded number of low priority threads, whatever the number of open AudioTracks.
+ *
+ * Each provider splits its computation in short steps: a segment, a run of audio frames, or a run of audio samples of
+ * a channel depending on its InitMode. Scheduler threads pick steps:
+ * <ul>
+ * <li>of the focused AudioTrack first,</li>
+ * <li>then of the other AudioTracks in turn, so that each one progresses,</li>
+ * <li>never of a paused AudioTrack, typically a hidden one, until it is resumed.</li>
+ * </ul>
+ * Independently, the number of threads reading audio data at once is bounded, so that computations do not compete
+ * for the same disk.
+ */
+public final class AudioTrackWaveformTraceCacheScheduler {
+
+    private AudioTrackWaveformTraceCacheScheduler() {
+        mBuildJobs = new ArrayList<BuildJob>();
+        mPausedAudioTracks = new WeakHashMap<AudioTrack, Boolean>();
+        mFocusedAudioTrack = new WeakReference<AudioTrack>(null);
+        mCpuConcurrency = Runtime.getRuntime().availableProcessors();
+        mIoConcurrency = DEFAULT_IO_CONCURRENCY;
+        mWorkerCount = 0;
+        mWorkerIndex = 0;
+        mNextBuildJob = 0;
+        mIoMonitor = new Object();
+        mReaderCount = 0;
+    }
+
+    /**
+     * @return the scheduler of the process
+     */
+    public static AudioTrackWaveformTraceCacheScheduler getDefault() {
+        return DEFAULT_SCHEDULER;
+    }
+
+    /**
+     * @param cpuConcurrency the maximum number of threads computing cache levels
+     */
+    public synchronized void setCpuConcurrency(final int cpuConcurrency) {
+        if (cpuConcurrency < 1) {
+            throw new InvalidParameterException("Invalid concurrency");
+        }
+        mCpuConcurrency = cpuConcurrency;
+        startWorkers();
+        notifyAll();
+    }
+
+    /**
+     * @return the maximum number of threads computing cache levels
+     */
+    public synchronized int getCpuConcurrency() {
+        return mCpuConcurrency;
+    }
+
+    /**
+     * @param ioConcurrency the maximum number of threads reading audio data at once
+     */
+    public void setIoConcurrency(final int ioConcurrency) {
+        if (ioConcurrency < 1) {
+            throw new InvalidParameterException("Invalid concurrency");
+        }
+        synchronized (mIoMonitor) {
+            mIoConcurrency = ioConcurrency;
+            mIoMonitor.notifyAll();
+        }
+    }
+
+    /**
+     * @return the maximum number of threads reading audio data at once
+     */
+    public int getIoConcurrency() {
+        synchronized (mIoMonitor) {
+            return mIoConcurrency;
+        }
+    }
+
+    /**
+     * @param audioTrack the AudioTrack whose cache levels are computed first, typically the one displayed by the
+     * focused part, or null
+     */
+    public synchronized void setFocusedAudioTrack(final AudioTrack audioTrack) {
+        mFocusedAudioTrack = new WeakReference<AudioTrack>(audioTrack);
+        notifyAll();
+    }
+
+    /**
+     * @return the AudioTrack whose cache levels are computed first, or null
+     */
+    public synchronized AudioTrack getFocusedAudioTrack() {
+        return mFocusedAudioTrack.get();
+    }
+
+    /**
+     * Pause or resume the computation of the cache levels of an AudioTrack. Steps being computed are completed, no
+     * other step is started until the AudioTrack is resumed.
+     * @param audioTrack the AudioTrack
+     * @param paused true to pause, false to resume
+     */
+    public synchronized void setPaused(final AudioTrack audioTrack, final boolean paused) {
+        if (audioTrack == null) {
+            throw new InvalidParameterException("null AudioTrack");
+        }
+        if (paused) {
+            mPausedAudioTracks.put(audioTrack, Boolean.TRUE);
+        } else {
+            mPausedAudioTracks.remove(audioTrack);
+        }
+        notifyAll();
+    }
+
+    /**
+     * @param audioTrack the AudioTrack
+     * @return true if the computation of the cache levels of the AudioTrack is paused
+     */
+    public synchronized boolean isPaused(final AudioTrack audioTrack) {
+        return mPausedAudioTracks.containsKey(audioTrack);
+    }
+
+    /**
+     * @return the number of providers whose cache levels are being computed
+     */
+    public synchronized int getBuildCount() {
+        return mBuildJobs.size();
+    }
+
+    /**
+     * @return the number of threads computing cache levels or waiting for a step to compute
+     */
+    public synchronized int getWorkerCount() {
+        return mWorkerCount;
+    }
+
+    /**
+     * Start computing the cache levels of a provider. The provider is notified by completeBuild() once all its steps
+     * are computed.
+     * @param provider the provider
+     */
+    synchronized void submit(final AudioTrackWaveformTraceCacheProvider provider) {
+        mBuildJobs.add(new BuildJob(provider));
+        startWorkers();
+        notifyAll();
+    }
+
+    /**
+     * Stop computing the cache levels of a provider, waiting for the steps being computed to complete.
+     * @param provider the provider, which shall have been canceled so that its steps complete early
+     */
+    synchronized void cancel(final AudioTrackWaveformTraceCacheProvider provider) {
+        for (final BuildJob buildJob : mBuildJobs) {
+            if (buildJob.mProvider == provider) {
+                buildJob.mIsCanceled = true;
+                mBuildJobs.remove(buildJob);
+                boolean isInterrupted = false;
+                while (buildJob.mRunningStepCount > 0) {
+                    try {
+                        wait();
+                    } catch (final InterruptedException e) {
+                        isInterrupted = true;
+                    }
+                }
+                if (isInterrupted) {
+                    Thread.currentThread().interrupt();
+                }
+                notifyAll();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Wait for a permit to read audio data. Shall be followed by releaseIo().
+     */
+    void acquireIo() {
+        synchronized (mIoMonitor) {
+            boolean isInterrupted = false;
+            while (mReaderCount >= mIoConcurrency) {
+                try {
+                    mIoMonitor.wait();
+                } catch (final InterruptedException e) {
+                    isInterrupted = true;
+                }
+            }
+            mReaderCount++;
+            if (isInterrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    void releaseIo() {
+        synchronized (mIoMonitor) {
+            mReaderCount--;
+            mIoMonitor.notifyAll();
+        }
+    }
+
+    /**
+     * Start threads until there are as many as the CPU concurrency. Threads stop once there is no more build job.
+     */
+    private void startWorkers() {
+        while (mWorkerCount < mCpuConcurrency && !mBuildJobs.isEmpty()) {
+            final Thread worker = new Thread(this::work, "AudioTrackCacheBuild-" + mWorkerIndex++);
+            worker.setDaemon(true);
+            worker.setPriority(Thread.MIN_PRIORITY);
+            mWorkerCount++;
+            worker.start();
+        }
+    }
+
+    /**
+     * Scheduler thread loop: compute steps until there is no more build job.
+     */
+    private void work() {
+        boolean isStopped = false;
+        try {
+            for (BuildJob buildJob = waitForBuildJob(); buildJob != null; buildJob = waitForBuildJob()) {
+                runStep(buildJob);
+            }
+            isStopped = true;
+        } finally {
+            if (!isStopped) {
+                /* Replace a thread stopped by an unexpected exception */
+                synchronized (this) {
+                    mWorkerCount--;
+                    startWorkers();
+                }
+            }
+        }
+    }
+
+    /**
+     * Compute a step of a build job, then complete the build job if it was its last step.
+     * @param buildJob the build job, its running step count incremented
+     */
+    private void runStep(final BuildJob buildJob) {
+        boolean isFailed = true;
+        boolean isCompleting = false;
+        try {
+            buildJob.mProvider.runBuildStep();
+            isFailed = false;
+        } finally {
+            synchronized (this) {
+                /* A failed build job is completed as is rather than failing again and again */
+                buildJob.mIsFailed |= isFailed;
+                if (buildJob.mRunningStepCount == 1 && !buildJob.mIsCanceled && !buildJob.mIsCompleting
+                        && (buildJob.mIsFailed || buildJob.mProvider.isBuildDone())) {
+                    buildJob.mIsCompleting = true;
+                    isCompleting = true;
+                }
+            }
+            try {
+                if (isCompleting) {
+                    buildJob.mProvider.completeBuild();
+                }
+            } finally {
+                synchronized (this) {
+                    buildJob.mRunningStepCount--;
+                    if (isCompleting) {
+                        mBuildJobs.remove(buildJob);
+                    }
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Wait for a step to compute.
+     * @return the build job a step shall be computed for, its running step count incremented, or null if the
+     * calling thread shall stop
+     */
+    private synchronized BuildJob waitForBuildJob() {
+        while (mWorkerCount <= mCpuConcurrency && !mBuildJobs.isEmpty()) {
+            final BuildJob buildJob = pickBuildJob();
+            if (buildJob != null) {
+                buildJob.mRunningStepCount++;
+                return buildJob;
+            }
+            try {
+                wait();
+            } catch (final InterruptedException e) {
+                /* Scheduler threads are not meant to be interrupted */
+                break;
+            }
+        }
+        mWorkerCount--;
+        return null;
+    }
+
+    /**
+     * @return the build job of the focused AudioTrack if it has a step to compute, or else the next build job in
+     * turn having one, or null if none
+     */
+    private BuildJob pickBuildJob() {
+        final AudioTrack focusedAudioTrack = mFocusedAudioTrack.get();
+        final int buildJobCount = mBuildJobs.size();
+        int pickedIndex = -1;
+
+        for (int i = 0; i < buildJobCount; i++) {
+            final int index = (mNextBuildJob + i) % buildJobCount;
+            final BuildJob buildJob = mBuildJobs.get(index);
+            if (isRunnable(buildJob)) {
+                if (buildJob.mProvider.getAudioTrack() == focusedAudioTrack) {
+                    /* The focused AudioTrack does not consume the turn of others */
+                    return buildJob;
+                }
+                if (pickedIndex < 0) {
+                    pickedIndex = index;
+                }
+            }
+        }
+        if (pickedIndex < 0) {
+            return null;
+        }
+        mNextBuildJob = (pickedIndex + 1) % buildJobCount;
+        return mBuildJobs.get(pickedIndex);
+    }
+
+    /**
+     * @param buildJob a build job
+     * @return true if a step of the build job may be computed now. A completed build job is always runnable, its
+     * step being the completion itself.
+     */
+    private boolean isRunnable(final BuildJob buildJob) {
+        final AudioTrackWaveformTraceCacheProvider provider = buildJob.mProvider;
+        if (buildJob.mIsCompleting || buildJob.mIsFailed) {
+            return false;
+        }
+        if (buildJob.mRunningStepCount == 0 && provider.isBuildDone()) {
+            return true;
+        }
+        return !mPausedAudioTracks.containsKey(provider.getAudioTrack())
+                && buildJob.mRunningStepCount < provider.getBuildParallelism() && provider.hasBuildStep();
+    }
+
+    /**
+     * The scheduling state of a provider whose cache levels are being computed. Guarded by the scheduler.
+     */
+    private static final class BuildJob {
+
+        private BuildJob(final AudioTrackWaveformTraceCacheProvider provider) {
+            mProvider = provider;
+            mRunningStepCount = 0;
+            mIsCompleting = false;
+            mIsCanceled = false;
+            mIsFailed = false;
+        }
+
+        private final AudioTrackWaveformTraceCacheProvider mProvider;
+        private int mRunningStepCount;
+        private boolean mIsCompleting;
+        private boolean mIsCanceled;
+        private boolean mIsFailed;
+    }
+
+    private final ArrayList<BuildJob> mBuildJobs;
+    /**
+     * Paused AudioTracks, weakly referenced since they may be disposed while paused
+     */
+    private final WeakHashMap<AudioTrack, Boolean> mPausedAudioTracks;
+    private WeakReference<AudioTrack> mFocusedAudioTrack;
+    private int mCpuConcurrency;
+    private int mWorkerCount;
+    private int mWorkerIndex;
+    /**
+     * The index of the build job whose turn is next
+     */
+    private int mNextBuildJob;
+    /**
+     * Guards mIoConcurrency and mReaderCount rather than this, since reads happen while steps are computed
+     */
+    private final Object mIoMonitor;
+    private int mIoConcurrency;
+    private int mReaderCount;
+
+    /**
+     * Default number of threads reading audio data at once.
+     */
+    private static final int DEFAULT_IO_CONCURRENCY = 2;
+    private static final AudioTrackWaveformTraceCacheScheduler DEFAULT_SCHEDULER =
+            new AudioTrackWaveformTraceCacheScheduler();
+}
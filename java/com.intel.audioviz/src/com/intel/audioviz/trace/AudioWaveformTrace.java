@@ -10,41 +10,118 @@
 
 package com.intel.audioviz.trace;
 
+import java.util.Arrays;
+
 import com.intel.audioviz.AudioTrack;
 import com.intel.audioviz.trace.waveform.WaveformWindowCache;
+import com.intel.audioviz.trace.waveform.WaveformWindowKernel;
 
 public class AudioWaveformTrace extends AudioTrace {
 
     public AudioWaveformTrace(final AudioTrack audioTrack, final int channel) {
+        this(audioTrack, channel, false);
+    }
+
+    /**
+     * @param audioTrack The audio track
+     * @param channel The audio channel
+     * @param withSignalStatistics true to compute the signal statistics of trace samples as well
+     */
+    protected AudioWaveformTrace(final AudioTrack audioTrack, final int channel,
+            final boolean withSignalStatistics) {
         super(audioTrack, channel);
+        mWithSignalStatistics = withSignalStatistics;
         mAudioTrackTraceCache = audioTrack.getAudioTrackTraceCache();
         doClear();
+
+        /* An uncompleted trace is computed again only once the cache level it is computed from covers more of it */
+        mCacheListener = (cacheChannel, cacheLevel, fromSample, toSample) -> {
+            if (cacheChannel == getChannel() && cacheLevel.getWindowSize() == mPendingWindowSize
+                    && fromSample < mPendingToSample && toSample > mPendingFromSample) {
+                traceDataChanged();
+            }
+        };
+        mAudioTrackTraceCache.addCacheListener(mCacheListener);
+    }
+
+    @Override
+    public void dispose() {
+        mAudioTrackTraceCache.removeCacheListener(mCacheListener);
+        super.dispose();
+    }
+
+    /**
+     * Cache levels covering the priority range are computed first.
+     */
+    @Override
+    public void setPriorityRange(final long audioSampleIndex, final long audioSampleCount) {
+        mAudioTrackTraceCache.setPriorityRange(audioSampleIndex, audioSampleCount);
     }
 
     /**
      * @return the collection of audio sample values
      * @warning caller shall lock the AudioTrace
+     * @note A new array is allocated on each call: refreshing a view should rather use copyTraceTo().
      */
     public float[] getAudioSampleTrace() {
-        return mAudioSampleTrace;
+        if (mFrontBuffer.getAudioSamplePerTraceSample() != 1) {
+            return new float[0];
+        }
+        return Arrays.copyOf(mFrontBuffer.getMins(), mFrontBuffer.getSize());
     }
 
     /**
      * @return the collection of WaveformWindow
+     * @warning caller shall lock the AudioTrace
+     * @note A new array is allocated on each call: refreshing a view should rather use copyTraceTo().
      */
     public WaveformWindow[] getWaveformWindowTrace() {
-        return mWaveformWindowTrace;
+        if (mFrontBuffer.getAudioSamplePerTraceSample() <= 1) {
+            return new WaveformWindow[0];
+        }
+        final WaveformWindow[] waveformWindowTrace = new WaveformWindow[mFrontBuffer.getSize()];
+        for (int i = 0; i < waveformWindowTrace.length; i++) {
+            waveformWindowTrace[i] = new WaveformWindow(mFrontBuffer.getMin(i), mFrontBuffer.getMax(i));
+        }
+        return waveformWindowTrace;
+    }
+
+    /**
+     * Copy the last computed trace, without allocation once the destination is large enough.
+     * @param destination the buffer receiving the trace
+     */
+    public synchronized void copyTraceTo(final WaveformTraceBuffer destination) {
+        destination.copyFrom(mFrontBuffer);
     }
 
     @Override
     protected void doClear() {
-        mAudioSampleTrace = new float[0];
-        mWaveformWindowTrace = new WaveformWindow[0];
+        /* Also called by the AudioTrace constructor, before the fields of this class are initialized */
+        if (mFrontBuffer == null) {
+            mFrontBuffer = new WaveformTraceBuffer();
+            mBackBuffer = new WaveformTraceBuffer();
+            mSamples = new float[0];
+            mPendingStatistic = new float[1];
+        }
+        mFrontBuffer.clear();
         mCompleted = false;
+        mPendingWindowSize = 0;
     }
 
+    /**
+     * The trace is computed in the back buffer, then swapped with the front buffer: buffers are reused across
+     * calls. When the audio sample count per trace sample is unchanged and the trace is shifted by whole trace
+     * samples, as when panning through an AudioTraceController, the trace samples still visible are copied from the
+     * front buffer: only the newly exposed ones are computed.
+     */
     @Override
     protected void doSetTraceView(final AudioTraceView audioTraceRange) {
+        if (mAudioTrackTraceCache.isReleased()) {
+            /* All cache levels have been evicted: switch to the provider the AudioTrack rebuilds */
+            mAudioTrackTraceCache.removeCacheListener(mCacheListener);
+            mAudioTrackTraceCache = getAudioTrack().getAudioTrackTraceCache();
+            mAudioTrackTraceCache.addCacheListener(mCacheListener);
+        }
         final long channelSampleCount = getAudioTrack().getSampleProvider().getSamplesPerChannel();
 
         final long audioSampleIndex = audioTraceRange.getAudioSampleIndex();
@@ -56,51 +133,243 @@ public class AudioWaveformTrace extends AudioTrace {
                 Math.min(traceSampleCount, (channelSampleCount - audioSampleIndex) / audioSamplePerTraceSample));
 
         if (traceSampleCount > 0) {
-            doClear();
-
-            if (audioSamplePerTraceSample == 1) {
-                mAudioSampleTrace = new float[traceSampleCount];
-                for (int i = 0; i < traceSampleCount; i++) {
-                    mAudioSampleTrace[i] =
-                            getAudioTrack().getSampleProvider().getSampleAsFloat(
-                                    getChannel(), audioSampleIndex + i);
-                }
-                mCompleted = true;
-            } else {
-                /* Compute from cache ? */
-                final WaveformWindowCache sampleGroupCache =
-                        mAudioTrackTraceCache.getWaveformCache(
-                                getChannel(), audioSamplePerTraceSample);
-
-                if (sampleGroupCache == null) {
-                    mWaveformWindowTrace = new WaveformWindow[traceSampleCount];
-                    for (int i = 0; i < traceSampleCount; i++) {
-                        mWaveformWindowTrace[i] = new WaveformWindow(
-                                getAudioTrack().getSampleProvider(),
-                                getChannel(),
-                                audioSampleIndex + i * audioSamplePerTraceSample,
-                                audioSamplePerTraceSample);
+            mCompleted = false;
+            mPendingWindowSize = 0;
+            final WaveformTraceBuffer buffer = mBackBuffer;
+            buffer.reset(audioSampleIndex, audioSamplePerTraceSample, traceSampleCount, mWithSignalStatistics);
+
+            /* Trace samples [reusedFrom, reusedTo) are copied from the previous trace */
+            int reusedFrom = 0;
+            int reusedTo = 0;
+            final WaveformTraceBuffer previous = mFrontBuffer;
+            final long shift = audioSampleIndex - previous.getAudioSampleIndex();
+            if (previous.getAudioSamplePerTraceSample() == audioSamplePerTraceSample
+                    && previous.hasSignalStatistics() == mWithSignalStatistics
+                    && shift % audioSamplePerTraceSample == 0) {
+                final long traceSampleShift = shift / audioSamplePerTraceSample;
+                reusedFrom = (int) Math.max(0, Math.min(traceSampleCount, -traceSampleShift));
+                reusedTo = (int) Math.max(0, Math.min(traceSampleCount, previous.getSize() - traceSampleShift));
+                if (reusedFrom < reusedTo) {
+                    System.arraycopy(previous.getMins(), (int) (reusedFrom + traceSampleShift), buffer.getMins(),
+                            reusedFrom, reusedTo - reusedFrom);
+                    System.arraycopy(previous.getMaxs(), (int) (reusedFrom + traceSampleShift), buffer.getMaxs(),
+                            reusedFrom, reusedTo - reusedFrom);
+                    if (mWithSignalStatistics) {
+                        System.arraycopy(previous.getRmss(), (int) (reusedFrom + traceSampleShift),
+                                buffer.getRmss(), reusedFrom, reusedTo - reusedFrom);
+                        System.arraycopy(previous.getClipCounts(), (int) (reusedFrom + traceSampleShift),
+                                buffer.getClipCounts(), reusedFrom, reusedTo - reusedFrom);
                     }
-                    mCompleted = true;
                 } else {
-                    mWaveformWindowTrace = sampleGroupCache.getFromCache(
-                            audioSampleIndex, audioSamplePerTraceSample, traceSampleCount);
-
-                    mCompleted = mWaveformWindowTrace.length >= traceSampleCount;
+                    reusedFrom = 0;
+                    reusedTo = 0;
                 }
             }
+
+            /* Compute the trace samples exposed before, then after the reused ones */
+            final WaveformWindowCache sampleGroupCache = audioSamplePerTraceSample == 1 ? null
+                    : mAudioTrackTraceCache.getWaveformCache(getChannel(), audioSamplePerTraceSample);
+            int size = computeTraceSamples(buffer, sampleGroupCache, 0, reusedFrom);
+            if (size == reusedFrom) {
+                size = reusedTo + computeTraceSamples(buffer, sampleGroupCache, reusedTo, traceSampleCount - reusedTo);
+            }
+            buffer.setSize(size);
+            if (sampleGroupCache != null) {
+                /* A single request per view, RMS traces included, counted against all its trace samples */
+                mAudioTrackTraceCache.recordRequest(size, traceSampleCount);
+            }
+
+            mCompleted = size >= traceSampleCount;
+            if (!mCompleted && sampleGroupCache != null) {
+                waitForCacheLevel(sampleGroupCache, audioSampleIndex + size * audioSamplePerTraceSample,
+                        audioSamplePerTraceSample, channelSampleCount);
+            }
+            mBackBuffer = mFrontBuffer;
+            mFrontBuffer = buffer;
         } else {
             mCompleted = true;
         }
     }
 
+    /**
+     * Compute consecutive trace samples, and their signal statistics if requested.
+     * @param buffer The buffer receiving the trace samples, whose audio sample index and audio sample count per
+     * trace sample are set
+     * @param sampleGroupCache The cache level the trace samples are computed from, null to compute them from audio
+     * samples
+     * @param offset The index of the first trace sample to compute
+     * @param count The number of trace samples to compute
+     * @return The number of trace samples computed, lower than count if the cache is not filled far enough or if
+     * the request has been superseded
+     */
+    private int computeTraceSamples(final WaveformTraceBuffer buffer, final WaveformWindowCache sampleGroupCache,
+            final int offset, final int count) {
+        final long audioSamplePerTraceSample = buffer.getAudioSamplePerTraceSample();
+        final long audioSampleIndex = buffer.getAudioSampleIndex() + offset * audioSamplePerTraceSample;
+
+        if (count == 0) {
+            return 0;
+        } else if (audioSamplePerTraceSample == 1) {
+            getAudioTrack().getSampleProvider().getSamplesAsFloat(
+                    getChannel(), audioSampleIndex, buffer.getMins(), offset, count);
+            System.arraycopy(buffer.getMins(), offset, buffer.getMaxs(), offset, count);
+            if (mWithSignalStatistics) {
+                for (int i = offset; i < offset + count; i++) {
+                    final float sample = buffer.getMins()[i];
+                    buffer.getRmss()[i] = Math.abs(sample);
+                    buffer.getClipCounts()[i] = Math.abs(sample) >= WaveformWindow.FULL_SCALE ? 1 : 0;
+                }
+            }
+            return count;
+        } else if (sampleGroupCache == null) {
+            /* No cache level is fine enough, as once the finest ones are evicted: scan audio samples by blocks of at
+             * most UNCACHED_SAMPLE_BLOCK_SIZE, holding whole windows unless a window is larger */
+            if (audioSamplePerTraceSample > UNCACHED_SAMPLE_BLOCK_SIZE) {
+                return computeLargeTraceSamples(buffer, audioSampleIndex, offset, count);
+            }
+            final int windowSize = (int) audioSamplePerTraceSample;
+            final int windowsPerBlock = Math.max(1, UNCACHED_SAMPLE_BLOCK_SIZE / windowSize);
+            if (mSamples.length < windowsPerBlock * windowSize) {
+                mSamples = new float[windowsPerBlock * windowSize];
+            }
+            for (int i = 0; i < count; i += windowsPerBlock) {
+                if (isTraceViewRequestSuperseded()) {
+                    return i;
+                }
+                final int windowCount = Math.min(windowsPerBlock, count - i);
+                getAudioTrack().getSampleProvider().getSamplesAsFloat(
+                        getChannel(),
+                        audioSampleIndex + i * audioSamplePerTraceSample,
+                        mSamples,
+                        0,
+                        windowCount * windowSize);
+                WaveformWindowKernel.computeWindows(mSamples, 0, windowSize, buffer.getMins(), buffer.getMaxs(),
+                        offset + i, windowCount);
+                if (mWithSignalStatistics) {
+                    /* Sums of squares are turned to root mean squares in place */
+                    WaveformWindowKernel.computeSignalStatistics(mSamples, 0, windowSize, buffer.getRmss(),
+                            buffer.getClipCounts(), offset + i, windowCount);
+                    for (int j = offset + i; j < offset + i + windowCount; j++) {
+                        buffer.getRmss()[j] = (float) Math.sqrt(buffer.getRmss()[j] / windowSize);
+                    }
+                }
+            }
+            return count;
+        } else {
+            /* Any audio sample index and audio sample count per trace sample, the closest cache level first */
+            final int computed = mAudioTrackTraceCache.getWaveformWindows(getChannel(), audioSampleIndex,
+                    audioSamplePerTraceSample, buffer.getMins(), buffer.getMaxs(), offset, count);
+            if (!mWithSignalStatistics) {
+                return computed;
+            }
+            return mAudioTrackTraceCache.getSignalStatistics(getChannel(), audioSampleIndex,
+                    audioSamplePerTraceSample, buffer.getRmss(), buffer.getClipCounts(), offset, computed);
+        }
+    }
+
+    /**
+     * Compute consecutive trace samples from audio samples, when a window is larger than a block of audio samples:
+     * each window is accumulated block per block, so that the audio samples read at once stay bounded.
+     * @param buffer The buffer receiving the trace samples
+     * @param audioSampleIndex The audio sample index of the first trace sample to compute
+     * @param offset The index of the first trace sample to compute
+     * @param count The number of trace samples to compute
+     * @return The number of trace samples computed, lower than count if the request has been superseded
+     */
+    private int computeLargeTraceSamples(final WaveformTraceBuffer buffer, final long audioSampleIndex,
+            final int offset, final int count) {
+        final long windowSize = buffer.getAudioSamplePerTraceSample();
+        if (mSamples.length < UNCACHED_SAMPLE_BLOCK_SIZE) {
+            mSamples = new float[UNCACHED_SAMPLE_BLOCK_SIZE];
+        }
+        for (int i = 0; i < count; i++) {
+            final long fromSample = audioSampleIndex + i * windowSize;
+            float min = Float.POSITIVE_INFINITY;
+            float max = Float.NEGATIVE_INFINITY;
+            double sumOfSquares = 0;
+            long clipCount = 0;
+            for (long index = fromSample; index < fromSample + windowSize; index += UNCACHED_SAMPLE_BLOCK_SIZE) {
+                if (isTraceViewRequestSuperseded()) {
+                    return i;
+                }
+                final int blockSize = (int) Math.min(UNCACHED_SAMPLE_BLOCK_SIZE, fromSample + windowSize - index);
+                getAudioTrack().getSampleProvider().getSamplesAsFloat(getChannel(), index, mSamples, 0, blockSize);
+                min = Math.min(min, WaveformWindowKernel.min(mSamples, 0, blockSize));
+                max = Math.max(max, WaveformWindowKernel.max(mSamples, 0, blockSize));
+                if (mWithSignalStatistics) {
+                    sumOfSquares += WaveformWindowKernel.sumOfSquares(mSamples, 0, blockSize);
+                    clipCount += WaveformWindowKernel.clipCount(mSamples, 0, blockSize);
+                }
+            }
+            buffer.getMins()[offset + i] = min;
+            buffer.getMaxs()[offset + i] = max;
+            if (mWithSignalStatistics) {
+                buffer.getRmss()[offset + i] = (float) Math.sqrt(sumOfSquares / windowSize);
+                buffer.getClipCounts()[offset + i] = clipCount;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Register the cache level region required to compute at least one more WaveformWindow of the trace.
+     * @param sampleGroupCache The cache level the trace is computed from
+     * @param pendingFromSample The audio sample index of the first WaveformWindow not computed yet
+     * @param audioSamplePerTraceSample The audio sample count per WaveformWindow of the trace
+     * @param channelSampleCount The number of audio samples of the channel
+     */
+    private void waitForCacheLevel(final WaveformWindowCache sampleGroupCache, final long pendingFromSample,
+            final long audioSamplePerTraceSample, final long channelSampleCount) {
+        mPendingFromSample = pendingFromSample;
+        mPendingToSample = Math.min(channelSampleCount, pendingFromSample + audioSamplePerTraceSample);
+        mPendingWindowSize = sampleGroupCache.getWindowSize();
+
+        /* The cache levels may have been filled further since getWaveformWindows() */
+        if (mAudioTrackTraceCache.getWaveformWindows(getChannel(), pendingFromSample, audioSamplePerTraceSample,
+                mPendingStatistic, mPendingStatistic, 0, 1) == 1) {
+            traceDataChanged();
+        }
+    }
+
     @Override
     public boolean isAudioTraceViewRequestCompleted() {
         return mCompleted;
     }
 
-    private float[] mAudioSampleTrace;
-    private WaveformWindow[] mWaveformWindowTrace;
-    private final AudioTrackWaveformTraceCacheProvider mAudioTrackTraceCache;
-    private boolean mCompleted;
+    private final boolean mWithSignalStatistics;
+    /**
+     * The last computed trace
+     */
+    private WaveformTraceBuffer mFrontBuffer;
+    /**
+     * The buffer the next trace is computed in
+     */
+    private WaveformTraceBuffer mBackBuffer;
+    /**
+     * Audio samples read when no cache level is fine enough, grown on demand up to UNCACHED_SAMPLE_BLOCK_SIZE
+     */
+    private float[] mSamples;
+    private float[] mPendingStatistic;
+    /**
+     * Replaced by doSetTraceView() once released, read without lock by dispose() and setPriorityRange()
+     */
+    private volatile AudioTrackWaveformTraceCacheProvider mAudioTrackTraceCache;
+    private final IAudioTrackWaveformTraceCacheListener mCacheListener;
+    /**
+     * Written by doSetTraceView(), read by any thread through isAudioTraceViewRequestCompleted()
+     */
+    private volatile boolean mCompleted;
+    /**
+     * The window size of the cache level an uncompleted trace waits for, 0 if none
+     */
+    private volatile long mPendingWindowSize;
+    /**
+     * The cache level region an uncompleted trace requires to be computed further
+     */
+    private volatile long mPendingFromSample;
+    private volatile long mPendingToSample;
+    /**
+     * Number of audio samples read at once when no cache level is fine enough
+     */
+    private static final int UNCACHED_SAMPLE_BLOCK_SIZE = 64 * 1024;
 }
@@ -0,0 +1,31 @@
+/*
+ * Copyright (C) 2017 Intel Corporation
+ *
+ * This Program is subject to the terms of the Eclipse Public License, v. 1.0.
+ * If a copy of the license was not distributed with this file,
+ * you can obtain one at <http://www.eclipse.org/legal/epl-v10.html>
+ *
+ * SPDX-License-Identifier: EPL-1.0
+ */
+
+package com.intel.audioviz.trace;
+
+import com.intel.audioviz.trace.waveform.WaveformWindowCache;
+
+/**
+ * An IAudioTrackWaveformTraceCacheListener is notified each time a cache level of an
+ * AudioTrackWaveformTraceCacheProvider has been filled further.
+ */
+public interface IAudioTrackWaveformTraceCacheListener {
+    /**
+     * Called each time a region of a cache level has been filled. Regions are usually filled from the beginning of
+     * the cache level, in which case toSample is the new watermark of the cache level, but may be filled in any
+     * order. Called from cache initialization threads: it shall return quickly.
+     * @param channel The channel the cache level belongs to
+     * @param cacheLevel The cache level which has been filled further
+     * @param fromSample The audio sample index of the first audio sample of the filled region
+     * @param toSample The audio sample index of the last audio sample, excluded, of the filled region
+     * @see AudioTrackWaveformTraceCacheProvider.getWatermark()
+     */
+    void cacheLevelFilled(int channel, WaveformWindowCache cacheLevel, long fromSample, long toSample);
+}
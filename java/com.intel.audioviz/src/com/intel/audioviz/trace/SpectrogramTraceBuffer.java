@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2017 Intel Corporation
+ *
+ * This Program is subject to the terms of the Eclipse Public License, v. 1.0.
+ * If a copy of the license was not distributed with this file,
+ * you can obtain one at <http://www.eclipse.org/legal/epl-v10.html>
+ *
+ * SPDX-License-Identifier: EPL-1.0
+ */
+
+package com.intel.audioviz.trace;
+
+import java.security.InvalidParameterException;
+
+/**
+ * A SpectrogramTraceBuffer holds the content of an AudioSpectrogramTrace as a primitive array: for each trace sample,
+ * a column, the level in dBFS of each frequency bin, from 0Hz to the Nyquist frequency. Levels of columns not
+ * computed yet are NaN.
+ * The array is reused across refreshes and only grows: once its capacity is large enough, a SpectrogramTraceBuffer is
+ * filled again and again without any allocation.
+ * @note A SpectrogramTraceBuffer is not thread safe.
+ */
+public final class SpectrogramTraceBuffer {
+
+    public SpectrogramTraceBuffer() {
+        mLevels = new float[0];
+        clear();
+    }
+
+    /**
+     * @return the audio sample index of the first audio sample of the first column
+     */
+    public long getAudioSampleIndex() {
+        return mAudioSampleIndex;
+    }
+
+    /**
+     * @return the number of audio samples per column, 0 if the buffer is empty
+     */
+    public long getAudioSamplePerTraceSample() {
+        return mAudioSamplePerTraceSample;
+    }
+
+    /**
+     * @return the number of columns
+     */
+    public int getSize() {
+        return mSize;
+    }
+
+    /**
+     * @return the number of frequency bins per column
+     */
+    public int getBinCount() {
+        return mBinCount;
+    }
+
+    /**
+     * @param column the index of a column
+     * @param bin the index of a frequency bin
+     * @return the level in dBFS of the frequency bin within the column, NaN if not computed yet
+     */
+    public float getLevel(final int column, final int bin) {
+        if (column < 0 || column >= mSize || bin < 0 || bin >= mBinCount) {
+            throw new IndexOutOfBoundsException();
+        }
+        return mLevels[column * mBinCount + bin];
+    }
+
+    /**
+     * Empty the buffer, keeping its capacity.
+     */
+    public void clear() {
+        mAudioSampleIndex = 0;
+        mAudioSamplePerTraceSample = 0;
+        mBinCount = 0;
+        mSize = 0;
+    }
+
+    /**
+     * Copy the content of another buffer, growing this buffer only if its capacity is too small.
+     * @param source the buffer to copy from
+     */
+    public void copyFrom(final SpectrogramTraceBuffer source) {
+        reset(source.mAudioSampleIndex, source.mAudioSamplePerTraceSample, source.mSize, source.mBinCount);
+        System.arraycopy(source.mLevels, 0, mLevels, 0, source.mSize * source.mBinCount);
+        mSize = source.mSize;
+    }
+
+    /**
+     * Empty the buffer and make sure it can hold a given number of columns.
+     * @param audioSampleIndex the audio sample index of the first audio sample of the first column
+     * @param audioSamplePerTraceSample the number of audio samples per column
+     * @param capacity the number of columns the buffer shall be able to hold
+     * @param binCount the number of frequency bins per column
+     */
+    void reset(final long audioSampleIndex, final long audioSamplePerTraceSample, final int capacity,
+            final int binCount) {
+        if (capacity < 0 || binCount < 0) {
+            throw new InvalidParameterException("Invalid capacity");
+        }
+        if (mLevels.length < (long) capacity * binCount) {
+            mLevels = new float[capacity * binCount];
+        }
+        mAudioSampleIndex = audioSampleIndex;
+        mAudioSamplePerTraceSample = audioSamplePerTraceSample;
+        mBinCount = binCount;
+        mSize = 0;
+    }
+
+    /**
+     * @return the array of levels, column after column, to be filled by the producer of the trace
+     */
+    float[] getLevels() {
+        return mLevels;
+    }
+
+    /**
+     * @param size the number of columns filled by the producer of the trace
+     */
+    void setSize(final int size) {
+        if (size < 0 || (long) size * mBinCount > mLevels.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        mSize = size;
+    }
+
+    private float[] mLevels;
+    private long mAudioSampleIndex;
+    private long mAudioSamplePerTraceSample;
+    private int mBinCount;
+    private int mSize;
+}
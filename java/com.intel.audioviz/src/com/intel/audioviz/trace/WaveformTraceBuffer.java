@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2017 Intel Corporation
+ *
+ * This Program is subject to the terms of the Eclipse Public License, v. 1.0.
+ * If a copy of the license was not distributed with this file,
+ * you can obtain one at <http://www.eclipse.org/legal/epl-v10.html>
+ *
+ * SPDX-License-Identifier: EPL-1.0
+ */
+
+package com.intel.audioviz.trace;
+
+import java.security.InvalidParameterException;
+
+/**
+ * A WaveformTraceBuffer holds the content of an AudioWaveformTrace as primitive arrays: the minimum and maximum
+ * audio sample values of each trace sample, and optionally their signal statistics: root mean square and clip count.
+ * For one audio sample per trace sample, both minimum and maximum values are the audio sample value.
+ * Arrays are reused across refreshes and only grow: once its capacity is large enough, a WaveformTraceBuffer is
+ * filled again and again without any allocation.
+ * @note A WaveformTraceBuffer is not thread safe.
+ */
+public final class WaveformTraceBuffer {
+
+    public WaveformTraceBuffer() {
+        mMins = new float[0];
+        mMaxs = new float[0];
+        mRmss = new float[0];
+        mClipCounts = new long[0];
+        clear();
+    }
+
+    /**
+     * @return the audio sample index of the first audio sample of the first trace sample
+     */
+    public long getAudioSampleIndex() {
+        return mAudioSampleIndex;
+    }
+
+    /**
+     * @return the number of audio samples per trace sample, 0 if the buffer is empty
+     */
+    public long getAudioSamplePerTraceSample() {
+        return mAudioSamplePerTraceSample;
+    }
+
+    /**
+     * @return the number of trace samples
+     */
+    public int getSize() {
+        return mSize;
+    }
+
+    /**
+     * @param index the index of a trace sample
+     * @return the minimum audio sample value of the trace sample
+     */
+    public float getMin(final int index) {
+        checkIndex(index);
+        return mMins[index];
+    }
+
+    /**
+     * @param index the index of a trace sample
+     * @return the maximum audio sample value of the trace sample
+     */
+    public float getMax(final int index) {
+        checkIndex(index);
+        return mMaxs[index];
+    }
+
+    /**
+     * @return true if the trace samples hold signal statistics
+     */
+    public boolean hasSignalStatistics() {
+        return mHasSignalStatistics;
+    }
+
+    /**
+     * @param index the index of a trace sample
+     * @return the root mean square of the audio sample values of the trace sample
+     * @warning only relevant if hasSignalStatistics()
+     */
+    public float getRms(final int index) {
+        checkIndex(index);
+        return mRmss[index];
+    }
+
+    /**
+     * @param index the index of a trace sample
+     * @return the number of audio samples at full scale within the trace sample
+     * @warning only relevant if hasSignalStatistics()
+     */
+    public long getClipCount(final int index) {
+        checkIndex(index);
+        return mClipCounts[index];
+    }
+
+    /**
+     * Empty the buffer, keeping its capacity.
+     */
+    public void clear() {
+        mAudioSampleIndex = 0;
+        mAudioSamplePerTraceSample = 0;
+        mHasSignalStatistics = false;
+        mSize = 0;
+    }
+
+    /**
+     * Copy the content of another buffer, growing this buffer only if its capacity is too small.
+     * @param source the buffer to copy from
+     */
+    public void copyFrom(final WaveformTraceBuffer source) {
+        reset(source.mAudioSampleIndex, source.mAudioSamplePerTraceSample, source.mSize,
+                source.mHasSignalStatistics);
+        System.arraycopy(source.mMins, 0, mMins, 0, source.mSize);
+        System.arraycopy(source.mMaxs, 0, mMaxs, 0, source.mSize);
+        if (source.mHasSignalStatistics) {
+            System.arraycopy(source.mRmss, 0, mRmss, 0, source.mSize);
+            System.arraycopy(source.mClipCounts, 0, mClipCounts, 0, source.mSize);
+        }
+        mSize = source.mSize;
+    }
+
+    /**
+     * Empty the buffer and make sure it can hold a given number of trace samples.
+     * @param audioSampleIndex the audio sample index of the first audio sample of the first trace sample
+     * @param audioSamplePerTraceSample the number of audio samples per trace sample
+     * @param capacity the number of trace samples the buffer shall be able to hold
+     * @param hasSignalStatistics true if the trace samples will hold signal statistics
+     */
+    void reset(final long audioSampleIndex, final long audioSamplePerTraceSample, final int capacity,
+            final boolean hasSignalStatistics) {
+        if (capacity < 0) {
+            throw new InvalidParameterException("Invalid capacity");
+        }
+        if (mMins.length < capacity) {
+            mMins = new float[capacity];
+            mMaxs = new float[capacity];
+        }
+        /* Signal statistics arrays are only allocated once needed */
+        if (hasSignalStatistics && mRmss.length < mMins.length) {
+            mRmss = new float[mMins.length];
+            mClipCounts = new long[mMins.length];
+        }
+        mAudioSampleIndex = audioSampleIndex;
+        mAudioSamplePerTraceSample = audioSamplePerTraceSample;
+        mHasSignalStatistics = hasSignalStatistics;
+        mSize = 0;
+    }
+
+    /**
+     * @return the array of minimum values, to be filled by the producer of the trace
+     */
+    float[] getMins() {
+        return mMins;
+    }
+
+    /**
+     * @return the array of maximum values, to be filled by the producer of the trace
+     */
+    float[] getMaxs() {
+        return mMaxs;
+    }
+
+    /**
+     * @return the array of root mean square values, to be filled by the producer of the trace
+     */
+    float[] getRmss() {
+        return mRmss;
+    }
+
+    /**
+     * @return the array of clip counts, to be filled by the producer of the trace
+     */
+    long[] getClipCounts() {
+        return mClipCounts;
+    }
+
+    /**
+     * @param size the number of trace samples filled by the producer of the trace
+     */
+    void setSize(final int size) {
+        if (size < 0 || size > mMins.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        mSize = size;
+    }
+
+    private void checkIndex(final int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+
+    private float[] mMins;
+    private float[] mMaxs;
+    private float[] mRmss;
+    private long[] mClipCounts;
+    private boolean mHasSignalStatistics;
+    private long mAudioSampleIndex;
+    private long mAudioSamplePerTraceSample;
+    private int mSize;
+}
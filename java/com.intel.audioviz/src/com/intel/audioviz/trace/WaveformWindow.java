@@ -16,7 +16,8 @@ import com.intel.audioviz.ISampleProvider;
 
 /**
  * A WaveformWindow holds statistics for a consecutive number of Audio Sample such as the
- * minimum and maximum.
+ * minimum and maximum. Signal statistics, the sum of squares and the number of audio samples at full scale, are
+ * optional: they are 0 if not computed.
  */
 public class WaveformWindow {
     /**
@@ -25,8 +26,20 @@ public class WaveformWindow {
      * sample which contribute to this window
      */
     public WaveformWindow(final float min, final float max) {
+        this(min, max, 0, 0);
+    }
+
+    /**
+     * @param min The minimum sample value within the window
+     * @param max The maximum sample value within the window
+     * @param sumOfSquares The sum of the squares of the sample values within the window
+     * @param clipCount The number of sample values at full scale within the window
+     */
+    public WaveformWindow(final float min, final float max, final float sumOfSquares, final long clipCount) {
         mMin = min;
         mMax = max;
+        mSumOfSquares = sumOfSquares;
+        mClipCount = clipCount;
     }
 
     /**
@@ -52,16 +65,39 @@ public class WaveformWindow {
             throw new InvalidParameterException("Invalid size");
         }
 
-        final float firstSample = sampleProvider.getSampleAsFloat(channel, index);
-        mMin = firstSample;
-        mMax = firstSample;
+        /* Read the window by blocks in order to benefit from ISampleProvider bulk reads */
+        final float[] samples = new float[(int) Math.min(size, READ_BLOCK_SIZE)];
+        mMin = Float.POSITIVE_INFINITY;
+        mMax = Float.NEGATIVE_INFINITY;
 
-        for (long i = index + 1; i < index + size; i++) {
-            final float sampleValue = sampleProvider.getSampleAsFloat(channel, i);
+        for (long blockIndex = index; blockIndex < index + size; blockIndex += samples.length) {
+            final int blockSize = (int) Math.min(samples.length, index + size - blockIndex);
+            sampleProvider.getSamplesAsFloat(channel, blockIndex, samples, 0, blockSize);
+            accumulate(samples, 0, blockSize);
+        }
+    }
 
-            mMin = Math.min(mMin, sampleValue);
-            mMax = Math.max(mMax, sampleValue);
+    /**
+     * Instantiate a WaveformWindow computing statistic from an array of Audio Samples
+     *
+     * @param samples
+     *            The array of Audio Samples
+     * @param index
+     *            The index in the array from where the window starts
+     * @param size
+     *            The size of the window in Audio Sample
+     */
+    public WaveformWindow(final float[] samples, final int index, final int size) {
+        if (size < 1) {
+            throw new InvalidParameterException("Size must be non null positive");
         }
+        if (index < 0 || index + size > samples.length) {
+            throw new IndexOutOfBoundsException("Out of samples array");
+        }
+
+        mMin = Float.POSITIVE_INFINITY;
+        mMax = Float.NEGATIVE_INFINITY;
+        accumulate(samples, index, size);
     }
 
     /**
@@ -92,10 +128,14 @@ public class WaveformWindow {
 
         mMin = waveformWindow[index].mMin;
         mMax = waveformWindow[index].mMax;
+        mSumOfSquares = waveformWindow[index].mSumOfSquares;
+        mClipCount = waveformWindow[index].mClipCount;
 
         for (int i = index + 1; i < index + size; i++) {
             mMin = Math.min(mMin, waveformWindow[i].mMin);
             mMax = Math.max(mMax, waveformWindow[i].mMax);
+            mSumOfSquares += waveformWindow[i].mSumOfSquares;
+            mClipCount += waveformWindow[i].mClipCount;
         }
     }
 
@@ -113,6 +153,58 @@ public class WaveformWindow {
         return mMax;
     }
 
+    /**
+     * @return The maximum absolute Audio Sample value in the window
+     */
+    public float getPeakAbs() {
+        return Math.max(Math.abs(mMin), Math.abs(mMax));
+    }
+
+    /**
+     * @return The sum of the squares of the Audio Sample values in the window, 0 if not computed
+     */
+    public float getSumOfSquares() {
+        return mSumOfSquares;
+    }
+
+    /**
+     * @return The number of Audio Samples at full scale in the window, 0 if not computed
+     */
+    public long getClipCount() {
+        return mClipCount;
+    }
+
+    private void accumulate(final float[] samples, final int index, final int size) {
+        float min = mMin;
+        float max = mMax;
+        double sumOfSquares = mSumOfSquares;
+        int clipCount = 0;
+        for (int i = index; i < index + size; i++) {
+            min = Math.min(min, samples[i]);
+            max = Math.max(max, samples[i]);
+            sumOfSquares += samples[i] * samples[i];
+            if (Math.abs(samples[i]) >= FULL_SCALE) {
+                clipCount++;
+            }
+        }
+        mMin = min;
+        mMax = max;
+        mSumOfSquares = (float) sumOfSquares;
+        mClipCount += clipCount;
+    }
+
     private float mMin;
     private float mMax;
+    private float mSumOfSquares;
+    private long mClipCount;
+
+    /**
+     * Absolute value of an Audio Sample at full scale: audio samples are normalized to [-1, 1].
+     */
+    public static final float FULL_SCALE = 1.0f;
+
+    /**
+     * Maximum number of Audio Samples read at once from an ISampleProvider.
+     */
+    private static final int READ_BLOCK_SIZE = 4096;
 }
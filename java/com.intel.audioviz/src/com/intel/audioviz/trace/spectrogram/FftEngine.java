@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2017 Intel Corporation
+ *
+ * This Program is subject to the terms of the Eclipse Public License, v. 1.0.
+ * If a copy of the license was not distributed with this file,
+ * you can obtain one at <http://www.eclipse.org/legal/epl-v10.html>
+ *
+ * SPDX-License-Identifier: EPL-1.0
+ */
+
+package com.intel.audioviz.trace.spectrogram;
+
+import java.security.InvalidParameterException;
+
+/**
+ * A FftEngine computes the magnitude spectrum of blocks of audio samples with an iterative radix-2 FFT. Twiddle
+ * factors, the bit reversal permutation and the analysis window are computed once at instantiation: computing a
+ * spectrum then allocates nothing.
+ *
+ * Audio samples are weighted by a Hann window. Levels are expressed in dBFS: a full scale sine wave centered on a
+ * frequency bin has a level of 0dB.
+ * @note A FftEngine is not thread safe: each thread shall use its own instance.
+ */
+public final class FftEngine {
+
+    /**
+     * @param size the number of audio samples per FFT, a power of two
+     */
+    public FftEngine(final int size) {
+        if (size < 2 || Integer.bitCount(size) != 1) {
+            throw new InvalidParameterException("FFT size must be a power of two");
+        }
+
+        mSize = size;
+        mCos = new float[size / 2];
+        mSin = new float[size / 2];
+        for (int i = 0; i < size / 2; i++) {
+            final double angle = -2 * Math.PI * i / size;
+            mCos[i] = (float) Math.cos(angle);
+            mSin[i] = (float) Math.sin(angle);
+        }
+
+        mBitReversed = new int[size];
+        final int bits = Integer.numberOfTrailingZeros(size);
+        for (int i = 0; i < size; i++) {
+            mBitReversed[i] = Integer.reverse(i) >>> (Integer.SIZE - bits);
+        }
+
+        mWindow = new float[size];
+        double windowSum = 0;
+        for (int i = 0; i < size; i++) {
+            mWindow[i] = (float) (0.5 - 0.5 * Math.cos(2 * Math.PI * i / size));
+            windowSum += mWindow[i];
+        }
+        /* A full scale sine wave has a magnitude of windowSum / 2 in its frequency bin */
+        mReferenceDecibels = (float) (20 * Math.log10(windowSum / 2));
+
+        mReal = new float[size];
+        mImaginary = new float[size];
+    }
+
+    /**
+     * @return the number of audio samples per FFT
+     */
+    public int getSize() {
+        return mSize;
+    }
+
+    /**
+     * @return the number of frequency bins of a spectrum, from 0Hz included to the Nyquist frequency excluded
+     */
+    public int getBinCount() {
+        return mSize / 2;
+    }
+
+    /**
+     * Compute the level of each frequency bin of a block of audio samples. A block shorter than the FFT size is
+     * zero padded.
+     * @param samples The audio samples
+     * @param offset The index in samples of the first audio sample of the block
+     * @param count The number of audio samples of the block, not greater than the FFT size
+     * @param levels The array receiving the level in dBFS of each frequency bin, not lower than MIN_LEVEL
+     * @param levelOffset The index in levels of the level of the first frequency bin
+     */
+    public void computeLevels(final float[] samples, final int offset, final int count, final float[] levels,
+            final int levelOffset) {
+        if (count < 0 || count > mSize) {
+            throw new InvalidParameterException("Invalid audio sample count");
+        }
+        if (offset < 0 || offset + count > samples.length) {
+            throw new IndexOutOfBoundsException("Out of samples array");
+        }
+        if (levelOffset < 0 || levelOffset + getBinCount() > levels.length) {
+            throw new IndexOutOfBoundsException("Destination too small");
+        }
+
+        /* Windowed audio samples, in bit reversed order */
+        for (int i = 0; i < mSize; i++) {
+            final int source = mBitReversed[i];
+            mReal[i] = source < count ? samples[offset + source] * mWindow[source] : 0;
+            mImaginary[i] = 0;
+        }
+        transform();
+
+        for (int bin = 0; bin < getBinCount(); bin++) {
+            final float power = mReal[bin] * mReal[bin] + mImaginary[bin] * mImaginary[bin];
+            final float level = power > 0 ? (float) (10 * Math.log10(power)) - mReferenceDecibels : MIN_LEVEL;
+            levels[levelOffset + bin] = Math.max(MIN_LEVEL, level);
+        }
+    }
+
+    /**
+     * In place decimation in time FFT of mReal and mImaginary, whose content is in bit reversed order.
+     */
+    private void transform() {
+        for (int half = 1; half < mSize; half *= 2) {
+            final int twiddleStride = mSize / (half * 2);
+            for (int block = 0; block < mSize; block += half * 2) {
+                for (int i = 0; i < half; i++) {
+                    final float cos = mCos[i * twiddleStride];
+                    final float sin = mSin[i * twiddleStride];
+                    final int even = block + i;
+                    final int odd = even + half;
+
+                    final float real = mReal[odd] * cos - mImaginary[odd] * sin;
+                    final float imaginary = mReal[odd] * sin + mImaginary[odd] * cos;
+                    mReal[odd] = mReal[even] - real;
+                    mImaginary[odd] = mImaginary[even] - imaginary;
+                    mReal[even] += real;
+                    mImaginary[even] += imaginary;
+                }
+            }
+        }
+    }
+
+    private final int mSize;
+    private final float[] mCos;
+    private final float[] mSin;
+    private final int[] mBitReversed;
+    private final float[] mWindow;
+    private final float mReferenceDecibels;
+    private final float[] mReal;
+    private final float[] mImaginary;
+
+    /**
+     * The lowest level in dBFS, given to silent frequency bins
+     */
+    public static final float MIN_LEVEL = -120.0f;
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2017 Intel Corporation
+ *
+ * This Program is subject to the terms of the Eclipse Public License, v. 1.0.
+ * If a copy of the license was not distributed with this file,
+ * you can obtain one at <http://www.eclipse.org/legal/epl-v10.html>
+ *
+ * SPDX-License-Identifier: EPL-1.0
+ */
+
+package com.intel.audioviz.trace.spectrogram;
+
+import java.security.InvalidParameterException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A SpectrogramTileCache holds computed spectrogram tiles of an audio channel, per zoom level, within a memory
+ * budget. A tile is identified by its zoom level, the audio sample count per column, and by its index at that zoom
+ * level. Once the budget is exceeded, the least recently used tiles are evicted, except the tiles of the range being
+ * displayed: a budget too small to hold them is exceeded rather than evicting tiles which would be computed again
+ * by the next update of the display.
+ *
+ * Tiles being computed are tracked as well, so that a tile is computed by a single thread at a time.
+ * @note All methods are thread safe.
+ */
+public final class SpectrogramTileCache {
+
+    /**
+     * @param memoryBudget the maximum number of bytes of cached tiles
+     */
+    public SpectrogramTileCache(final long memoryBudget) {
+        if (memoryBudget < 0) {
+            throw new InvalidParameterException("Invalid budget");
+        }
+
+        mMemoryBudget = memoryBudget;
+        mMemorySize = 0;
+        /* Access ordered: iteration starts with the least recently used tile */
+        mTiles = new LinkedHashMap<TileKey, float[]>(INITIAL_CAPACITY, LOAD_FACTOR, true);
+        mComputedTiles = new HashSet<TileKey>();
+        mPinnedAudioSamplePerColumn = 0;
+        mPinnedFirstTile = 0;
+        mPinnedLastTile = -1;
+    }
+
+    /**
+     * Set the range of tiles being displayed, which are never evicted. Tiles of the previous range become evictable.
+     * @param audioSamplePerColumn the audio sample count per column of the zoom level
+     * @param firstTile the index of the first tile of the range at that zoom level
+     * @param lastTile the index of the last tile of the range, lower than firstTile for an empty range
+     */
+    public synchronized void setPinnedTiles(final long audioSamplePerColumn, final long firstTile,
+            final long lastTile) {
+        mPinnedAudioSamplePerColumn = audioSamplePerColumn;
+        mPinnedFirstTile = firstTile;
+        mPinnedLastTile = lastTile;
+        evict(null);
+    }
+
+    /**
+     * @param audioSamplePerColumn the audio sample count per column of the zoom level
+     * @param tileIndex the index of the tile at that zoom level
+     * @return the levels of the tile, null if not cached
+     * @warning the returned array shall not be modified
+     */
+    public synchronized float[] get(final long audioSamplePerColumn, final long tileIndex) {
+        return mTiles.get(new TileKey(audioSamplePerColumn, tileIndex));
+    }
+
+    /**
+     * Claim the computation of a tile.
+     * @param audioSamplePerColumn the audio sample count per column of the zoom level
+     * @param tileIndex the index of the tile at that zoom level
+     * @return true if the caller shall compute the tile then put() or release() it, false if the tile is already
+     * cached or being computed
+     */
+    public synchronized boolean claim(final long audioSamplePerColumn, final long tileIndex) {
+        final TileKey key = new TileKey(audioSamplePerColumn, tileIndex);
+        return !mTiles.containsKey(key) && mComputedTiles.add(key);
+    }
+
+    /**
+     * Give up the computation of a claimed tile.
+     * @param audioSamplePerColumn the audio sample count per column of the zoom level
+     * @param tileIndex the index of the tile at that zoom level
+     */
+    public synchronized void release(final long audioSamplePerColumn, final long tileIndex) {
+        mComputedTiles.remove(new TileKey(audioSamplePerColumn, tileIndex));
+    }
+
+    /**
+     * Cache a computed tile, evicting the least recently used tiles which are not pinned if the budget is exceeded.
+     * @param audioSamplePerColumn the audio sample count per column of the zoom level
+     * @param tileIndex the index of the tile at that zoom level
+     * @param levels the levels of the tile, which shall no more be modified
+     */
+    public synchronized void put(final long audioSamplePerColumn, final long tileIndex, final float[] levels) {
+        final TileKey key = new TileKey(audioSamplePerColumn, tileIndex);
+        mComputedTiles.remove(key);
+        final float[] previous = mTiles.put(key, levels);
+        if (previous != null) {
+            mMemorySize -= getMemorySize(previous);
+        }
+        mMemorySize += getMemorySize(levels);
+
+        /* The tile just put, the most recently used, is never evicted */
+        evict(key);
+    }
+
+    /**
+     * Evict a tile, for instance computed from audio samples which have changed since.
+     * @param audioSamplePerColumn the audio sample count per column of the zoom level
+     * @param tileIndex the index of the tile at that zoom level
+     */
+    public synchronized void remove(final long audioSamplePerColumn, final long tileIndex) {
+        final float[] levels = mTiles.remove(new TileKey(audioSamplePerColumn, tileIndex));
+        if (levels != null) {
+            mMemorySize -= getMemorySize(levels);
+        }
+    }
+
+    /**
+     * @return the number of bytes of cached tiles
+     */
+    public synchronized long getMemorySize() {
+        return mMemorySize;
+    }
+
+    /**
+     * @return the number of cached tiles
+     */
+    public synchronized int getTileCount() {
+        return mTiles.size();
+    }
+
+    /**
+     * Evict all tiles.
+     */
+    public synchronized void clear() {
+        mTiles.clear();
+        mMemorySize = 0;
+    }
+
+    /**
+     * Evict the least recently used tiles which are not pinned, while the budget is exceeded.
+     * @param keptKey a tile not to evict, null if none
+     */
+    private void evict(final TileKey keptKey) {
+        final Iterator<Map.Entry<TileKey, float[]>> leastRecentlyUsed = mTiles.entrySet().iterator();
+        while (mMemorySize > mMemoryBudget && leastRecentlyUsed.hasNext()) {
+            final Map.Entry<TileKey, float[]> tile = leastRecentlyUsed.next();
+            if (!tile.getKey().equals(keptKey) && !isPinned(tile.getKey())) {
+                mMemorySize -= getMemorySize(tile.getValue());
+                leastRecentlyUsed.remove();
+            }
+        }
+    }
+
+    private boolean isPinned(final TileKey key) {
+        return key.mAudioSamplePerColumn == mPinnedAudioSamplePerColumn && key.mTileIndex >= mPinnedFirstTile
+                && key.mTileIndex <= mPinnedLastTile;
+    }
+
+    private static long getMemorySize(final float[] levels) {
+        return (long) levels.length * Float.BYTES;
+    }
+
+    /**
+     * The identifier of a tile
+     */
+    private static final class TileKey {
+
+        private TileKey(final long audioSamplePerColumn, final long tileIndex) {
+            mAudioSamplePerColumn = audioSamplePerColumn;
+            mTileIndex = tileIndex;
+        }
+
+        @Override
+        public boolean equals(final Object object) {
+            if (!(object instanceof TileKey)) {
+                return false;
+            }
+            final TileKey key = (TileKey) object;
+            return key.mAudioSamplePerColumn == mAudioSamplePerColumn && key.mTileIndex == mTileIndex;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(mAudioSamplePerColumn) * HASH_MULTIPLIER + Long.hashCode(mTileIndex);
+        }
+
+        private final long mAudioSamplePerColumn;
+        private final long mTileIndex;
+
+        private static final int HASH_MULTIPLIER = 31;
+    }
+
+    private final long mMemoryBudget;
+    private long mMemorySize;
+    private final LinkedHashMap<TileKey, float[]> mTiles;
+    private final HashSet<TileKey> mComputedTiles;
+    /**
+     * The range of tiles being displayed, never evicted
+     */
+    private long mPinnedAudioSamplePerColumn;
+    private long mPinnedFirstTile;
+    private long mPinnedLastTile;
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final float LOAD_FACTOR = 0.75f;
+}
@@ -10,12 +10,32 @@
 
 package com.intel.audioviz.trace.waveform;
 
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
 import java.security.InvalidParameterException;
+import java.util.concurrent.atomic.AtomicLongArray;
 
+import com.intel.audioviz.AudioVizException;
 import com.intel.audioviz.trace.WaveformWindow;
 
 /**
  * A WaveformWindowCache is a collection of pre computed WaveformWindow.
+ * WaveformWindow statistics are stored in primitive buffers, one per statistic, rather than as WaveformWindow
+ * instances: WaveformWindow are only instantiated on request. Buffers are either on heap, or off heap for a cache
+ * loaded from a file.
+ * Besides minimum and maximum values, a cache optionally holds the signal statistics of each WaveformWindow: sum of
+ * squares and clip count. Both are additive, so that merged WaveformWindow keep exact statistics.
+ * A cache is either filled in order, from its beginning, or by regions in any order: filled regions are then
+ * tracked so that any of them can be read before the cache is entirely filled. A cache grows once the audio track
+ * it is computed from grows.
+ * A sliding cache rather keeps the last WaveformWindow only, for an audio track keeping a bounded history of its
+ * audio samples: WaveformWindow are filled in order, each one stored at its index modulo the capacity, and
+ * WaveformWindow below the first index are dropped. Dropped slots are only reused once the cache size has grown
+ * further, so that readers having checked a WaveformWindow just before it was dropped still read it.
+ *
+ * A cache has a single writer at a time and any number of readers. Statistics are written first, then published
+ * by a volatile write of the cache size or of the filled region bits. Readers never lock: a WaveformWindow they
+ * see as cached is entirely visible to them.
  */
 public class WaveformWindowCache {
 
@@ -24,9 +44,77 @@ public class WaveformWindowCache {
      * @param windowSize the size of WaveformWindow which will be cached
      */
     public WaveformWindowCache(final int capacity, final long windowSize) {
-        mCache = new WaveformWindow[capacity];
+        this(capacity, windowSize, false);
+    }
+
+    /**
+     * @param capacity the capacity of the WaveformWindow cache
+     * @param windowSize the size of WaveformWindow which will be cached
+     * @param hasSignalStatistics true to hold the signal statistics of cached WaveformWindow
+     */
+    public WaveformWindowCache(final int capacity, final long windowSize, final boolean hasSignalStatistics) {
+        this(capacity, windowSize, hasSignalStatistics, false);
+    }
+
+    /**
+     * @param capacity the capacity of the WaveformWindow cache, the number of WaveformWindow held at once by a
+     * sliding cache
+     * @param windowSize the size of WaveformWindow which will be cached
+     * @param hasSignalStatistics true to hold the signal statistics of cached WaveformWindow
+     * @param isSliding true for a sliding cache
+     * @see drop()
+     */
+    public WaveformWindowCache(final int capacity, final long windowSize, final boolean hasSignalStatistics,
+            final boolean isSliding) {
+        if (isSliding && capacity < 1) {
+            throw new InvalidParameterException("Invalid sliding cache capacity");
+        }
+        mMins = FloatBuffer.allocate(capacity);
+        mMaxs = FloatBuffer.allocate(capacity);
+        mSumsOfSquares = hasSignalStatistics ? FloatBuffer.allocate(capacity) : null;
+        mClipCounts = hasSignalStatistics ? LongBuffer.allocate(capacity) : null;
         mWindowSize = windowSize;
         mInitializedSize = 0;
+        mFilled = null;
+        mIsSliding = isSliding;
+        mFirstIndex = 0;
+    }
+
+    /**
+     * Instantiate a fully initialized cache over existing statistics, for instance memory mapped from a file.
+     * @param mins the minimum sample value of each WaveformWindow
+     * @param maxs the maximum sample value of each WaveformWindow
+     * @param windowSize the size of cached WaveformWindow
+     */
+    public WaveformWindowCache(final FloatBuffer mins, final FloatBuffer maxs, final long windowSize) {
+        this(mins, maxs, null, null, windowSize);
+    }
+
+    /**
+     * Instantiate a fully initialized cache over existing statistics, signal statistics included.
+     * @param mins the minimum sample value of each WaveformWindow
+     * @param maxs the maximum sample value of each WaveformWindow
+     * @param sumsOfSquares the sum of squares of each WaveformWindow, null if none
+     * @param clipCounts the clip count of each WaveformWindow, null if none
+     * @param windowSize the size of cached WaveformWindow
+     */
+    public WaveformWindowCache(final FloatBuffer mins, final FloatBuffer maxs, final FloatBuffer sumsOfSquares,
+            final LongBuffer clipCounts, final long windowSize) {
+        if (mins.capacity() != maxs.capacity() || (sumsOfSquares == null) != (clipCounts == null)
+                || sumsOfSquares != null && (sumsOfSquares.capacity() != mins.capacity()
+                        || clipCounts.capacity() != mins.capacity())) {
+            throw new InvalidParameterException("Inconsistent statistic buffers");
+        }
+
+        mMins = mins;
+        mMaxs = maxs;
+        mSumsOfSquares = sumsOfSquares;
+        mClipCounts = clipCounts;
+        mWindowSize = windowSize;
+        mInitializedSize = mins.capacity();
+        mFilled = null;
+        mIsSliding = false;
+        mFirstIndex = 0;
     }
 
     /**
@@ -37,8 +125,9 @@ public class WaveformWindowCache {
     }
 
     /**
-     * @return the number of WaveformWindow which are cached.
-     * @see getCache()
+     * @return the number of WaveformWindow which are cached from the beginning of the cache, without any gap.
+     * Regions filled beyond the first gap are not counted.
+     * @see setFilled()
      */
     public int getCacheSize() {
         return mInitializedSize;
@@ -46,10 +135,58 @@ public class WaveformWindowCache {
 
     /**
      * @return the capacity of the cache which is the maximum number of WaveformWindow
-     * which can be cached.
+     * which can be cached, at once for a sliding cache.
      */
     public int getCacheCapacity() {
-        return mCache.length;
+        return mMins.capacity();
+    }
+
+    /**
+     * @return true for a sliding cache
+     */
+    public boolean isSliding() {
+        return mIsSliding;
+    }
+
+    /**
+     * @return the index of the first WaveformWindow held by the cache, always 0 unless the cache is sliding
+     */
+    public int getFirstIndex() {
+        return mFirstIndex;
+    }
+
+    /**
+     * Drop the WaveformWindow of a sliding cache below an index. Their slots are reused by the WaveformWindow set
+     * from the index plus the capacity.
+     * @param firstIndex the index of the first WaveformWindow to keep, possibly above the cache size
+     * @warning to be called by the single writer of the cache
+     */
+    public void drop(final int firstIndex) {
+        if (!mIsSliding) {
+            throw new AudioVizException("Only sliding caches drop WaveformWindow");
+        }
+        mFirstIndex = Math.max(mFirstIndex, firstIndex);
+    }
+
+    /**
+     * @return the number of bytes used by the WaveformWindow statistics
+     */
+    public long getMemorySize() {
+        return (long) mMins.capacity() * (2 * Float.BYTES + (hasSignalStatistics() ? Float.BYTES + Long.BYTES : 0));
+    }
+
+    /**
+     * @return true if the cache holds the signal statistics of its WaveformWindow
+     */
+    public boolean hasSignalStatistics() {
+        return mSumsOfSquares != null;
+    }
+
+    /**
+     * @return true if the WaveformWindow statistics are stored off heap, for instance mapped from a file
+     */
+    public boolean isOffHeap() {
+        return mMins.isDirect();
     }
 
     /**
@@ -58,11 +195,292 @@ public class WaveformWindowCache {
      * @param WaveformWindow
      */
     public void add(final WaveformWindow waveformWindow) {
-        if (mInitializedSize == mCache.length) {
+        add(waveformWindow.getMin(), waveformWindow.getMax(), waveformWindow.getSumOfSquares(),
+                waveformWindow.getClipCount());
+    }
+
+    /**
+     * Add a WaveformWindow to the cache from its statistics. If the cache is full, an IndexOutOfBoundsException
+     * is raised.
+     * @param min The minimum sample value within the window
+     * @param max The maximum sample value within the window
+     */
+    public void add(final float min, final float max) {
+        add(min, max, 0, 0);
+    }
+
+    /**
+     * Add a WaveformWindow to the cache from its statistics, signal statistics included. Signal statistics are
+     * ignored by a cache which does not hold them.
+     * @param min The minimum sample value within the window
+     * @param max The maximum sample value within the window
+     * @param sumOfSquares The sum of squares of the audio samples of the window
+     * @param clipCount The number of audio samples at full scale within the window
+     */
+    public void add(final float min, final float max, final float sumOfSquares, final long clipCount) {
+        final int cacheSize = mInitializedSize;
+        if (cacheSize - mFirstIndex >= mMins.capacity()) {
             throw new IndexOutOfBoundsException();
         }
 
-        mCache[mInitializedSize++] = waveformWindow;
+        put(cacheSize, min, max, sumOfSquares, clipCount);
+        /* Publish the WaveformWindow */
+        mInitializedSize = cacheSize + 1;
+    }
+
+    /**
+     * Set a WaveformWindow at a given index of the cache. Unlike add(), the cache size is not changed: the
+     * WaveformWindow becomes visible once setCacheSize() covers its index.
+     * @param index the index of the WaveformWindow in the cache
+     * @param waveformWindow the WaveformWindow
+     */
+    public void set(final int index, final WaveformWindow waveformWindow) {
+        set(index, waveformWindow.getMin(), waveformWindow.getMax(), waveformWindow.getSumOfSquares(),
+                waveformWindow.getClipCount());
+    }
+
+    /**
+     * Set a WaveformWindow at a given index of the cache from its statistics.
+     * @param index the index of the WaveformWindow in the cache
+     * @param min The minimum sample value within the window
+     * @param max The maximum sample value within the window
+     * @see set(int, WaveformWindow)
+     */
+    public void set(final int index, final float min, final float max) {
+        set(index, min, max, 0, 0);
+    }
+
+    /**
+     * Set a WaveformWindow at a given index of the cache from its statistics, signal statistics included. Signal
+     * statistics are ignored by a cache which does not hold them.
+     * @param index the index of the WaveformWindow in the cache
+     * @param min The minimum sample value within the window
+     * @param max The maximum sample value within the window
+     * @param sumOfSquares The sum of squares of the audio samples of the window
+     * @param clipCount The number of audio samples at full scale within the window
+     * @see set(int, WaveformWindow)
+     */
+    public void set(final int index, final float min, final float max, final float sumOfSquares,
+            final long clipCount) {
+        if (index < mFirstIndex || (long) index >= (long) mFirstIndex + mMins.capacity()) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        put(index, min, max, sumOfSquares, clipCount);
+    }
+
+    private void put(final int index, final float min, final float max, final float sumOfSquares,
+            final long clipCount) {
+        final int slot = getSlot(index, mMins.capacity());
+        mMins.put(slot, min);
+        mMaxs.put(slot, max);
+        if (mSumsOfSquares != null) {
+            mSumsOfSquares.put(slot, sumOfSquares);
+            mClipCounts.put(slot, clipCount);
+        }
+    }
+
+    /**
+     * @param index the index of a WaveformWindow
+     * @param capacity the capacity of the statistic buffers
+     * @return the index of the WaveformWindow in the statistic buffers
+     */
+    private int getSlot(final int index, final int capacity) {
+        return mIsSliding ? index % capacity : index;
+    }
+
+    /**
+     * Set the number of WaveformWindow which are cached. All WaveformWindow below the new size shall have been
+     * previously set.
+     * @param cacheSize the new number of cached WaveformWindow
+     * @see set()
+     */
+    public void setCacheSize(final int cacheSize) {
+        if (cacheSize < mInitializedSize || (long) cacheSize > (long) mFirstIndex + mMins.capacity()) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        mInitializedSize = cacheSize;
+    }
+
+    /**
+     * Grow the cache so that it can hold at least a given number of WaveformWindow, for instance once the audio
+     * track has grown. Cached WaveformWindow are copied to new heap buffers, which are also used when the current
+     * ones are read only. The capacity grows by at least half of the current one, so that successive growths are
+     * amortized.
+     * @param capacity the minimum capacity
+     * @warning to be called by the single writer of the cache. Readers working on the previous buffers still read
+     * the WaveformWindow cached before the growth.
+     */
+    public void ensureCapacity(final int capacity) {
+        if (mIsSliding) {
+            throw new AudioVizException("The capacity of a sliding cache is fixed");
+        }
+        final FloatBuffer mins = mMins;
+        if (capacity <= mins.capacity() && !mins.isReadOnly()) {
+            return;
+        }
+
+        final int newCapacity = capacity <= mins.capacity() ? mins.capacity()
+                : (int) Math.min(Integer.MAX_VALUE, Math.max(capacity, mins.capacity() + mins.capacity() / 2L));
+        final AtomicLongArray filled = mFilled;
+        if (filled != null) {
+            final AtomicLongArray newFilled = new AtomicLongArray((newCapacity + Long.SIZE - 1) / Long.SIZE);
+            for (int word = 0; word < filled.length(); word++) {
+                newFilled.set(word, filled.get(word));
+            }
+            mFilled = newFilled;
+        }
+        mSumsOfSquares = copyOf(mSumsOfSquares, newCapacity);
+        mClipCounts = copyOf(mClipCounts, newCapacity);
+        mMaxs = copyOf(mMaxs, newCapacity);
+        /* Capacity checks read the minimums: they are replaced last */
+        mMins = copyOf(mins, newCapacity);
+    }
+
+    private static FloatBuffer copyOf(final FloatBuffer buffer, final int capacity) {
+        if (buffer == null) {
+            return null;
+        }
+        final FloatBuffer copy = FloatBuffer.allocate(capacity);
+        final FloatBuffer source = buffer.duplicate();
+        source.clear();
+        copy.put(source);
+        copy.clear();
+        return copy;
+    }
+
+    private static LongBuffer copyOf(final LongBuffer buffer, final int capacity) {
+        if (buffer == null) {
+            return null;
+        }
+        final LongBuffer copy = LongBuffer.allocate(capacity);
+        final LongBuffer source = buffer.duplicate();
+        source.clear();
+        copy.put(source);
+        copy.clear();
+        return copy;
+    }
+
+    /**
+     * Mark a region of the cache as filled. WaveformWindow of the region shall have been previously set. The cache
+     * size is extended as far as the cache is filled without gap from its beginning.
+     * @param index the index of the first WaveformWindow of the region
+     * @param count the number of WaveformWindow of the region
+     * @see set()
+     */
+    public void setFilled(final int index, final int count) {
+        if (mIsSliding) {
+            throw new AudioVizException("A sliding cache is filled in order");
+        }
+        if (index < 0 || count < 0 || index + count > mMins.capacity()) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        if (mFilled == null) {
+            final AtomicLongArray filled = new AtomicLongArray((mMins.capacity() + Long.SIZE - 1) / Long.SIZE);
+            /* Previously added WaveformWindow are filled as well */
+            setFilledBits(filled, 0, mInitializedSize);
+            mFilled = filled;
+        }
+        setFilledBits(mFilled, index, index + count);
+
+        int cacheSize = mInitializedSize;
+        while (cacheSize < mMins.capacity() && isFilledBit(mFilled, cacheSize)) {
+            cacheSize++;
+        }
+        mInitializedSize = cacheSize;
+    }
+
+    /**
+     * @param index the index of the first WaveformWindow
+     * @param count the number of WaveformWindow
+     * @return true if all WaveformWindow of the region are filled
+     */
+    public boolean isFilled(final int index, final int count) {
+        return getFilledCount(index, count) == count;
+    }
+
+    /**
+     * @param index the index of the first WaveformWindow
+     * @param maxCount the maximum number of WaveformWindow to consider
+     * @return the number of consecutive filled WaveformWindow from index, up to maxCount. Dropped WaveformWindow are
+     * not filled.
+     */
+    public int getFilledCount(final int index, final int maxCount) {
+        if (index < 0 || maxCount < 0) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        if (index < mFirstIndex) {
+            return 0;
+        }
+        final int cacheSize = mInitializedSize;
+        if ((long) index + maxCount <= cacheSize) {
+            return maxCount;
+        }
+        /* WaveformWindow below the cache size are filled, even those added by a growth of the cache */
+        int count = Math.max(0, cacheSize - index);
+        final AtomicLongArray filled = mFilled;
+        if (filled == null) {
+            return count;
+        }
+        /* The bits may have been grown after being read */
+        final int end = (int) Math.min(Math.min((long) index + maxCount, mMins.capacity()),
+                (long) filled.length() * Long.SIZE);
+        while (index + count < end && isFilledBit(filled, index + count)) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * @param index the index of a WaveformWindow in the cache
+     * @return the minimum sample value within the WaveformWindow
+     */
+    public float getMin(final int index) {
+        final FloatBuffer mins = mMins;
+        return mins.get(getSlot(index, mins.capacity()));
+    }
+
+    /**
+     * @param index the index of a WaveformWindow in the cache
+     * @return the maximum sample value within the WaveformWindow
+     */
+    public float getMax(final int index) {
+        final FloatBuffer maxs = mMaxs;
+        return maxs.get(getSlot(index, maxs.capacity()));
+    }
+
+    /**
+     * @param index the index of a WaveformWindow in the cache
+     * @return the sum of squares of the audio samples of the WaveformWindow, 0 if the cache does not hold signal
+     * statistics
+     */
+    public float getSumOfSquares(final int index) {
+        final FloatBuffer sumsOfSquares = mSumsOfSquares;
+        return sumsOfSquares == null ? 0 : sumsOfSquares.get(getSlot(index, sumsOfSquares.capacity()));
+    }
+
+    /**
+     * @param index the index of a WaveformWindow in the cache
+     * @return the number of audio samples at full scale within the WaveformWindow, 0 if the cache does not hold
+     * signal statistics
+     */
+    public long getClipCount(final int index) {
+        final LongBuffer clipCounts = mClipCounts;
+        return clipCounts == null ? 0 : clipCounts.get(getSlot(index, clipCounts.capacity()));
+    }
+
+    /**
+     * Compute a WaveformWindow merging consecutive WaveformWindow of the cache.
+     * @param index the index of the first WaveformWindow to merge
+     * @param count the number of WaveformWindow to merge
+     * @return the merged WaveformWindow
+     */
+    public WaveformWindow merge(final int index, final int count) {
+        return new WaveformWindow(getMergedMin(index, count), getMergedMax(index, count),
+                getMergedSumOfSquares(index, count), getMergedClipCount(index, count));
     }
 
     /**
@@ -71,9 +489,56 @@ public class WaveformWindowCache {
      * @param targetWindowSize The requested number of audio sample per window
      * @param waveformWindowCount The number of requested windows
      * @return the request WaveformWindow array
+     * @see getFromCache(long, long, float[], float[], int, int)
      */
     public WaveformWindow[] getFromCache(final long sampleIndex, final long targetWindowSize,
             final int waveformWindowCount) {
+        checkRequest(sampleIndex, targetWindowSize, waveformWindowCount);
+
+        final int deltaSize = (int) (targetWindowSize / getWindowSize());
+        final int cacheIndex = (int) (sampleIndex / getWindowSize());
+        final int safeWaveformWindowCount = getSafeWaveformWindowCount(cacheIndex, deltaSize, waveformWindowCount);
+
+        final WaveformWindow[] waveformWindows = new WaveformWindow[safeWaveformWindowCount];
+        for (int i = 0; i < safeWaveformWindowCount; i++) {
+            final int index = cacheIndex + i * deltaSize;
+            waveformWindows[i] = merge(index, deltaSize);
+        }
+        return waveformWindows;
+    }
+
+    /**
+     * Compute WaveformWindow statistics for a given audio sample count per window using cache data. Unlike
+     * getFromCache(long, long, int), no object is allocated: statistics are written to caller provided arrays.
+     * @param sampleIndex The audio sample index of the first audio sample
+     * @param targetWindowSize The requested number of audio sample per window
+     * @param mins The array receiving the minimum sample value of each window
+     * @param maxs The array receiving the maximum sample value of each window
+     * @param offset The index in mins and maxs of the first window
+     * @param waveformWindowCount The number of requested windows
+     * @return the number of windows written, which is lower than requested if the cache is not yet initialized
+     * far enough
+     */
+    public int getFromCache(final long sampleIndex, final long targetWindowSize, final float[] mins,
+            final float[] maxs, final int offset, final int waveformWindowCount) {
+        checkRequest(sampleIndex, targetWindowSize, waveformWindowCount);
+        if (offset < 0 || offset + waveformWindowCount > mins.length || offset + waveformWindowCount > maxs.length) {
+            throw new IndexOutOfBoundsException("Destination too small");
+        }
+
+        final int deltaSize = (int) (targetWindowSize / getWindowSize());
+        final int cacheIndex = (int) (sampleIndex / getWindowSize());
+        final int safeWaveformWindowCount = getSafeWaveformWindowCount(cacheIndex, deltaSize, waveformWindowCount);
+
+        for (int i = 0; i < safeWaveformWindowCount; i++) {
+            final int index = cacheIndex + i * deltaSize;
+            mins[offset + i] = getMergedMin(index, deltaSize);
+            maxs[offset + i] = getMergedMax(index, deltaSize);
+        }
+        return safeWaveformWindowCount;
+    }
+
+    private void checkRequest(final long sampleIndex, final long targetWindowSize, final int waveformWindowCount) {
         if (sampleIndex < 0) {
             throw new InvalidParameterException("Invalid index");
         }
@@ -83,27 +548,204 @@ public class WaveformWindowCache {
         if (targetWindowSize < getWindowSize()) {
             throw new InvalidParameterException("Invalid target window size");
         }
+    }
 
-        final int deltaSize = (int) (targetWindowSize / getWindowSize());
-        final int cacheIndex = (int) (sampleIndex / getWindowSize());
-        final int requiredCacheSize = cacheIndex + waveformWindowCount * deltaSize;
+    /**
+     * @return the number of requested windows which can be computed from filled WaveformWindow, from the first one
+     * and without gap
+     */
+    private int getSafeWaveformWindowCount(final int cacheIndex, final int deltaSize, final int waveformWindowCount) {
+        final long requiredCacheSize = (long) waveformWindowCount * deltaSize;
 
-        int safeWaveformWindowCount = waveformWindowCount;
-        if (requiredCacheSize > getCacheSize()) {
-            safeWaveformWindowCount = Math.max(getCacheSize() - cacheIndex, 0) / deltaSize;
+        if (cacheIndex + requiredCacheSize > getCacheSize() || cacheIndex < mFirstIndex) {
+            final int maxCount = (int) Math.min(requiredCacheSize,
+                    Math.max(0, (long) mFirstIndex + mMins.capacity() - cacheIndex));
+            return getFilledCount(cacheIndex, maxCount) / deltaSize;
         }
+        return waveformWindowCount;
+    }
 
-        final WaveformWindow[] waveformWindows = new WaveformWindow[safeWaveformWindowCount];
-        for (int i = 0; i < safeWaveformWindowCount; i++) {
-            waveformWindows[i] = new WaveformWindow(
-                    mCache,
-                    cacheIndex + i * deltaSize,
-                    deltaSize);
+    private void checkRegion(final int index, final int count) {
+        if (count < 1) {
+            throw new InvalidParameterException("Count must be non null positive");
         }
-        return waveformWindows;
+        if (index < 0 || (mIsSliding ? count : index + count) > mMins.capacity()) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+
+    /**
+     * Set the bits of a region, publishing each bit word with a single volatile write.
+     */
+    private static void setFilledBits(final AtomicLongArray filled, final int from, final int to) {
+        int index = from;
+        while (index < to) {
+            final int word = index / Long.SIZE;
+            final int wordEnd = Math.min(to, (word + 1) * Long.SIZE);
+            long mask = 0;
+            for (; index < wordEnd; index++) {
+                mask |= 1L << index;
+            }
+            filled.set(word, filled.get(word) | mask);
+        }
+    }
+
+    private static boolean isFilledBit(final AtomicLongArray filled, final int index) {
+        return (filled.get(index / Long.SIZE) & (1L << index)) != 0;
+    }
+
+    /**
+     * @param index the index of the first WaveformWindow to merge
+     * @param count the number of WaveformWindow to merge
+     * @return the minimum sample value within the merged WaveformWindow
+     */
+    public float getMergedMin(final int index, final int count) {
+        checkRegion(index, count);
+        final FloatBuffer mins = mMins;
+        final int slot = getSlot(index, mins.capacity());
+        /* The slots of a sliding cache wrap at most once */
+        final int headCount = Math.min(count, mins.capacity() - slot);
+        float min = mins.get(slot);
+        for (int i = slot + 1; i < slot + headCount; i++) {
+            min = Math.min(min, mins.get(i));
+        }
+        for (int i = 0; i < count - headCount; i++) {
+            min = Math.min(min, mins.get(i));
+        }
+        return min;
     }
 
-    private final WaveformWindow[] mCache;
+    /**
+     * @param index the index of the first WaveformWindow to merge
+     * @param count the number of WaveformWindow to merge
+     * @return the maximum sample value within the merged WaveformWindow
+     */
+    public float getMergedMax(final int index, final int count) {
+        checkRegion(index, count);
+        final FloatBuffer maxs = mMaxs;
+        final int slot = getSlot(index, maxs.capacity());
+        final int headCount = Math.min(count, maxs.capacity() - slot);
+        float max = maxs.get(slot);
+        for (int i = slot + 1; i < slot + headCount; i++) {
+            max = Math.max(max, maxs.get(i));
+        }
+        for (int i = 0; i < count - headCount; i++) {
+            max = Math.max(max, maxs.get(i));
+        }
+        return max;
+    }
+
+    /**
+     * @param index the index of the first WaveformWindow to merge
+     * @param count the number of WaveformWindow to merge
+     * @return the maximum absolute sample value within the merged WaveformWindow
+     */
+    public float getMergedPeakAbs(final int index, final int count) {
+        return Math.max(Math.abs(getMergedMin(index, count)), Math.abs(getMergedMax(index, count)));
+    }
+
+    /**
+     * @param index the index of the first WaveformWindow to merge
+     * @param count the number of WaveformWindow to merge
+     * @return the sum of squares of the audio samples of the merged WaveformWindow, 0 if the cache does not hold
+     * signal statistics
+     */
+    public float getMergedSumOfSquares(final int index, final int count) {
+        checkRegion(index, count);
+        final FloatBuffer sumsOfSquares = mSumsOfSquares;
+        if (sumsOfSquares == null) {
+            return 0;
+        }
+        final int slot = getSlot(index, sumsOfSquares.capacity());
+        final int headCount = Math.min(count, sumsOfSquares.capacity() - slot);
+        double sumOfSquares = 0;
+        for (int i = slot; i < slot + headCount; i++) {
+            sumOfSquares += sumsOfSquares.get(i);
+        }
+        for (int i = 0; i < count - headCount; i++) {
+            sumOfSquares += sumsOfSquares.get(i);
+        }
+        return (float) sumOfSquares;
+    }
+
+    /**
+     * @param index the index of the first WaveformWindow to merge
+     * @param count the number of WaveformWindow to merge
+     * @return the number of audio samples at full scale within the merged WaveformWindow, 0 if the cache does not
+     * hold signal statistics
+     */
+    public long getMergedClipCount(final int index, final int count) {
+        checkRegion(index, count);
+        final LongBuffer clipCounts = mClipCounts;
+        if (clipCounts == null) {
+            return 0;
+        }
+        final int slot = getSlot(index, clipCounts.capacity());
+        final int headCount = Math.min(count, clipCounts.capacity() - slot);
+        long clipCount = 0;
+        for (int i = slot; i < slot + headCount; i++) {
+            clipCount += clipCounts.get(i);
+        }
+        for (int i = 0; i < count - headCount; i++) {
+            clipCount += clipCounts.get(i);
+        }
+        return clipCount;
+    }
+
+    /**
+     * @return a read only view of the minimum sample values
+     */
+    FloatBuffer getMins() {
+        return mMins.asReadOnlyBuffer();
+    }
+
+    /**
+     * @return a read only view of the maximum sample values
+     */
+    FloatBuffer getMaxs() {
+        return mMaxs.asReadOnlyBuffer();
+    }
+
+    /**
+     * @return a read only view of the sums of squares, null if the cache does not hold signal statistics
+     */
+    FloatBuffer getSumsOfSquares() {
+        return mSumsOfSquares == null ? null : mSumsOfSquares.asReadOnlyBuffer();
+    }
+
+    /**
+     * @return a read only view of the clip counts, null if the cache does not hold signal statistics
+     */
+    LongBuffer getClipCounts() {
+        return mClipCounts == null ? null : mClipCounts.asReadOnlyBuffer();
+    }
+
+    /**
+     * Statistic buffers, only replaced by ensureCapacity(), before the WaveformWindow written to the new buffers
+     * are published
+     */
+    private volatile FloatBuffer mMins;
+    private volatile FloatBuffer mMaxs;
+    /**
+     * Signal statistics, both null if the cache does not hold them. Clip counts are stored as long, so that they
+     * stay exact whatever the WaveformWindow size.
+     */
+    private volatile FloatBuffer mSumsOfSquares;
+    private volatile LongBuffer mClipCounts;
     private final long mWindowSize;
-    private int mInitializedSize;
-}
\ No newline at end of file
+    /**
+     * Number of WaveformWindow filled from the beginning of the cache. Written by the single writer once the
+     * WaveformWindow statistics are written.
+     */
+    private volatile int mInitializedSize;
+    /**
+     * One bit per WaveformWindow, set once filled. Only allocated once regions are filled out of order.
+     */
+    private volatile AtomicLongArray mFilled;
+    private final boolean mIsSliding;
+    /**
+     * Index of the first WaveformWindow held by a sliding cache, written by the single writer before it reuses the
+     * slots of dropped WaveformWindow
+     */
+    private volatile int mFirstIndex;
+}
@@ -15,7 +15,8 @@ import java.security.InvalidParameterException;
 import com.intel.audioviz.trace.WaveformWindow;
 
 /**
- * A WaveformWindowCacheDSP generates WaveformWindow while processing audio sample.
+ * A WaveformWindowCacheDSP generates WaveformWindow while processing audio sample. WaveformWindow hold signal
+ * statistics as well, kept by cache levels which hold signal statistics.
  */
 public class WaveformWindowCacheDSP {
 
@@ -42,12 +43,16 @@ public class WaveformWindowCacheDSP {
     public WaveformWindow push(final float sample) {
         WaveformWindow newWaveformWindow = null;
 
-        // Compute min and max
+        // Compute min and max, and signal statistics
         mMin = Math.min(mMin, sample);
         mMax = Math.max(mMax, sample);
+        mSumOfSquares += sample * sample;
+        if (Math.abs(sample) >= WaveformWindow.FULL_SCALE) {
+            mClipCount++;
+        }
 
         if (++mComputedSampleCount >= mWaveformWindowSize) {
-            newWaveformWindow = new WaveformWindow(mMin, mMax);
+            newWaveformWindow = new WaveformWindow(mMin, mMax, (float) mSumOfSquares, mClipCount);
             reset();
         }
 
@@ -68,7 +73,7 @@ public class WaveformWindowCacheDSP {
              * last window. Anyway, we cannot remove the last sample(s) from the cache
              * and must take them into consideration.
              */
-            newWaveformWindow = new WaveformWindow(mMin, mMax);
+            newWaveformWindow = new WaveformWindow(mMin, mMax, (float) mSumOfSquares, mClipCount);
             reset();
         }
 
@@ -78,11 +83,15 @@ public class WaveformWindowCacheDSP {
     private void reset() {
         mMin = 2.0f;
         mMax = -2.0f;
+        mSumOfSquares = 0;
+        mClipCount = 0;
         mComputedSampleCount = 0L;
     }
 
     private float mMin;
     private float mMax;
+    private double mSumOfSquares;
+    private long mClipCount;
     private long mComputedSampleCount;
     private final long mWaveformWindowSize;
 }
@@ -0,0 +1,349 @@
+/*
+ * Copyright (C) 2017 Intel Corporation
+ *
+ * This Program is subject to the terms of the Eclipse Public License, v. 1.0.
+ * If a copy of the license was not distributed with this file,
+ * you can obtain one at <http://www.eclipse.org/legal/epl-v10.html>
+ *
+ * SPDX-License-Identifier: EPL-1.0
+ */
+
+package com.intel.audioviz.trace.waveform;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import com.intel.audioviz.AudioFormat;
+
+/**
+ * A WaveformWindowCacheFile persists the WaveformWindowCache levels of every channel of an audio file in a
+ * sidecar file, so that they are not computed again when the audio file is opened again.
+ *
+ * The sidecar file starts with a versioned header holding the key of the cached audio data (audio file path,
+ * size and last modification time, audio data offset and length, AudioFormat) and the layout of cache levels.
+ * The statistics of each level follow, one region per statistic, little endian: minimum and maximum values as
+ * floats, then for levels holding signal statistics, sums of squares as floats and clip counts as longs. The
+ * header is followed by the CRC32 of these regions. A sidecar file whose header does not match the expected one,
+ * whose length is not the expected one, or whose regions do not match their CRC32, is stale or corrupted and
+ * ignored.
+ *
+ * Loaded cache levels are memory mapped rather than read: they are paged in on demand and stay off heap. They are
+ * only mapped once read sequentially to check their CRC32, still much faster than computing them again.
+ */
+public class WaveformWindowCacheFile {
+
+    /**
+     * @param file the sidecar file
+     * @param sourceFile the audio file which is cached
+     * @param dataOffset the offset of audio raw data within the audio file
+     * @param audioFormat the AudioFormat of audio raw data
+     * @param samplesPerChannel the number of audio samples per channel of audio raw data
+     * @note The audio file size and last modification time are sampled at instantiation time
+     */
+    public WaveformWindowCacheFile(final File file, final File sourceFile, final long dataOffset,
+            final AudioFormat audioFormat, final long samplesPerChannel) {
+        mFile = file;
+        mSourcePath = sourceFile.getAbsolutePath();
+        mSourceSize = sourceFile.length();
+        mSourceLastModified = sourceFile.lastModified();
+        mDataOffset = dataOffset;
+        mAudioFormat = audioFormat;
+        mSamplesPerChannel = samplesPerChannel;
+    }
+
+    /**
+     * @return the sidecar file
+     */
+    public File getFile() {
+        return mFile;
+    }
+
+    /**
+     * Load cache levels from the sidecar file.
+     * @param layout cache levels, per channel, having the expected window sizes and capacities
+     * @return fully initialized cache levels, per channel, memory mapped from the sidecar file, or null if the
+     * sidecar file does not exist, is stale or is corrupted.
+     */
+    public WaveformWindowCache[][] load(final WaveformWindowCache[][] layout) {
+        if (!mFile.isFile()) {
+            return null;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(mFile, "r")) {
+            try (FileChannel fileChannel = raf.getChannel()) {
+                final byte[] expectedHeader = getHeader(layout);
+                final long dataOffset = getDataOffset(expectedHeader);
+
+                if (fileChannel.size() != dataOffset + getDataSize(layout)) {
+                    return null;
+                }
+
+                final ByteBuffer header = ByteBuffer.allocate(expectedHeader.length + Integer.BYTES);
+                while (header.hasRemaining()) {
+                    if (fileChannel.read(header, header.position()) < 0) {
+                        return null;
+                    }
+                }
+                if (!Arrays.equals(Arrays.copyOf(header.array(), expectedHeader.length), expectedHeader)
+                        || header.getInt(expectedHeader.length) != getChecksum(fileChannel, dataOffset)) {
+                    return null;
+                }
+
+                final WaveformWindowCache[][] cache = new WaveformWindowCache[layout.length][];
+                long position = dataOffset;
+                for (int channel = 0; channel < layout.length; channel++) {
+                    cache[channel] = new WaveformWindowCache[layout[channel].length];
+                    for (int level = 0; level < layout[channel].length; level++) {
+                        final long regionSize = getRegionSize(layout[channel][level]);
+                        final FloatBuffer mins = map(fileChannel, position, regionSize).asFloatBuffer();
+                        position += regionSize;
+                        final FloatBuffer maxs = map(fileChannel, position, regionSize).asFloatBuffer();
+                        position += regionSize;
+                        FloatBuffer sumsOfSquares = null;
+                        LongBuffer clipCounts = null;
+                        if (layout[channel][level].hasSignalStatistics()) {
+                            sumsOfSquares = map(fileChannel, position, regionSize).asFloatBuffer();
+                            position += regionSize;
+                            clipCounts = map(fileChannel, position, getClipCountRegionSize(layout[channel][level]))
+                                    .asLongBuffer();
+                            position += getClipCountRegionSize(layout[channel][level]);
+                        }
+
+                        cache[channel][level] = new WaveformWindowCache(mins, maxs, sumsOfSquares, clipCounts,
+                                layout[channel][level].getWindowSize());
+                    }
+                }
+                return cache;
+            }
+        } catch (final IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Save cache levels to the sidecar file. The sidecar file is first written as a temporary file in the same
+     * directory, then moved atomically: a concurrent load either sees the previous sidecar file or the new one.
+     * @param cache fully initialized cache levels, per channel
+     * @throws IOException
+     */
+    public void save(final WaveformWindowCache[][] cache) throws IOException {
+        final byte[] header = getHeader(cache);
+        final File directory = mFile.getAbsoluteFile().getParentFile();
+        final File temporaryFile = File.createTempFile(mFile.getName(), TEMPORARY_FILE_SUFFIX, directory);
+
+        try {
+            try (RandomAccessFile raf = new RandomAccessFile(temporaryFile, "rw")) {
+                try (FileChannel fileChannel = raf.getChannel()) {
+                    final ByteBuffer buffer = ByteBuffer.allocateDirect(IO_BUFFER_SIZE);
+                    buffer.order(DATA_BYTE_ORDER);
+
+                    final CRC32 checksum = new CRC32();
+
+                    write(fileChannel, ByteBuffer.wrap(header));
+                    write(fileChannel, ByteBuffer.allocate((int) (getDataOffset(header) - header.length)));
+                    for (final WaveformWindowCache[] cacheLevels : cache) {
+                        for (final WaveformWindowCache cacheLevel : cacheLevels) {
+                            if (cacheLevel.getCacheSize() != cacheLevel.getCacheCapacity()) {
+                                throw new IOException("Cache level not initialized");
+                            }
+                            write(fileChannel, cacheLevel.getMins(), buffer, checksum);
+                            write(fileChannel, cacheLevel.getMaxs(), buffer, checksum);
+                            if (cacheLevel.hasSignalStatistics()) {
+                                write(fileChannel, cacheLevel.getSumsOfSquares(), buffer, checksum);
+                                write(fileChannel, cacheLevel.getClipCounts(), buffer, checksum);
+                            }
+                        }
+                    }
+                    final ByteBuffer checksumBytes = ByteBuffer.allocate(Integer.BYTES);
+                    checksumBytes.putInt(0, (int) checksum.getValue());
+                    while (checksumBytes.hasRemaining()) {
+                        fileChannel.write(checksumBytes, header.length + checksumBytes.position());
+                    }
+                    /* Make sure data reach the disk before the sidecar file becomes visible */
+                    fileChannel.force(true);
+                }
+            }
+            Files.move(temporaryFile.toPath(), mFile.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporaryFile.toPath());
+        }
+    }
+
+    /**
+     * @param layout cache levels, per channel
+     * @return the header of the sidecar file: format version, audio data key and cache levels layout
+     */
+    private byte[] getHeader(final WaveformWindowCache[][] layout) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream header = new DataOutputStream(bytes)) {
+            header.writeInt(MAGIC);
+            header.writeInt(VERSION);
+            header.writeUTF(mSourcePath);
+            header.writeLong(mSourceSize);
+            header.writeLong(mSourceLastModified);
+            header.writeLong(mDataOffset);
+            header.writeLong(mSamplesPerChannel);
+            header.writeInt(mAudioFormat.getChannelCount());
+            header.writeInt(mAudioFormat.getSampleFrequency());
+            header.writeInt(mAudioFormat.getBytesPerSample());
+            header.writeBoolean(mAudioFormat.isSigned());
+            header.writeUTF(mAudioFormat.getCodingFormat().name());
+            header.writeUTF(mAudioFormat.getByteOrder().toString());
+            header.writeInt(layout.length);
+            for (final WaveformWindowCache[] cacheLevels : layout) {
+                header.writeInt(cacheLevels.length);
+                for (final WaveformWindowCache cacheLevel : cacheLevels) {
+                    header.writeLong(cacheLevel.getWindowSize());
+                    header.writeInt(cacheLevel.getCacheCapacity());
+                    header.writeBoolean(cacheLevel.hasSignalStatistics());
+                }
+            }
+        } catch (final IOException e) {
+            /* Cannot occur while writing to memory */
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param header the header of the sidecar file
+     * @return the offset of the cache level statistics, following the header and the CRC32 of the statistics
+     */
+    private static long getDataOffset(final byte[] header) {
+        return (header.length + Integer.BYTES + DATA_ALIGNMENT - 1) / DATA_ALIGNMENT * DATA_ALIGNMENT;
+    }
+
+    /**
+     * @param fileChannel the sidecar file
+     * @param dataOffset the offset of the cache level statistics
+     * @return the CRC32 of the cache level statistics, read up to the end of the sidecar file
+     * @throws IOException
+     */
+    private static int getChecksum(final FileChannel fileChannel, final long dataOffset) throws IOException {
+        final CRC32 checksum = new CRC32();
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(IO_BUFFER_SIZE);
+        long position = dataOffset;
+        while (true) {
+            buffer.clear();
+            final int count = fileChannel.read(buffer, position);
+            if (count < 0) {
+                return (int) checksum.getValue();
+            }
+            buffer.flip();
+            checksum.update(buffer);
+            position += count;
+        }
+    }
+
+    private static long getDataSize(final WaveformWindowCache[][] layout) {
+        long size = 0;
+        for (final WaveformWindowCache[] cacheLevels : layout) {
+            for (final WaveformWindowCache cacheLevel : cacheLevels) {
+                size += (cacheLevel.hasSignalStatistics() ? 3 : 2) * getRegionSize(cacheLevel);
+                if (cacheLevel.hasSignalStatistics()) {
+                    size += getClipCountRegionSize(cacheLevel);
+                }
+            }
+        }
+        return size;
+    }
+
+    private static long getRegionSize(final WaveformWindowCache cacheLevel) {
+        return (long) cacheLevel.getCacheCapacity() * Float.BYTES;
+    }
+
+    private static long getClipCountRegionSize(final WaveformWindowCache cacheLevel) {
+        return (long) cacheLevel.getCacheCapacity() * Long.BYTES;
+    }
+
+    private static ByteBuffer map(final FileChannel fileChannel, final long position, final long size)
+            throws IOException {
+        /* A single mapping cannot exceed Integer.MAX_VALUE bytes */
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Too large cache level");
+        }
+        return fileChannel.map(FileChannel.MapMode.READ_ONLY, position, size).order(DATA_BYTE_ORDER);
+    }
+
+    private static void write(final FileChannel fileChannel, final ByteBuffer source) throws IOException {
+        while (source.hasRemaining()) {
+            fileChannel.write(source);
+        }
+    }
+
+    private static void write(final FileChannel fileChannel, final FloatBuffer source, final ByteBuffer buffer,
+            final CRC32 checksum) throws IOException {
+        buffer.clear();
+        final FloatBuffer floatBuffer = buffer.asFloatBuffer();
+        while (source.hasRemaining()) {
+            final int count = Math.min(floatBuffer.capacity(), source.remaining());
+            final FloatBuffer chunk = source.duplicate();
+            chunk.limit(chunk.position() + count);
+
+            floatBuffer.clear();
+            floatBuffer.put(chunk);
+            source.position(source.position() + count);
+
+            buffer.clear();
+            buffer.limit(count * Float.BYTES);
+            checksum.update(buffer.duplicate());
+            write(fileChannel, buffer);
+        }
+    }
+
+    private static void write(final FileChannel fileChannel, final LongBuffer source, final ByteBuffer buffer,
+            final CRC32 checksum) throws IOException {
+        buffer.clear();
+        final LongBuffer longBuffer = buffer.asLongBuffer();
+        while (source.hasRemaining()) {
+            final int count = Math.min(longBuffer.capacity(), source.remaining());
+            final LongBuffer chunk = source.duplicate();
+            chunk.limit(chunk.position() + count);
+
+            longBuffer.clear();
+            longBuffer.put(chunk);
+            source.position(source.position() + count);
+
+            buffer.clear();
+            buffer.limit(count * Long.BYTES);
+            checksum.update(buffer.duplicate());
+            write(fileChannel, buffer);
+        }
+    }
+
+    private final File mFile;
+    private final String mSourcePath;
+    private final long mSourceSize;
+    private final long mSourceLastModified;
+    private final long mDataOffset;
+    private final AudioFormat mAudioFormat;
+    private final long mSamplesPerChannel;
+
+    /**
+     * "AVWC": AudioViz Waveform Cache
+     */
+    private static final int MAGIC = 0x41565743;
+    /**
+     * To be increased on any change of the sidecar file format
+     */
+    private static final int VERSION = 4;
+    /**
+     * Cache level statistics start on a page boundary
+     */
+    private static final int DATA_ALIGNMENT = 4096;
+    private static final ByteOrder DATA_BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+    private static final int IO_BUFFER_SIZE = 64 * 1024;
+    private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2017 Intel Corporation
+ *
+ * This Program is subject to the terms of the Eclipse Public License, v. 1.0.
+ * If a copy of the license was not distributed with this file,
+ * you can obtain one at <http://www.eclipse.org/legal/epl-v10.html>
+ *
+ * SPDX-License-Identifier: EPL-1.0
+ */
+
+package com.intel.audioviz.trace.waveform;
+
+import java.security.InvalidParameterException;
+
+import com.intel.audioviz.trace.WaveformWindow;
+
+/**
+ * WaveformWindowKernel computes WaveformWindow statistics over blocks of contiguous audio samples: minimum and
+ * maximum values, and optionally signal statistics.
+ * Loops are kept simple enough for the JIT compiler to unroll and vectorize them: no method call, several
+ * independent accumulators, and plain comparisons rather than Math.min()/Math.max(), which special case NaN.
+ * @note NaN audio samples are ignored rather than propagated.
+ */
+public final class WaveformWindowKernel {
+
+    private WaveformWindowKernel() {
+    }
+
+    /**
+     * Compute the statistics of consecutive windows of audio samples.
+     * @param samples The audio samples
+     * @param offset The index in samples of the first audio sample of the first window
+     * @param windowSize The number of audio samples per window
+     * @param mins The array receiving the minimum sample value of each window
+     * @param maxs The array receiving the maximum sample value of each window
+     * @param windowOffset The index in mins and maxs of the first window
+     * @param windowCount The number of windows
+     */
+    public static void computeWindows(final float[] samples, final int offset, final int windowSize,
+            final float[] mins, final float[] maxs, final int windowOffset, final int windowCount) {
+        if (windowSize < 1 || windowCount < 0) {
+            throw new InvalidParameterException("Invalid window");
+        }
+        if (offset < 0 || offset + (long) windowSize * windowCount > samples.length) {
+            throw new IndexOutOfBoundsException("Out of samples array");
+        }
+        if (windowOffset < 0 || windowOffset + windowCount > mins.length || windowOffset + windowCount > maxs.length) {
+            throw new IndexOutOfBoundsException("Destination too small");
+        }
+
+        for (int i = 0, index = offset; i < windowCount; i++, index += windowSize) {
+            mins[windowOffset + i] = min(samples, index, windowSize);
+            maxs[windowOffset + i] = max(samples, index, windowSize);
+        }
+    }
+
+    /**
+     * Compute the signal statistics of consecutive windows of audio samples.
+     * @param samples The audio samples
+     * @param offset The index in samples of the first audio sample of the first window
+     * @param windowSize The number of audio samples per window
+     * @param sumOfSquares The array receiving the sum of squares of each window
+     * @param clipCounts The array receiving the number of audio samples at full scale of each window
+     * @param windowOffset The index in sumOfSquares and clipCounts of the first window
+     * @param windowCount The number of windows
+     */
+    public static void computeSignalStatistics(final float[] samples, final int offset, final int windowSize,
+            final float[] sumOfSquares, final long[] clipCounts, final int windowOffset, final int windowCount) {
+        if (windowSize < 1 || windowCount < 0) {
+            throw new InvalidParameterException("Invalid window");
+        }
+        if (offset < 0 || offset + (long) windowSize * windowCount > samples.length) {
+            throw new IndexOutOfBoundsException("Out of samples array");
+        }
+        if (windowOffset < 0 || windowOffset + windowCount > sumOfSquares.length
+                || windowOffset + windowCount > clipCounts.length) {
+            throw new IndexOutOfBoundsException("Destination too small");
+        }
+
+        for (int i = 0, index = offset; i < windowCount; i++, index += windowSize) {
+            sumOfSquares[windowOffset + i] = sumOfSquares(samples, index, windowSize);
+            clipCounts[windowOffset + i] = clipCount(samples, index, windowSize);
+        }
+    }
+
+    /**
+     * @param samples The audio samples
+     * @param offset The index in samples of the first audio sample
+     * @param count The number of audio samples
+     * @return the sum of the squares of the audio samples, 0 if count is 0
+     */
+    public static float sumOfSquares(final float[] samples, final int offset, final int count) {
+        float sum0 = 0;
+        float sum1 = 0;
+        float sum2 = 0;
+        float sum3 = 0;
+        final int end = offset + count;
+        int i = offset;
+        for (; i + LANES <= end; i += LANES) {
+            sum0 += samples[i] * samples[i];
+            sum1 += samples[i + 1] * samples[i + 1];
+            sum2 += samples[i + 2] * samples[i + 2];
+            sum3 += samples[i + 3] * samples[i + 3];
+        }
+        for (; i < end; i++) {
+            sum0 += samples[i] * samples[i];
+        }
+        return (sum0 + sum1) + (sum2 + sum3);
+    }
+
+    /**
+     * @param samples The audio samples
+     * @param offset The index in samples of the first audio sample
+     * @param count The number of audio samples
+     * @return the number of audio samples at full scale
+     * @see WaveformWindow.FULL_SCALE
+     */
+    public static int clipCount(final float[] samples, final int offset, final int count) {
+        int clipCount = 0;
+        for (int i = offset; i < offset + count; i++) {
+            clipCount += Math.abs(samples[i]) >= WaveformWindow.FULL_SCALE ? 1 : 0;
+        }
+        return clipCount;
+    }
+
+    /**
+     * @param samples The audio samples
+     * @param offset The index in samples of the first audio sample
+     * @param count The number of audio samples
+     * @return the minimum value of the audio samples, Float.POSITIVE_INFINITY if count is 0
+     */
+    public static float min(final float[] samples, final int offset, final int count) {
+        float min0 = Float.POSITIVE_INFINITY;
+        float min1 = Float.POSITIVE_INFINITY;
+        float min2 = Float.POSITIVE_INFINITY;
+        float min3 = Float.POSITIVE_INFINITY;
+        final int end = offset + count;
+        int i = offset;
+        for (; i + LANES <= end; i += LANES) {
+            min0 = samples[i] < min0 ? samples[i] : min0;
+            min1 = samples[i + 1] < min1 ? samples[i + 1] : min1;
+            min2 = samples[i + 2] < min2 ? samples[i + 2] : min2;
+            min3 = samples[i + 3] < min3 ? samples[i + 3] : min3;
+        }
+        for (; i < end; i++) {
+            min0 = samples[i] < min0 ? samples[i] : min0;
+        }
+        min0 = min1 < min0 ? min1 : min0;
+        min2 = min3 < min2 ? min3 : min2;
+        return min2 < min0 ? min2 : min0;
+    }
+
+    /**
+     * @param samples The audio samples
+     * @param offset The index in samples of the first audio sample
+     * @param count The number of audio samples
+     * @return the maximum value of the audio samples, Float.NEGATIVE_INFINITY if count is 0
+     */
+    public static float max(final float[] samples, final int offset, final int count) {
+        float max0 = Float.NEGATIVE_INFINITY;
+        float max1 = Float.NEGATIVE_INFINITY;
+        float max2 = Float.NEGATIVE_INFINITY;
+        float max3 = Float.NEGATIVE_INFINITY;
+        final int end = offset + count;
+        int i = offset;
+        for (; i + LANES <= end; i += LANES) {
+            max0 = samples[i] > max0 ? samples[i] : max0;
+            max1 = samples[i + 1] > max1 ? samples[i + 1] : max1;
+            max2 = samples[i + 2] > max2 ? samples[i + 2] : max2;
+            max3 = samples[i + 3] > max3 ? samples[i + 3] : max3;
+        }
+        for (; i < end; i++) {
+            max0 = samples[i] > max0 ? samples[i] : max0;
+        }
+        max0 = max1 > max0 ? max1 : max0;
+        max2 = max3 > max2 ? max3 : max2;
+        return max2 > max0 ? max2 : max0;
+    }
+
+    /**
+     * Number of independent accumulators of min() and max()
+     */
+    private static final int LANES = 4;
+}